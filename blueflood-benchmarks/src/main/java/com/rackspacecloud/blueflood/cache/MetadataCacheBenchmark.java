@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.rackspacecloud.blueflood.exceptions.CacheException;
+import com.rackspacecloud.blueflood.io.MetadataIO;
+import com.rackspacecloud.blueflood.types.Locator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MetadataCache} lookups and updates from many ingestion threads, against a metadata store that does
+ * nothing, so only the cache itself is measured. Every locator is cached before the benchmark starts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MetadataCacheBenchmark {
+
+    private static final int LOCATORS = 10000;
+    private static final String KEY = "unit";
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+        MetadataCache cache;
+        final Locator[] locators = new Locator[LOCATORS];
+
+        @Setup
+        public void setUp() throws CacheException {
+            cache = MetadataCache.createLoadingCacheInstance();
+            cache.setIO(new NoOpMetadataIO());
+            for (int i = 0; i < LOCATORS; i++) {
+                locators[i] = Locator.createLocatorFromPathComponents("tenant" + (i % 16), "host" + i, "cpu", "user");
+                cache.put(locators[i], KEY, "percent");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        int next = 0;
+        int pass = 0;
+
+        int next() {
+            next = (next + 1) % LOCATORS;
+            if (next == 0) {
+                pass++;
+            }
+            return next;
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String get(Cache cache, Reader reader) throws CacheException {
+        return cache.cache.get(cache.locators[reader.next()], KEY);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean putUnchanged(Cache cache, Reader reader) throws CacheException {
+        return cache.cache.put(cache.locators[reader.next()], KEY, "percent");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean putChanged(Cache cache, Reader reader) throws CacheException {
+        // each pass over the locators flips their value.
+        int i = reader.next();
+        return cache.cache.put(cache.locators[i], KEY, (reader.pass & 1) == 0 ? "milliseconds" : "percent");
+    }
+
+    private static class NoOpMetadataIO implements MetadataIO {
+        @Override
+        public void put(Locator locator, String key, String value) {
+        }
+
+        @Override
+        public Map<String, String> getAllValues(Locator locator) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Table<Locator, String, String> getAllValues(Set<Locator> locators) {
+            return HashBasedTable.create();
+        }
+
+        @Override
+        public void putAll(Table<Locator, String, String> meta) {
+        }
+    }
+}
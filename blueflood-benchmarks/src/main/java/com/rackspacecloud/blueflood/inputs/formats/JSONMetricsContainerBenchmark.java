@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.formats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JSONMetricsContainer#parse(String, java.io.InputStream, boolean)} on an ingestion request body of
+ * size metrics, from parsing to the validated metrics.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JSONMetricsContainerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        @Param({"100", "1000"})
+        int size;
+
+        byte[] body;
+        byte[] scopedBody;
+
+        @Setup
+        public void setUp() {
+            // recent enough to pass validation for as long as the benchmark runs.
+            long collectionTime = System.currentTimeMillis();
+            StringBuilder metrics = new StringBuilder("[");
+            StringBuilder scopedMetrics = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                String separator = i == 0 ? "" : ",";
+                String fields = String.format("\"metricName\":\"host%d.cpu.user.percent\",\"metricValue\":%d.5,"
+                        + "\"collectionTime\":%d,\"ttlInSeconds\":172800,\"unit\":\"percent\"", i, i % 100, collectionTime);
+                metrics.append(separator).append('{').append(fields).append('}');
+                scopedMetrics.append(separator).append("{\"tenantId\":\"tenant").append(i % 16).append("\",")
+                        .append(fields).append('}');
+            }
+            body = metrics.append(']').toString().getBytes(Charset.forName("UTF-8"));
+            scopedBody = scopedMetrics.append(']').toString().getBytes(Charset.forName("UTF-8"));
+        }
+    }
+
+    @Benchmark
+    public JSONMetricsContainer parse(Payload payload) throws IOException {
+        return JSONMetricsContainer.parse("tenant", new ByteArrayInputStream(payload.body), false);
+    }
+
+    @Benchmark
+    public JSONMetricsContainer parseScoped(Payload payload) throws IOException {
+        return JSONMetricsContainer.parse("tenant", new ByteArrayInputStream(payload.scopedBody), true);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.io.serializers.metrics;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.SlotState;
+import com.rackspacecloud.blueflood.service.UpdateStamp;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.BluefloodCounterRollup;
+import com.rackspacecloud.blueflood.types.BluefloodEnumRollup;
+import com.rackspacecloud.blueflood.types.BluefloodGaugeRollup;
+import com.rackspacecloud.blueflood.types.BluefloodSetRollup;
+import com.rackspacecloud.blueflood.types.BluefloodTimerRollup;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.QuantileSketch;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each serializer in this package both ways, on values shaped like what the rollup service writes and the
+ * query path reads back. Deserialization works on a duplicate of the same buffer every time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerDesBenchmark {
+
+    private static final long NOW = 1451606400000L;
+
+    @State(Scope.Thread)
+    public static class Values {
+        final RawSerDes rawSerDes = new RawSerDes();
+        final BasicRollupSerDes basicSerDes = new BasicRollupSerDes();
+        final TimerRollupSerDes timerSerDes = new TimerRollupSerDes();
+        final CounterSerDes counterSerDes = new CounterSerDes();
+        final GaugeSerDes gaugeSerDes = new GaugeSerDes();
+        final EnumSerDes enumSerDes = new EnumSerDes();
+        final SetSerDes setSerDes = new SetSerDes();
+        final StringMetadataSerDes stringSerDes = new StringMetadataSerDes();
+        final SlotStateSerDes slotStateSerDes = new SlotStateSerDes();
+
+        Double raw;
+        BasicRollup basic;
+        BluefloodTimerRollup timer;
+        BluefloodCounterRollup counter;
+        BluefloodGaugeRollup gauge;
+        BluefloodEnumRollup enumRollup;
+        BluefloodSetRollup exactSet;
+        BluefloodSetRollup estimatedSet;
+        String string;
+        SlotState slotState;
+
+        ByteBuffer rawBuffer;
+        ByteBuffer basicBuffer;
+        ByteBuffer timerBuffer;
+        ByteBuffer counterBuffer;
+        ByteBuffer gaugeBuffer;
+        ByteBuffer enumBuffer;
+        ByteBuffer exactSetBuffer;
+        ByteBuffer estimatedSetBuffer;
+        ByteBuffer stringBuffer;
+        String slotStateString;
+
+        @Setup
+        public void setUp() throws Exception {
+            Random random = new Random(42);
+
+            Points<SimpleNumber> input = new Points<SimpleNumber>();
+            for (int i = 0; i < 30; i++) {
+                long timestamp = NOW + i * 10000L;
+                input.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(random.nextDouble() * 100)));
+            }
+
+            raw = random.nextDouble() * 100;
+            basic = BasicRollup.buildRollupFromRawSamples(input);
+            QuantileSketch sketch = new QuantileSketch();
+            for (int i = 0; i < 1000; i++) {
+                sketch.add(random.nextDouble() * 500);
+            }
+            timer = new BluefloodTimerRollup().withSum(4500d).withCountPS(4.5d).withAverage(45).withVariance(8.25d)
+                    .withMinValue(0).withMaxValue(490).withCount(1000).withSampleCount(30).withSketch(sketch);
+            timer.setPercentile("50", sketch.getQuantile(0.5));
+            timer.setPercentile("99", sketch.getQuantile(0.99));
+            counter = new BluefloodCounterRollup().withCount(1000L).withRate(3.3d).withSampleCount(30);
+            gauge = BluefloodGaugeRollup.buildFromRawSamples(input);
+            enumRollup = new BluefloodEnumRollup();
+            for (int i = 0; i < 100; i++) {
+                enumRollup.withEnumValue("value" + (i % 10));
+            }
+            exactSet = new BluefloodSetRollup();
+            for (int i = 0; i < 100; i++) {
+                exactSet.withObject(i);
+            }
+            estimatedSet = new BluefloodSetRollup();
+            for (int i = 0; i < 10000; i++) {
+                estimatedSet.withObject(i);
+            }
+            string = "milliseconds";
+            slotState = new SlotState(Granularity.MIN_5, 1234, UpdateStamp.State.Active).withTimestamp(NOW);
+
+            rawBuffer = rawSerDes.serialize(raw);
+            basicBuffer = basicSerDes.serialize(basic);
+            timerBuffer = timerSerDes.serialize(timer);
+            counterBuffer = counterSerDes.serialize(counter);
+            gaugeBuffer = gaugeSerDes.serialize(gauge);
+            enumBuffer = enumSerDes.serialize(enumRollup);
+            exactSetBuffer = setSerDes.serialize(exactSet);
+            estimatedSetBuffer = setSerDes.serialize(estimatedSet);
+            stringBuffer = stringSerDes.serialize(string);
+            slotStateString = slotStateSerDes.serialize(slotState);
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer serializeRaw(Values values) {
+        return values.rawSerDes.serialize(values.raw);
+    }
+
+    @Benchmark
+    public Object deserializeRaw(Values values) {
+        return values.rawSerDes.deserialize(values.rawBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeBasic(Values values) {
+        return values.basicSerDes.serialize(values.basic);
+    }
+
+    @Benchmark
+    public BasicRollup deserializeBasic(Values values) {
+        return values.basicSerDes.deserialize(values.basicBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeTimer(Values values) {
+        return values.timerSerDes.serialize(values.timer);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup deserializeTimer(Values values) {
+        return values.timerSerDes.deserialize(values.timerBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeCounter(Values values) {
+        return values.counterSerDes.serialize(values.counter);
+    }
+
+    @Benchmark
+    public BluefloodCounterRollup deserializeCounter(Values values) {
+        return values.counterSerDes.deserialize(values.counterBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeGauge(Values values) {
+        return values.gaugeSerDes.serialize(values.gauge);
+    }
+
+    @Benchmark
+    public BluefloodGaugeRollup deserializeGauge(Values values) {
+        return values.gaugeSerDes.deserialize(values.gaugeBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeEnum(Values values) {
+        return values.enumSerDes.serialize(values.enumRollup);
+    }
+
+    @Benchmark
+    public BluefloodEnumRollup deserializeEnum(Values values) {
+        return values.enumSerDes.deserialize(values.enumBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeExactSet(Values values) {
+        return values.setSerDes.serialize(values.exactSet);
+    }
+
+    @Benchmark
+    public BluefloodSetRollup deserializeExactSet(Values values) {
+        return values.setSerDes.deserialize(values.exactSetBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeEstimatedSet(Values values) {
+        return values.setSerDes.serialize(values.estimatedSet);
+    }
+
+    @Benchmark
+    public BluefloodSetRollup deserializeEstimatedSet(Values values) {
+        return values.setSerDes.deserialize(values.estimatedSetBuffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer serializeStringMetadata(Values values) {
+        return values.stringSerDes.serialize(values.string);
+    }
+
+    @Benchmark
+    public String deserializeStringMetadata(Values values) {
+        return values.stringSerDes.deserialize(values.stringBuffer.duplicate());
+    }
+
+    @Benchmark
+    public String serializeSlotState(Values values) {
+        return values.slotStateSerDes.serialize(values.slotState);
+    }
+
+    @Benchmark
+    public SlotState deserializeSlotState(Values values) {
+        return SlotStateSerDes.deserialize(values.slotStateString);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering a single metric query response with {@link JSONBasicRollupsOutputSerializer}, from the points
+ * read to the JSON text that is written out, for full resolution points and for basic rollups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JSONBasicRollupsOutputSerializerBenchmark {
+
+    private static final long NOW = 1451606400000L;
+
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({"100", "1000"})
+        int size;
+
+        final JSONBasicRollupsOutputSerializer serializer = new JSONBasicRollupsOutputSerializer();
+        MetricData fullRes;
+        MetricData rollups;
+
+        @Setup
+        public void setUp() throws IOException {
+            Random random = new Random(42);
+            Points<SimpleNumber> rawPoints = new Points<SimpleNumber>();
+            Points<BasicRollup> rollupPoints = new Points<BasicRollup>();
+            for (int i = 0; i < size; i++) {
+                long timestamp = NOW + i * 300000L;
+                rawPoints.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(random.nextDouble() * 100)));
+
+                Points<SimpleNumber> samples = new Points<SimpleNumber>();
+                for (int j = 0; j < 10; j++) {
+                    samples.add(new Points.Point<SimpleNumber>(timestamp + j, new SimpleNumber(random.nextDouble() * 100)));
+                }
+                rollupPoints.add(new Points.Point<BasicRollup>(timestamp, BasicRollup.buildRollupFromRawSamples(samples)));
+            }
+            fullRes = new MetricData(rawPoints, "percent", MetricData.Type.NUMBER);
+            rollups = new MetricData(rollupPoints, "percent", MetricData.Type.NUMBER);
+        }
+    }
+
+    @Benchmark
+    public String fullRes(Data data) throws SerializationException {
+        return data.serializer.transformRollupData(data.fullRes, PlotRequestParser.DEFAULT_STATS).toJSONString();
+    }
+
+    @Benchmark
+    public String rollups(Data data) throws SerializationException {
+        return data.serializer.transformRollupData(data.rollups, PlotRequestParser.DEFAULT_STATS).toJSONString();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one pass of {@link ScheduleContext#scheduleEligibleSlots(long, long, long)} over all managed shards, each
+ * with a slot that became eligible since the previous pass, as the rollup service runs it every tick.
+ *
+ * A single pass is too short to time on its own, so each invocation runs one pass on each of a batch of contexts,
+ * dirtied beforehand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScheduleContextScheduleBenchmark {
+
+    private static final long NOW = 1451606400000L;
+    private static final long FIVE_MINUTES = 300000L;
+    private static final int BATCH = 16;
+
+    @State(Scope.Benchmark)
+    public static class Context {
+        final List<ScheduleContext> contexts = new ArrayList<ScheduleContext>();
+        final List<Integer> shards = new ArrayList<Integer>();
+        long now = NOW;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < Constants.NUMBER_OF_SHARDS; i++) {
+                shards.add(i);
+            }
+            for (int i = 0; i < BATCH; i++) {
+                contexts.add(new ScheduleContext(now, shards));
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void dirtySlots() {
+            now += FIVE_MINUTES;
+            for (ScheduleContext ctx : contexts) {
+                ctx.setCurrentTimeMillis(now);
+                for (int shard : shards) {
+                    ctx.update(now - 2 * FIVE_MINUTES, shard);
+                }
+            }
+        }
+
+        // run what was scheduled, so the next pass starts from the same state.
+        @TearDown(Level.Invocation)
+        public void drain() {
+            for (ScheduleContext ctx : contexts) {
+                SlotKey key;
+                while ((key = ctx.getNextScheduled()) != null) {
+                    ctx.clearFromRunning(key);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void scheduleEligibleSlots(Context context) {
+        for (ScheduleContext ctx : context.contexts) {
+            ctx.scheduleEligibleSlots(FIVE_MINUTES, FIVE_MINUTES, FIVE_MINUTES);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.io.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ScheduleContext#update(long, int)} the way ingestion calls it: many writer threads marking slots
+ * dirty across all managed shards, while slots are scheduled.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScheduleContextUpdateBenchmark {
+
+    private static final long NOW = 1451606400000L;
+
+    @State(Scope.Benchmark)
+    public static class Context {
+        ScheduleContext ctx;
+
+        @Setup
+        public void setUp() {
+            List<Integer> shards = new ArrayList<Integer>();
+            for (int i = 0; i < Constants.NUMBER_OF_SHARDS; i++) {
+                shards.add(i);
+            }
+            ctx = new ScheduleContext(NOW, shards);
+
+            // dirty every shard and schedule it, so updates have something to deschedule.
+            for (int shard : shards) {
+                ctx.update(NOW - 600000L, shard);
+            }
+            ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final Random random = new Random();
+        int shard;
+        long millis;
+
+        @Setup
+        public void setUp() {
+            shard = random.nextInt(Constants.NUMBER_OF_SHARDS);
+            millis = NOW - random.nextInt(3600000);
+        }
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void update(Context context, Writer writer) {
+        writer.shard = (writer.shard + 1) % Constants.NUMBER_OF_SHARDS;
+        context.ctx.update(writer.millis, writer.shard);
+    }
+}
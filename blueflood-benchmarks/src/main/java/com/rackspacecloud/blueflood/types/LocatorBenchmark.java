@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import com.rackspacecloud.blueflood.utils.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what every ingested metric goes through first: building its {@link Locator}, and finding its shard with
+ * {@link Util#getShard(String)}. The locators are interned, so this is mostly the cost of a cache hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LocatorBenchmark {
+
+    private static final int NAMES = 1024;
+
+    @State(Scope.Thread)
+    public static class Names {
+        final String[] tenantIds = new String[NAMES];
+        final String[] metricNames = new String[NAMES];
+        final String[] dbKeys = new String[NAMES];
+        int next = 0;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < NAMES; i++) {
+                tenantIds[i] = "tenant" + (i % 16);
+                metricNames[i] = "host" + i + ".cpu.user.percent";
+                dbKeys[i] = Locator.createLocatorFromPathComponents(tenantIds[i], metricNames[i]).toString();
+            }
+        }
+
+        int next() {
+            next = (next + 1) % NAMES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Integer getShard(Names names) {
+        return Util.getShard(names.dbKeys[names.next()]);
+    }
+
+    @Benchmark
+    public Locator createLocatorFromPathComponents(Names names) {
+        int i = names.next();
+        return Locator.createLocatorFromPathComponents(names.tenantIds[i], names.metricNames[i]);
+    }
+
+    @Benchmark
+    public Locator createLocatorFromDbKey(Names names) {
+        return Locator.createLocatorFromDbKey(names.dbKeys[names.next()]);
+    }
+}
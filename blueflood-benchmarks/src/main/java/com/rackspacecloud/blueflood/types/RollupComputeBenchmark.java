@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@link Rollup.Type} computation over one slot worth of input: raw samples for the rollups from raw,
+ * and rollups of the finer slots for the others. Basic rollups from raw are measured from both kinds of raw points.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RollupComputeBenchmark {
+
+    private static final long NOW = 1451606400000L;
+
+    @State(Scope.Thread)
+    public static class Inputs {
+        // raw samples in a 5m slot at 30s and 1s intervals, or finer rollups in a 20m slot.
+        @Param({"10", "300"})
+        int size;
+
+        Points<SimpleNumber> raw;
+        NumericPoints numericRaw;
+        Points<BasicRollup> basics;
+        Points<BluefloodTimerRollup> timers;
+        Points<BluefloodCounterRollup> counters;
+        Points<BluefloodGaugeRollup> gauges;
+        Points<BluefloodEnumRollup> enums;
+        Points<BluefloodSetRollup> sets;
+
+        @Setup
+        public void setUp() throws IOException {
+            Random random = new Random(42);
+            raw = new Points<SimpleNumber>();
+            numericRaw = new NumericPoints(size);
+            basics = new Points<BasicRollup>();
+            timers = new Points<BluefloodTimerRollup>();
+            counters = new Points<BluefloodCounterRollup>();
+            gauges = new Points<BluefloodGaugeRollup>();
+            enums = new Points<BluefloodEnumRollup>();
+            sets = new Points<BluefloodSetRollup>();
+
+            for (int i = 0; i < size; i++) {
+                long timestamp = NOW + i * 1000L;
+                double value = random.nextDouble() * 100;
+                raw.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(value)));
+                numericRaw.add(timestamp, value);
+
+                Points<SimpleNumber> samples = new Points<SimpleNumber>();
+                for (int j = 0; j < 10; j++) {
+                    samples.add(new Points.Point<SimpleNumber>(timestamp + j, new SimpleNumber(random.nextDouble() * 100)));
+                }
+                basics.add(new Points.Point<BasicRollup>(timestamp, BasicRollup.buildRollupFromRawSamples(samples)));
+                gauges.add(new Points.Point<BluefloodGaugeRollup>(timestamp, BluefloodGaugeRollup.buildFromRawSamples(samples)));
+                counters.add(new Points.Point<BluefloodCounterRollup>(timestamp, BluefloodCounterRollup.buildRollupFromRawSamples(samples)));
+
+                QuantileSketch sketch = new QuantileSketch();
+                for (int j = 0; j < 100; j++) {
+                    sketch.add(random.nextDouble() * 500);
+                }
+                timers.add(new Points.Point<BluefloodTimerRollup>(timestamp, new BluefloodTimerRollup()
+                        .withSum(value * 100).withCountPS(1.6d).withAverage(value).withVariance(8.25d)
+                        .withMinValue(0).withMaxValue(500).withCount(100).withSampleCount(10).withSketch(sketch)));
+
+                BluefloodEnumRollup enumRollup = new BluefloodEnumRollup();
+                BluefloodSetRollup setRollup = new BluefloodSetRollup();
+                for (int j = 0; j < 10; j++) {
+                    enumRollup.withEnumValue("value" + random.nextInt(10));
+                    setRollup.withObject(random.nextInt(1000));
+                }
+                enums.add(new Points.Point<BluefloodEnumRollup>(timestamp, enumRollup));
+                sets.add(new Points.Point<BluefloodSetRollup>(timestamp, setRollup));
+            }
+        }
+    }
+
+    @Benchmark
+    public BasicRollup basicFromRaw(Inputs inputs) throws IOException {
+        return Rollup.BasicFromRaw.compute(inputs.raw);
+    }
+
+    @Benchmark
+    public BasicRollup basicFromNumericRaw(Inputs inputs) throws IOException {
+        return Rollup.BasicFromRaw.compute(inputs.numericRaw);
+    }
+
+    @Benchmark
+    public BasicRollup basicFromBasic(Inputs inputs) throws IOException {
+        return Rollup.BasicFromBasic.compute(inputs.basics);
+    }
+
+    @Benchmark
+    public BluefloodTimerRollup timerFromTimer(Inputs inputs) throws IOException {
+        return Rollup.TimerFromTimer.compute(inputs.timers);
+    }
+
+    @Benchmark
+    public BluefloodCounterRollup counterFromRaw(Inputs inputs) throws IOException {
+        return Rollup.CounterFromRaw.compute(inputs.raw);
+    }
+
+    @Benchmark
+    public BluefloodCounterRollup counterFromCounter(Inputs inputs) throws IOException {
+        return Rollup.CounterFromCounter.compute(inputs.counters);
+    }
+
+    @Benchmark
+    public BluefloodGaugeRollup gaugeFromRaw(Inputs inputs) throws IOException {
+        return Rollup.GaugeFromRaw.compute(inputs.raw);
+    }
+
+    @Benchmark
+    public BluefloodGaugeRollup gaugeFromGauge(Inputs inputs) throws IOException {
+        return Rollup.GaugeFromGauge.compute(inputs.gauges);
+    }
+
+    @Benchmark
+    public BluefloodEnumRollup enumFromEnum(Inputs inputs) throws IOException {
+        return Rollup.EnumFromEnum.compute(inputs.enums);
+    }
+
+    @Benchmark
+    public BluefloodSetRollup setFromSet(Inputs inputs) throws IOException {
+        return Rollup.SetFromSet.compute(inputs.sets);
+    }
+}
@@ -0,0 +1,81 @@
+package com.rackspacecloud.blueflood.io;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.rackspacecloud.blueflood.io.astyanax.AActiveLocatorIO;
+import com.rackspacecloud.blueflood.io.datastax.DActiveLocatorIO;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActiveLocatorIOIntegrationTest extends IntegrationTestBase {
+
+    private final DActiveLocatorIO datastaxActiveLocatorIO = new DActiveLocatorIO();
+    private final AActiveLocatorIO astyanaxActiveLocatorIO = new AActiveLocatorIO();
+
+    private final SlotKey slotKey1 = SlotKey.of(Granularity.MIN_5, 10, 1);
+    private final SlotKey slotKey2 = SlotKey.of(Granularity.MIN_20, 2, 1);
+
+    private List<Locator> testLocators;
+
+    @Before
+    public void setup() {
+        // create test locators
+        testLocators = generateTestLocators("100000", 2, "active_locator_io.integration.test", 2);
+    }
+
+    @Test
+    public void writeDatastaxReadAstyanax() throws Exception {
+
+        // insert locators using datastax
+        Multimap<SlotKey, Locator> slotLocators = HashMultimap.create();
+        slotLocators.put(slotKey1, testLocators.get(0));
+        slotLocators.put(slotKey1, testLocators.get(1));
+        slotLocators.put(slotKey2, testLocators.get(0));
+        datastaxActiveLocatorIO.insertLocators(slotLocators);
+
+        // retrieve locators using astyanax class
+        Collection<Locator> locatorsResult1 = astyanaxActiveLocatorIO.getLocators(slotKey1);
+        assertEquals("Unexpected locators for slotKey1",
+                new HashSet<Locator>(testLocators.subList(0, 2)), new HashSet<Locator>(locatorsResult1));
+
+        Collection<Locator> locatorsResult2 = astyanaxActiveLocatorIO.getLocators(slotKey2);
+        assertEquals("Unexpected number of locators result for slotKey2", 1, locatorsResult2.size());
+        assertEquals("test locator(0) not equal", testLocators.get(0).toString(), locatorsResult2.toArray()[0].toString());
+
+        // assert slot with no data should return empty collection using astyanax
+        assertEquals("locators should be empty", astyanaxActiveLocatorIO.getLocators(SlotKey.of(Granularity.MIN_5, 11, 1)), Collections.emptySet());
+    }
+
+    @Test
+    public void writeAstyanaxReadDatastax() throws Exception {
+
+        // insert locators using astyanax class
+        Multimap<SlotKey, Locator> slotLocators = HashMultimap.create();
+        slotLocators.put(slotKey1, testLocators.get(2));
+        slotLocators.put(slotKey2, testLocators.get(3));
+        astyanaxActiveLocatorIO.insertLocators(slotLocators);
+
+        // retrieve locators using datastax
+        Collection<Locator> locatorsResult1 = datastaxActiveLocatorIO.getLocators(slotKey1);
+        assertEquals("Unexpected number of locators result for slotKey1", 1, locatorsResult1.size());
+        assertEquals("test locator(2) not equal", testLocators.get(2).toString(), locatorsResult1.toArray()[0].toString());
+
+        Collection<Locator> locatorsResult2 = datastaxActiveLocatorIO.getLocators(slotKey2);
+        assertEquals("Unexpected number of locators result for slotKey2", 1, locatorsResult2.size());
+        assertEquals("test locator(3) not equal", testLocators.get(3).toString(), locatorsResult2.toArray()[0].toString());
+
+        // assert slot with no data should return empty collection using datastax
+        assertEquals("locators should be empty", datastaxActiveLocatorIO.getLocators(SlotKey.of(Granularity.MIN_5, 11, 1)), Collections.emptySet());
+    }
+
+}
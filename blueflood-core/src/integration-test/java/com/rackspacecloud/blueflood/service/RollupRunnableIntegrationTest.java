@@ -142,7 +142,7 @@ public class RollupRunnableIntegrationTest extends IntegrationTestBase {
                         range,
                         CassandraModel.CF_METRICS_5M_NAME).getPoints().size());
         
-        RollupExecutionContext rec = new RollupExecutionContext(Thread.currentThread());
+        RollupExecutionContext rec = new RollupExecutionContext();
         SingleRollupReadContext rc = new SingleRollupReadContext(normalLocator, range, Granularity.MIN_5);
         RollupBatchWriter batchWriter = new RollupBatchWriter(new ThreadPoolBuilder().build(), rec);
         RollupRunnable rr = new RollupRunnable(rec, rc, batchWriter, null);
@@ -205,7 +205,7 @@ public class RollupRunnableIntegrationTest extends IntegrationTestBase {
                                                     range, 
                                                     CassandraModel.CF_METRICS_PREAGGREGATED_5M_NAME).getPoints().size());
         
-        RollupExecutionContext rec = new RollupExecutionContext(Thread.currentThread());
+        RollupExecutionContext rec = new RollupExecutionContext();
         SingleRollupReadContext rc = new SingleRollupReadContext(locator, range, Granularity.MIN_5);
         RollupBatchWriter batchWriter = new RollupBatchWriter(new ThreadPoolBuilder().build(), rec);
         ThreadPoolExecutor enumValidatorExec = mock(ThreadPoolExecutor.class);
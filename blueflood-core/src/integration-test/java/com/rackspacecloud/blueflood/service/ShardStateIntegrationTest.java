@@ -674,6 +674,12 @@ public class ShardStateIntegrationTest extends IntegrationTestBase {
             }
         }
 
+        // write times are not kept, so every state counts as changed.
+        @Override
+        public Collection<SlotState> getShardStateChanges(int shard, long since) throws IOException {
+            return getShardState(shard);
+        }
+
         @Override
         public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
             map.put(shard, slotTimes);
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.codahale.metrics.Meter;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.netflix.astyanax.serializers.AbstractSerializer;
+import com.rackspacecloud.blueflood.io.serializers.Serializers;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.types.Rollup;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-through cache of rolled up points for the query path.
+ *
+ * Points are cached per (locator, granularity, block), where a block is a fixed number of consecutive points of that
+ * granularity. Only blocks that ended long enough ago to have been rolled up are cached; the still open tail of a
+ * request is always read from Cassandra. Blocks are kept serialized, in the format they are stored in Cassandra, and
+ * the cache is bounded by their total size.
+ *
+ * Blocks are invalidated when this process writes a rollup for them. Query nodes do not write rollups, so a block that
+ * can still be re-rolled (late data is accepted for its slots, see BEFORE_CURRENT_COLLECTIONTIME_MS) also expires
+ * after a while: a re-roll, or a rollup written late, is served stale for at most that long. Blocks that ended before
+ * the re-roll window are final, and stay cached until they are evicted for space.
+ */
+public class RollupBlockCache {
+    private static final Logger log = LoggerFactory.getLogger(RollupBlockCache.class);
+
+    // roughly what an entry costs on top of its serialized points.
+    private static final int ENTRY_OVERHEAD = 96;
+
+    // per locator: a hit has all the closed blocks of the request cached.
+    private static final Meter hitsMeter = Metrics.meter(RollupBlockCache.class, "Hits");
+    private static final Meter missesMeter = Metrics.meter(RollupBlockCache.class, "Misses");
+    private static final Meter uncacheableReads = Metrics.meter(RollupBlockCache.class, "Uncacheable Reads");
+
+    private static final RollupBlockCache INSTANCE = new RollupBlockCache(
+            Configuration.getInstance().getBooleanProperty(CoreConfig.QUERY_ROLLUP_CACHE_ENABLED),
+            Configuration.getInstance().getLongProperty(CoreConfig.QUERY_ROLLUP_CACHE_MAX_BYTES),
+            Configuration.getInstance().getIntegerProperty(CoreConfig.QUERY_ROLLUP_CACHE_POINTS_PER_BLOCK),
+            new TimeValue(Configuration.getInstance().getIntegerProperty(CoreConfig.QUERY_ROLLUP_CACHE_EXPIRATION_MINS),
+                    TimeUnit.MINUTES),
+            Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_DELAY_MILLIS)
+                    + Configuration.getInstance().getLongProperty(CoreConfig.SHORT_DELAY_METRICS_ROLLUP_DELAY_MILLIS),
+            Configuration.getInstance().getLongProperty(CoreConfig.BEFORE_CURRENT_COLLECTIONTIME_MS)
+                    + Configuration.getInstance().getLongProperty(CoreConfig.LONG_DELAY_METRICS_ROLLUP_WAIT_MILLIS));
+
+    /**
+     * Reads points that are not in the cache.
+     */
+    public interface Reader {
+        Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran);
+    }
+
+    private final boolean enabled;
+    private final int pointsPerBlock;
+    private final long closeDelayMillis;
+    private final long expirationMillis;
+    private final long rerollWindowMillis;
+    private final Cache<BlockKey, Block<?>> cache;
+
+    public static RollupBlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    @VisibleForTesting
+    RollupBlockCache(boolean enabled, long maxBytes, int pointsPerBlock, TimeValue expiration, long closeDelayMillis,
+                     long rerollWindowMillis) {
+        this.enabled = enabled;
+        this.pointsPerBlock = pointsPerBlock;
+        this.closeDelayMillis = closeDelayMillis;
+        this.expirationMillis = expiration.toMillis();
+        this.rerollWindowMillis = rerollWindowMillis;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<BlockKey, Block<?>>() {
+                    @Override
+                    public int weigh(BlockKey key, Block<?> block) {
+                        return ENTRY_OVERHEAD + block.data.length;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return true if reads of this granularity go through the cache. Full resolution data is never cached.
+     */
+    public boolean isCaching(Granularity gran) {
+        return enabled && gran != Granularity.FULL;
+    }
+
+    /**
+     * Drops the block holding the rollup at the given timestamp, because that rollup was just (re)written.
+     */
+    public void invalidate(Locator locator, Granularity gran, long timestamp) {
+        if (isCaching(gran)) {
+            cache.invalidate(new BlockKey(locator, gran, blockStart(gran, timestamp)));
+        }
+    }
+
+    public Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran, Reader reader) {
+        return getDatapointsForRange(locators, range, gran, reader, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran, Reader reader, long now) {
+        if (!isCaching(gran)) {
+            return reader.getDatapointsForRange(locators, range, gran);
+        }
+
+        long blockMillis = blockMillis(gran);
+        long firstBlock = blockStart(gran, range.getStart());
+        // blocks ending before this have been rolled up, and are not expected to change.
+        long blocksEnd = Math.min(blockStart(gran, now - closeDelayMillis), blockStart(gran, range.getStop()) + blockMillis);
+        if (blocksEnd <= firstBlock) {
+            uncacheableReads.mark();
+            return reader.getDatapointsForRange(locators, range, gran);
+        }
+
+        List<Locator> hits = new ArrayList<Locator>();
+        List<Locator> misses = new ArrayList<Locator>();
+        Map<Locator, Points<Object>> cachedPoints = new HashMap<Locator, Points<Object>>();
+        Map<Locator, Block<?>> firstBlocks = new HashMap<Locator, Block<?>>();
+        for (Locator locator : locators) {
+            Points<Object> points = new Points<Object>();
+            Block<?> first = null;
+            boolean hit = true;
+            for (long blockStart = firstBlock; hit && blockStart < blocksEnd; blockStart += blockMillis) {
+                BlockKey key = new BlockKey(locator, gran, blockStart);
+                Block<?> block = cache.getIfPresent(key);
+                if (block == null) {
+                    hit = false;
+                    break;
+                }
+                if (block.expiresAt <= now) {
+                    // might have been re-rolled by another node since it was read.
+                    cache.invalidate(key);
+                    hit = false;
+                    break;
+                }
+                try {
+                    block.addPoints(points, range);
+                } catch (IOException ex) {
+                    // should never happen, we serialized the block ourselves. read it again.
+                    log.error("Could not read cached rollups of " + locator, ex);
+                    cache.invalidate(key);
+                    hit = false;
+                }
+                if (first == null) {
+                    first = block;
+                }
+            }
+            if (hit) {
+                hitsMeter.mark();
+                hits.add(locator);
+                cachedPoints.put(locator, points);
+                firstBlocks.put(locator, first);
+            } else {
+                missesMeter.mark();
+                misses.add(locator);
+            }
+        }
+
+        Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+
+        if (!misses.isEmpty()) {
+            // read whole blocks, so they can be cached.
+            Range blocksRange = new Range(firstBlock, Math.max(range.getStop(), blocksEnd - 1));
+            Map<Locator, MetricData> read = reader.getDatapointsForRange(misses, blocksRange, gran);
+            for (Map.Entry<Locator, MetricData> entry : read.entrySet()) {
+                cacheBlocks(entry.getKey(), gran, firstBlock, blocksEnd, entry.getValue(), now);
+                result.put(entry.getKey(), filter(entry.getValue(), range));
+            }
+        }
+
+        if (!hits.isEmpty()) {
+            Map<Locator, MetricData> tails = new HashMap<Locator, MetricData>();
+            if (blocksEnd <= range.getStop()) {
+                tails = reader.getDatapointsForRange(hits, new Range(blocksEnd, range.getStop()), gran);
+            }
+            for (Locator locator : hits) {
+                Points<Object> points = cachedPoints.get(locator);
+                MetricData tail = tails.get(locator);
+                if (tail != null) {
+                    Points<?> tailPoints = tail.getData();
+                    for (Points.Point<?> point : navigable(tailPoints).values()) {
+                        points.add(new Points.Point<Object>(point.getTimestamp(), point.getData()));
+                    }
+                    result.put(locator, new MetricData(points, tail.getUnit(), typeOf(tail)));
+                } else {
+                    Block<?> first = firstBlocks.get(locator);
+                    result.put(locator, new MetricData(points, first.unit, first.type));
+                }
+            }
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    long size() {
+        cache.cleanUp();
+        return cache.size();
+    }
+
+    private void cacheBlocks(Locator locator, Granularity gran, long firstBlock, long blocksEnd, MetricData metricData,
+                             long now) {
+        // enums are joined with their values when read, and strings and booleans are never rolled up.
+        if (!MetricData.Type.NUMBER.toString().equals(metricData.getType())) {
+            return;
+        }
+
+        long blockMillis = blockMillis(gran);
+        Points<?> data = metricData.getData();
+        NavigableMap<Long, ? extends Points.Point<?>> points = navigable(data);
+        long lastTimestamp = points.isEmpty() ? Long.MIN_VALUE : points.lastKey();
+
+        for (long blockStart = firstBlock; blockStart < blocksEnd; blockStart += blockMillis) {
+            long blockEnd = blockStart + blockMillis;
+            Map<Long, ? extends Points.Point<?>> blockPoints = points.subMap(blockStart, true, blockEnd, false);
+            // a block without points might just not be rolled up yet, unless there is data after it.
+            if (blockPoints.isEmpty() && lastTimestamp < blockEnd) {
+                continue;
+            }
+            // late data can no longer be ingested for final blocks, so only a re-roll of old data could change them.
+            long expiresAt = blockEnd + rerollWindowMillis <= now ? Long.MAX_VALUE : now + expirationMillis;
+            try {
+                Block<?> block = Block.of(metricData, blockPoints.values(), expiresAt);
+                if (block != null) {
+                    cache.put(new BlockKey(locator, gran, blockStart), block);
+                }
+            } catch (IOException ex) {
+                log.warn("Could not cache rollups of " + locator, ex);
+                return;
+            }
+        }
+    }
+
+    private static MetricData filter(MetricData metricData, Range range) {
+        Points<?> data = metricData.getData();
+        return new MetricData(filter(data, range), metricData.getUnit(), typeOf(metricData));
+    }
+
+    private static <T> Points<T> filter(Points<T> points, Range range) {
+        Points<T> filtered = new Points<T>();
+        for (Points.Point<T> point : navigable(points).subMap(range.getStart(), true, range.getStop(), true).values()) {
+            filtered.add(point);
+        }
+        return filtered;
+    }
+
+    private static <T> NavigableMap<Long, Points.Point<T>> navigable(Points<T> points) {
+        Map<Long, Points.Point<T>> map = points.getPoints();
+        return map instanceof NavigableMap ? (NavigableMap<Long, Points.Point<T>>) map : new TreeMap<Long, Points.Point<T>>(map);
+    }
+
+    private static MetricData.Type typeOf(MetricData metricData) {
+        for (MetricData.Type type : MetricData.Type.values()) {
+            if (type.toString().equals(metricData.getType())) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown metric data type " + metricData.getType());
+    }
+
+    private long blockMillis(Granularity gran) {
+        return gran.milliseconds() * pointsPerBlock;
+    }
+
+    private long blockStart(Granularity gran, long timestamp) {
+        long blockMillis = blockMillis(gran);
+        return timestamp - (timestamp % blockMillis);
+    }
+
+    private static class BlockKey {
+        private final Locator locator;
+        private final Granularity gran;
+        private final long start;
+
+        BlockKey(Locator locator, Granularity gran, long start) {
+            this.locator = locator;
+            this.gran = gran;
+            this.start = start;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * locator.hashCode() + gran.hashCode()) + (int) (start ^ (start >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) obj;
+            return start == other.start && gran == other.gran && locator.equals(other.locator);
+        }
+    }
+
+    /**
+     * The points of one block, serialized as [count] then [timestamp offset][length][rollup] per point.
+     */
+    private static class Block<T extends Rollup> {
+        private static final byte[] EMPTY = new byte[] { 0 };
+
+        private final Class<T> rollupClass;
+        private final byte[] data;
+        private final String unit;
+        private final MetricData.Type type;
+        private final long expiresAt;
+
+        private Block(Class<T> rollupClass, byte[] data, String unit, MetricData.Type type, long expiresAt) {
+            this.rollupClass = rollupClass;
+            this.data = data;
+            this.unit = unit;
+            this.type = type;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the block, or null if its points are not rollups of one type.
+         */
+        static Block<?> of(MetricData metricData, Collection<? extends Points.Point<?>> points, long expiresAt)
+                throws IOException {
+            if (points.isEmpty()) {
+                return new Block<Rollup>(Rollup.class, EMPTY, metricData.getUnit(), typeOf(metricData), expiresAt);
+            }
+            Object first = points.iterator().next().getData();
+            if (!(first instanceof Rollup)) {
+                return null;
+            }
+            return of(first.getClass().asSubclass(Rollup.class), metricData, points, expiresAt);
+        }
+
+        private static <T extends Rollup> Block<T> of(Class<T> rollupClass, MetricData metricData,
+                                                      Collection<? extends Points.Point<?>> points, long expiresAt)
+                throws IOException {
+            AbstractSerializer<T> serializer = Serializers.serializerFor(rollupClass);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+            out.writeRawVarint32(points.size());
+            long previous = 0;
+            for (Points.Point<?> point : points) {
+                if (point.getData().getClass() != rollupClass) {
+                    return null;
+                }
+                ByteBuffer serialized = serializer.toByteBuffer(rollupClass.cast(point.getData()));
+
+                byte[] rollupBytes = new byte[serialized.remaining()];
+                serialized.get(rollupBytes);
+
+                out.writeRawVarint64(point.getTimestamp() - previous);
+                out.writeRawVarint32(rollupBytes.length);
+                out.writeRawBytes(rollupBytes);
+                previous = point.getTimestamp();
+            }
+            out.flush();
+            return new Block<T>(rollupClass, bytes.toByteArray(), metricData.getUnit(), typeOf(metricData), expiresAt);
+        }
+
+        void addPoints(Points<Object> points, Range range) throws IOException {
+            CodedInputStream in = CodedInputStream.newInstance(data);
+            int count = in.readRawVarint32();
+            if (count == 0) {
+                return;
+            }
+            AbstractSerializer<T> serializer = Serializers.serializerFor(rollupClass);
+            long timestamp = 0;
+            for (int i = 0; i < count; i++) {
+                timestamp += in.readRawVarint64();
+                byte[] rollup = in.readRawBytes(in.readRawVarint32());
+                if (timestamp >= range.getStart() && timestamp <= range.getStop()) {
+                    points.add(new Points.Point<Object>(timestamp, serializer.fromByteBuffer(ByteBuffer.wrap(rollup))));
+                }
+            }
+        }
+    }
+}
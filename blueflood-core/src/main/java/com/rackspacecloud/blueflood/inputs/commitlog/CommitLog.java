@@ -0,0 +1,350 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.commitlog;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rackspacecloud.blueflood.inputs.processors.BatchWriter;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A local write-ahead log for ingested metrics, so ingestion can be acknowledged without waiting on Cassandra.
+ *
+ * {@link #append(List)} writes each batch to the current memory-mapped segment and completes once the segment is
+ * synced to disk. Appends that arrive while a sync is running are synced together by the next one (group commit).
+ * Synced batches are then handed to the {@link BatchWriter} straight from memory; failed writes are retried a few
+ * times, after which they are dropped from memory and read back from their segment periodically, until they are
+ * written. Fully written segments are deleted. Batches whose sync failed are not written, since their client was told
+ * they failed and sends them again.
+ *
+ * On startup, {@link #recover()} replays any segments left behind by the previous process.
+ */
+public class CommitLog {
+    private static final Logger log = LoggerFactory.getLogger(CommitLog.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long REDRAIN_DELAY_MILLIS = 60000;
+
+    private static final Timer syncTimer = Metrics.timer(CommitLog.class, "Sync Duration");
+    private static final Meter retriedBatches = Metrics.meter(CommitLog.class, "Retried Batches");
+    private static final Meter abandonedBatches = Metrics.meter(CommitLog.class, "Abandoned Batches");
+    private static final Meter replayedBatches = Metrics.meter(CommitLog.class, "Replayed Batches");
+    private static final Meter unsyncedBatches = Metrics.meter(CommitLog.class, "Unsynced Batches");
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxRetries;
+    private final BatchWriter batchWriter;
+    private final Counter bufferedMetrics;
+    private final CommitLogSerDes serDes = new CommitLogSerDes();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Commit Log Sync").setDaemon(true).build());
+    private final AtomicBoolean syncScheduled = new AtomicBoolean(false);
+    private final Runnable sync = new Runnable() {
+        @Override
+        public void run() {
+            sync();
+        }
+    };
+    private final Runnable redrain = new Runnable() {
+        @Override
+        public void run() {
+            redrainFailedSegments();
+        }
+    };
+
+    // segments with abandoned batches, read back by the redrain.
+    private final Set<CommitLogSegment> failedSegments =
+            Collections.newSetFromMap(new ConcurrentHashMap<CommitLogSegment, Boolean>());
+
+    // guarded by this
+    private CommitLogSegment current = null;
+    private long nextSegmentId = 0;
+    private List<PendingSync> pendingSyncs = new ArrayList<PendingSync>();
+
+    public CommitLog(File directory, int segmentSize, int maxRetries, BatchWriter batchWriter, Counter bufferedMetrics) {
+        this(directory, segmentSize, maxRetries, batchWriter, bufferedMetrics, REDRAIN_DELAY_MILLIS);
+    }
+
+    @VisibleForTesting
+    CommitLog(File directory, int segmentSize, int maxRetries, BatchWriter batchWriter, Counter bufferedMetrics,
+              long redrainDelayMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxRetries = maxRetries;
+        this.batchWriter = batchWriter;
+        this.bufferedMetrics = bufferedMetrics;
+        executor.scheduleWithFixedDelay(redrain, redrainDelayMillis, redrainDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the segments found in the log directory into the batch writer. Must be called before the first append,
+     * since new segments are numbered after the ones found here.
+     */
+    public synchronized void recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create commit log directory " + directory);
+        }
+
+        File[] files = directory.listFiles(CommitLogSegment.FILTER);
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long idA = CommitLogSegment.idOf(a);
+                long idB = CommitLogSegment.idOf(b);
+                return idA < idB ? -1 : (idA == idB ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            CommitLogSegment segment = CommitLogSegment.open(file);
+            nextSegmentId = Math.max(nextSegmentId, segment.getId() + 1);
+
+            List<LoggedBatch> batches = readBack(segment, segment.readUnwrittenRecords());
+            log.info("Replaying {} batches from commit log segment {}", batches.size(), file);
+            replayedBatches.mark(batches.size());
+            write(batches);
+        }
+    }
+
+    private void redrainFailedSegments() {
+        for (CommitLogSegment segment : failedSegments) {
+            List<CommitLogSegment.Record> records = segment.reclaimUnwritten();
+            if (records == null) {
+                // some of its batches are still being written.
+                continue;
+            }
+            failedSegments.remove(segment);
+            List<LoggedBatch> batches = readBack(segment, records);
+            log.info("Writing {} batches from commit log segment {} again", batches.size(), segment.getFile());
+            write(batches);
+        }
+    }
+
+    private List<LoggedBatch> readBack(CommitLogSegment segment, List<CommitLogSegment.Record> records) {
+        List<LoggedBatch> batches = new ArrayList<LoggedBatch>(records.size());
+        for (CommitLogSegment.Record record : records) {
+            try {
+                batches.add(new LoggedBatch(segment, record.position, serDes.deserialize(record.data)));
+            } catch (Exception ex) {
+                log.error("Skipping unreadable record in commit log segment " + segment.getFile(), ex);
+            }
+        }
+        segment.addRecovered(batches.size());
+        for (LoggedBatch batch : batches) {
+            bufferedMetrics.inc(batch.metrics.size());
+        }
+        return batches;
+    }
+
+    /**
+     * Logs the given batches. The returned future completes once they are durable on local disk, with one
+     * {@code true} per batch; the batches are written to Cassandra afterwards.
+     */
+    public ListenableFuture<List<Boolean>> append(List<List<IMetric>> batches) throws IOException {
+        // serialize outside of the lock, appends only copy bytes.
+        List<byte[]> records = new ArrayList<byte[]>(batches.size());
+        for (List<IMetric> batch : batches) {
+            records.add(serDes.serialize(batch));
+        }
+
+        PendingSync pending = new PendingSync();
+        synchronized (this) {
+            for (int i = 0; i < records.size(); i++) {
+                LoggedBatch batch = log(records.get(i), batches.get(i));
+                pending.segments.add(batch.segment);
+                pending.batches.add(batch);
+            }
+            pendingSyncs.add(pending);
+        }
+
+        if (syncScheduled.compareAndSet(false, true)) {
+            executor.execute(sync);
+        }
+        return pending.synced;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // guarded by this
+    private LoggedBatch log(byte[] record, List<IMetric> metrics) throws IOException {
+        int position = current == null ? -1 : current.append(record);
+        if (position < 0) {
+            if (current != null) {
+                current.markFull();
+            }
+            // a single batch bigger than a segment gets a segment of its own.
+            int size = Math.max(segmentSize, record.length + CommitLogSegment.HEADER_SIZE);
+            current = CommitLogSegment.create(directory, nextSegmentId++, size);
+            position = current.append(record);
+        }
+        return new LoggedBatch(current, position, metrics);
+    }
+
+    private void sync() {
+        // cleared first, so appends racing with this sync schedule another one rather than being missed.
+        syncScheduled.set(false);
+
+        List<PendingSync> syncing;
+        synchronized (this) {
+            syncing = pendingSyncs;
+            pendingSyncs = new ArrayList<PendingSync>();
+        }
+        if (syncing.isEmpty()) {
+            return;
+        }
+
+        Set<CommitLogSegment> segments = new LinkedHashSet<CommitLogSegment>();
+        for (PendingSync pending : syncing) {
+            segments.addAll(pending.segments);
+        }
+
+        Throwable failure = null;
+        final Timer.Context syncTimerCtx = syncTimer.time();
+        try {
+            for (CommitLogSegment segment : segments) {
+                segment.sync();
+            }
+        } catch (Throwable t) {
+            log.error("Could not sync the commit log", t);
+            failure = t;
+        } finally {
+            syncTimerCtx.stop();
+        }
+
+        for (PendingSync pending : syncing) {
+            if (failure == null) {
+                pending.synced.set(Collections.nCopies(pending.batches.size(), true));
+                write(pending.batches);
+            } else {
+                // the client is told the batches failed and sends them again, so they must not be written twice.
+                unsyncedBatches.mark(pending.batches.size());
+                for (LoggedBatch batch : pending.batches) {
+                    batchWriter.unbuffer(batch.metrics.size());
+                    batch.segment.markWritten(batch.position);
+                }
+                pending.synced.setException(failure);
+            }
+        }
+    }
+
+    private void write(final List<LoggedBatch> batches) {
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        List<List<IMetric>> metrics = new ArrayList<List<IMetric>>(batches.size());
+        for (LoggedBatch batch : batches) {
+            metrics.add(batch.metrics);
+        }
+
+        ListenableFuture<List<Boolean>> written;
+        try {
+            written = batchWriter.apply(metrics);
+        } catch (Exception ex) {
+            written = Futures.immediateFailedFuture(ex);
+        }
+
+        Futures.addCallback(written, new FutureCallback<List<Boolean>>() {
+            @Override
+            public void onSuccess(List<Boolean> persisteds) {
+                for (int i = 0; i < batches.size(); i++) {
+                    if (persisteds.get(i)) {
+                        batches.get(i).segment.markWritten(batches.get(i).position);
+                    } else {
+                        retry(batches.get(i));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Error writing logged metrics", t);
+                for (LoggedBatch batch : batches) {
+                    retry(batch);
+                }
+            }
+        });
+    }
+
+    private void retry(final LoggedBatch batch) {
+        if (++batch.attempts > maxRetries || executor.isShutdown()) {
+            // dropped from memory; the redrain reads it back from its segment.
+            abandonedBatches.mark();
+            failedSegments.add(batch.segment);
+            batch.segment.markFailed();
+            return;
+        }
+
+        retriedBatches.mark();
+        // the batch writer already counted this batch out of the buffer.
+        bufferedMetrics.inc(batch.metrics.size());
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                write(Collections.singletonList(batch));
+            }
+        }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static class PendingSync {
+        final Set<CommitLogSegment> segments = new LinkedHashSet<CommitLogSegment>();
+        final List<LoggedBatch> batches = new ArrayList<LoggedBatch>();
+        final SettableFuture<List<Boolean>> synced = SettableFuture.create();
+    }
+
+    private static class LoggedBatch {
+        final CommitLogSegment segment;
+        // of its record in the segment.
+        final int position;
+        final List<IMetric> metrics;
+        int attempts = 0;
+
+        LoggedBatch(CommitLogSegment segment, int position, List<IMetric> metrics) {
+            this.segment = segment;
+            this.position = position;
+            this.metrics = metrics;
+        }
+    }
+}
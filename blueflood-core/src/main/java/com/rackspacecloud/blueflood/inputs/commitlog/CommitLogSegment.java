@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.commitlog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped file of the commit log. Records are appended as [length][crc32][payload]; the file is
+ * preallocated and zero-filled, so a zero length marks the end. The top bit of the length is set once a record has
+ * been written to Cassandra, so a replay skips it. A segment is unmapped and deleted once it is full and every batch
+ * it holds has been written to Cassandra. A segment with batches that could not be written is kept until they are
+ * taken back with {@link #reclaimUnwritten()} and written after all.
+ */
+class CommitLogSegment {
+    private static final Logger log = LoggerFactory.getLogger(CommitLogSegment.class);
+
+    static final String PREFIX = "CommitLog-";
+    static final String SUFFIX = ".log";
+    static final int HEADER_SIZE = 8;
+    private static final int WRITTEN = 0x80000000;
+
+    static final FilenameFilter FILTER = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+        }
+    };
+
+    private final long id;
+    private final File file;
+    private final MappedByteBuffer buffer;
+
+    // batches appended to this segment that are not in Cassandra yet.
+    private final AtomicInteger unwritten = new AtomicInteger(0);
+    private final AtomicBoolean discarded = new AtomicBoolean(false);
+    private volatile boolean full = false;
+    private volatile boolean failed = false;
+
+    private CommitLogSegment(long id, File file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static CommitLogSegment create(File directory, long id, int size) throws IOException {
+        File file = new File(directory, PREFIX + id + SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid once the channel is closed.
+            return new CommitLogSegment(id, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a segment found on disk at startup. It is full already; its records are only ever replayed.
+     */
+    static CommitLogSegment open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            CommitLogSegment segment = new CommitLogSegment(idOf(file), file,
+                    raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length()));
+            segment.full = true;
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    static long idOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Reads back every intact record of this segment that is not written to Cassandra yet. Reading stops at the
+     * first record that was not completely written, which can only be one that was never acknowledged.
+     */
+    List<Record> readUnwrittenRecords() {
+        List<Record> records = new ArrayList<Record>();
+        ByteBuffer in = buffer.duplicate();
+        in.position(0);
+        while (in.remaining() >= HEADER_SIZE) {
+            int position = in.position();
+            int header = in.getInt();
+            long crc = in.getInt() & 0xffffffffL;
+            int length = header & ~WRITTEN;
+            if (length <= 0 || length > in.remaining()) {
+                break;
+            }
+            if ((header & WRITTEN) != 0) {
+                // already in Cassandra.
+                in.position(in.position() + length);
+                continue;
+            }
+            byte[] data = new byte[length];
+            in.get(data);
+            if (checksum(data) != crc) {
+                log.warn("Ignoring the rest of commit log segment " + file + ": checksum mismatch");
+                break;
+            }
+            records.add(new Record(position, data));
+        }
+        return records;
+    }
+
+    /**
+     * Takes back the records of a segment with failed batches that are still not written, so they can be written
+     * again, once none of its batches are in flight any more. The caller accounts for them with
+     * {@link #addRecovered(int)}.
+     *
+     * @return the records, or null if batches of the segment are still in flight.
+     */
+    List<Record> reclaimUnwritten() {
+        if (!full || unwritten.get() > 0) {
+            return null;
+        }
+        failed = false;
+        return readUnwrittenRecords();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a record. Callers serialize appends, and must roll to a new segment if this one has no room.
+     *
+     * @return where the record starts, or -1 if it does not fit in what is left of the segment.
+     */
+    int append(byte[] record) {
+        if (buffer.remaining() < HEADER_SIZE + record.length) {
+            return -1;
+        }
+        int position = buffer.position();
+        buffer.putInt(record.length);
+        buffer.putInt((int) checksum(record));
+        buffer.put(record);
+        unwritten.incrementAndGet();
+        return position;
+    }
+
+    void sync() {
+        buffer.force();
+    }
+
+    /**
+     * No more records will be appended.
+     */
+    void markFull() {
+        full = true;
+        discardIfDone();
+    }
+
+    /**
+     * The batch of the record at the given position was written to Cassandra, or must not be.
+     */
+    void markWritten(int position) {
+        // not synced on purpose: at worst a crash replays the record again.
+        buffer.putInt(position, buffer.getInt(position) | WRITTEN);
+        finishBatch();
+    }
+
+    /**
+     * A batch of this segment could not be written to Cassandra. The segment is kept until the batch is reclaimed.
+     */
+    void markFailed() {
+        failed = true;
+        finishBatch();
+    }
+
+    private void finishBatch() {
+        unwritten.decrementAndGet();
+        discardIfDone();
+    }
+
+    /**
+     * Accounts for batches read back from this segment, and discards it if none are left.
+     */
+    void addRecovered(int batches) {
+        unwritten.addAndGet(batches);
+        discardIfDone();
+    }
+
+    private void discardIfDone() {
+        if (!full || unwritten.get() > 0 || failed || !discarded.compareAndSet(false, true)) {
+            return;
+        }
+        // nothing touches the mapping any more: it is full, and every batch of it was synced and written.
+        unmap(buffer);
+        if (!file.delete()) {
+            log.warn("Could not delete commit log segment " + file);
+        }
+    }
+
+    /**
+     * Releases a mapping right away instead of whenever the buffer is garbage collected, which can take long enough
+     * for deleted segments to pile up. Falls back to the garbage collector where the JDK does not allow it.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception ex) {
+            log.debug("Could not unmap commit log segment, leaving it to the garbage collector", ex);
+        }
+    }
+
+    static class Record {
+        // of the record in the segment.
+        final int position;
+        final byte[] data;
+
+        Record(int position, byte[] data) {
+            this.position = position;
+            this.data = data;
+        }
+    }
+
+    private static long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.commitlog;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.io.serializers.Serializers;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.types.PreaggregatedMetric;
+import com.rackspacecloud.blueflood.types.Rollup;
+import com.rackspacecloud.blueflood.types.RollupType;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes one batch of ingested metrics into a commit log record and back. Raw metrics keep their value type and
+ * unit; pre-aggregated metrics carry their rollup in the same format it is stored with in Cassandra.
+ */
+class CommitLogSerDes {
+
+    private static final byte VERSION_1 = 1;
+
+    private static final byte RAW_METRIC = (byte)'m';
+    private static final byte PREAGGREGATED_METRIC = (byte)'p';
+
+    private static final byte INT = (byte)'I';
+    private static final byte LONG = (byte)'L';
+    private static final byte DOUBLE = (byte)'D';
+    private static final byte STRING = (byte)'S';
+    private static final byte BOOLEAN = (byte)'B';
+
+    byte[] serialize(List<IMetric> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+        out.writeRawByte(VERSION_1);
+        out.writeRawVarint32(batch.size());
+        for (IMetric metric : batch) {
+            if (metric instanceof Metric) {
+                out.writeRawByte(RAW_METRIC);
+                writeCommon(metric, out);
+                writeRawMetric((Metric) metric, out);
+            } else if (metric instanceof PreaggregatedMetric) {
+                out.writeRawByte(PREAGGREGATED_METRIC);
+                writeCommon(metric, out);
+                writeRollup(((PreaggregatedMetric) metric).getMetricValue(), out);
+            } else {
+                throw new SerializationException("Cannot log metric of type " + metric.getClass().getName());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    List<IMetric> deserialize(byte[] record) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(record);
+
+        byte version = in.readRawByte();
+        if (version != VERSION_1) {
+            throw new SerializationException(String.format("Unexpected commit log version: %d", (int)version));
+        }
+        int count = in.readRawVarint32();
+        List<IMetric> batch = new ArrayList<IMetric>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readRawByte();
+            Locator locator = Locator.createLocatorFromDbKey(in.readString());
+            long collectionTime = in.readRawVarint64();
+            TimeValue ttl = new TimeValue(in.readRawVarint32(), TimeUnit.SECONDS);
+
+            if (kind == RAW_METRIC) {
+                String unit = in.readBool() ? in.readString() : null;
+                batch.add(new Metric(locator, readValue(in), collectionTime, ttl, unit));
+            } else if (kind == PREAGGREGATED_METRIC) {
+                batch.add(new PreaggregatedMetric(collectionTime, locator, ttl, readRollup(in)));
+            } else {
+                throw new SerializationException(String.format("Unexpected commit log metric kind: %d", (int)kind));
+            }
+        }
+        return batch;
+    }
+
+    private void writeCommon(IMetric metric, CodedOutputStream out) throws IOException {
+        out.writeStringNoTag(metric.getLocator().toString());
+        out.writeRawVarint64(metric.getCollectionTime());
+        out.writeRawVarint32(metric.getTtlInSeconds());
+    }
+
+    private void writeRawMetric(Metric metric, CodedOutputStream out) throws IOException {
+        out.writeBoolNoTag(metric.getUnit() != null);
+        if (metric.getUnit() != null) {
+            out.writeStringNoTag(metric.getUnit());
+        }
+
+        Object value = metric.getMetricValue();
+        if (value instanceof Integer) {
+            out.writeRawByte(INT);
+            out.writeRawVarint32((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeRawByte(LONG);
+            out.writeRawVarint64((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            // Metric already turned BigIntegers into doubles. any other number would lose precision, so it is
+            // refused below rather than rounded.
+            out.writeRawByte(DOUBLE);
+            out.writeDoubleNoTag(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            out.writeRawByte(STRING);
+            out.writeStringNoTag((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeRawByte(BOOLEAN);
+            out.writeBoolNoTag((Boolean) value);
+        } else {
+            throw new SerializationException("Cannot log metric value of type " + value.getClass().getName());
+        }
+    }
+
+    private Object readValue(CodedInputStream in) throws IOException {
+        byte type = in.readRawByte();
+        switch (type) {
+            case INT:
+                return in.readRawVarint32();
+            case LONG:
+                return in.readRawVarint64();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return in.readString();
+            case BOOLEAN:
+                return in.readBool();
+            default:
+                throw new SerializationException(String.format("Unexpected commit log value type: %d", (int)type));
+        }
+    }
+
+    private void writeRollup(Rollup rollup, CodedOutputStream out) throws IOException {
+        byte[] bytes = serialize(rollup.getClass(), rollup);
+
+        out.writeRawByte((byte) RollupType.fromRollup(rollup).ordinal());
+        out.writeRawVarint32(bytes.length);
+        out.writeRawBytes(bytes);
+    }
+
+    private static <T extends Rollup> byte[] serialize(Class<T> rollupClass, Rollup rollup) {
+        ByteBuffer serialized = Serializers.serializerFor(rollupClass).toByteBuffer(rollupClass.cast(rollup));
+        byte[] bytes = new byte[serialized.remaining()];
+        serialized.get(bytes);
+        return bytes;
+    }
+
+    private Rollup readRollup(CodedInputStream in) throws IOException {
+        RollupType type = RollupType.values()[in.readRawByte()];
+        byte[] bytes = in.readRawBytes(in.readRawVarint32());
+
+        // pre-aggregated metrics are never basic full resolution numbers, so any coarser granularity works here.
+        Class<? extends Rollup> rollupClass = RollupType.classOf(type, Granularity.MIN_5);
+        return Serializers.serializerFor(rollupClass).fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+}
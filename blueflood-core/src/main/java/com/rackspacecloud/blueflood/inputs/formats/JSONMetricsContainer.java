@@ -22,8 +22,15 @@ import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.types.Metric;
 import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.joda.time.DateTime;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +39,7 @@ public class JSONMetricsContainer {
 
     private static final long TRACKER_DELAYED_METRICS_MILLIS = Configuration.getInstance().getLongProperty(CoreConfig.TRACKER_DELAYED_METRICS_MILLIS);
     private static final long MAX_AGE_ALLOWED = Configuration.getInstance().getLongProperty(CoreConfig.ROLLUP_DELAY_MILLIS);
+    private static final JsonFactory jsonFactory = new ObjectMapper().getJsonFactory();
     private static final long SHORT_DELAY = Configuration.getInstance().getLongProperty(CoreConfig.SHORT_DELAY_METRICS_ROLLUP_DELAY_MILLIS);
 
     private final String tenantId;
@@ -39,6 +47,7 @@ public class JSONMetricsContainer {
     private final List<Metric> metrics = new ArrayList<Metric>();
     private final List<Metric> delayedMetrics = new ArrayList<Metric>();
     private final List<String> errors = new ArrayList<String>();
+    private int jsonMetricCount = 0;
 
     public JSONMetricsContainer(String tenantId, List<JSONMetric> metrics) {
         this.tenantId = tenantId;
@@ -46,6 +55,11 @@ public class JSONMetricsContainer {
         processJson();
     }
 
+    private JSONMetricsContainer(String tenantId) {
+        this.tenantId = tenantId;
+        this.jsonMetrics = null;
+    }
+
     public List<String> getValidationErrors() {
         return errors;
     }
@@ -54,60 +68,195 @@ public class JSONMetricsContainer {
         return metrics;
     }
 
+    /**
+     * @return the bound metrics this container was built from, or null if it was parsed from a stream.
+     */
     public List<JSONMetric> getJsonMetrics() {
         return jsonMetrics;
     }
 
-    private List<Metric> processJson() {
+    /**
+     * @return how many metrics the payload held, valid or not.
+     */
+    public int getJsonMetricCount() {
+        return jsonMetricCount;
+    }
+
+    /**
+     * Reads a JSON array of metrics token by token off the stream, validating and converting each element as soon as
+     * it is parsed. Unlike binding a {@code List<JSONMetric>} first, neither the payload text nor the intermediate
+     * objects are ever held in memory in full.
+     *
+     * Field handling follows what Jackson data binding does for {@link JSONMetric}: unknown fields are rejected,
+     * scalars are coerced to the field type and null numbers read as 0.
+     *
+     * @param tenantId tenant of the metrics, unless they are scoped
+     * @param in the request body
+     * @param scoped whether each metric carries its own tenantId, as {@link JSONMetricScoped} does
+     */
+    public static JSONMetricsContainer parse(String tenantId, InputStream in, boolean scoped) throws IOException {
+        JsonParser parser = jsonFactory.createJsonParser(in);
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new JsonMappingException("No content to map due to end-of-input", parser.getCurrentLocation());
+            }
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonMappingException("Expected an array of metrics", parser.getCurrentLocation());
+            }
+
+            JSONMetricsContainer container = new JSONMetricsContainer(tenantId);
+            // a single instance is reused for every element, nothing holds on to it past process().
+            JSONMetric jsonMetric = scoped ? new JSONMetricScoped() : new JSONMetric();
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                readJsonMetric(parser, jsonMetric);
+                container.process(jsonMetric);
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new JsonMappingException("Expected a metric object", parser.getCurrentLocation());
+            }
+            return container;
+        } finally {
+            parser.close();
+        }
+    }
 
-        if (jsonMetrics == null || jsonMetrics.isEmpty()) {
+    private static void readJsonMetric(JsonParser parser, JSONMetric jsonMetric) throws IOException {
+        jsonMetric.setMetricName(null);
+        jsonMetric.setMetricValue(null);
+        jsonMetric.setCollectionTime(0);
+        jsonMetric.setTtlInSeconds(0);
+        jsonMetric.setUnit(null);
+        if (jsonMetric instanceof JSONMetricScoped) {
+            ((JSONMetricScoped) jsonMetric).setTenantId(null);
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (field.equals("metricName")) {
+                jsonMetric.setMetricName(readString(parser, value));
+            } else if (field.equals("metricValue")) {
+                jsonMetric.setMetricValue(readValue(parser, value));
+            } else if (field.equals("collectionTime")) {
+                jsonMetric.setCollectionTime(readLong(parser, value));
+            } else if (field.equals("ttlInSeconds")) {
+                jsonMetric.setTtlInSeconds((int) readLong(parser, value));
+            } else if (field.equals("unit")) {
+                jsonMetric.setUnit(readString(parser, value));
+            } else if (field.equals("tenantId") && jsonMetric instanceof JSONMetricScoped) {
+                ((JSONMetricScoped) jsonMetric).setTenantId(readString(parser, value));
+            } else {
+                throw new JsonMappingException("Unrecognized field \"" + field + "\"", parser.getCurrentLocation());
+            }
+        }
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
             return null;
         }
+        if (!token.isScalarValue()) {
+            throw new JsonMappingException("Expected a string for \"" + parser.getCurrentName() + "\"", parser.getCurrentLocation());
+        }
+        return parser.getText();
+    }
+
+    private static long readLong(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return 0;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getLongValue();
+            case VALUE_STRING:
+                try {
+                    return Long.parseLong(parser.getText().trim());
+                } catch (NumberFormatException ex) {
+                    throw new JsonMappingException("Not a valid number for \"" + parser.getCurrentName() + "\"", parser.getCurrentLocation(), ex);
+                }
+            default:
+                throw new JsonMappingException("Expected a number for \"" + parser.getCurrentName() + "\"", parser.getCurrentLocation());
+        }
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                // objects and arrays, bound the same way Jackson binds them into an Object field.
+                return parser.readValueAs(Object.class);
+        }
+    }
+
+    private void processJson() {
+
+        if (jsonMetrics == null) {
+            return;
+        }
 
         for (JSONMetric jsonMetric : jsonMetrics) {
+            process(jsonMetric);
+        }
+    }
 
-            // validate metric and retrieve error message if failed
-            List<String> metricValidationErrors = jsonMetric.getValidationErrors();
-            if ( !metricValidationErrors.isEmpty() ) {
-                // has metric has validation errors, do not convert metric and add to errors list and go to next metric
-                errors.addAll(metricValidationErrors);
-                continue;
-            }
+    private void process(JSONMetric jsonMetric) {
+        jsonMetricCount++;
 
-            if (jsonMetric.getMetricValue() == null) {
-                // skip null value
-                continue;
-            }
+        // validate metric and retrieve error message if failed
+        List<String> metricValidationErrors = jsonMetric.getValidationErrors();
+        if ( !metricValidationErrors.isEmpty() ) {
+            // has metric has validation errors, do not convert metric and add to errors list and go to next metric
+            errors.addAll(metricValidationErrors);
+            return;
+        }
 
-            // no error, create metric from json values, but skip null metricValue
-            Locator locator;
-            if (jsonMetric instanceof JSONMetricScoped) {
-                JSONMetricScoped scopedMetric = (JSONMetricScoped)jsonMetric;
-                locator = Locator.createLocatorFromPathComponents(scopedMetric.getTenantId(), jsonMetric.getMetricName());
-            } else {
-                locator = Locator.createLocatorFromPathComponents(tenantId, jsonMetric.getMetricName());
-            }
+        if (jsonMetric.getMetricValue() == null) {
+            // skip null value
+            return;
+        }
 
-            final Metric metric = new Metric(locator, jsonMetric.getMetricValue(), jsonMetric.getCollectionTime(),
-                    new TimeValue(jsonMetric.getTtlInSeconds(), TimeUnit.SECONDS), jsonMetric.getUnit());
-            long delay = new DateTime().getMillis() - metric.getCollectionTime();
+        // no error, create metric from json values, but skip null metricValue
+        Locator locator;
+        if (jsonMetric instanceof JSONMetricScoped) {
+            JSONMetricScoped scopedMetric = (JSONMetricScoped)jsonMetric;
+            locator = Locator.createLocatorFromPathComponents(scopedMetric.getTenantId(), jsonMetric.getMetricName());
+        } else {
+            locator = Locator.createLocatorFromPathComponents(tenantId, jsonMetric.getMetricName());
+        }
 
-            if (delay > TRACKER_DELAYED_METRICS_MILLIS) {
-                delayedMetrics.add(metric);
-            }
+        final Metric metric = new Metric(locator, jsonMetric.getMetricValue(), jsonMetric.getCollectionTime(),
+                new TimeValue(jsonMetric.getTtlInSeconds(), TimeUnit.SECONDS), jsonMetric.getUnit());
+        long delay = new DateTime().getMillis() - metric.getCollectionTime();
 
-            if (delay > MAX_AGE_ALLOWED) {
-                if (delay <= SHORT_DELAY) {
-                    Instrumentation.markMetricsWithShortDelayReceived();
-                } else {
-                    Instrumentation.markMetricsWithLongDelayReceived();
-                }
-            }
+        if (delay > TRACKER_DELAYED_METRICS_MILLIS) {
+            delayedMetrics.add(metric);
+        }
 
-            metrics.add(metric);
+        if (delay > MAX_AGE_ALLOWED) {
+            if (delay <= SHORT_DELAY) {
+                Instrumentation.markMetricsWithShortDelayReceived();
+            } else {
+                Instrumentation.markMetricsWithLongDelayReceived();
+            }
         }
 
-        return metrics;
+        metrics.add(metric);
     }
 
     public boolean areDelayedMetricsPresent() {
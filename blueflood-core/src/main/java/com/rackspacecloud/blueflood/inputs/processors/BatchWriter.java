@@ -20,24 +20,38 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.rackspacecloud.blueflood.concurrent.FunctionWithThreadPool;
+import com.rackspacecloud.blueflood.io.ActiveLocatorIO;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.service.IngestionContext;
+import com.rackspacecloud.blueflood.types.DataType;
 import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
-import com.rackspacecloud.blueflood.utils.Util;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, ListenableFuture<List<Boolean>>> {
         
@@ -46,17 +60,32 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
     private final Timer writeDurationTimer = Metrics.timer(BatchWriter.class, "Write Duration");
     private final Timer batchWriteDurationTimer = Metrics.timer(BatchWriter.class, "Single Batch Write Duration");
     private final Timer slotUpdateTimer = Metrics.timer(BatchWriter.class, "Slot Update Duration");
+    private final Timer activeLocatorIndexTimer = Metrics.timer(BatchWriter.class, "Active Locator Index Duration");
     private final Meter exceededScribeProcessingTime = Metrics.meter(BatchWriter.class, "Write Duration Exceeded Timeout");
     private final TimeValue timeout;
     private final Counter bufferedMetrics;
+    // run each time metrics leave the buffer; null if nobody waits on the buffer to drain.
+    private volatile Runnable unbufferedListener = null;
     private final IngestionContext context;
 
     private final MetricsRWDelegator metricsRWDelegator;
-    
+
+    // null when the active locator index is not being written
+    private final ActiveLocatorIO activeLocatorIO;
+
+    // this collection is used to reduce the number of active locator index writes.
+    // For each locator, it holds the last slot of each rollup granularity that the
+    // locator was indexed in, so a locator is only written once per slot.
+    // Written to by all the writer threads.
+    private final Cache<Locator, AtomicIntegerArray> indexedSlots =
+            CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).concurrencyLevel(16).build();
+
     public BatchWriter(ThreadPoolExecutor threadPool, TimeValue timeout, Counter bufferedMetrics, IngestionContext context) {
         this(threadPool, timeout, bufferedMetrics,
                 context, new MetricsRWDelegator(IOContainer.fromConfig().getBasicMetricsRW(),
-                IOContainer.fromConfig().getPreAggregatedMetricsRW()));
+                IOContainer.fromConfig().getPreAggregatedMetricsRW()),
+                Configuration.getInstance().getBooleanProperty(CoreConfig.ACTIVE_LOCATOR_INDEX_WRITES_ENABLED) ?
+                        IOContainer.fromConfig().getActiveLocatorIO() : null);
     }
 
     @VisibleForTesting
@@ -64,6 +93,15 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
                        TimeValue timeout, Counter bufferedMetrics,
                        IngestionContext context,
                        MetricsRWDelegator metricsRWDelegator) {
+        this(threadPool, timeout, bufferedMetrics, context, metricsRWDelegator, null);
+    }
+
+    @VisibleForTesting
+    public BatchWriter(ThreadPoolExecutor threadPool,
+                       TimeValue timeout, Counter bufferedMetrics,
+                       IngestionContext context,
+                       MetricsRWDelegator metricsRWDelegator,
+                       ActiveLocatorIO activeLocatorIO) {
 
         super(threadPool);
 
@@ -71,8 +109,28 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
         this.bufferedMetrics = bufferedMetrics;
         this.context = context;
         this.metricsRWDelegator = metricsRWDelegator;
+        this.activeLocatorIO = activeLocatorIO;
     }
     
+    /**
+     * @param listener run on the thread that counts metrics out of the buffer, each time it does. It must not block.
+     */
+    public BatchWriter withUnbufferedListener(Runnable listener) {
+        this.unbufferedListener = listener;
+        return this;
+    }
+
+    /**
+     * Counts metrics out of the buffer, whether they were written or given up on.
+     */
+    public void unbuffer(int metricCount) {
+        bufferedMetrics.dec(metricCount);
+        Runnable listener = unbufferedListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
     @Override
     public ListenableFuture<List<Boolean>> apply(List<List<IMetric>> input) throws Exception {
         final long writeStartTime = System.currentTimeMillis();
@@ -84,7 +142,7 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
             final int batchId = batchIdGenerator.next();
             final List<IMetric> batch = metrics;
 
-            ListenableFuture<Boolean> futureBatchResult = getThreadPool().submit(new Callable<Boolean>() {
+            Callable<Boolean> writeBatch = new Callable<Boolean>() {
                 public Boolean call() throws Exception {
                     final Timer.Context singleBatchWriteCtx = batchWriteDurationTimer.time();
                     try {
@@ -95,12 +153,20 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
 
                         metricsRWDelegator.insertMetrics(batch);
 
+                        if (activeLocatorIO != null) {
+                            final Timer.Context indexTimerCtx = activeLocatorIndexTimer.time();
+                            try {
+                                // records which locators have data in each slot, so rollups only read those.
+                                indexActiveLocators(batch);
+                            } finally {
+                                indexTimerCtx.stop();
+                            }
+                        }
+
                         final Timer.Context dirtyTimerCtx = slotUpdateTimer.time();
                         try {
-                            // marks this shard dirty, so rollup nodes know to pick up the work.
-                            for (IMetric metric : batch) {
-                                context.update(metric.getCollectionTime(), Util.getShard(metric.getLocator().toString()));
-                            }
+                            // marks the slots of this batch dirty, so rollup nodes know to pick up the work.
+                            context.updateAll(batch);
                         } finally {
                             dirtyTimerCtx.stop();
                         }
@@ -120,7 +186,7 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
                         return false;
                     } finally {
                         singleBatchWriteCtx.stop();
-                        bufferedMetrics.dec(batch.size());
+                        unbuffer(batch.size());
 
                         long now = System.currentTimeMillis();
                         if ( now - writeStartTime > timeout.toMillis()) {
@@ -132,8 +198,16 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
                         }
                     }
                 }
-            }); 
-            
+            };
+
+            ListenableFuture<Boolean> futureBatchResult;
+            try {
+                futureBatchResult = getThreadPool().submit(writeBatch);
+            } catch (RejectedExecutionException ex) {
+                // the writers are too far behind. fail the batch instead of writing it on the caller's thread.
+                unbuffer(batch.size());
+                futureBatchResult = Futures.immediateFailedFuture(ex);
+            }
             resultFutures.add(futureBatchResult);
         }
         
@@ -143,10 +217,68 @@ public class BatchWriter extends FunctionWithThreadPool<List<List<IMetric>>, Lis
             public void run() {
                 actualWriteCtx.stop();
             }
-        }, MoreExecutors.sameThreadExecutor());
+        }, MoreExecutors.directExecutor());
         return finalFuture;
     }
     
+    /**
+     * Writes the (slot, locator) pairs of this batch which have not already
+     * been written to the active locator index, for every rollup granularity.
+     * String and boolean metrics are never rolled up, so they are skipped.
+     *
+     * @param batch
+     * @throws IOException
+     */
+    @VisibleForTesting
+    void indexActiveLocators(List<IMetric> batch) throws IOException {
+        Granularity[] rollupGranularities = Granularity.rollupGranularities();
+        Multimap<SlotKey, Locator> slotLocators = HashMultimap.create();
+
+        for (IMetric metric : batch) {
+            if (DataType.isStringOrBoolean(metric.getMetricValue())) {
+                continue;
+            }
+
+            Locator locator = metric.getLocator();
+            AtomicIntegerArray indexed = indexedSlots.getIfPresent(locator);
+            int shard = locator.getShard();
+
+            for (int i = 0; i < rollupGranularities.length; i++) {
+                int slot = rollupGranularities[i].slot(metric.getCollectionTime());
+                if (indexed == null || indexed.get(i) != slot) {
+                    slotLocators.put(SlotKey.of(rollupGranularities[i], slot, shard), locator);
+                }
+            }
+        }
+
+        if (slotLocators.isEmpty()) {
+            return;
+        }
+
+        activeLocatorIO.insertLocators(slotLocators);
+
+        // only remember the slots once they have been written, so that failed writes are retried
+        for (Map.Entry<SlotKey, Locator> entry : slotLocators.entries()) {
+            AtomicIntegerArray indexed = indexedSlots.getIfPresent(entry.getValue());
+            if (indexed == null) {
+                AtomicIntegerArray created = new AtomicIntegerArray(rollupGranularities.length);
+                for (int i = 0; i < rollupGranularities.length; i++) {
+                    created.set(i, -1);
+                }
+                // another writer may have indexed the same locator meanwhile.
+                indexed = indexedSlots.asMap().putIfAbsent(entry.getValue(), created);
+                if (indexed == null) {
+                    indexed = created;
+                }
+            }
+            for (int i = 0; i < rollupGranularities.length; i++) {
+                if (rollupGranularities[i] == entry.getKey().getGranularity()) {
+                    indexed.set(i, entry.getKey().getSlot());
+                }
+            }
+        }
+    }
+
     private static class BatchIdGenerator {
         private int next = 0;
         
@@ -16,21 +16,27 @@
 
 package com.rackspacecloud.blueflood.io;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.cache.CombinedTtlProvider;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
 import com.rackspacecloud.blueflood.cache.TenantTtlProvider;
 import com.rackspacecloud.blueflood.exceptions.CacheException;
 import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.service.SingleRollupWriteContext;
 import com.rackspacecloud.blueflood.types.*;
+import com.rackspacecloud.blueflood.utils.RecentlySeenSet;
+import com.rackspacecloud.blueflood.utils.TimeValue;
 import com.rackspacecloud.blueflood.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -47,13 +53,33 @@ public abstract class AbstractMetricsRW implements MetricsRW {
     protected static TenantTtlProvider TTL_PROVIDER = CombinedTtlProvider.getInstance();
 
     // this collection is used to reduce the number of locators that get written.
-    // Simply, if a locator has been seen within the last 10 minutes, don't bother.
-    protected static final Cache<String, Boolean> insertedLocators =
-            CacheBuilder.newBuilder().expireAfterAccess(10,
-                        TimeUnit.MINUTES).concurrencyLevel(16).build();
+    // Simply, if a locator has been seen within the last 5 to 10 minutes, don't bother.
+    private static class InsertedLocators {
+        private static final RecentlySeenSet INSTANCE = new RecentlySeenSet(
+                Configuration.getInstance().getIntegerProperty(CoreConfig.RECENT_LOCATORS_MAX_SIZE),
+                new TimeValue(5, TimeUnit.MINUTES));
+    }
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractMetricsRW.class);
 
+    /**
+     * Inserts rollups like {@link #insertRollups(List)}, but returns a future that completes once they are written
+     * instead of blocking. The returned future fails if the rollups could not be written.
+     *
+     * By default this calls {@link #insertRollups(List)} on the calling thread.
+     *
+     * @param writeContexts
+     * @return
+     */
+    public ListenableFuture<?> insertRollupsAsync(List<SingleRollupWriteContext> writeContexts) {
+        try {
+            insertRollups(writeContexts);
+            return Futures.immediateFuture(null);
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
     /**
      * Checks if Locator is recently inserted
      *
@@ -62,16 +88,16 @@ public abstract class AbstractMetricsRW implements MetricsRW {
      */
     // I don't like making this public, but currently DiscoveryWriter
     // calls this
-    public synchronized boolean isLocatorCurrent(Locator loc) {
-        return insertedLocators.getIfPresent(loc.toString()) != null;
+    public boolean isLocatorCurrent(Locator loc) {
+        return InsertedLocators.INSTANCE.contains(loc.toString());
     }
 
     /**
      * Marks the Locator as recently inserted
      * @param loc
      */
-    protected synchronized void setLocatorCurrent(Locator loc) {
-        insertedLocators.put(loc.toString(), Boolean.TRUE);
+    protected void setLocatorCurrent(Locator loc) {
+        InsertedLocators.INSTANCE.add(loc.toString());
     }
 
     /**
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Rackspace.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rackspacecloud.blueflood.io;
+
+import com.google.common.collect.Multimap;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Reads/writes the index of locators that received data in a particular
+ * (granularity, slot, shard). Unlike {@link LocatorIO}, which holds every
+ * locator seen in a shard during the last week, this index lets a rollup
+ * only read the locators that actually have data in the slot being rolled.
+ */
+public interface ActiveLocatorIO {
+
+    /**
+     * Insert locators, grouped by the slot in which they received data
+     * @param slotLocators
+     * @throws IOException
+     */
+    public void insertLocators(Multimap<SlotKey, Locator> slotLocators) throws IOException;
+
+    /**
+     * @param slotKey
+     * @return a collection of the locators which received data in the given slot
+     * @throws IOException
+     */
+    public Collection<Locator> getLocators(SlotKey slotKey) throws IOException;
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.io;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Takes the writes of new locators off the ingestion path: {@link #insertLocator} only queues the locator, and a
+ * background thread writes whatever is queued to the delegate in batches of up to batchSize. When the queue is full
+ * the locator is written inline, as before.
+ *
+ * A locator whose write fails is not retried until it is written again, i.e. once the metrics writers forgot they
+ * had seen it.
+ */
+public class AsyncLocatorIO implements LocatorIO {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLocatorIO.class);
+
+    private static final Meter writtenInline = Metrics.meter(AsyncLocatorIO.class, "Locators Written Inline");
+    private static final Meter batchesFailed = Metrics.meter(AsyncLocatorIO.class, "Batches Failed");
+
+    private final LocatorIO delegate;
+    private final int batchSize;
+    private final BlockingQueue<Locator> queue;
+    private final Thread writer;
+
+    public AsyncLocatorIO(LocatorIO delegate, int batchSize, int queueSize) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<Locator>(queueSize);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeQueuedLocators();
+            }
+        }, "Async Locator Writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts writing queued locators, and registers the size of the queue as a gauge.
+     */
+    public AsyncLocatorIO start() {
+        String name = MetricRegistry.name(AsyncLocatorIO.class, "Locators Queued");
+        Metrics.getRegistry().remove(name);
+        Metrics.getRegistry().register(name, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return queue.size();
+            }
+        });
+        writer.start();
+        return this;
+    }
+
+    @Override
+    public void insertLocator(Locator locator) throws IOException {
+        if (!queue.offer(locator)) {
+            writtenInline.mark();
+            delegate.insertLocator(locator);
+        }
+    }
+
+    @Override
+    public void insertLocators(Collection<Locator> locators) throws IOException {
+        delegate.insertLocators(locators);
+    }
+
+    @Override
+    public Collection<Locator> getLocators(long shard) throws IOException {
+        return delegate.getLocators(shard);
+    }
+
+    private void writeQueuedLocators() {
+        while (true) {
+            try {
+                writeBatch(queue.take());
+            } catch (InterruptedException e) {
+                log.info("Async locator writer interrupted, {} locators left unwritten", queue.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes first, and as many queued locators after it as fit in a batch.
+     */
+    @VisibleForTesting
+    void writeBatch(Locator first) {
+        List<Locator> batch = new ArrayList<Locator>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        try {
+            delegate.insertLocators(batch);
+        } catch (Exception e) {
+            batchesFailed.mark();
+            log.error(String.format("Error writing %d locators", batch.size()), e);
+        }
+    }
+
+    @VisibleForTesting
+    Locator pollQueue() {
+        return queue.poll();
+    }
+}
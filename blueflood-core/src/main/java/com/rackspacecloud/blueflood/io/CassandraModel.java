@@ -24,8 +24,10 @@ public class CassandraModel {
      * The following CF_*_NAME are the names of all of our Column Family
      */
     public static final String CF_METRICS_STATE_NAME = "metrics_state";
+    public static final String CF_METRICS_STATE_CHANGES_NAME = "metrics_state_changes";
     public static final String CF_METRICS_METADATA_NAME = "metrics_metadata";
     public static final String CF_METRICS_LOCATOR_NAME = "metrics_locator";
+    public static final String CF_METRICS_ACTIVE_LOCATOR_NAME = "metrics_active_locator";
     public static final String CF_METRICS_STRING_NAME = "metrics_string";
     public static final String CF_METRICS_ENUM_NAME = "metrics_enum";
     public static final String CF_METRICS_EXCESS_ENUMS_NAME = "metrics_excess_enums";
@@ -71,9 +73,15 @@ public class CassandraModel {
     public static final ColumnFamily<Long, Locator> CF_METRICS_LOCATOR = new ColumnFamily<Long, Locator>(CF_METRICS_LOCATOR_NAME,
             LongSerializer.get(),
             LocatorSerializer.get());
+    public static final ColumnFamily<String, Locator> CF_METRICS_ACTIVE_LOCATOR = new ColumnFamily<String, Locator>(CF_METRICS_ACTIVE_LOCATOR_NAME,
+            StringSerializer.get(),
+            LocatorSerializer.get());
     public static final ColumnFamily<Long, SlotState> CF_METRICS_STATE = new ColumnFamily<Long, SlotState>(CF_METRICS_STATE_NAME,
             LongSerializer.get(),
             SlotStateSerializer.get());
+    public static final ColumnFamily<String, SlotState> CF_METRICS_STATE_CHANGES = new ColumnFamily<String, SlotState>(CF_METRICS_STATE_CHANGES_NAME,
+            StringSerializer.get(),
+            SlotStateSerializer.get());
 
     public static final ColumnFamily<Locator, Long> CF_METRICS_EXCESS_ENUMS = new ColumnFamily<Locator, Long>(CF_METRICS_EXCESS_ENUMS_NAME,
             LocatorSerializer.get(),
@@ -87,7 +95,8 @@ public class CassandraModel {
     };
 
     private static final ColumnFamily[] BF_SYSTEM_COLUMN_FAMILIES = new ColumnFamily[] {
-            CF_METRICS_METADATA, CF_METRICS_LOCATOR, CF_METRICS_STATE, CF_METRICS_EXCESS_ENUMS
+            CF_METRICS_METADATA, CF_METRICS_LOCATOR, CF_METRICS_ACTIVE_LOCATOR, CF_METRICS_STATE, CF_METRICS_STATE_CHANGES,
+            CF_METRICS_EXCESS_ENUMS
     };
 
     private static final Collection<ColumnFamily> ALL_COLUMN_FAMILIES;
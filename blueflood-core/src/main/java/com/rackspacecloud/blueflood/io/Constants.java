@@ -32,9 +32,13 @@ public class Constants {
     public static final byte VERSION_2_ROLLUP = 1;
     public static final byte VERSION_1_TIMER = 0;
     public static final byte VERSION_2_TIMER = 1;
+    // version 2, followed by a quantile sketch
+    public static final byte VERSION_3_TIMER = 2;
 
     public static final byte VERSION_1_COUNTER_ROLLUP = 0;
     public static final byte VERSION_1_SET_ROLLUP = VERSION_1_ROLLUP; // don't change this.
+    // a HyperLogLog sketch instead of the hashes
+    public static final byte VERSION_2_SET_ROLLUP = 1;
 
     public static final byte VERSION_1_ENUM_ROLLUP = 0;
 
@@ -43,6 +43,7 @@ public class IOContainer {
     private ShardStateIO shardStateIO;
     private MetadataIO metadataIO;
     private LocatorIO locatorIO;
+    private ActiveLocatorIO activeLocatorIO;
     private ExcessEnumIO excessEnumIO;
     private EnumReaderIO enumReaderIO;
     private AbstractMetricsRW preAggregatedMetricsRW;
@@ -84,8 +85,13 @@ public class IOContainer {
             List<String> tenantIdsKept = configuration.getListProperty(CoreConfig.TENANTIDS_TO_KEEP);
 
             metadataIO = new DMetadataIO();
-            shardStateIO = new DShardStateIO();
-            locatorIO = new DLocatorIO();
+            shardStateIO = new DShardStateIO(
+                    configuration.getBooleanProperty(CoreConfig.SHARD_STATE_CHANGES_WRITES_ENABLED),
+                    configuration.getBooleanProperty(CoreConfig.SHARD_STATE_CHANGES_READS_ENABLED));
+            locatorIO = withAsyncWrites(new DLocatorIO());
+            if ( isActiveLocatorIndexEnabled() ) {
+                activeLocatorIO = new DActiveLocatorIO();
+            }
             excessEnumIO = new DExcessEnumIO();
             DEnumIO enumIO = new DEnumIO();
             enumReaderIO = enumIO;
@@ -95,8 +101,12 @@ public class IOContainer {
         } else {
 
             metadataIO = new AMetadataIO();
-            shardStateIO = new AShardStateIO();
-            locatorIO = new ALocatorIO();
+            shardStateIO = new AShardStateIO(
+                    configuration.getBooleanProperty(CoreConfig.SHARD_STATE_CHANGES_WRITES_ENABLED));
+            locatorIO = withAsyncWrites(new ALocatorIO());
+            if ( isActiveLocatorIndexEnabled() ) {
+                activeLocatorIO = new AActiveLocatorIO();
+            }
             excessEnumIO = new AExcessEnumIO();
             enumReaderIO = new AEnumIO();
             basicMetricsRW = new ABasicMetricsRW();
@@ -104,6 +114,28 @@ public class IOContainer {
         }
     }
 
+    /**
+     * Queues locator writes to be written in batches by a background thread,
+     * if turned on.
+     */
+    private static LocatorIO withAsyncWrites(LocatorIO locatorIO) {
+        if ( !configuration.getBooleanProperty(CoreConfig.ASYNC_LOCATOR_WRITES_ENABLED) ) {
+            return locatorIO;
+        }
+        return new AsyncLocatorIO(locatorIO,
+                configuration.getIntegerProperty(CoreConfig.ASYNC_LOCATOR_WRITES_BATCH_SIZE),
+                configuration.getIntegerProperty(CoreConfig.ASYNC_LOCATOR_WRITES_QUEUE_SIZE)).start();
+    }
+
+    /**
+     * The metrics_active_locator column family is optional, so only touch it
+     * if the index is turned on for reading or writing.
+     */
+    private static boolean isActiveLocatorIndexEnabled() {
+        return configuration.getBooleanProperty(CoreConfig.ACTIVE_LOCATOR_INDEX_WRITES_ENABLED) ||
+                configuration.getBooleanProperty(CoreConfig.ACTIVE_LOCATOR_INDEX_READS_ENABLED);
+    }
+
     /**
      * @return a class for reading/writing ShardState
      */
@@ -125,6 +157,14 @@ public class IOContainer {
         return locatorIO;
     }
 
+    /**
+     * @return a class for reading/writing the locators active in a slot,
+     * or null if the active locator index is not enabled
+     */
+    public ActiveLocatorIO getActiveLocatorIO() {
+        return activeLocatorIO;
+    }
+
     /**
      * @return a class for reading/writing Excess Enum Metrics
      */
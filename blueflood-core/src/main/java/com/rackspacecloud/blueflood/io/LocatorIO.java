@@ -29,6 +29,13 @@ public interface LocatorIO {
      */
     public void insertLocator(Locator locator) throws IOException;
 
+    /**
+     * Insert locators, each for the shard calculated by hashing of its string value
+     * @param locators
+     * @throws IOException
+     */
+    public void insertLocators(Collection<Locator> locators) throws IOException;
+
     /**
      * @param shard
      * @return a collection of the locators objects corresponding to the given shard
@@ -18,6 +18,7 @@ package com.rackspacecloud.blueflood.io;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
+import com.rackspacecloud.blueflood.cache.RollupBlockCache;
 import com.rackspacecloud.blueflood.exceptions.CacheException;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.rollup.Granularity;
@@ -77,6 +78,19 @@ public class MetricsRWDelegator {
      * @return
      */
     public Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran) {
+        RollupBlockCache blockCache = RollupBlockCache.getInstance();
+        if (blockCache.isCaching(gran)) {
+            return blockCache.getDatapointsForRange(locators, range, gran, new RollupBlockCache.Reader() {
+                @Override
+                public Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran) {
+                    return readDatapointsForRange(locators, range, gran);
+                }
+            });
+        }
+        return readDatapointsForRange(locators, range, gran);
+    }
+
+    private Map<Locator, MetricData> readDatapointsForRange(List<Locator> locators, Range range, Granularity gran) {
 
         MetadataCache metadataCache = MetadataCache.getInstance();
         EnumMetricData enumMetricData = new EnumMetricData(IOContainer.fromConfig().getEnumReaderIO());
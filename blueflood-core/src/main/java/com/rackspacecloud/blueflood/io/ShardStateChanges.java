@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of metrics_state_changes, the log of slot states written to metrics_state. Each shard gets a row per minute
+ * of write time, so the states written since some time can be read from a couple of small rows instead of the whole
+ * metrics_state row of the shard. Rows expire after a day; anything older has to be read from metrics_state.
+ */
+public final class ShardStateChanges {
+    public static final long BUCKET_MILLIS = 60 * 1000L;
+    public static final int TTL_SECONDS = 24 * 60 * 60;
+
+    private ShardStateChanges() {}
+
+    /**
+     * @return the key of the row holding the changes to shard written at time.
+     */
+    public static String rowKey(int shard, long time) {
+        return shard + "," + (time - time % BUCKET_MILLIS);
+    }
+
+    /**
+     * @return the keys of the rows holding the changes to shard written from since to now, oldest first.
+     */
+    public static List<String> rowKeys(int shard, long since, long now) {
+        List<String> keys = new ArrayList<String>();
+        for (long bucket = since - since % BUCKET_MILLIS; bucket <= now; bucket += BUCKET_MILLIS) {
+            keys.add(shard + "," + bucket);
+        }
+        return keys;
+    }
+}
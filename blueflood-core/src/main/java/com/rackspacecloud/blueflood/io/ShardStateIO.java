@@ -35,6 +35,15 @@ public interface ShardStateIO {
      */
     public Collection<SlotState> getShardState(int shard) throws IOException;
 
+    /**
+     * @param shard
+     * @param since time in milliseconds, no more than a day ago
+     * @return the SlotState objects of the given shard written since the given time, as logged in
+     * metrics_state_changes
+     * @throws IOException
+     */
+    public Collection<SlotState> getShardStateChanges(int shard, long since) throws IOException;
+
     /**
      * Writes slot state for a given granularity and shard
      *
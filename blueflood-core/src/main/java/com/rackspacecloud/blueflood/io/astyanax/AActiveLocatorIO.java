@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Rackspace.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rackspacecloud.blueflood.io.astyanax;
+
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Multimap;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+import com.netflix.astyanax.query.RowQuery;
+import com.rackspacecloud.blueflood.cache.TenantTtlProvider;
+import com.rackspacecloud.blueflood.io.ActiveLocatorIO;
+import com.rackspacecloud.blueflood.io.CassandraModel;
+import com.rackspacecloud.blueflood.io.Instrumentation;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * This class uses the Astyanax driver to read/write locators from
+ * Cassandra metrics_active_locator Column Family.
+ */
+public class AActiveLocatorIO implements ActiveLocatorIO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AActiveLocatorIO.class);
+
+    /**
+     * Insert locators with key = {@link SlotKey#toString()}
+     * @param slotLocators
+     * @throws IOException
+     */
+    @Override
+    public void insertLocators(Multimap<SlotKey, Locator> slotLocators) throws IOException {
+        Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+        try {
+            MutationBatch mutationBatch = AstyanaxIO.getKeyspace().prepareMutationBatch();
+            for (SlotKey slotKey : slotLocators.keySet()) {
+                ColumnListMutation<Locator> mutation = mutationBatch.withRow(CassandraModel.CF_METRICS_ACTIVE_LOCATOR, slotKey.toString());
+                for (Locator locator : slotLocators.get(slotKey)) {
+                    mutation.putEmptyColumn(locator, TenantTtlProvider.LOCATOR_TTL);
+                }
+            }
+            mutationBatch.execute();
+        } catch (ConnectionException e) {
+            Instrumentation.markWriteError(e);
+            throw new IOException(e);
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Returns the locators which received data in a slot, i.e. those that should
+     * be rolled up for that slot.
+     *
+     * @param slotKey
+     * @return Collection of locators
+     * @throws IOException
+     */
+    @Override
+    public Collection<Locator> getLocators(SlotKey slotKey) throws IOException {
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+        try {
+            RowQuery<String, Locator> query = AstyanaxIO.getKeyspace()
+                    .prepareQuery(CassandraModel.CF_METRICS_ACTIVE_LOCATOR)
+                    .getKey(slotKey.toString());
+            return query.execute().getResult().getColumnNames();
+        } catch (NotFoundException e) {
+            Instrumentation.markNotFound(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+            return Collections.emptySet();
+        } catch (ConnectionException ex) {
+            Instrumentation.markReadError(ex);
+            LOG.error("Connection exception during getLocators(" + slotKey + ")", ex);
+            throw new IOException("Error reading active locators", ex);
+        } finally {
+            ctx.stop();
+        }
+    }
+
+}
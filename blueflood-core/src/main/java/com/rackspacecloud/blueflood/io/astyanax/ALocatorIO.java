@@ -40,7 +40,7 @@ public class ALocatorIO implements LocatorIO {
     private static final Logger LOG = LoggerFactory.getLogger(ALocatorIO.class);
 
     /**
-     * Insert a locator with key = shard long value calculated using Util.getShard()
+     * Insert a locator with key = shard long value calculated using Locator.getShard()
      * @param locator
      * @throws IOException
      */
@@ -55,6 +55,28 @@ public class ALocatorIO implements LocatorIO {
         }
     }
 
+    /**
+     * Insert locators in a single mutation batch
+     * @param locators
+     * @throws IOException
+     */
+    @Override
+    public void insertLocators(Collection<Locator> locators) throws IOException {
+        Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        try {
+            MutationBatch mutationBatch = AstyanaxIO.getKeyspace().prepareMutationBatch();
+            for (Locator locator : locators) {
+                AstyanaxWriter.getInstance().insertLocator(locator, mutationBatch);
+            }
+            mutationBatch.execute();
+        } catch (ConnectionException e) {
+            Instrumentation.markWriteError(e);
+            throw new IOException(e);
+        } finally {
+            ctx.stop();
+        }
+    }
+
     /**
      * Returns the locators for a shard, i.e. those that should be rolled up, for a given shard.
      * 'Should' means:
@@ -21,6 +21,8 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
 import com.rackspacecloud.blueflood.io.*;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.service.SlotState;
@@ -41,6 +43,19 @@ public class AShardStateIO implements ShardStateIO {
 
     private static final Logger LOG = LoggerFactory.getLogger(AShardStateIO.class);
 
+    private final boolean changesWritten;
+
+    public AShardStateIO() {
+        this(false);
+    }
+
+    /**
+     * @param changesWritten whether slot states are also written to metrics_state_changes
+     */
+    public AShardStateIO(boolean changesWritten) {
+        this.changesWritten = changesWritten;
+    }
+
     @Override
     public Collection<SlotState> getShardState(int shard) throws IOException {
         AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
@@ -67,6 +82,37 @@ public class AShardStateIO implements ShardStateIO {
         return slotStates;
     }
 
+    @Override
+    public Collection<SlotState> getShardStateChanges(int shard, long since) throws IOException {
+        AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_CHANGES_NAME);
+        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
+        try {
+            Rows<String, SlotState> rows = astyanaxIO.getKeyspace().prepareQuery(CassandraModel.CF_METRICS_STATE_CHANGES)
+                    .getKeySlice(ShardStateChanges.rowKeys(shard, since, System.currentTimeMillis()))
+                    .execute()
+                    .getResult();
+
+            for (Row<String, SlotState> row : rows) {
+                for (Column<SlotState> column : row.getColumns()) {
+                    long lastUpdated = column.getTimestamp() / 1000; //write time is in micro seconds
+                    if (lastUpdated >= since) {
+                        slotStates.add(column.getName()
+                                         .withTimestamp(column.getLongValue())
+                                         .withLastUpdatedTimestamp(lastUpdated));
+                    }
+                }
+            }
+        } catch (ConnectionException e) {
+            Instrumentation.markReadError(e);
+            LOG.error("Error getting changes to shard state for shard " + shard, e);
+            throw new IOException(e);
+        } finally {
+            ctx.stop();
+        }
+        return slotStates;
+    }
+
     @Override
     public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
         AstyanaxIO astyanaxIO = AstyanaxIO.singleton();
@@ -74,12 +120,18 @@ public class AShardStateIO implements ShardStateIO {
         try {
             MutationBatch mutationBatch = astyanaxIO.getKeyspace().prepareMutationBatch();
             ColumnListMutation<SlotState> mutation = mutationBatch.withRow(CassandraModel.CF_METRICS_STATE, (long)shard);
+            ColumnListMutation<SlotState> changes = changesWritten
+                    ? mutationBatch.withRow(CassandraModel.CF_METRICS_STATE_CHANGES, ShardStateChanges.rowKey(shard, System.currentTimeMillis()))
+                    : null;
             for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : slotTimes.entrySet()) {
                 Granularity g = granEntry.getKey();
                 for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
                     // granularity,slot,state
                     SlotState slotState = new SlotState(g, entry.getKey(), entry.getValue().getState());
                     mutation.putColumn(slotState, entry.getValue().getTimestamp());
+                    if (changes != null) {
+                        changes.putColumn(slotState, entry.getValue().getTimestamp(), ShardStateChanges.TTL_SECONDS);
+                    }
                     /*
                       Note: this method used to set the timestamp of the Cassandra column to entry.getValue().getTimestamp() * 1000, i.e. the collection time.
                       That implementation was changed because it could cause delayed metrics not to rollup.
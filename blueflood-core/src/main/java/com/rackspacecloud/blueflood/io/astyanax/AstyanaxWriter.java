@@ -40,7 +40,6 @@ import com.rackspacecloud.blueflood.service.*;
 import com.rackspacecloud.blueflood.types.*;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
-import com.rackspacecloud.blueflood.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,7 +151,7 @@ public class AstyanaxWriter extends AstyanaxIO {
 
     // numeric only!
     public final void insertLocator(Locator locator, MutationBatch mutationBatch) {
-                mutationBatch.withRow(CassandraModel.CF_METRICS_LOCATOR, (long) Util.getShard(locator.toString()))
+                mutationBatch.withRow(CassandraModel.CF_METRICS_LOCATOR, (long) locator.getShard())
                         .putEmptyColumn(locator, TenantTtlProvider.LOCATOR_TTL);
     }
 
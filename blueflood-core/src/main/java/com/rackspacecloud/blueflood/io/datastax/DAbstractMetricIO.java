@@ -244,7 +244,7 @@ public abstract class DAbstractMetricIO {
                     String key = row.getString(DMetricsCFPreparedStatements.KEY);
                     Locator loc = Locator.createLocatorFromDbKey(key);
                     Long hash = row.getLong(DMetricsCFPreparedStatements.COLUMN1);
-                    locatorTimestampRollup.put(loc, hash, (T)fromByteBuffer(row.getBytes(DMetricsCFPreparedStatements.VALUE)));
+                    locatorTimestampRollup.put(loc, hash, this.<T>fromByteBuffer(row.getBytes(DMetricsCFPreparedStatements.VALUE)));
                 }
             } catch (Exception ex) {
                 Instrumentation.markReadError();
@@ -254,4 +254,22 @@ public abstract class DAbstractMetricIO {
         }
         return locatorTimestampRollup;
     }
+
+    /**
+     *  Give a list of {@link com.datastax.driver.core.ResultSetFuture}, get
+     *  the corresponding data from it and return it as
+     *  {@link com.rackspacecloud.blueflood.types.Points}.
+     */
+    public Points<?> toPoints( List<ResultSetFuture> futures,
+                               Locator locator,
+                               Granularity granularity ) {
+        Table<Locator, Long, Object> locatorTimestampRollup = toLocatorTimestampValue( futures, locator, granularity );
+
+        Points<Object> points = new Points<Object>();
+        for (Table.Cell<Locator, Long, Object> cell : locatorTimestampRollup.cellSet()) {
+            Object value = cell.getValue();
+            points.add( new Points.Point<Object>( cell.getColumnKey(), value instanceof Rollup ? value : new SimpleNumber( value ) ) );
+        }
+        return points;
+    }
 }
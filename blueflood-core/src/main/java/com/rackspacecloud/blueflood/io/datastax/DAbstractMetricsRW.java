@@ -2,15 +2,24 @@ package com.rackspacecloud.blueflood.io.datastax;
 
 import com.codahale.metrics.Timer;
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
 import com.rackspacecloud.blueflood.exceptions.CacheException;
 import com.rackspacecloud.blueflood.io.*;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.service.SingleRollupWriteContext;
 import com.rackspacecloud.blueflood.types.*;
 import org.slf4j.Logger;
@@ -18,6 +27,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * This class deals with aspects of reading/writing metrics which are common across all column families
@@ -52,26 +63,56 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
 
     /**
      * This method inserts a collection of {@link com.rackspacecloud.blueflood.service.SingleRollupWriteContext} objects
-     * to the appropriate Cassandra column family.
-     *
-     * It performs the inserts by executing an UNLOGGED BATCH statement.
+     * to the appropriate Cassandra column family, and waits for the writes to finish.
      *
      * @param writeContexts
+     * @throws IOException if any of the rollups could not be written
      *
-     * @throws IOException
+     * @see #insertRollupsAsync(List)
      */
     @Override
-    public void insertRollups(List<SingleRollupWriteContext> writeContexts) {
+    public void insertRollups(List<SingleRollupWriteContext> writeContexts) throws IOException {
+        try {
+            insertRollupsAsync(writeContexts).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing rollups", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(String.format("error writing locator batch of size %s, granularity %s",
+                    writeContexts.size(), writeContexts.get(0).getGranularity()), ex.getCause());
+        }
+    }
+
+    /**
+     * This method asynchronously inserts a collection of
+     * {@link com.rackspacecloud.blueflood.service.SingleRollupWriteContext} objects to the appropriate Cassandra
+     * column family.
+     *
+     * The rollups in a batch belong to many different locators, so they are not sent as one batch, which the
+     * coordinator would have to scatter across replicas. Instead, rollups going to the same partition are sent as one
+     * UNLOGGED BATCH, and everything else as single statements. At most {@link CoreConfig#MAX_ROLLUP_WRITES_IN_FLIGHT}
+     * requests are outstanding at once; this method blocks while that many are in flight.
+     *
+     * @param writeContexts
+     * @return a future that completes once every rollup is written, or fails on the first failed write. If the
+     * statements cannot all be built or sent, it fails once the writes already sent are done. The failure is counted,
+     * but left to the caller to log.
+     */
+    @Override
+    public ListenableFuture<?> insertRollupsAsync(final List<SingleRollupWriteContext> writeContexts) {
 
         if (writeContexts.size() == 0) {
-            return;
+            return Futures.immediateFuture(null);
         }
 
-        Timer.Context ctx = Instrumentation.getWriteTimerContext( writeContexts.get( 0 ).getDestinationCF().getName() );
+        final Timer.Context ctx = Instrumentation.getWriteTimerContext( writeContexts.get( 0 ).getDestinationCF().getName() );
 
+        List<ListenableFuture<ResultSet>> futures = new ArrayList<ListenableFuture<ResultSet>>();
+        ListenableFuture<List<ResultSet>> written;
         try {
 
-            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            // group by partition, that is column family and locator
+            Table<String, Locator, List<Statement>> statementsByPartition = HashBasedTable.create();
 
             for (SingleRollupWriteContext writeContext : writeContexts) {
                 Rollup rollup = writeContext.getRollup();
@@ -84,18 +125,83 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
                 DAbstractMetricIO io = getIO(rollupType.name().toLowerCase(), granularity);
 
                 Statement statement = io.createStatement(locator, writeContext.getTimestamp(), rollup, writeContext.getGranularity(), ttl);
-                batch.add(statement);
+
+                String columnFamily = writeContext.getDestinationCF().getName();
+                List<Statement> statements = statementsByPartition.get(columnFamily, locator);
+                if (statements == null) {
+                    statements = new ArrayList<Statement>();
+                    statementsByPartition.put(columnFamily, locator, statements);
+                }
+                statements.add(statement);
             }
 
             Session session = DatastaxIO.getSession();
-            session.execute(batch);
+
+            for (List<Statement> statements : statementsByPartition.values()) {
+                Statement statement;
+                if (statements.size() == 1) {
+                    statement = statements.get(0);
+                } else {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    batch.addAll(statements);
+                    statement = batch;
+                }
+                futures.add(executeLimited(session, statement));
+            }
+            written = Futures.allAsList(futures);
 
         } catch (Exception ex) {
-            Instrumentation.markWriteError();
-            LOG.error(String.format("error writing locator batch of size %s, granularity %s", writeContexts.size(), writeContexts.get(0).getGranularity()), ex);
-        } finally {
-            ctx.stop();
+            // the writes already sent are still in flight; failing now would let the caller count them as done.
+            final SettableFuture<List<ResultSet>> failed = SettableFuture.create();
+            final Exception cause = ex;
+            Futures.successfulAsList(futures).addListener(new Runnable() {
+                @Override
+                public void run() {
+                    failed.setException(cause);
+                }
+            }, MoreExecutors.directExecutor());
+            written = failed;
+        }
+
+        // this runs on the driver's I/O thread, so it only does what cannot block. Callers log the failure.
+        Futures.addCallback(written, new FutureCallback<List<ResultSet>>() {
+            @Override
+            public void onSuccess(List<ResultSet> result) {
+                ctx.stop();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                Instrumentation.markWriteError();
+                ctx.stop();
+            }
+        }, MoreExecutors.directExecutor());
+        return written;
+    }
+
+    private static ResultSetFuture executeLimited(Session session, Statement statement) {
+        final Semaphore writesInFlight = WritesInFlight.SEMAPHORE;
+        writesInFlight.acquireUninterruptibly();
+        ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (RuntimeException ex) {
+            writesInFlight.release();
+            throw ex;
         }
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                writesInFlight.release();
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    // shared by all column families, as they all go to the same cluster. Only loaded once rollups are written.
+    private static class WritesInFlight {
+        static final Semaphore SEMAPHORE = new Semaphore(
+                Configuration.getInstance().getIntegerProperty(CoreConfig.MAX_ROLLUP_WRITES_IN_FLIGHT));
     }
 
     /**
@@ -203,13 +309,8 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
             // read the rollup object from the proper IO class
             DAbstractMetricIO io = getIO( rollupType.name().toLowerCase(), CassandraModel.getGranularity( columnFamilyName ) );
 
-            Table<Locator, Long, Object> locatorTimestampRollup = io.getRollupsForLocator( locator, columnFamilyName, range );
-
-            Points points = new Points();
-            for (Table.Cell<Locator, Long, Object> cell : locatorTimestampRollup.cellSet()) {
-                points.add( createPoint( cell.getColumnKey(), cell.getValue()));
-            }
-            return points;
+            return io.toPoints( io.selectForLocatorAndRange( columnFamilyName, locator, range ),
+                    locator, CassandraModel.getGranularity( columnFamilyName ) );
         } catch( Exception e ) {
 
             Instrumentation.markReadError();
@@ -249,18 +350,13 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
 
                 DAbstractMetricIO io = locatorIO.get(locator);
 
-                // get ResultSets to a Table of locator, timestamp, rollup
-                Table<Locator, Long, Object> locatorTimestampRollup = io.toLocatorTimestampValue( futures, locator, granularity );
-
-                Map<Long, Object> tsRollupMap = locatorTimestampRollup.row( locator );
-
-                // convert to Points and MetricData
-                Points points = convertToPoints( tsRollupMap );
+                // get ResultSets to Points
+                Points points = io.toPoints( futures, locator, granularity );
 
                 // get the dataType for this locator
                 DataType dataType = getDataType( locator );
 
-                RollupType rollupType = getRollupType( tsRollupMap );
+                RollupType rollupType = getRollupType( points );
 
                 // create MetricData
                 MetricData.Type outputType = MetricData.Type.from( rollupType, dataType );
@@ -277,19 +373,19 @@ public abstract class DAbstractMetricsRW extends AbstractMetricsRW {
     }
 
     /**
-     * Given a map of timestamps -> Rollups/SimpleNumbers, return RollupType, or null, if not a Rollup.
+     * Given Points of Rollups/SimpleNumbers, return RollupType, or null, if not a Rollup.
      *
-     * @param tsRollupMap
+     * @param points
      * @return
      */
-    private RollupType getRollupType( Map<Long, Object> tsRollupMap ) {
+    private RollupType getRollupType( Points points ) {
 
-        if( tsRollupMap.isEmpty() )
+        if( points.isEmpty() || points instanceof NumericPoints )
             return null;
         else {
 
-            Object value = tsRollupMap.values().iterator().next();
-            return value instanceof Rollup ? ( (Rollup) value ).getRollupType() : null;
+            Object value = ( (Points.Point) points.getPoints().values().iterator().next() ).getData();
+            return value instanceof Rollup && !( value instanceof SimpleNumber ) ? ( (Rollup) value ).getRollupType() : null;
         }
     }
 
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 Rackspace.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rackspacecloud.blueflood.io.datastax;
+
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import com.google.common.collect.Multimap;
+import com.rackspacecloud.blueflood.cache.TenantTtlProvider;
+import com.rackspacecloud.blueflood.io.ActiveLocatorIO;
+import com.rackspacecloud.blueflood.io.CassandraModel;
+import com.rackspacecloud.blueflood.io.Instrumentation;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
+
+/**
+ * This class uses the Datastax driver to read/write locators from
+ * Cassandra metrics_active_locator Column Family.
+ */
+public class DActiveLocatorIO implements ActiveLocatorIO {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DActiveLocatorIO.class);
+
+    private static final String KEY = "key";
+    private static final String COLUMN1 = "column1";
+    private static final String VALUE = "value";
+
+    private PreparedStatement getValue;
+    private PreparedStatement putValue;
+
+    /**
+     * Constructor
+     */
+    public DActiveLocatorIO() {
+        createPreparedStatements();
+    }
+
+    /**
+     * Create all prepared statements use in this class for metrics_active_locator
+     */
+    private void createPreparedStatements()  {
+
+        // create a generic select statement for retrieving from metrics_active_locator
+        Select.Where select = QueryBuilder
+                .select()
+                .all()
+                .from( CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME )
+                .where( eq ( KEY, bindMarker() ));
+        getValue = DatastaxIO.getSession().prepare( select );
+
+        // create a generic insert statement for inserting into metrics_active_locator.
+        // Slots wrap around every 14 days, so the TTL must be shorter than that
+        // to keep a slot from picking up the locators of its previous cycle.
+        Insert insert = QueryBuilder.insertInto( CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME )
+                .using(ttl(TenantTtlProvider.LOCATOR_TTL))
+                .value(KEY, bindMarker())
+                .value(COLUMN1, bindMarker())
+                .value(VALUE, bindMarker());
+        putValue = DatastaxIO.getSession()
+                .prepare(insert)
+                .setConsistencyLevel( ConsistencyLevel.ONE);
+    }
+
+    /**
+     * Insert locators with key = {@link SlotKey#toString()}. All the locators
+     * of a slot are in the same partition, so they are written as one
+     * single-partition batch per slot.
+     *
+     * @param slotLocators
+     * @throws IOException
+     */
+    @Override
+    public void insertLocators(Multimap<SlotKey, Locator> slotLocators) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+        Session session = DatastaxIO.getSession();
+
+        try {
+            Map<SlotKey, ResultSetFuture> futures = new HashMap<SlotKey, ResultSetFuture>();
+
+            for ( SlotKey slotKey : slotLocators.keySet() ) {
+                BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                for ( Locator locator : slotLocators.get( slotKey ) ) {
+                    batch.add( putValue.bind( slotKey.toString(), locator.toString(), "" ) );
+                }
+                futures.put( slotKey, session.executeAsync( batch ) );
+            }
+
+            Exception failure = null;
+            for ( Map.Entry<SlotKey, ResultSetFuture> future : futures.entrySet() ) {
+                try {
+                    future.getValue().getUninterruptibly();
+                } catch ( Exception ex ) {
+                    Instrumentation.markWriteError();
+                    LOG.error( String.format( "error writing active locators for slot %s", future.getKey() ), ex );
+                    failure = ex;
+                }
+            }
+
+            if ( failure != null ) {
+                throw new IOException( "Error writing active locators", failure );
+            }
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Returns the locators which received data in a slot, i.e. those that should
+     * be rolled up for that slot.
+     *
+     * @param slotKey
+     * @return Collection of locators
+     * @throws IOException
+     */
+    @Override
+    public Collection<Locator> getLocators(SlotKey slotKey) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+        Session session = DatastaxIO.getSession();
+
+        Collection<Locator> locators = new ArrayList<Locator>();
+
+        try {
+            // bind value
+            BoundStatement bs = getValue.bind(slotKey.toString());
+            List<Row> results = session.execute(bs).all();
+            for ( Row row : results ) {
+                if ( LOG.isTraceEnabled() ) {
+                    LOG.trace( "Read metrics_active_locator with slot " + slotKey + ": " +
+                            row.getString( COLUMN1 ));
+                }
+                locators.add(Locator.createLocatorFromDbKey(row.getString(COLUMN1)));
+            }
+
+            // return results
+            if (locators.size() == 0) {
+                Instrumentation.markNotFound(CassandraModel.CF_METRICS_ACTIVE_LOCATOR_NAME);
+                return Collections.emptySet();
+            }
+            else {
+                return locators;
+            }
+        } finally {
+            ctx.stop();
+        }
+    }
+}
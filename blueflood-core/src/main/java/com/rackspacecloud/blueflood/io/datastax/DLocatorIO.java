@@ -16,6 +16,8 @@
 package com.rackspacecloud.blueflood.io.datastax;
 
 import com.codahale.metrics.Timer;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
 import com.datastax.driver.core.*;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
@@ -25,7 +27,6 @@ import com.rackspacecloud.blueflood.io.CassandraModel;
 import com.rackspacecloud.blueflood.io.Instrumentation;
 import com.rackspacecloud.blueflood.io.LocatorIO;
 import com.rackspacecloud.blueflood.types.Locator;
-import com.rackspacecloud.blueflood.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,7 +34,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
@@ -88,7 +91,7 @@ public class DLocatorIO implements LocatorIO {
     }
 
     /**
-     * Insert a locator with key = shard long value calculated using Util.getShard()
+     * Insert a locator with key = shard long value calculated using Locator.getShard()
      * @param locator
      * @throws IOException
      */
@@ -97,13 +100,58 @@ public class DLocatorIO implements LocatorIO {
         Session session = DatastaxIO.getSession();
 
         // get shard this locator would belong to
-        long shard = (long) Util.getShard(locator.toString());
+        long shard = (long) locator.getShard();
 
         // bound values and execute
         BoundStatement bs = putValue.bind(shard, locator.toString(), "");
         session.execute(bs);
     }
 
+    /**
+     * Insert locators with one unlogged batch per shard, written concurrently
+     * @param locators
+     * @throws IOException
+     */
+    @Override
+    public void insertLocators(Collection<Locator> locators) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_LOCATOR_NAME);
+        Session session = DatastaxIO.getSession();
+
+        try {
+            Multimap<Long, Locator> shardLocators = ArrayListMultimap.create();
+            for ( Locator locator : locators ) {
+                shardLocators.put( (long) locator.getShard(), locator );
+            }
+
+            Map<Long, ResultSetFuture> futures = new HashMap<Long, ResultSetFuture>();
+            for ( Long shard : shardLocators.keySet() ) {
+                BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                for ( Locator locator : shardLocators.get( shard ) ) {
+                    batch.add( putValue.bind( shard, locator.toString(), "" ) );
+                }
+                futures.put( shard, session.executeAsync( batch ) );
+            }
+
+            Exception failure = null;
+            for ( Map.Entry<Long, ResultSetFuture> future : futures.entrySet() ) {
+                try {
+                    future.getValue().getUninterruptibly();
+                } catch ( Exception ex ) {
+                    Instrumentation.markWriteError();
+                    LOG.error( String.format( "error writing locators for shard %d", future.getKey() ), ex );
+                    failure = ex;
+                }
+            }
+
+            if ( failure != null ) {
+                throw new IOException( "Error writing locators", failure );
+            }
+        } finally {
+            ctx.stop();
+        }
+    }
+
     /**
      * Returns the locators for a shard, i.e. those that should be rolled up, for a given shard.
      * 'Should' means:
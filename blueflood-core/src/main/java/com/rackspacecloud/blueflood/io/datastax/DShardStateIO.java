@@ -20,6 +20,7 @@ import com.datastax.driver.core.*;
 import com.datastax.driver.core.querybuilder.*;
 import com.rackspacecloud.blueflood.io.CassandraModel;
 import com.rackspacecloud.blueflood.io.Instrumentation;
+import com.rackspacecloud.blueflood.io.ShardStateChanges;
 import com.rackspacecloud.blueflood.io.ShardStateIO;
 import com.rackspacecloud.blueflood.io.serializers.metrics.SlotStateSerDes;
 import com.rackspacecloud.blueflood.rollup.Granularity;
@@ -46,14 +47,37 @@ public class DShardStateIO implements ShardStateIO {
 
     private static final Logger LOG = LoggerFactory.getLogger(DShardStateIO.class);
 
+    // keeps batches well under the size cassandra warns about.
+    private static final int MAX_BATCH_SIZE = 100;
+
     private final SlotStateSerDes serDes = new SlotStateSerDes();
 
+    private final boolean changesWritten;
+
     private PreparedStatement getShardState;
     private PreparedStatement putShardState;
+    private PreparedStatement getShardStateChanges;
+    private PreparedStatement putShardStateChange;
 
     public DShardStateIO() {
+        this(false, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param changesWritten whether slot states are also written to metrics_state_changes
+     * @param changesRead whether changes are read from metrics_state_changes
+     */
+    public DShardStateIO(boolean changesWritten, boolean changesRead) {
+
+        this.changesWritten = changesWritten;
 
         createPreparedStatements();
+        // metrics_state_changes is optional, so only touch it if it is used.
+        if ( changesWritten || changesRead ) {
+            createChangesPreparedStatements();
+        }
     }
 
     private void createPreparedStatements() {
@@ -79,6 +103,28 @@ public class DShardStateIO implements ShardStateIO {
         putShardState.setConsistencyLevel( ConsistencyLevel.ONE );
     }
 
+    private void createChangesPreparedStatements() {
+
+        Select.Where statement = select()
+                .column( KEY )
+                .column( COLUMN1 )
+                .column( VALUE )
+                .writeTime( VALUE )
+                .from( CassandraModel.CF_METRICS_STATE_CHANGES_NAME )
+                .where(eq(KEY, bindMarker() ));
+
+        getShardStateChanges = DatastaxIO.getSession().prepare( statement );
+
+        Insert insert = insertInto(CassandraModel.CF_METRICS_STATE_CHANGES_NAME)
+                .using( ttl( ShardStateChanges.TTL_SECONDS ) )
+                .value( KEY, bindMarker() )
+                .value( COLUMN1, bindMarker() )
+                .value( VALUE, bindMarker() );
+
+        putShardStateChange = DatastaxIO.getSession().prepare( insert );
+        putShardStateChange.setConsistencyLevel( ConsistencyLevel.ONE );
+    }
+
     @Override
     public Collection<SlotState> getShardState(int shard) throws IOException {
 
@@ -111,43 +157,108 @@ public class DShardStateIO implements ShardStateIO {
         }
     }
 
+    @Override
+    public Collection<SlotState> getShardStateChanges(int shard, long since) throws IOException {
+
+        Timer.Context ctx = Instrumentation.getReadTimerContext(CassandraModel.CF_METRICS_STATE_CHANGES_NAME);
+        final Collection<SlotState> slotStates = new LinkedList<SlotState>();
+        Session session = DatastaxIO.getSession();
+
+        try {
+
+            List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+            for ( String key : ShardStateChanges.rowKeys( shard, since, System.currentTimeMillis() ) ) {
+                futures.add( session.executeAsync( getShardStateChanges.bind( key ) ) );
+            }
+
+            for ( ResultSetFuture future : futures ) {
+                for ( Row row : future.getUninterruptibly().all() ) {
+                    long lastUpdated = row.getLong( WRITE_TIME ) / 1000; //write time is in micro seconds
+                    if ( lastUpdated < since ) {
+                        continue;
+                    }
+                    SlotState state = serDes.deserialize(row.getString( COLUMN1 ));
+                    state.withTimestamp(row.getLong( VALUE ))
+                         .withLastUpdatedTimestamp(lastUpdated);
+                    slotStates.add(state);
+                }
+            }
+            return slotStates;
+        } catch ( Exception e ) {
+            Instrumentation.markReadError();
+            throw new IOException( "Error reading changes to shard state of shard " + shard, e );
+        } finally {
+            ctx.stop();
+        }
+    }
+
     @Override
     public void putShardState(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) throws IOException {
 
         Timer.Context ctx = Instrumentation.getWriteTimerContext(CassandraModel.CF_METRICS_STATE_NAME);
         Session session = DatastaxIO.getSession();
 
-        Map<String, ResultSetFuture> futures = new HashMap<String, ResultSetFuture>();
+        String changesKey = ShardStateChanges.rowKey( shard, System.currentTimeMillis() );
 
         try {
-            Set<Granularity> granularities = slotTimes.keySet();
-            for (Granularity gran : granularities) {
+            // every state of a shard goes to the same partition, and so do its changes, so batching
+            // them costs the coordinator nothing.
+            List<BatchStatement> batches = new ArrayList<BatchStatement>();
+            BatchStatement stateBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            BatchStatement changesBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
 
-                Set<Map.Entry<Integer, UpdateStamp>> entries = slotTimes.get(gran).entrySet();
-                for (Map.Entry<Integer, UpdateStamp> entry : entries) {
+            for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : slotTimes.entrySet()) {
+
+                Granularity gran = granEntry.getKey();
+                for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
 
                     String value = serDes.serialize(gran, entry.getKey(), entry.getValue().getState());
 
-                    BoundStatement bound = putShardState.bind( (long) shard,
+                    stateBatch.add( putShardState.bind( (long) shard,
                             value,
-                            entry.getValue().getTimestamp());
-
-                    futures.put( "shard: " + shard +", " + value, session.executeAsync( bound ) );
+                            entry.getValue().getTimestamp()) );
+                    if ( stateBatch.size() == MAX_BATCH_SIZE ) {
+                        batches.add( stateBatch );
+                        stateBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    }
+
+                    if ( changesWritten ) {
+                        changesBatch.add( putShardStateChange.bind( changesKey,
+                                value,
+                                entry.getValue().getTimestamp() ) );
+                        if ( changesBatch.size() == MAX_BATCH_SIZE ) {
+                            batches.add( changesBatch );
+                            changesBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                        }
+                    }
                 }
             }
+            if ( stateBatch.size() > 0 ) {
+                batches.add( stateBatch );
+            }
+            if ( changesBatch.size() > 0 ) {
+                batches.add( changesBatch );
+            }
 
-            for( Map.Entry<String, ResultSetFuture> future : futures.entrySet() ) {
+            List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+            for ( BatchStatement batch : batches ) {
+                futures.add( session.executeAsync( batch ) );
+            }
 
+            Exception failure = null;
+            for ( ResultSetFuture future : futures ) {
                 try {
-                    ResultSet result = future.getValue().getUninterruptibly();
-                    LOG.trace( "results.size=" + result.all().size() );
-                }
-                catch ( Exception e ) {
-
-                    LOG.error( String.format( "error writing to metrics_state: %s", future.getKey() ), e );
+                    future.getUninterruptibly();
+                } catch ( Exception e ) {
+                    Instrumentation.markWriteError();
+                    LOG.error( String.format( "error writing to metrics_state for shard %d", shard ), e );
+                    failure = e;
                 }
             }
 
+            if ( failure != null ) {
+                throw new IOException( "Error writing shard state of shard " + shard, failure );
+            }
         } finally {
             ctx.stop();
         }
@@ -1,9 +1,19 @@
 package com.rackspacecloud.blueflood.io.datastax;
 
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.rackspacecloud.blueflood.io.Instrumentation;
 import com.rackspacecloud.blueflood.io.serializers.metrics.RawSerDes;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.NumericPoints;
+import com.rackspacecloud.blueflood.types.Points;
 import com.rackspacecloud.blueflood.types.Rollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * This class holds the utility methods to read/write simple numbers
@@ -11,6 +21,8 @@ import java.nio.ByteBuffer;
  */
 public class DSimpleNumberIO extends DAbstractMetricIO {
 
+    private static final Logger LOG = LoggerFactory.getLogger( DSimpleNumberIO.class );
+
     private RawSerDes serDes = new RawSerDes();
 
     @Override
@@ -24,4 +36,33 @@ public class DSimpleNumberIO extends DAbstractMetricIO {
 
         return serDes.deserialize( byteBuffer );
     }
+
+    /**
+     * Reads the raw numbers straight into the columns of a
+     * {@link com.rackspacecloud.blueflood.types.NumericPoints}, rather than
+     * creating a Point and a SimpleNumber for each of them.
+     */
+    @Override
+    public NumericPoints toPoints( List<ResultSetFuture> futures,
+                                  Locator locator,
+                                  Granularity granularity ) {
+        NumericPoints points = null;
+        for ( ResultSetFuture future : futures ) {
+            try {
+                List<Row> rows = future.getUninterruptibly().all();
+                if ( points == null ) {
+                    points = new NumericPoints( rows.size() );
+                }
+                for ( Row row : rows ) {
+                    serDes.deserializeInto( row.getBytes( DMetricsCFPreparedStatements.VALUE ),
+                            row.getLong( DMetricsCFPreparedStatements.COLUMN1 ), points );
+                }
+            } catch (Exception ex) {
+                Instrumentation.markReadError();
+                LOG.error(String.format("error reading metric for locator %s, granularity %s",
+                        locator, granularity), ex);
+            }
+        }
+        return points == null ? new NumericPoints() : points;
+    }
 }
@@ -21,6 +21,7 @@ import com.google.protobuf.CodedOutputStream;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.exceptions.UnexpectedStringSerializationException;
 import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.types.NumericPoints;
 import com.rackspacecloud.blueflood.utils.Metrics;
 
 import java.io.IOException;
@@ -63,6 +64,39 @@ public class RawSerDes extends AbstractSerDes {
         }
     }
 
+    /**
+     * Deserializes the value in byteBuffer straight into points, without boxing it.
+     */
+    public void deserializeInto(ByteBuffer byteBuffer, long timestamp, NumericPoints points) {
+        CodedInputStream in = CodedInputStream.newInstance(byteBuffer.array());
+        try {
+            byte version = in.readRawByte();
+            if (version != VERSION_1_FULL_RES && version != VERSION_1_ROLLUP) {
+                throw new SerializationException(String.format("Unexpected serialization version: %d",
+                                                                (int)version));
+            }
+            byte metricValueType = in.readRawByte() /* type field */;
+            switch (metricValueType) {
+                case Constants.I32:
+                    points.add(timestamp, in.readRawVarint32());
+                    break;
+                case Constants.I64:
+                    points.add(timestamp, in.readRawVarint64());
+                    break;
+                case Constants.DOUBLE:
+                    points.add(timestamp, in.readDouble());
+                    break;
+                case Constants.STR:
+                    throw new UnexpectedStringSerializationException("We don't rollup strings");
+                default:
+                    throw new SerializationException(String.format("Unexpected raw metric type=%s for full res " +
+                                                                    "metric", (char)metricValueType));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Deserialization Failure", e);
+        }
+    }
+
     private int sizeOf(Object obj) throws SerializationException {
         int sz = sizeOfSize();
         sz += sizeOfType();
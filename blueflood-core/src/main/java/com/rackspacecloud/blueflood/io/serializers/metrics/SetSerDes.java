@@ -21,18 +21,25 @@ import com.google.protobuf.CodedOutputStream;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.types.BluefloodSetRollup;
+import com.rackspacecloud.blueflood.types.HyperLogLog;
 import com.rackspacecloud.blueflood.utils.Metrics;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_1_SET_ROLLUP;
+import static com.rackspacecloud.blueflood.io.Constants.VERSION_2_SET_ROLLUP;
 
 /**
- * This class knows how to serialize/deserialize Set objects.
+ * This class knows how to serialize/deserialize Set objects. Exact sets are written as version 1, a list of hashes,
+ * and estimated sets as version 2, a HyperLogLog sketch.
  */
 public class SetSerDes extends AbstractSerDes {
 
+    private static final byte SPARSE_SKETCH = 0;
+    private static final byte DENSE_SKETCH = 1;
+
     /**
      * Our own internal metric to count the number of Set rollups
      */
@@ -52,9 +59,11 @@ public class SetSerDes extends AbstractSerDes {
         CodedInputStream in = CodedInputStream.newInstance(byteBuffer.array());
         try {
             byte version = in.readRawByte();
-            if (version != VERSION_1_SET_ROLLUP)
-                throw new SerializationException(String.format("Unexpected set serialization version: %d", (int)version));
-            return deserializeV1SetRollup(in);
+            if (version == VERSION_1_SET_ROLLUP)
+                return deserializeV1SetRollup(in);
+            if (version == VERSION_2_SET_ROLLUP)
+                return deserializeV2SetRollup(in);
+            throw new SerializationException(String.format("Unexpected set serialization version: %d", (int)version));
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -63,6 +72,11 @@ public class SetSerDes extends AbstractSerDes {
     private void serializeSetRollup(BluefloodSetRollup rollup, byte[] buf) throws IOException {
         CodedOutputStream out = CodedOutputStream.newInstance(buf);
         setRollupSize.update(buf.length);
+        if (!rollup.isExact()) {
+            out.writeRawByte(Constants.VERSION_2_SET_ROLLUP);
+            serializeSketch(rollup.getSketch(), out);
+            return;
+        }
         out.writeRawByte(Constants.VERSION_1_SET_ROLLUP);
         out.writeRawVarint32(rollup.getCount());
         for (Integer i : rollup.getHashes()) {
@@ -70,6 +84,24 @@ public class SetSerDes extends AbstractSerDes {
         }
     }
 
+    private void serializeSketch(HyperLogLog sketch, CodedOutputStream out) throws IOException {
+        out.writeRawByte(sketch.getPrecision());
+        if (sketch.isSparse()) {
+            out.writeRawByte(SPARSE_SKETCH);
+            out.writeRawVarint32(sketch.getSparseRegisters().size());
+            // indexes are written as the difference from the previous one, which keeps them short.
+            int previous = 0;
+            for (Map.Entry<Integer, Byte> register : sketch.getSparseRegisters().entrySet()) {
+                out.writeRawVarint32(register.getKey() - previous);
+                out.writeRawByte(register.getValue());
+                previous = register.getKey();
+            }
+        } else {
+            out.writeRawByte(DENSE_SKETCH);
+            out.writeRawBytes(sketch.getRegisters());
+        }
+    }
+
     private BluefloodSetRollup deserializeV1SetRollup(CodedInputStream in) throws IOException {
         int count = in.readRawVarint32();
         BluefloodSetRollup rollup = new BluefloodSetRollup();
@@ -79,7 +111,33 @@ public class SetSerDes extends AbstractSerDes {
         return rollup;
     }
 
+    private BluefloodSetRollup deserializeV2SetRollup(CodedInputStream in) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(in.readRawByte());
+        byte representation = in.readRawByte();
+        if (representation == SPARSE_SKETCH) {
+            int count = in.readRawVarint32();
+            int index = 0;
+            while (count-- > 0) {
+                index += in.readRawVarint32();
+                sketch.withRegister(index, in.readRawByte());
+            }
+        } else if (representation == DENSE_SKETCH) {
+            byte[] registers = in.readRawBytes(sketch.getRegisterCount());
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    sketch.withRegister(i, registers[i]);
+                }
+            }
+        } else {
+            throw new SerializationException(String.format("Unexpected set sketch representation: %d", (int)representation));
+        }
+        return new BluefloodSetRollup().withSketch(sketch);
+    }
+
     private int sizeOf(BluefloodSetRollup setRollup) {
+        if (!setRollup.isExact()) {
+            return sizeOfSize() + sizeOfSketch(setRollup.getSketch());
+        }
         int sz = sizeOfSize();
         sz += CodedOutputStream.computeRawVarint32Size(setRollup.getCount());
         for (Integer i : setRollup.getHashes()) {
@@ -87,4 +145,20 @@ public class SetSerDes extends AbstractSerDes {
         }
         return sz;
     }
+
+    private int sizeOfSketch(HyperLogLog sketch) {
+        // precision and representation
+        int sz = 2;
+        if (sketch.isSparse()) {
+            sz += CodedOutputStream.computeRawVarint32Size(sketch.getSparseRegisters().size());
+            int previous = 0;
+            for (Integer index : sketch.getSparseRegisters().keySet()) {
+                sz += CodedOutputStream.computeRawVarint32Size(index - previous) + 1;
+                previous = index;
+            }
+        } else {
+            sz += sketch.getRegisterCount();
+        }
+        return sz;
+    }
 }
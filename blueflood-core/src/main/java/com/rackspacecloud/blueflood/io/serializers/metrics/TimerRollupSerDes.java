@@ -29,6 +29,7 @@ import java.util.Map;
 
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_1_TIMER;
 import static com.rackspacecloud.blueflood.io.Constants.VERSION_2_TIMER;
+import static com.rackspacecloud.blueflood.io.Constants.VERSION_3_TIMER;
 
 /**
  * This class knows how to serialize/deserialize Timer metrics.
@@ -38,9 +39,11 @@ public class TimerRollupSerDes extends AbstractSerDes {
     private static Histogram timerRollupSize = Metrics.histogram(TimerRollupSerDes.class, "Timer Metric Size");
 
     public ByteBuffer serialize(BluefloodTimerRollup bluefloodTimerRollup) {
+        // timers without a sketch stay readable by nodes that do not know about sketches.
+        byte timerVersion = bluefloodTimerRollup.getSketch() == null ? VERSION_2_TIMER : VERSION_3_TIMER;
         try {
-            byte[] buf = new byte[sizeOf(bluefloodTimerRollup, VERSION_2_TIMER)];
-            serializeTimer(bluefloodTimerRollup, buf, VERSION_2_TIMER);
+            byte[] buf = new byte[sizeOf(bluefloodTimerRollup, timerVersion)];
+            serializeTimer(bluefloodTimerRollup, buf, timerVersion);
             return ByteBuffer.wrap(buf);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -76,7 +79,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
         // sum, count, countps, avg, max, min, var
         if (timerVersion == VERSION_1_TIMER) {
             out.writeRawVarint64((long)rollup.getSum());
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             out.writeDoubleNoTag(rollup.getSum());
         } else {
             throw new SerializationException(String.format("Unexpected timer serialization version: %d", (int)timerVersion));
@@ -97,6 +100,55 @@ public class TimerRollupSerDes extends AbstractSerDes {
             out.writeStringNoTag(entry.getKey());
             putUnversionedDoubleOrLong(entry.getValue().getMean(), out);
         }
+
+        if (timerVersion == VERSION_3_TIMER) {
+            putSketch(rollup.getSketch(), out);
+        }
+    }
+
+    private void putSketch(QuantileSketch sketch, CodedOutputStream out) throws IOException {
+        out.writeDoubleNoTag(sketch.getRelativeAccuracy());
+        out.writeRawVarint64(sketch.getZeroCount());
+        out.writeDoubleNoTag(sketch.getMin());
+        out.writeDoubleNoTag(sketch.getMax());
+        out.writeRawVarint32(sketch.getBuckets().size());
+        // bucket indexes are mostly consecutive, so they are written as deltas.
+        int previous = 0;
+        for (Map.Entry<Integer, Long> bucket : sketch.getBuckets().entrySet()) {
+            out.writeSInt32NoTag(bucket.getKey() - previous);
+            out.writeRawVarint64(bucket.getValue());
+            previous = bucket.getKey();
+        }
+    }
+
+    private QuantileSketch getSketch(CodedInputStream in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readDouble());
+        sketch.withZeroCount(in.readRawVarint64());
+        double min = in.readDouble();
+        double max = in.readDouble();
+        sketch.withMinMax(min, max);
+        int numBuckets = in.readRawVarint32();
+        int index = 0;
+        for (int i = 0; i < numBuckets; i++) {
+            index += in.readSInt32();
+            sketch.withBucket(index, in.readRawVarint64());
+        }
+        return sketch;
+    }
+
+    private int sizeOfSketch(QuantileSketch sketch) {
+        int sz = CodedOutputStream.computeDoubleSizeNoTag(sketch.getRelativeAccuracy());
+        sz += CodedOutputStream.computeRawVarint64Size(sketch.getZeroCount());
+        sz += CodedOutputStream.computeDoubleSizeNoTag(sketch.getMin());
+        sz += CodedOutputStream.computeDoubleSizeNoTag(sketch.getMax());
+        sz += CodedOutputStream.computeRawVarint32Size(sketch.getBuckets().size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> bucket : sketch.getBuckets().entrySet()) {
+            sz += CodedOutputStream.computeSInt32SizeNoTag(bucket.getKey() - previous);
+            sz += CodedOutputStream.computeRawVarint64Size(bucket.getValue());
+            previous = bucket.getKey();
+        }
+        return sz;
     }
 
     private BluefloodTimerRollup deserializeTimer(CodedInputStream in, byte timerVersion) throws IOException {
@@ -104,7 +156,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
         final double sum;
         if (timerVersion == VERSION_1_TIMER) {
             sum = in.readRawVarint64();
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             sum = in.readDouble();
         } else {
             throw new SerializationException(String.format("Unexpected timer deserialization version: %d", (int)timerVersion));
@@ -151,6 +203,10 @@ public class TimerRollupSerDes extends AbstractSerDes {
             rollup.setPercentile(name, mean);
         }
 
+        if (timerVersion == VERSION_3_TIMER) {
+            rollup.withSketch(getSketch(in));
+        }
+
         return rollup;
     }
 
@@ -160,7 +216,7 @@ public class TimerRollupSerDes extends AbstractSerDes {
 
         if (timerVersion == VERSION_1_TIMER) {
             sz += CodedOutputStream.computeRawVarint64Size((long) bluefloodTimerRollup.getSum());
-        } else if (timerVersion == VERSION_2_TIMER) {
+        } else if (timerVersion == VERSION_2_TIMER || timerVersion == VERSION_3_TIMER) {
             sz += CodedOutputStream.computeDoubleSizeNoTag(bluefloodTimerRollup.getSum());
         } else {
             throw new SerializationException(String.format("Unexpected timer serialization version: %d", (int)timerVersion));
@@ -189,6 +245,10 @@ public class TimerRollupSerDes extends AbstractSerDes {
                 }
             }
         }
+
+        if (timerVersion == VERSION_3_TIMER) {
+            sz += sizeOfSketch(bluefloodTimerRollup.getSketch());
+        }
         return sz;
     }
 
@@ -19,6 +19,8 @@ package com.rackspacecloud.blueflood.outputs.handlers;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -68,6 +70,7 @@ public class RollupHandler {
 
     private static final boolean ROLLUP_REPAIR = Configuration.getInstance().getBooleanProperty(CoreConfig.REPAIR_ROLLUPS_ON_READ);
     private static final int ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD = Configuration.getInstance().getIntegerProperty( CoreConfig.ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD );
+    private static final boolean ROLLUP_ON_READ_REPAIR_SINGLE_READ = Configuration.getInstance().getBooleanProperty( CoreConfig.ROLLUP_ON_READ_REPAIR_SINGLE_READ );
     private ExecutorService ESUnitExecutor = null;
     private ListeningExecutorService rollupsOnReadExecutor = null;
     private ListeningExecutorService createRepairPointsExecutor = null;
@@ -305,7 +308,8 @@ public class RollupHandler {
      * This method gets the points from the DB and then rolls them up according to the granularity.
      *
      * Breaks up the number of ranges into buckets based on ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD and executes
-     * the buckets in parallel.
+     * the buckets in parallel. With ROLLUP_ON_READ_REPAIR_SINGLE_READ, the points of all ranges are read at once
+     * and only the rollups are computed in parallel.
      *
      * @param locator metric key within the DB
      * @param g the granularity
@@ -320,16 +324,20 @@ public class RollupHandler {
         List<Points.Point> repairedPoints = new ArrayList<Points.Point>();
         List<ListenableFuture<List<Points.Point>>> futures = new ArrayList<ListenableFuture<List<Points.Point>>>();
 
-        for( final Iterable<Range> ranges : divideRangesByGroup( g, from, to ) ) {
-            futures.add(
+        if ( ROLLUP_ON_READ_REPAIR_SINGLE_READ ) {
+            futures.addAll( rollupFromSingleRead( locator, g, from, to ) );
+        } else {
+            for( final Iterable<Range> ranges : divideRangesByGroup( g, from, to ) ) {
+                futures.add(
 
-                    createRepairPointsExecutor.submit( new Callable() {
+                        createRepairPointsExecutor.submit( new Callable() {
 
-                        @Override
-                        public List<Points.Point> call() throws Exception {
-                            return createRepairPoints( ranges, locator );
-                        }
-                    } ) );
+                            @Override
+                            public List<Points.Point> call() throws Exception {
+                                return createRepairPoints( ranges, locator );
+                            }
+                        } ) );
+            }
         }
 
         ListenableFuture<List<List<Points.Point>>> aggregateFuture = Futures.allAsList(futures);
@@ -413,7 +421,121 @@ public class RollupHandler {
         return repairedPoints;
     }
 
+    /**
+     * Reads the points of all ranges with a single FULL read, and buckets them by range in one pass. Rolling up
+     * the buckets is broken up into groups of ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD ranges, which are executed
+     * in parallel.
+     *
+     * @param locator metric key within the DB
+     * @param g the granularity
+     * @param from the starting timestamp of the range (ms)
+     * @param to the ending timestamp of the range (ms)
+     *
+     * @return futures of the rolled-up points, one for each group of ranges
+     */
+    private List<ListenableFuture<List<Points.Point>>> rollupFromSingleRead( Locator locator, Granularity g, long from, long to ) {
+        List<ListenableFuture<List<Points.Point>>> futures = new ArrayList<ListenableFuture<List<Points.Point>>>();
+
+        List<Range> ranges = Lists.newArrayList( Range.rangesForInterval( g, from, to ) );
+        if ( ranges.isEmpty() ) {
+            return futures;
+        }
+
+        MetricData data;
+        Timer.Context cRead = timerCassandraReadRollupOnRead.time();
+        try {
+            MetricsRWDelegator delegator = new MetricsRWDelegator();
+            data = delegator.getDatapointsForRange(locator,
+                    new Range( ranges.get( 0 ).getStart(), ranges.get( ranges.size() - 1 ).getStop() ), Granularity.FULL);
+        } catch ( RuntimeException ex ) {
+            // fails the repair like a failed group would, rather than passing it off as a repair without points.
+            futures.add( Futures.<List<Points.Point>>immediateFailedFuture( ex ) );
+            return futures;
+        } finally {
+            cRead.stop();
+        }
+
+        if ( data == null || data.getData().isEmpty() ) {
+            return futures;
+        }
+
+        Points<?> points = data.getData();
+        List<? extends Points<?>> buckets = bucketPointsByRange( points, ranges );
+        for ( int start = 0; start < ranges.size(); start += ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD ) {
+            int end = Math.min( start + ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD, ranges.size() );
+            final List<Range> groupRanges = ranges.subList( start, end );
+            final List<? extends Points<?>> groupBuckets = buckets.subList( start, end );
+
+            futures.add( createRepairPointsExecutor.submit( new Callable<List<Points.Point>>() {
+
+                @Override
+                public List<Points.Point> call() throws Exception {
+                    return rollupBuckets( groupRanges, groupBuckets );
+                }
+            } ) );
+        }
+        return futures;
+    }
+
+    /**
+     * Splits time-ordered points into one bucket per range.
+     *
+     * @param points points ordered by timestamp
+     * @param ranges consecutive, ordered ranges
+     *
+     * @return a list of points, one for each range, in the same order as the ranges
+     */
+    @VisibleForTesting
+    static <T> List<Points<T>> bucketPointsByRange( Points<T> points, List<Range> ranges ) {
+        List<Points<T>> buckets = new ArrayList<Points<T>>( ranges.size() );
+        for ( int i = 0; i < ranges.size(); i++ ) {
+            buckets.add( new Points<T>() );
+        }
+
+        int i = 0;
+        for ( Points.Point<T> point : points.getPoints().values() ) {
+            while ( i < ranges.size() && point.getTimestamp() > ranges.get( i ).getStop() ) {
+                i++;
+            }
+            if ( i == ranges.size() ) {
+                break;
+            }
+            if ( point.getTimestamp() >= ranges.get( i ).getStart() ) {
+                buckets.get( i ).add( point );
+            }
+        }
+        return buckets;
+    }
+
+    private List<Points.Point> rollupBuckets( List<Range> ranges, List<? extends Points<?>> buckets ) {
+
+        List<Points.Point> repairedPoints = new ArrayList<Points.Point>();
+
+        for ( int i = 0; i < ranges.size(); i++ ) {
+            Points<?> dataToRoll = buckets.get( i );
+            if ( dataToRoll.isEmpty() ) {
+                continue;
+            }
+
+            try {
+                Rollup rollup = RollupHandler.rollupFromPoints( dataToRoll );
+
+                if ( rollup.hasData() ) {
+                    repairedPoints.add( new Points.Point<Rollup>( ranges.get( i ).getStart(), rollup ) );
+                }
+            } catch ( IOException ex ) {
+                log.error( "Exception computing rollups during read: ", ex );
+            }
+        }
+
+        return repairedPoints;
+    }
+
     private static long minTime(Points<?> points) {
+        if (points instanceof NumericPoints && ((NumericPoints) points).isColumnar() && !points.isEmpty()) {
+            // columns are sorted.
+            return ((NumericPoints) points).getTimestamp(0);
+        }
         long min = Long.MAX_VALUE;
         for (long time : points.getPoints().keySet())
             min = Math.min(min, time);
@@ -421,6 +543,10 @@ public class RollupHandler {
     }
 
     private static long maxTime(Points<?> points) {
+        if (points instanceof NumericPoints && ((NumericPoints) points).isColumnar() && !points.isEmpty()) {
+            NumericPoints numbers = (NumericPoints) points;
+            return numbers.getTimestamp(numbers.size() - 1);
+        }
         long max = Long.MIN_VALUE;
         for (long time : points.getPoints().keySet())
             max = Math.max(max, time);
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.exceptions.GranularityException;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.types.Rollup;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the rollups computed for each slot in memory, grouped by the coarser slot (the window) that encloses them,
+ * so that when the window is rolled up its input does not have to be read back from the finer column family.
+ *
+ * A window is only used once every one of its finer slots was rolled up successfully by this process, and nothing
+ * was dropped from it to stay under CASCADING_ROLLUPS_MAX_POINTS. A locator without rollups in such a window had
+ * nothing to roll up. Otherwise, e.g. after a restart, a shard moving here, or a late re-roll of a window that was
+ * already rolled up, {@link #getPointsToRollup} returns null and the caller reads the finer rollups as before.
+ *
+ * The windows of a shard are dropped whenever this node takes or gives up the shard's lock, see
+ * {@link #shardOwnershipChanged}, as another node may have re-rolled some of its slots in the meantime.
+ */
+public class CascadingRollupStore {
+    private static final Logger log = LoggerFactory.getLogger(CascadingRollupStore.class);
+
+    private static final Meter cascadedRollups = Metrics.meter(CascadingRollupStore.class, "Rollups From Memory");
+    private static final Meter readRollups = Metrics.meter(CascadingRollupStore.class, "Rollups Read From Finer");
+    private static final Meter droppedWindows = Metrics.meter(CascadingRollupStore.class, "Windows Dropped Over Max Points");
+
+    private final boolean enabled;
+    private final int maxPoints;
+    private final AtomicInteger pointCount = new AtomicInteger(0);
+    private final ConcurrentMap<Integer, ConcurrentMap<SlotKey, Window>> windowsByShard =
+            new ConcurrentHashMap<Integer, ConcurrentMap<SlotKey, Window>>();
+
+    private static class InstanceHolder {
+        private static final CascadingRollupStore INSTANCE = new CascadingRollupStore(
+                Configuration.getInstance().getBooleanProperty(CoreConfig.CASCADING_ROLLUPS_ENABLED),
+                Configuration.getInstance().getIntegerProperty(CoreConfig.CASCADING_ROLLUPS_MAX_POINTS));
+
+        static {
+            Metrics.getRegistry().register(MetricRegistry.name(CascadingRollupStore.class, "Points In Memory"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return INSTANCE.getPointCount();
+                }
+            });
+        }
+    }
+
+    public static CascadingRollupStore getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    CascadingRollupStore(boolean enabled, int maxPoints) {
+        this.enabled = enabled;
+        this.maxPoints = maxPoints;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remembers rollup, computed for locator at granularity for the slot starting at timestamp, as input to the
+     * rollup of the enclosing coarser slot.
+     */
+    public void add(Locator locator, Granularity granularity, long timestamp, Rollup rollup) {
+        Granularity coarser = coarserOrNull(granularity);
+        if (!enabled || coarser == null) {
+            return;
+        }
+        SlotKey windowKey = SlotKey.of(coarser, coarser.slot(timestamp), locator.getShard());
+        Window window = getOrCreateWindow(windowKey, coarser.snapMillis(timestamp));
+        if (window.overflowed) {
+            return;
+        }
+
+        Points<Rollup> points = window.points.get(locator);
+        if (points == null) {
+            Points<Rollup> created = new Points<Rollup>();
+            points = window.points.putIfAbsent(locator, created);
+            if (points == null) {
+                points = created;
+            }
+        }
+        boolean added;
+        synchronized (points) {
+            // a re-roll of the slot replaces the rollup it had before.
+            added = !points.getPoints().containsKey(timestamp);
+            points.add(new Points.Point<Rollup>(timestamp, rollup));
+        }
+        if (added && pointCount.incrementAndGet() > maxPoints) {
+            overflow(windowKey, window);
+        } else if (window.released) {
+            // the window was removed while this was added to it.
+            releasePoints(window);
+        }
+    }
+
+    /**
+     * @return the rollups for locator of the slots within range, for computing the rollup of range at granularity,
+     * or null if they have to be read from the finer column family instead.
+     */
+    public Points<Rollup> getPointsToRollup(Locator locator, Granularity granularity, Range range) {
+        Granularity finer = finerOrNull(granularity);
+        if (!enabled || finer == null || finer == Granularity.FULL) {
+            // full resolution points are not kept in memory, so this is not a read from finer rollups either.
+            return null;
+        }
+        int shard = locator.getShard();
+        Window window = windows(shard).get(SlotKey.of(granularity, granularity.slot(range.getStart()), shard));
+        if (window == null || window.start != range.getStart() || !window.isComplete(granularity)) {
+            readRollups.mark();
+            return null;
+        }
+        cascadedRollups.mark();
+        Points<Rollup> points = window.points.get(locator);
+        Points<Rollup> copy = new Points<Rollup>();
+        if (points != null) {
+            synchronized (points) {
+                copy.getPoints().putAll(points.getPoints());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Called once slotKey, covering range, was rolled up successfully for all of its locators. Its own rollups are
+     * not needed anymore, and it counts as done towards the window that encloses it.
+     */
+    public void slotRolledUp(SlotKey slotKey, Range range) {
+        if (!enabled) {
+            return;
+        }
+        remove(slotKey);
+
+        Granularity coarser = coarserOrNull(slotKey.getGranularity());
+        if (coarser != null) {
+            try {
+                SlotKey windowKey = SlotKey.of(coarser, coarser.slotFromFinerSlot(slotKey.getSlot()), slotKey.getShard());
+                Window window = getOrCreateWindow(windowKey, coarser.snapMillis(range.getStart()));
+                synchronized (window.rolledUpSlots) {
+                    window.rolledUpSlots.add(slotKey.getSlot());
+                }
+            } catch (GranularityException e) {
+                throw new AssertionError("Should not occur.");
+            }
+        }
+        removeStaleWindows(slotKey.getShard());
+    }
+
+    /**
+     * Called when this node takes or gives up the lock of shard. Drops the windows of the shard, as the slots rolled
+     * up by this node are not the only ones to have been rolled up anymore.
+     */
+    public void shardOwnershipChanged(int shard) {
+        if (!enabled) {
+            return;
+        }
+        ConcurrentMap<SlotKey, Window> windows = windows(shard);
+        for (SlotKey windowKey : windows.keySet()) {
+            remove(windowKey);
+        }
+    }
+
+    private ConcurrentMap<SlotKey, Window> windows(int shard) {
+        ConcurrentMap<SlotKey, Window> windows = windowsByShard.get(shard);
+        if (windows == null) {
+            ConcurrentMap<SlotKey, Window> created = new ConcurrentHashMap<SlotKey, Window>();
+            windows = windowsByShard.putIfAbsent(shard, created);
+            if (windows == null) {
+                windows = created;
+            }
+        }
+        return windows;
+    }
+
+    private Window getOrCreateWindow(SlotKey windowKey, long start) {
+        ConcurrentMap<SlotKey, Window> windows = windows(windowKey.getShard());
+        Window window = windows.get(windowKey);
+        // slots wrap around, so an old window can have the same key.
+        if (window != null && window.start != start) {
+            windows.remove(windowKey, window);
+            releasePoints(window);
+            window = null;
+        }
+        if (window == null) {
+            Window created = new Window(start);
+            window = windows.putIfAbsent(windowKey, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        window.lastUpdated = System.currentTimeMillis();
+        return window;
+    }
+
+    private void overflow(SlotKey windowKey, Window window) {
+        if (!window.overflowed) {
+            window.overflowed = true;
+            droppedWindows.mark();
+            log.warn("More than {} rollups in memory, {} will be rolled up from the finer column family", maxPoints, windowKey);
+        }
+        releasePoints(window);
+    }
+
+    // a window nobody added to for as long as it spans will not be complete anymore. Only the windows of one shard are
+    // looked at, which are few.
+    private void removeStaleWindows(int shard) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<SlotKey, Window>> it = windows(shard).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<SlotKey, Window> entry = it.next();
+            if (now - entry.getValue().lastUpdated > entry.getKey().getGranularity().milliseconds()) {
+                it.remove();
+                releasePoints(entry.getValue());
+            }
+        }
+    }
+
+    private void remove(SlotKey windowKey) {
+        Window window = windows(windowKey.getShard()).remove(windowKey);
+        if (window != null) {
+            releasePoints(window);
+        }
+    }
+
+    private void releasePoints(Window window) {
+        window.released = true;
+        for (Locator locator : window.points.keySet()) {
+            Points<Rollup> points = window.points.remove(locator);
+            if (points != null) {
+                synchronized (points) {
+                    pointCount.addAndGet(-points.getPoints().size());
+                }
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getPointCount() {
+        return pointCount.get();
+    }
+
+    private static Granularity coarserOrNull(Granularity granularity) {
+        try {
+            return granularity.coarser();
+        } catch (GranularityException e) {
+            return null;
+        }
+    }
+
+    private static Granularity finerOrNull(Granularity granularity) {
+        try {
+            return granularity.finer();
+        } catch (GranularityException e) {
+            return null;
+        }
+    }
+
+    private static class Window {
+        private final long start;
+        private final ConcurrentMap<Locator, Points<Rollup>> points = new ConcurrentHashMap<Locator, Points<Rollup>>();
+        private final Set<Integer> rolledUpSlots = new HashSet<Integer>();
+        private volatile boolean overflowed = false;
+        private volatile boolean released = false;
+        private volatile long lastUpdated;
+
+        private Window(long start) {
+            this.start = start;
+        }
+
+        private boolean isComplete(Granularity granularity) {
+            if (overflowed) {
+                return false;
+            }
+            try {
+                int finerSlots = granularity.finer().numSlots() / granularity.numSlots();
+                synchronized (rolledUpSlots) {
+                    return rolledUpSlots.size() == finerSlots;
+                }
+            } catch (GranularityException e) {
+                return false;
+            }
+        }
+    }
+}
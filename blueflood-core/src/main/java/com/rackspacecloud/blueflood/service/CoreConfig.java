@@ -52,6 +52,28 @@ public enum CoreConfig implements ConfigDefaults {
     MAX_LOCATOR_FETCH_THREADS("2"),
     MAX_ROLLUP_READ_THREADS("20"),
     MAX_ROLLUP_WRITE_THREADS("5"),
+    // Upper bound on slots being rolled up at once, from fetching their locators until their rollups are written.
+    // Locator fetch threads block once it is reached.
+    MAX_SLOTS_IN_FLIGHT("20"),
+    // Upper bound on rollup write requests outstanding against Cassandra (datastax driver only). Rollup write
+    // threads block once it is reached.
+    MAX_ROLLUP_WRITES_IN_FLIGHT("500"),
+
+    // Ingestion nodes can record which locators received data in each (granularity, slot, shard), so that
+    // rollup nodes only roll up the locators that are active in a slot instead of every locator in the shard.
+    // Turn on writes for all ingestion nodes at least a day before turning on reads on the rollup nodes.
+    ACTIVE_LOCATOR_INDEX_WRITES_ENABLED("false"),
+    ACTIVE_LOCATOR_INDEX_READS_ENABLED("false"),
+
+    // Locators written within the last 5 to 10 minutes are not written again. At most this many are remembered at
+    // a time, in about 32 bytes each.
+    RECENT_LOCATORS_MAX_SIZE("1000000"),
+
+    // Write new locators from a queue, in batches, instead of inline with the metrics that brought them in. When the
+    // queue is full, locators are written inline again.
+    ASYNC_LOCATOR_WRITES_ENABLED("false"),
+    ASYNC_LOCATOR_WRITES_BATCH_SIZE("100"),
+    ASYNC_LOCATOR_WRITES_QUEUE_SIZE("100000"),
 
     DISCOVERY_WRITER_MIN_THREADS("5"),
     DISCOVERY_WRITER_MAX_THREADS("10"),
@@ -90,6 +112,19 @@ public enum CoreConfig implements ConfigDefaults {
     SHARD_PUSH_PERIOD("2000"),
     SHARD_PULL_PERIOD("20000"),
 
+    // how many shards the pusher writes at the same time, and whether it leaves out the dirty slots whose state and
+    // timestamp it already pushed.
+    SHARD_PUSH_CONCURRENCY("1"),
+    SHARD_PUSH_UNCHANGED_SKIPPED("false"),
+
+    // Nodes can also log the slot states they push to metrics_state_changes, so that pullers only read the states
+    // written since their last pull instead of the whole metrics_state row of every shard. Pullers still read the
+    // whole row on startup, for newly managed shards, and every SHARD_FULL_PULL_PERIOD milliseconds, which has to
+    // stay under a day. Turn on writes for all nodes before turning on reads.
+    SHARD_STATE_CHANGES_WRITES_ENABLED("false"),
+    SHARD_STATE_CHANGES_READS_ENABLED("false"),
+    SHARD_FULL_PULL_PERIOD("3600000"),
+
     // blueflood uses zookeeper to acquire locks before working on shards
     ZOOKEEPER_CLUSTER("NONE"),
 
@@ -100,6 +135,17 @@ public enum CoreConfig implements ConfigDefaults {
     // 2 min
     SHARD_LOCK_SCAVENGE_INTERVAL_MS("120000"),
     MAX_ZK_LOCKS_TO_ACQUIRE_PER_CYCLE("1"),
+    // 2 min. A node that dies keeps its shard locks until its session expires. When shard locks are balanced
+    // by load and this is not set, it defaults to 10s instead, so the shards of a dead node are taken over quickly.
+    ZOOKEEPER_SESSION_TIMEOUT_MS("120000"),
+
+    // When enabled, rollup nodes publish their load to zookeeper and split the shard locks between them by
+    // load, instead of taking and randomly releasing them. The shards of a node that leaves are taken over
+    // as soon as its session expires.
+    SHARD_LOCK_LOAD_BALANCING_ENABLED("false"),
+    SHARD_LOAD_PUBLISH_INTERVAL_MS("5000"),
+    // how far above or below the average load, as a fraction of it, a node can be before shards are moved.
+    SHARD_LOAD_IMBALANCE("0.25"),
 
     INTERNAL_API_CLUSTER("127.0.0.1:50020,127.0.0.1:50020"),
 
@@ -123,6 +169,19 @@ public enum CoreConfig implements ConfigDefaults {
 
     METRIC_BATCH_SIZE("100"),
 
+    // Group ingested metrics by shard and locator before cutting them into batches, so each batch write touches
+    // fewer Cassandra partitions and slot states. When false, batches follow the order metrics arrived in.
+    METRIC_BATCHES_BY_SHARD("false"),
+
+    // Ingestion can acknowledge metrics once they are synced to a local commit log, instead of waiting on Cassandra.
+    // Logged metrics are written to Cassandra in the background, and replayed from the log after a restart.
+    INGEST_COMMIT_LOG_ENABLED("false"),
+    INGEST_COMMIT_LOG_DIR("/var/lib/blueflood/commitlog"),
+    INGEST_COMMIT_LOG_SEGMENT_SIZE("33554432"),
+    // how many times a logged batch is retried against Cassandra before it is dropped from memory, to be read back
+    // from the commit log a minute later
+    INGEST_COMMIT_LOG_WRITE_RETRIES("5"),
+
     CASSANDRA_REQUEST_TIMEOUT("10000"),
     // set <= 0 to not retry
     CASSANDRA_MAX_RETRIES("5"),
@@ -131,6 +190,10 @@ public enum CoreConfig implements ConfigDefaults {
     // Using legacy separators is deprecated as of 2.0 and will be removed in 3.0
     USE_LEGACY_METRIC_SEPARATOR("false"),
 
+    // How many recently seen locators to keep, so that repeated metric names share one parsed Locator instance.
+    // Set to 0 to disable.
+    LOCATOR_INTERN_CACHE_SIZE("100000"),
+
     ROLLUP_BATCH_MIN_SIZE("5"),
     ROLLUP_BATCH_MAX_SIZE("100"),
 
@@ -143,6 +206,15 @@ public enum CoreConfig implements ConfigDefaults {
     // valid options are: GEOMETRIC, LINEAR, and LESSTHANEQUAL
     GET_BY_POINTS_GRANULARITY_SELECTION("GEOMETRIC"),
 
+    // Query nodes can cache rolled up points of slots that are done rolling up, so repeated queries only read the
+    // latest points from Cassandra. Points are cached in blocks of this many points of a granularity.
+    QUERY_ROLLUP_CACHE_ENABLED("false"),
+    QUERY_ROLLUP_CACHE_MAX_BYTES("268435456"),
+    QUERY_ROLLUP_CACHE_POINTS_PER_BLOCK("24"),
+    // blocks that late data can still be rolled into expire after this long, which bounds how long a re-roll done by
+    // another node is served stale. Older blocks are final and only evicted for space.
+    QUERY_ROLLUP_CACHE_EXPIRATION_MINS("10"),
+
     METADATA_CACHE_PERSISTENCE_ENABLED("false"),
     METADATA_CACHE_PERSISTENCE_PATH("/dev/null"),
     METADATA_CACHE_PERSISTENCE_PERIOD_MINS("10"),
@@ -152,6 +224,15 @@ public enum CoreConfig implements ConfigDefaults {
     ROLLUP_DELAY_MILLIS("300000"),
     SHORT_DELAY_METRICS_ROLLUP_DELAY_MILLIS("300000"),
     LONG_DELAY_METRICS_ROLLUP_WAIT_MILLIS("300000"),
+    // The order scheduled slots are rolled up in: FIFO, PRIORITY (input about to expire first, then first rollups,
+    // finer granularities and newer slots), or the class name of a RollupSchedulingPolicy.
+    ROLLUP_SCHEDULING_POLICY("FIFO"),
+    // Keep the rollups of each slot in memory until the enclosing coarser slot is rolled up, so that rollup is
+    // computed without reading the finer column family back. Falls back to reading it when memory does not have
+    // every finer rollup, e.g. after a restart or a late re-roll.
+    CASCADING_ROLLUPS_ENABLED("false"),
+    // at most this many finer rollups are kept for cascading, across all locators and granularities.
+    CASCADING_ROLLUPS_MAX_POINTS("1000000"),
     STRING_METRICS_DROPPED("false"),
     TENANTIDS_TO_KEEP(""),
     TRACKER_DELAYED_METRICS_MILLIS("300000"),
@@ -165,6 +246,9 @@ public enum CoreConfig implements ConfigDefaults {
     TURN_OFF_RR_MPLOT("false"),
     ROLLUP_ON_READ_REPAIR_THREADS("250"),
     ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD( "5" ),
+    // Read the raw points of an interval being repaired with one FULL read, rather than one read per repaired point.
+    // ROLLUP_ON_READ_REPAIR_SIZE_PER_THREAD then only splits up computing the rollups.
+    ROLLUP_ON_READ_REPAIR_SINGLE_READ("false"),
     ROLLUP_ON_READ_TIMEOUT_IN_SECONDS("10"),
 
     ENUM_VALIDATOR_THREADS("20"),
@@ -16,6 +16,10 @@
 
 package com.rackspacecloud.blueflood.service;
 
+import com.rackspacecloud.blueflood.types.IMetric;
+
+import java.util.Collection;
+
 public interface IngestionContext {
     /**
      * Marks a slot dirty. This is only called on a subset of host environments
@@ -25,4 +29,14 @@ public interface IngestionContext {
      * @param shard shard to be updated. value within [0, 128).
      */
     public void update(long millis, int shard);
+
+    /**
+     * Marks dirty every slot that the given metrics fall into. Equivalent to
+     * calling {@link #update(long, int)} for each metric, except that each
+     * (shard, slot) pair is only updated once, with the latest collection
+     * time seen for it.
+     *
+     * @param metrics a batch of ingested metrics.
+     */
+    public void updateAll(Collection<IMetric> metrics);
 }
@@ -18,6 +18,8 @@ package com.rackspacecloud.blueflood.service;
 
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
@@ -31,7 +33,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * fetches locators for a given slot and feeds a worker queue with rollup work. When those are all done notifies the
@@ -39,14 +43,15 @@ import java.util.concurrent.ThreadPoolExecutor;
   */
 class LocatorFetchRunnable implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(LocatorFetchRunnable.class);
-    private static final int LOCATOR_WAIT_FOR_ALL_SECS = 1000;
     
     private ExecutorService rollupReadExecutor;
     private ThreadPoolExecutor rollupWriteExecutor;
     private ExecutorService enumValidatorExecutor;
+    private Semaphore slotsInFlight;
     private SlotKey parentSlotKey;
     private ScheduleContext scheduleCtx;
     private long serverTime;
+    private boolean useActiveLocatorIndex;
     private static final Timer rollupLocatorExecuteTimer = Metrics.timer(RollupService.class, "Locate and Schedule Rollups for Slot");
 
     private Range parentRange;
@@ -55,10 +60,11 @@ class LocatorFetchRunnable implements Runnable {
                          SlotKey destSlotKey,
                          ExecutorService rollupReadExecutor,
                          ThreadPoolExecutor rollupWriteExecutor,
-                         ExecutorService enumValidatorExecutor) {
+                         ExecutorService enumValidatorExecutor,
+                         Semaphore slotsInFlight) {
 
         initialize(scheduleCtx, destSlotKey, rollupReadExecutor,
-                rollupWriteExecutor, enumValidatorExecutor);
+                rollupWriteExecutor, enumValidatorExecutor, slotsInFlight);
     }
 
     @VisibleForTesting
@@ -66,7 +72,8 @@ class LocatorFetchRunnable implements Runnable {
                            SlotKey destSlotKey,
                            ExecutorService rollupReadExecutor,
                            ThreadPoolExecutor rollupWriteExecutor,
-                           ExecutorService enumValidatorExecutor) {
+                           ExecutorService enumValidatorExecutor,
+                           Semaphore slotsInFlight) {
 
         this.rollupReadExecutor = rollupReadExecutor;
         this.rollupWriteExecutor = rollupWriteExecutor;
@@ -74,7 +81,9 @@ class LocatorFetchRunnable implements Runnable {
         this.scheduleCtx = scheduleCtx;
         this.serverTime = scheduleCtx.getCurrentTimeMillis();
         this.enumValidatorExecutor = enumValidatorExecutor;
+        this.slotsInFlight = slotsInFlight;
         this.parentRange = getGranularity().deriveRange(getParentSlot(), serverTime);
+        this.useActiveLocatorIndex = Configuration.getInstance().getBooleanProperty(CoreConfig.ACTIVE_LOCATOR_INDEX_READS_ENABLED);
     }
 
     protected Granularity getGranularity() { return parentSlotKey.getGranularity(); }
@@ -82,8 +91,6 @@ class LocatorFetchRunnable implements Runnable {
     protected int getShard() { return parentSlotKey.getShard(); }
 
     public void run() {
-        final Timer.Context timerCtx = rollupLocatorExecuteTimer.time();
-
         try {
             getGranularity().finer();
         } catch (Exception ex) {
@@ -94,66 +101,80 @@ class LocatorFetchRunnable implements Runnable {
         if (log.isTraceEnabled())
             log.trace("Getting locators for {} {} @ {}", new Object[]{parentSlotKey, parentRange.toString(), scheduleCtx.getCurrentTimeMillis()});
         // todo: I can see this set becoming a memory hog.  There might be a better way of doing this.
+        // the slot is finished off asynchronously, so this is what keeps a backlog of scheduled slots from piling up
+        // as queued rollups. The permit is given back in finishExecution().
+        slotsInFlight.acquireUninterruptibly();
         long waitStart = System.currentTimeMillis();
         int rollCount = 0;
 
-        final RollupExecutionContext executionContext = createRollupExecutionContext();
-        final RollupBatchWriter rollupBatchWriter = createRollupBatchWriter(executionContext);
+        final RollupExecutionContext executionContext;
+        final RollupBatchWriter rollupBatchWriter;
+        try {
+            executionContext = createRollupExecutionContext();
+            rollupBatchWriter = createRollupBatchWriter(executionContext);
 
-        Set<Locator> locators = getLocators(executionContext);
+            Set<Locator> locators = getLocators(executionContext);
+            scheduleCtx.recordLocatorCount(parentSlotKey.getShard(), locators.size());
 
-        for (Locator locator : locators) {
-            rollCount = processLocator(rollCount, executionContext, rollupBatchWriter, locator);
+            for (Locator locator : locators) {
+                rollCount = processLocator(rollCount, executionContext, rollupBatchWriter, locator);
+            }
+        } catch (RuntimeException ex) {
+            // the slot never gets to the drain, which would have given the permit back. retry it like a failed slot.
+            log.error("Scheduling rollups for " + parentSlotKey + " failed", ex);
+            try {
+                scheduleCtx.pushBackToScheduled(parentSlotKey, false);
+            } finally {
+                slotsInFlight.release();
+            }
+            return;
         }
-        
-        // now wait until ctx is drained. someone needs to be notified.
-        drainExecutionContext(waitStart, rollCount, executionContext, rollupBatchWriter);
 
-        timerCtx.stop();
+        // the slot is finished off by whichever thread completes the last rollup; this one is free to go.
+        drainExecutionContext(waitStart, rollCount, executionContext, rollupBatchWriter);
     }
 
     protected RollupExecutionContext createRollupExecutionContext() {
-        return new RollupExecutionContext(Thread.currentThread());
+        return new RollupExecutionContext();
     }
 
     protected RollupBatchWriter createRollupBatchWriter(RollupExecutionContext executionContext) {
         return new RollupBatchWriter(rollupWriteExecutor, executionContext);
     }
 
-    public void drainExecutionContext(long waitStart, int rollCount, RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter) {
+    public void drainExecutionContext(final long waitStart, final int rollCount, final RollupExecutionContext executionContext, RollupBatchWriter rollupBatchWriter) {
         log.debug("Waiting for rollups to finish for " + parentSlotKey);
-        while (!executionContext.doneReading() || !executionContext.doneWriting()) {
-            if (executionContext.doneReading()) {
-                rollupBatchWriter.drainBatch(); // gets any remaining rollups enqueued for put. should be no-op after being called once
+        Futures.addCallback(executionContext.getCompletion(), new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean result) {
+                if (log.isDebugEnabled())
+                    log.debug("Finished {} rollups for (gran,slot,shard) {} in {}", new Object[] {rollCount, parentSlotKey, System.currentTimeMillis() - waitStart});
+                finishExecution(waitStart, executionContext);
             }
-            try {
-                waitForRollups();
-            } catch (InterruptedException ex) {
-                if (log.isTraceEnabled())
-                    log.trace("Woken wile waiting for rollups to coalesce for {} {}", parentSlotKey);
-            } finally {
-                String verb = executionContext.doneReading() ? "writing" : "reading";
-                log.debug("Still waiting for rollups to finish {} for {} {}", new Object[] {verb, parentSlotKey, System.currentTimeMillis() - waitStart });
-            }
-        }
-        if (log.isDebugEnabled())
-            log.debug("Finished {} rollups for (gran,slot,shard) {} in {}", new Object[] {rollCount, parentSlotKey, System.currentTimeMillis() - waitStart});
-
-        finishExecution(waitStart, executionContext);
-    }
 
-    protected void waitForRollups() throws InterruptedException {
-        Thread.currentThread().sleep(LOCATOR_WAIT_FOR_ALL_SECS * 1000);
+            @Override
+            public void onFailure(Throwable t) {
+                executionContext.markUnsuccessful(t);
+                finishExecution(waitStart, executionContext);
+            }
+        });
+        executionContext.doneScheduling(rollupBatchWriter);
     }
 
     public void finishExecution(long waitStart, RollupExecutionContext executionContext) {
-        if (executionContext.wasSuccessful()) {
-            this.scheduleCtx.clearFromRunning(parentSlotKey);
-            log.info("Successful completion of rollups for (gran,slot,shard) {} in {} ms",
-                    new Object[] {parentSlotKey, System.currentTimeMillis() - waitStart});
-        } else {
-            log.error("Performing BasicRollups for {} failed", parentSlotKey);
-            this.scheduleCtx.pushBackToScheduled(parentSlotKey, false);
+        try {
+            rollupLocatorExecuteTimer.update(System.currentTimeMillis() - waitStart, TimeUnit.MILLISECONDS);
+            if (executionContext.wasSuccessful()) {
+                CascadingRollupStore.getInstance().slotRolledUp(parentSlotKey, parentRange);
+                this.scheduleCtx.clearFromRunning(parentSlotKey);
+                log.info("Successful completion of rollups for (gran,slot,shard) {} in {} ms",
+                        new Object[] {parentSlotKey, System.currentTimeMillis() - waitStart});
+            } else {
+                log.error("Performing BasicRollups for {} failed", parentSlotKey);
+                this.scheduleCtx.pushBackToScheduled(parentSlotKey, false);
+            }
+        } finally {
+            slotsInFlight.release();
         }
     }
 
@@ -187,8 +208,13 @@ class LocatorFetchRunnable implements Runnable {
         Set<Locator> locators = new HashSet<Locator>();
 
         try {
-            // get a list of all locators to rollup for a shard
-            locators.addAll(IOContainer.fromConfig().getLocatorIO().getLocators(getShard()));
+            if (useActiveLocatorIndex) {
+                // get only the locators that received data in this slot
+                locators.addAll(IOContainer.fromConfig().getActiveLocatorIO().getLocators(parentSlotKey));
+            } else {
+                // get a list of all locators to rollup for a shard
+                locators.addAll(IOContainer.fromConfig().getLocatorIO().getLocators(getShard()));
+            }
         } catch (Exception e) {
             executionContext.markUnsuccessful(e);
             log.error("Failed reading locators for slot: " + getParentSlot(), e);
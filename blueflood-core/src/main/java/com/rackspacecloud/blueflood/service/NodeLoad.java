@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.google.common.base.Charsets;
+
+/**
+ * What a rollup node publishes to zookeeper about itself: how many shard locks it holds, and how much rollup work
+ * it has waiting.
+ */
+class NodeLoad {
+    private final int heldShards;
+    private final long load;
+
+    NodeLoad(int heldShards, long load) {
+        this.heldShards = heldShards;
+        this.load = load;
+    }
+
+    int getHeldShards() { return heldShards; }
+    long getLoad() { return load; }
+
+    byte[] toBytes() {
+        return (heldShards + "," + load).getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * @return the load in bytes, or null if they are not a load published by {@link #toBytes()}.
+     */
+    static NodeLoad fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        String[] parts = new String(bytes, Charsets.UTF_8).split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new NodeLoad(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof NodeLoad)) return false;
+        NodeLoad other = (NodeLoad) obj;
+        return heldShards == other.heldShards && load == other.load;
+    }
+
+    @Override
+    public int hashCode() {
+        return heldShards * 31 + (int) (load ^ (load >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{heldShards:%d, load:%d}", heldShards, load);
+    }
+}
@@ -19,6 +19,11 @@ package com.rackspacecloud.blueflood.service;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rackspacecloud.blueflood.cache.RollupBlockCache;
 import com.rackspacecloud.blueflood.io.AbstractMetricsRW;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import org.slf4j.Logger;
@@ -47,18 +52,42 @@ public class RollupBatchWriteRunnable implements Runnable {
 
     @Override
     public void run() {
-        Timer.Context ctx = batchWriteTimer.time();
+        final Timer.Context ctx = batchWriteTimer.time();
+        ListenableFuture<?> written;
         try {
-            metricsRW.insertRollups(writeContexts);
+            written = metricsRW.insertRollupsAsync(writeContexts);
         } catch (Exception e) {
-            LOG.warn("not able to insert rollups", e);
-            executionContext.markUnsuccessful(e);
-        } finally {
-            executionContext.decrementWriteCounter(writeContexts.size());
-            rollupsPerBatch.update(writeContexts.size());
-            rollupsWriteRate.mark(writeContexts.size());
-            RollupService.lastRollupTime.set(System.currentTimeMillis());
-            ctx.stop();
+            written = Futures.immediateFailedFuture(e);
         }
+
+        // the write thread is free once the rollups are sent, the bookkeeping happens when they land. It runs on
+        // whichever thread completes the write, usually the driver's I/O thread, so it must stay short and must not
+        // go through the write executor: that rejects tasks once shut down, and the write counter would never drop.
+        Futures.addCallback(written, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                finish(ctx);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("not able to insert rollups", t);
+                executionContext.markUnsuccessful(t);
+                finish(ctx);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void finish(Timer.Context ctx) {
+        // queries must not keep serving what these rollups replaced.
+        RollupBlockCache blockCache = RollupBlockCache.getInstance();
+        for (SingleRollupWriteContext writeContext : writeContexts) {
+            blockCache.invalidate(writeContext.getLocator(), writeContext.getGranularity(), writeContext.getTimestamp());
+        }
+        executionContext.decrementWriteCounter(writeContexts.size());
+        rollupsPerBatch.update(writeContexts.size());
+        rollupsWriteRate.mark(writeContexts.size());
+        RollupService.lastRollupTime.set(System.currentTimeMillis());
+        ctx.stop();
     }
 }
@@ -1,29 +1,34 @@
 package com.rackspacecloud.blueflood.service;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 // Context of execution for a single shard, representing many rollups of a given granularity.
 public class RollupExecutionContext {
     private final AtomicLong readCounter;
-    private final Thread owner;
     private final AtomicLong writeCounter;
     private final AtomicBoolean successful = new AtomicBoolean(true);
+    private final SettableFuture<Boolean> completion = SettableFuture.create();
+
+    // set once every rollup has been handed out. until then, counters hitting zero mean nothing.
+    private volatile RollupBatchWriter rollupBatchWriter = null;
 
-    public RollupExecutionContext(Thread owner) {
-        this.owner = owner;
+    public RollupExecutionContext() {
         this.readCounter = new AtomicLong(0L);
         this.writeCounter = new AtomicLong(0L);
     }
 
     void decrementReadCounter() {
         readCounter.decrementAndGet();
-        owner.interrupt(); // this is what interrupts that long sleep in LocatorFetchRunnable.
+        checkCompletion();
     }
 
     void decrementWriteCounter(long count) {
         writeCounter.addAndGet((-1) * count);
-        owner.interrupt();
+        checkCompletion();
     }
 
     void incrementReadCounter() {
@@ -49,4 +54,43 @@ public class RollupExecutionContext {
     void markUnsuccessful(Throwable t) {
         successful.set(false);
     }
+
+    /**
+     * Signals that no more rollups will be scheduled against this context. From here on the context drives itself:
+     * whenever reads are done, pending rollups are flushed through the given batch writer, and once the last write
+     * lands the future returned by {@link #getCompletion()} is set to {@link #wasSuccessful()}.
+     */
+    void doneScheduling(RollupBatchWriter rollupBatchWriter) {
+        this.rollupBatchWriter = rollupBatchWriter;
+        checkCompletion();
+    }
+
+    /**
+     * @return a future that completes once every scheduled rollup has been read and written.
+     */
+    ListenableFuture<Boolean> getCompletion() {
+        return completion;
+    }
+
+    private void checkCompletion() {
+        RollupBatchWriter writer = rollupBatchWriter;
+        if (writer == null || !doneReading()) {
+            return;
+        }
+        if (!doneWriting()) {
+            // gets any remaining rollups enqueued for put. no-op once the queue is empty.
+            try {
+                writer.drainBatch();
+            } catch (RuntimeException ex) {
+                // the writes we failed to hand off will never decrement the counter, so give up on the slot now.
+                markUnsuccessful(ex);
+                completion.set(false);
+                return;
+            }
+        }
+        if (doneWriting()) {
+            // set() is a no-op if another thread got here first.
+            completion.set(wasSuccessful());
+        }
+    }
 }
@@ -56,6 +56,7 @@ public class RollupRunnable implements Runnable {
     private static final Meter noPointsToCalculateRollup = Metrics.meter(RollupRunnable.class, "No points to calculate rollup");
     private static HashMap<Granularity, Meter> granToMeters = new HashMap<Granularity, Meter>();
     private ExecutorService enumValidatorExecutor;
+    private final CascadingRollupStore cascadingRollups = CascadingRollupStore.getInstance();
 
     static {
         for (Granularity rollupGranularity : Granularity.rollupGranularities()) {
@@ -130,13 +131,17 @@ public class RollupRunnable implements Runnable {
             // first, get the points.
             AbstractMetricsRW metricsRW;
             try {
-                metricsRW = RollupUtils.getMetricsRWForRollupType(rollupType);
-
-                input = metricsRW.getDataToRollup(
-                        singleRollupReadContext.getLocator(),
-                        rollupType,
-                        singleRollupReadContext.getRange(),
-                        srcCF.getName());
+                // rollups of the finer slots may still be in memory.
+                input = cascadingRollups.getPointsToRollup(rollupLocator, dstGran, singleRollupReadContext.getRange());
+                if (input == null) {
+                    metricsRW = RollupUtils.getMetricsRWForRollupType(rollupType);
+
+                    input = metricsRW.getDataToRollup(
+                            singleRollupReadContext.getLocator(),
+                            rollupType,
+                            singleRollupReadContext.getRange(),
+                            srcCF.getName());
+                }
 
                 if (input.isEmpty()) {
                     LOG.debug(String.format("No points rollup for locator %s", singleRollupReadContext.getLocator()));
@@ -149,8 +154,9 @@ public class RollupRunnable implements Runnable {
             } finally {
                 calcrollupContext.stop();
             }
-            // now enqueue the new rollup for writing.
+            // now enqueue the new rollup for writing, and keep it for rolling up the coarser slot.
             rollupBatchWriter.enqueueRollupForWrite(new SingleRollupWriteContext(rollup, singleRollupReadContext, dstCF));
+            cascadingRollups.add(rollupLocator, dstGran, singleRollupReadContext.getRange().getStart(), rollup);
 
             RollupService.lastRollupTime.set(System.currentTimeMillis());
             //Emit a rollup event to event emitter
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.exceptions.GranularityException;
+import com.rackspacecloud.blueflood.io.CassandraModel;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+
+/**
+ * The built-in {@link RollupSchedulingPolicy}s.
+ */
+public final class RollupSchedulingPolicies {
+    public static final String FIFO = "FIFO";
+    public static final String PRIORITY = "PRIORITY";
+
+    private RollupSchedulingPolicies() {}
+
+    /**
+     * @param name {@link #FIFO}, {@link #PRIORITY}, or the class name of a {@link RollupSchedulingPolicy}.
+     */
+    public static RollupSchedulingPolicy forName(String name) {
+        if (FIFO.equalsIgnoreCase(name)) {
+            return new Fifo();
+        }
+        if (PRIORITY.equalsIgnoreCase(name)) {
+            return new Priority();
+        }
+        try {
+            Class<?> policyClass = RollupSchedulingPolicies.class.getClassLoader().loadClass(name);
+            return (RollupSchedulingPolicy) policyClass.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to load rollup scheduling policy " + name, e);
+        }
+    }
+
+    /**
+     * Rolls up slots in the order they were scheduled.
+     */
+    public static class Fifo implements RollupSchedulingPolicy {
+        @Override
+        public int compare(ScheduledRollup a, ScheduledRollup b) {
+            return compareLongs(a.getSequence(), b.getSequence());
+        }
+    }
+
+    /**
+     * Rolls up, in order:
+     * <ol>
+     *     <li>slots whose input is about to expire, oldest first, since they cannot be rolled up later;</li>
+     *     <li>slots scheduled earlier, in steps of {@link #AGING_STEP_MILLIS}, where each class of slots further
+     *     down this list counts as scheduled one step later;</li>
+     *     <li>first rollups before re-rolls for delayed metrics;</li>
+     *     <li>finer granularities before coarser ones;</li>
+     *     <li>newer slots before older ones;</li>
+     *     <li>shards with fewer locators before shards with more.</li>
+     * </ol>
+     * So after an outage the most recent 5m rollups are caught up on first, and the backlog and the re-rolls are
+     * worked through behind them. Since slots age, coarser rollups and re-rolls still keep up while fresh 5m slots
+     * keep coming in, instead of waiting until their input is about to expire.
+     */
+    public static class Priority implements RollupSchedulingPolicy {
+        // input past this fraction of its TTL is about to expire.
+        private static final double EXPIRING_FRACTION_OF_TTL = 0.75;
+        // how much longer a slot may wait for slots of the class before it; 1440m re-rolls wait about 9 of these.
+        static final long AGING_STEP_MILLIS = 15 * 60 * 1000;
+
+        @Override
+        public int compare(ScheduledRollup a, ScheduledRollup b) {
+            boolean aExpiring = isExpiring(a);
+            boolean bExpiring = isExpiring(b);
+            if (aExpiring != bExpiring) {
+                return aExpiring ? -1 : 1;
+            }
+            if (aExpiring) {
+                int byAge = compareLongs(a.getCollectionTime(), b.getCollectionTime());
+                if (byAge != 0) {
+                    return byAge;
+                }
+            }
+            int byWait = compareLongs(getAgingStep(a), getAgingStep(b));
+            if (byWait != 0) {
+                return byWait;
+            }
+            if (a.isReroll() != b.isReroll()) {
+                return a.isReroll() ? 1 : -1;
+            }
+            int byGranularity = compareLongs(a.getSlotKey().getGranularity().milliseconds(),
+                    b.getSlotKey().getGranularity().milliseconds());
+            if (byGranularity != 0) {
+                return byGranularity;
+            }
+            int byFreshness = compareLongs(b.getCollectionTime(), a.getCollectionTime());
+            if (byFreshness != 0) {
+                return byFreshness;
+            }
+            int byLocators = compareLongs(a.getEstimatedLocatorCount(), b.getEstimatedLocatorCount());
+            if (byLocators != 0) {
+                return byLocators;
+            }
+            return compareLongs(a.getSequence(), b.getSequence());
+        }
+
+        // the step a slot was scheduled in, pushed back one step for each class of slots that goes before it.
+        private static long getAgingStep(ScheduledRollup rollup) {
+            Granularity[] granularities = Granularity.rollupGranularities();
+            int rank = rollup.isReroll() ? granularities.length : 0;
+            for (int i = 0; i < granularities.length; i++) {
+                if (granularities[i] == rollup.getSlotKey().getGranularity()) {
+                    rank += i;
+                }
+            }
+            return (rollup.getScheduledAt() + rank * AGING_STEP_MILLIS) / AGING_STEP_MILLIS;
+        }
+
+        private static boolean isExpiring(ScheduledRollup rollup) {
+            long age = rollup.getScheduledAt() - rollup.getCollectionTime();
+            return age > getInputTtlMillis(rollup.getSlotKey().getGranularity()) * EXPIRING_FRACTION_OF_TTL;
+        }
+
+        // the TTL of the finer data a rollup at granularity is computed from.
+        private static long getInputTtlMillis(Granularity granularity) {
+            try {
+                return CassandraModel.getColumnFamily(BasicRollup.class, granularity.finer()).getDefaultTTL().toMillis();
+            } catch (GranularityException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import java.util.Comparator;
+
+/**
+ * Orders the slots {@link ScheduleContext} hands out for rollup: a slot that compares lower is rolled up first.
+ * Built-in policies are in {@link RollupSchedulingPolicies}; others can be configured by class name through
+ * ROLLUP_SCHEDULING_POLICY, and need a public no-arg constructor.
+ */
+public interface RollupSchedulingPolicy extends Comparator<ScheduledRollup> {
+}
@@ -55,6 +55,9 @@ public class RollupService implements Runnable, RollupServiceMBean {
     private final ThreadPoolExecutor rollupWriteExecutors;
 
     private final ThreadPoolExecutor enumValidatorExecutor;
+    // slots whose locators were fetched but whose rollups are not all written yet.
+    private final Semaphore slotsInFlight = new Semaphore(
+            Configuration.getInstance().getIntegerProperty(CoreConfig.MAX_SLOTS_IN_FLIGHT));
     private long pollerPeriod;
     private final long configRefreshInterval;
 
@@ -169,6 +172,7 @@ public class RollupService implements Runnable, RollupServiceMBean {
 
         rollupReadExecutors = _rollupReadExecutors;
         InstrumentedThreadPoolExecutor.instrument(rollupReadExecutors, "RollupReadsThreadpool");
+        context.setRollupExecutor(rollupReadExecutors);
 
         rollupWriteExecutors = _rollupWriteExecutors;
         InstrumentedThreadPoolExecutor.instrument(rollupWriteExecutors, "RollupWritesThreadpool");
@@ -286,7 +290,7 @@ public class RollupService implements Runnable, RollupServiceMBean {
                                     stamp.getLastRollupTimestamp(), isReroll});
 
                     locatorFetchExecutors.execute(new LocatorFetchRunnable(context, slotKey, rollupReadExecutors,
-                            rollupWriteExecutors, enumValidatorExecutor));
+                            rollupWriteExecutors, enumValidatorExecutor, slotsInFlight));
 
                 } catch (RejectedExecutionException ex) {
                     // puts it back at the top of the list of scheduled slots.  When this happens it means that
@@ -376,6 +380,12 @@ public class RollupService implements Runnable, RollupServiceMBean {
 
     public synchronized boolean getActive() { return active; }
 
+    public synchronized String getSchedulingPolicy() { return context.getSchedulingPolicy(); }
+
+    public synchronized void setSchedulingPolicy(String policy) {
+        context.setSchedulingPolicy(policy);
+    }
+
     public synchronized void setActive(boolean b) {
         active = b;
         if (active && thread != null)
@@ -40,6 +40,9 @@ public interface RollupServiceMBean {
     public boolean getActive();
     public void setActive(boolean b);
 
+    public String getSchedulingPolicy();
+    public void setSchedulingPolicy(String policy);
+
     /* shard management methods  */
     public void addShard(final Integer shard);
     public void removeShard(final Integer shard);
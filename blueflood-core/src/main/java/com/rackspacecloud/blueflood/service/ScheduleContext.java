@@ -25,6 +25,7 @@ import com.google.common.cache.CacheBuilder;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.utils.Clock;
 import com.rackspacecloud.blueflood.utils.DefaultClockImpl;
 import com.rackspacecloud.blueflood.utils.Metrics;
@@ -38,13 +39,20 @@ import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -98,17 +106,19 @@ import java.util.concurrent.TimeUnit;
  * Previous comments, left in case we need them:
  * Keeps track of dirty slots in memory. Operations must be threadsafe.
  *
- * todo: explore using ReadWrite locks (might not make a difference).
- *
  * Each node is responsible for sharded slots (time ranges) of rollups. This
  * class keeps track of the execution of those rollups and the states they are
  * in.
  *
- * When synchronizing multiple collections, do it in this order: scheduled -> running.
+ * The scheduled and running collections are striped by shard and are
+ * concurrent, so the ingestion path ({@link #update(long, int)}) never takes
+ * a lock. Scheduling a slot, and changes to a slot's running state, hold the
+ * monitor of that shard's running map only.
  */
-public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
+public class ScheduleContext implements IngestionContext, ScheduleContextMBean, ShardLoadSource {
     private static final Logger log = LoggerFactory.getLogger(ScheduleContext.class);
     private final Timer markSlotDirtyTimer = Metrics.timer(ScheduleContext.class, "Slot Mark Dirty Duration");
+    private final Timer markBatchDirtyTimer = Metrics.timer(ScheduleContext.class, "Batch Mark Dirty Duration");
 
     private final ShardStateManager shardStateManager;
     private transient long scheduleTime = 0L;
@@ -124,21 +134,43 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
     private final Meter shardOwnershipChanged = Metrics.meter(ScheduleContext.class, "Shard Change Before Running");
 
     /**
-     * these are all the slots that are scheduled to run in no particular order.
-     * the collection is synchronized to control updates.
+     * these are all the slots that are scheduled to run in no particular order,
+     * striped by shard. A slot is scheduled if and only if it is in here.
      */
-    private final Set<SlotKey> scheduledSlots = new HashSet<SlotKey>();
+    private final List<Set<SlotKey>> scheduledSlots = new ArrayList<Set<SlotKey>>(Constants.NUMBER_OF_SHARDS);
 
     /**
-     * same information as {@link #scheduledSlots}, but order is preserved. The
-     * ordered property is only needed for getting the the next scheduled slot,
-     * but most operations are concerned with if a slot is scheduled or not.
-     * When you update one, you must update the other.
+     * the order in which scheduled slots are handed out by {@link #getNextScheduled()},
+     * as decided by the scheduling policy. A slot is added to {@link #scheduledSlots} and
+     * queued here in one step, under the monitor of its shard's running map, which the
+     * poller also takes to claim it. {@link #scheduledSlots} is the source of truth:
+     * entries are never removed when a slot gets descheduled; instead, an entry whose key
+     * is no longer in {@link #scheduledSlots} is skipped when polled. Replaced as a whole
+     * when the policy changes.
      */
-    private final List<SlotKey> orderedScheduledSlots = new ArrayList<SlotKey>();
-    
-    /** slots that are running are not scheduled. */
-    private final Map<SlotKey, Long> runningSlots = new HashMap<SlotKey, Long>();
+    private volatile PriorityBlockingQueue<ScheduledRollup> orderedScheduledSlots;
+    private volatile String schedulingPolicyName;
+    /** only serializes changes of the scheduling policy; scheduling and polling do not take it. */
+    private final Object schedulingPolicyLock = new Object();
+    private final AtomicLong scheduledSlotsTail = new AtomicLong(0L);
+    private final AtomicLong scheduledSlotsHead = new AtomicLong(0L);
+
+    /** the number of locators the last rollup of each shard had to roll up. striped by shard. */
+    private final AtomicIntegerArray locatorCounts = new AtomicIntegerArray(Constants.NUMBER_OF_SHARDS);
+
+    /** the executor rollups queue up on, once their locators were fetched. */
+    private volatile ThreadPoolExecutor rollupExecutor = null;
+
+    /** slots that are running are not scheduled. striped by shard. */
+    private final List<ConcurrentMap<SlotKey, Long>> runningSlots = new ArrayList<ConcurrentMap<SlotKey, Long>>(Constants.NUMBER_OF_SHARDS);
+
+    {
+        for (int i = 0; i < Constants.NUMBER_OF_SHARDS; i++) {
+            scheduledSlots.add(Collections.newSetFromMap(new ConcurrentHashMap<SlotKey, Boolean>()));
+            runningSlots.add(new ConcurrentHashMap<SlotKey, Long>());
+        }
+        setSchedulingPolicy(Configuration.getInstance().getStringProperty(CoreConfig.ROLLUP_SCHEDULING_POLICY));
+    }
 
     /** shard lock manager */
     private final ShardLockManager lockManager;
@@ -156,7 +188,7 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
     public ScheduleContext(long currentTimeMillis, Collection<Integer> managedShards, String zookeeperCluster) {
         this.scheduleTime = currentTimeMillis;
         this.shardStateManager = new ShardStateManager(managedShards, asMillisecondsSinceEpochTicker());
-        ZKShardLockManager lockManager = new ZKShardLockManager(zookeeperCluster, new HashSet<Integer>(shardStateManager.getManagedShards()));
+        ZKShardLockManager lockManager = new ZKShardLockManager(zookeeperCluster, new HashSet<Integer>(shardStateManager.getManagedShards()), this);
         lockManager.init(new TimeValue(5, TimeUnit.SECONDS));
         this.lockManager = lockManager;
         this.clock = new DefaultClockImpl();
@@ -191,9 +223,8 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * {@inheritDoc}
      */
     public void update(long millis, int shard) {
-        // there are two update paths. for managed shards, we must guard the
-        // scheduled and running collections. but for unmanaged shards, we just
-        // let the update happen uncontested.
+        // there are two update paths. for managed shards, we must deschedule
+        // the slot. but for unmanaged shards, we just let the update happen.
         final Timer.Context dirtyTimerCtx = markSlotDirtyTimer.time();
         try {
             if (log.isTraceEnabled()) {
@@ -201,25 +232,63 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
             }
             boolean isManaged = shardStateManager.contains(shard);
             for (Granularity g : Granularity.rollupGranularities()) {
-                ShardStateManager.SlotStateManager slotStateManager = shardStateManager.getSlotStateManager(shard, g);
-                int slot = g.slot(millis);
-
-                if (isManaged) {
-                    synchronized (scheduledSlots) { //put
-                        SlotKey key = SlotKey.of(g, slot, shard);
-                        if (scheduledSlots.remove(key) && log.isDebugEnabled()) {
-                            // don't worry about orderedScheduledSlots
-                            log.debug("descheduled {}.", key);
-                        }
-                    }
+                markSlotDirty(SlotKey.of(g, g.slot(millis), shard), millis, isManaged);
+            }
+        } finally {
+            dirtyTimerCtx.stop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAll(Collection<IMetric> metrics) {
+        final Timer.Context dirtyTimerCtx = markBatchDirtyTimer.time();
+        try {
+            // collapse the batch to the latest collection time per finest slot first. that is one slot computation
+            // per metric; the coarser slots are then derived once per distinct finest slot.
+            Granularity finest = Granularity.rollupGranularities()[0];
+            Map<SlotKey, Long> finestSlots = new HashMap<SlotKey, Long>();
+            for (IMetric metric : metrics) {
+                long millis = metric.getCollectionTime();
+                int shard = metric.getLocator().getShard();
+                putIfLater(finestSlots, SlotKey.of(finest, finest.slot(millis), shard), millis);
+            }
+
+            Map<SlotKey, Long> dirtySlots = new HashMap<SlotKey, Long>();
+            for (Map.Entry<SlotKey, Long> entry : finestSlots.entrySet()) {
+                long millis = entry.getValue();
+                int shard = entry.getKey().getShard();
+                for (Granularity g : Granularity.rollupGranularities()) {
+                    putIfLater(dirtySlots, SlotKey.of(g, g.slot(millis), shard), millis);
                 }
-                slotStateManager.createOrUpdateForSlotAndMillisecond(slot, millis);
+            }
+
+            for (Map.Entry<SlotKey, Long> entry : dirtySlots.entrySet()) {
+                SlotKey key = entry.getKey();
+                markSlotDirty(key, entry.getValue(), shardStateManager.contains(key.getShard()));
             }
         } finally {
             dirtyTimerCtx.stop();
         }
     }
 
+    private static void putIfLater(Map<SlotKey, Long> slotTimes, SlotKey key, long millis) {
+        Long current = slotTimes.get(key);
+        if (current == null || current < millis) {
+            slotTimes.put(key, millis);
+        }
+    }
+
+    private void markSlotDirty(SlotKey key, long millis, boolean isManaged) {
+        if (isManaged && scheduledSlots(key.getShard()).remove(key) && log.isDebugEnabled()) {
+            // don't worry about orderedScheduledSlots
+            log.debug("descheduled {}.", key);
+        }
+        shardStateManager.getSlotStateManager(key.getShard(), key.getGranularity())
+                .createOrUpdateForSlotAndMillisecond(key.getSlot(), millis);
+    }
+
     /**
      * Loop through all slots that are eligible for rollup, at all
      * granularities, in all managed shards. If any are found that are not
@@ -238,31 +307,28 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
 
         for (int shard : shardKeys) {
             for (Granularity g : Granularity.rollupGranularities()) {
-                // sync on map since we do not want anything added to or taken from it while we iterate.
-                synchronized (scheduledSlots) { // read
-                    synchronized (runningSlots) { // read
+                List<Integer> slotsToWorkOn = shardStateManager.getSlotStateManager(shard, g)
+                        .getSlotsEligibleForRollup(now, maxAgeMillis, rollupDelayForMetricsWithShortDelay, rollupWaitForMetricsWithLongDelay);
 
-                        List<Integer> slotsToWorkOn = shardStateManager.getSlotStateManager(shard, g)
-                                .getSlotsEligibleForRollup(now, maxAgeMillis, rollupDelayForMetricsWithShortDelay, rollupWaitForMetricsWithLongDelay);
-
-                        if (slotsToWorkOn.size() == 0) {
-                            continue;
-                        }
-                        if (!canWorkOnShard(shard)) {
-                            continue;
-                        }
+                if (slotsToWorkOn.size() == 0) {
+                    continue;
+                }
+                if (!canWorkOnShard(shard)) {
+                    continue;
+                }
 
-                        for (Integer slot : slotsToWorkOn) {
-                            SlotKey slotKey = SlotKey.of(g, slot, shard);
-                            if (areChildKeysOrSelfKeyScheduledOrRunning(slotKey)) {
-                                continue;
-                            }
-                            SlotKey key = SlotKey.of(g, slot, shard);
-                            scheduledSlots.add(key);
-                            orderedScheduledSlots.add(key);
-                            recentlyScheduledShards.put(shard, scheduleTime);
+                for (Integer slot : slotsToWorkOn) {
+                    SlotKey slotKey = SlotKey.of(g, slot, shard);
+                    if (areChildKeysOrSelfKeyScheduledOrRunning(slotKey)) {
+                        continue;
+                    }
+                    ScheduledRollup rollup = newScheduledRollup(slotKey, scheduledSlotsTail.incrementAndGet());
+                    synchronized (runningSlots(shard)) {
+                        if (scheduledSlots(shard).add(slotKey)) {
+                            addToOrderedScheduledSlots(rollup);
                         }
                     }
+                    recentlyScheduledShards.put(shard, scheduleTime);
                 }
             }
         }
@@ -272,19 +338,23 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
         // if any ineligible (children and self) keys are running or scheduled to run, we shouldn't work on this.
         Collection<SlotKey> ineligibleKeys = slotKey.getChildrenKeys();
 
-        if (runningSlots.keySet().contains(slotKey)) {
+        // children live in the same shard as their parent.
+        Map<SlotKey, Long> running = runningSlots(slotKey.getShard());
+        Set<SlotKey> scheduled = scheduledSlots(slotKey.getShard());
+
+        if (running.containsKey(slotKey)) {
             return true;
         }
-        if (scheduledSlots.contains(slotKey)) {
+        if (scheduled.contains(slotKey)) {
             return true;
         }
 
         // if any ineligible keys are running or scheduled to run, do not schedule this key.
         for (SlotKey childrenKey : ineligibleKeys) {
-            if (runningSlots.keySet().contains(childrenKey)) {
+            if (running.containsKey(childrenKey)) {
                 return true;
             }
-            if (scheduledSlots.contains(childrenKey)) {
+            if (scheduled.contains(childrenKey)) {
                 return true;
             }
         }
@@ -306,29 +376,34 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      *      1) it resets update tracking for that slot
      *      2) it adds the key to the set of running rollups.
      *
-     * @return
+     * @return the key, or null if nothing is left to roll up in a shard this
+     * node still owns, which includes slots descheduled by an update since
+     * {@link #hasScheduled()} was called.
      */
     @VisibleForTesting
     SlotKey getNextScheduled() {
-        synchronized (scheduledSlots) {
-            if (scheduledSlots.size() == 0)
-                return null;
-            synchronized (runningSlots) {
-                SlotKey key = orderedScheduledSlots.remove(0);
-                int slot = key.getSlot();
-                Granularity gran = key.getGranularity();
-                int shard = key.getShard();
-
+        ScheduledRollup next;
+        while ((next = orderedScheduledSlots.poll()) != null) {
+            SlotKey key = next.getSlotKey();
+            int slot = key.getSlot();
+            Granularity gran = key.getGranularity();
+            int shard = key.getShard();
+
+            ConcurrentMap<SlotKey, Long> running = runningSlots(shard);
+            synchronized (running) {
                 // notice how we change the state, but the timestamp remained
                 // the same. this is important.  When the state is evaluated
                 // (i.e., in Reader.getShardState()) we need to realize that
                 // when timestamps are the same (this will happen), that a
                 // remove always wins during the coalesce.
-                scheduledSlots.remove(key);
+                if (!scheduledSlots(shard).remove(key)) {
+                    // descheduled by an update since it was queued, or a duplicate entry of a slot that was pushed back.
+                    continue;
+                }
 
                 if (canWorkOnShard(shard)) {
                     UpdateStamp stamp = shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Running);
-                    runningSlots.put(key, stamp.getTimestamp());
+                    running.put(key, stamp.getTimestamp());
                     return key;
                 } else {
                     shardOwnershipChanged.mark();
@@ -336,36 +411,97 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
                 }
             }
         }
+        return null;
     }
 
     /**
      * Take the given slot out of the running group, and put it back into the
      * scheduled group. If {@code rescheduleImmediately} is true, the slot will
      * be the next slot returned by a call to {@link #getNextScheduled()}. If
-     * {@code rescheduleImmediately} is false, then the given slot will go to
-     * the end of the line, as when it was first scheduled by
-     * {@link #scheduleEligibleSlots(long, long, long)}.
+     * {@code rescheduleImmediately} is false, then the given slot is queued
+     * again as when it was first scheduled by
+     * {@link #scheduleEligibleSlots(long, long, long)}, which is the end of the
+     * line under the FIFO scheduling policy.
      *
      * @param key
      * @param rescheduleImmediately
      */
     void pushBackToScheduled(SlotKey key, boolean rescheduleImmediately) {
-        synchronized (scheduledSlots) {
-            synchronized (runningSlots) {
-                int slot = key.getSlot();
-                Granularity gran = key.getGranularity();
-                int shard = key.getShard();
-                // no need to set dirty/clean here.
-                shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Active);
-                scheduledSlots.add(key);
-                log.debug("pushBackToScheduled -> added to scheduledSlots: " + key + " size:" + scheduledSlots.size());
-                if (rescheduleImmediately) {
-                    orderedScheduledSlots.add(0, key);
-                } else {
-                    orderedScheduledSlots.add(key);
+        int slot = key.getSlot();
+        Granularity gran = key.getGranularity();
+        int shard = key.getShard();
+        Set<SlotKey> scheduled = scheduledSlots(shard);
+        ScheduledRollup rollup = newScheduledRollup(key, rescheduleImmediately
+                ? scheduledSlotsHead.decrementAndGet()
+                : scheduledSlotsTail.incrementAndGet());
+        synchronized (runningSlots(shard)) {
+            // no need to set dirty/clean here.
+            shardStateManager.getSlotStateManager(shard, gran).getAndSetState(slot, UpdateStamp.State.Active);
+            scheduled.add(key);
+            addToOrderedScheduledSlots(rollup);
+        }
+        log.debug("pushBackToScheduled -> added to scheduledSlots: " + key + " size:" + scheduled.size());
+    }
+
+    /**
+     * @param sequence the order the slot was scheduled in. Slots pushed back for immediate
+     *                 rescheduling get negative sequences, and go ahead of everything else.
+     */
+    private ScheduledRollup newScheduledRollup(SlotKey key, long sequence) {
+        UpdateStamp stamp = shardStateManager.getUpdateStamp(key);
+        long collectionTime = stamp == null ? scheduleTime : stamp.getTimestamp();
+        boolean reroll = stamp != null && stamp.getLastRollupTimestamp() > 0;
+        return new ScheduledRollup(key, sequence, collectionTime, scheduleTime, reroll,
+                locatorCounts.get(key.getShard() % Constants.NUMBER_OF_SHARDS));
+    }
+
+    // callers hold the monitor of the slot's shard's running map.
+    private void addToOrderedScheduledSlots(ScheduledRollup rollup) {
+        PriorityBlockingQueue<ScheduledRollup> queue = orderedScheduledSlots;
+        queue.add(rollup);
+        if (queue != orderedScheduledSlots) {
+            // the policy changed, and the old queue may already have been moved over without this one. an entry
+            // polled from either queue is only handed out if its slot is still scheduled, so it is handed out once.
+            queue.drainTo(orderedScheduledSlots);
+        }
+    }
+
+    String getSchedulingPolicy() {
+        return schedulingPolicyName;
+    }
+
+    /**
+     * Changes the order in which the slots already scheduled, and those scheduled from now on,
+     * are handed out.
+     *
+     * @param name see {@link RollupSchedulingPolicies#forName(String)}
+     */
+    void setSchedulingPolicy(String name) {
+        final RollupSchedulingPolicy policy = RollupSchedulingPolicies.forName(name);
+        PriorityBlockingQueue<ScheduledRollup> queue = new PriorityBlockingQueue<ScheduledRollup>(11, new Comparator<ScheduledRollup>() {
+            @Override
+            public int compare(ScheduledRollup a, ScheduledRollup b) {
+                boolean aImmediate = a.getSequence() < 0;
+                boolean bImmediate = b.getSequence() < 0;
+                if (aImmediate != bImmediate) {
+                    return aImmediate ? -1 : 1;
+                }
+                if (aImmediate) {
+                    // the latest pushed back goes first.
+                    return Long.valueOf(a.getSequence()).compareTo(b.getSequence());
                 }
+                return policy.compare(a, b);
+            }
+        });
+        synchronized (schedulingPolicyLock) {
+            PriorityBlockingQueue<ScheduledRollup> previous = orderedScheduledSlots;
+            orderedScheduledSlots = queue;
+            schedulingPolicyName = name;
+            if (previous != null) {
+                previous.drainTo(queue);
             }
         }
+        log.info("Scheduling rollups with the {} policy", name);
     }
 
     /**
@@ -375,27 +511,24 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * @param slotKey
      */
     void clearFromRunning(SlotKey slotKey) {
-        synchronized (runningSlots) {
-            runningSlots.remove(slotKey);
-            UpdateStamp stamp = shardStateManager.getUpdateStamp(slotKey);
+        ConcurrentMap<SlotKey, Long> running = runningSlots(slotKey.getShard());
+        synchronized (running) {
+            running.remove(slotKey);
             shardStateManager.setAllCoarserSlotsDirtyForSlot(slotKey);
 
             //When state gets set to "X", before it got persisted, it might get scheduled for rollup
             //again, if we get delayed metrics. To prevent this we temporarily set last rollup time with current
             //time. This value wont get persisted.
             long currentTimeInMillis = clock.now().getMillis();
-            stamp.setLastRollupTimestamp(currentTimeInMillis);
-            log.debug("SlotKey {} is marked in memory with last rollup time as {}", slotKey, currentTimeInMillis);
 
             // Update the stamp to Rolled state if and only if the current state
             // is running. If the current state is active, it means we received
             // a delayed put which toggled the status to Active.
-            if (stamp.getState() == UpdateStamp.State.Running) {
-                stamp.setState(UpdateStamp.State.Rolled);
-                // Note: Rollup state will be updated to the last ACTIVE
-                // timestamp which caused rollup process to kick in.
-                stamp.setDirty(true);
-            }
+            // Note: Rollup state will be updated to the last ACTIVE
+            // timestamp which caused rollup process to kick in.
+            shardStateManager.getSlotStateManager(slotKey.getShard(), slotKey.getGranularity())
+                    .rolledUp(slotKey.getSlot(), currentTimeInMillis);
+            log.debug("SlotKey {} is marked in memory with last rollup time as {}", slotKey, currentTimeInMillis);
         }
     }
 
@@ -410,9 +543,11 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      * returns the number of scheduled rollups.
      */
     int getScheduledCount() {
-        synchronized (scheduledSlots) {
-            return scheduledSlots.size();
+        int count = 0;
+        for (Set<SlotKey> scheduled : scheduledSlots) {
+            count += scheduled.size();
         }
+        return count;
     }
 
     /**
@@ -420,9 +555,41 @@ public class ScheduleContext implements IngestionContext, ScheduleContextMBean {
      */
     @VisibleForTesting
     int getRunningCount() {
-        synchronized (runningSlots) {
-            return runningSlots.size();
+        int count = 0;
+        for (Map<SlotKey, Long> running : runningSlots) {
+            count += running.size();
         }
+        return count;
+    }
+
+    /**
+     * Estimates the work waiting in shard as its scheduled slots, weighted by the locators its last rollup had.
+     */
+    @Override
+    public long getShardLoad(int shard) {
+        return (long) scheduledSlots(shard).size() * Math.max(1, locatorCounts.get(shard % Constants.NUMBER_OF_SHARDS));
+    }
+
+    @Override
+    public int getQueuedRollupCount() {
+        ThreadPoolExecutor executor = rollupExecutor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    void recordLocatorCount(int shard, int locatorCount) {
+        locatorCounts.set(shard % Constants.NUMBER_OF_SHARDS, locatorCount);
+    }
+
+    void setRollupExecutor(ThreadPoolExecutor rollupExecutor) {
+        this.rollupExecutor = rollupExecutor;
+    }
+
+    private Set<SlotKey> scheduledSlots(int shard) {
+        return scheduledSlots.get(shard % Constants.NUMBER_OF_SHARDS);
+    }
+
+    private ConcurrentMap<SlotKey, Long> runningSlots(int shard) {
+        return runningSlots.get(shard % Constants.NUMBER_OF_SHARDS);
     }
 
     public Map<Integer, UpdateStamp> getSlotStamps(Granularity gran, int shard) {
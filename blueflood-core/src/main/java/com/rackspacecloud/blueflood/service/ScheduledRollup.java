@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+
+/**
+ * A slot waiting to be rolled up, with what a {@link RollupSchedulingPolicy} needs to know to order it.
+ */
+public class ScheduledRollup {
+    private final SlotKey slotKey;
+    private final long sequence;
+    private final long collectionTime;
+    private final long scheduledAt;
+    private final boolean reroll;
+    private final int estimatedLocatorCount;
+
+    /**
+     * @param sequence the order in which slots were scheduled.
+     * @param collectionTime the latest collection time of the metrics in the slot.
+     * @param scheduledAt the time the slot was scheduled.
+     * @param reroll true if the slot was rolled up before, and is rolled up again because of delayed metrics.
+     * @param estimatedLocatorCount the number of locators the last rollup of the shard had.
+     */
+    public ScheduledRollup(SlotKey slotKey, long sequence, long collectionTime, long scheduledAt, boolean reroll, int estimatedLocatorCount) {
+        this.slotKey = slotKey;
+        this.sequence = sequence;
+        this.collectionTime = collectionTime;
+        this.scheduledAt = scheduledAt;
+        this.reroll = reroll;
+        this.estimatedLocatorCount = estimatedLocatorCount;
+    }
+
+    public SlotKey getSlotKey() { return slotKey; }
+    public long getSequence() { return sequence; }
+    public long getCollectionTime() { return collectionTime; }
+    public long getScheduledAt() { return scheduledAt; }
+    public boolean isReroll() { return reroll; }
+    public int getEstimatedLocatorCount() { return estimatedLocatorCount; }
+
+    @Override
+    public String toString() {
+        return String.format("{slotKey:%s, sequence:%d, collectionTime:%d, reroll:%s, locators:%d}",
+                slotKey, sequence, collectionTime, reroll, estimatedLocatorCount);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides, from the loads the rollup nodes publish, which shard locks a node should take or give up.
+ *
+ * Every node aims for its fair share of the shards, i.e. the shards divided by the live nodes, rounded up. A node
+ * whose load is more than imbalance above the average gives up its busiest shard if that shard would not just make
+ * another node the busiest, and a node whose load is more than imbalance below the average takes one shard beyond
+ * its fair share to make room for it. Once the busy shard moved, the node that took it gives up its quietest shard
+ * instead, so the shard counts stay even.
+ */
+class ShardLoadBalancer {
+    private final float imbalance;
+
+    ShardLoadBalancer(float imbalance) {
+        this.imbalance = imbalance;
+    }
+
+    static int fairShare(int shards, int nodes) {
+        return nodes <= 0 ? shards : (shards + nodes - 1) / nodes;
+    }
+
+    /**
+     * @param shards the number of shards the nodes split between them.
+     * @param self the load of this node.
+     * @param others the loads published by the other live nodes.
+     * @return how many more shard locks this node should try to take.
+     */
+    int locksToAcquire(int shards, NodeLoad self, Collection<NodeLoad> others) {
+        int fairShare = fairShare(shards, others.size() + 1);
+        if (self.getHeldShards() < fairShare) {
+            return fairShare - self.getHeldShards();
+        }
+        if (self.getHeldShards() == fairShare && isUnderloaded(self, averageLoad(self, others))) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * @param shards the number of shards the nodes split between them.
+     * @param self the load of this node.
+     * @param others the loads published by the other live nodes.
+     * @param heldShardLoads the load of each shard this node holds.
+     * @return the shards this node should release, if any.
+     */
+    List<Integer> shardsToRelease(int shards, NodeLoad self, Collection<NodeLoad> others, Map<Integer, Long> heldShardLoads) {
+        List<Integer> held = new ArrayList<Integer>(heldShardLoads.keySet());
+        Collections.sort(held, byLoad(heldShardLoads));
+
+        int fairShare = fairShare(shards, others.size() + 1);
+        double average = averageLoad(self, others);
+        int excess = held.size() - fairShare;
+        if (isUnderloaded(self, average)) {
+            // keeps the shard it took to make room for a busy one.
+            excess--;
+        }
+        if (excess > 0) {
+            return new ArrayList<Integer>(held.subList(0, excess));
+        }
+
+        if (excess == 0 && held.size() > 1 && isOverloaded(self, average)) {
+            NodeLoad quietest = null;
+            for (NodeLoad other : others) {
+                if (isUnderloaded(other, average) && (quietest == null || other.getLoad() < quietest.getLoad())) {
+                    quietest = other;
+                }
+            }
+            int busiest = held.get(held.size() - 1);
+            long busiestLoad = heldShardLoads.get(busiest);
+            if (quietest != null && busiestLoad > 0 && quietest.getLoad() + busiestLoad < self.getLoad()) {
+                return Collections.singletonList(busiest);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private boolean isOverloaded(NodeLoad node, double average) {
+        return node.getLoad() > average * (1 + imbalance);
+    }
+
+    private boolean isUnderloaded(NodeLoad node, double average) {
+        return node.getLoad() < average * (1 - imbalance);
+    }
+
+    private static double averageLoad(NodeLoad self, Collection<NodeLoad> others) {
+        double total = self.getLoad();
+        for (NodeLoad other : others) {
+            total += other.getLoad();
+        }
+        return total / (others.size() + 1);
+    }
+
+    private static Comparator<Integer> byLoad(final Map<Integer, Long> shardLoads) {
+        return new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byLoad = shardLoads.get(a).compareTo(shardLoads.get(b));
+                return byLoad != 0 ? byLoad : a.compareTo(b);
+            }
+        };
+    }
+}
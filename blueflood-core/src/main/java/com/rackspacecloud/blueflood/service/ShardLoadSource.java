@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+/**
+ * The rollup work a node has waiting, for {@link ZKShardLockManager} to split shards between nodes by load.
+ */
+interface ShardLoadSource {
+
+    /**
+     * @return an estimate of the rollup work waiting in shard.
+     */
+    long getShardLoad(int shard);
+
+    /**
+     * @return the number of rollups queued on this node, regardless of shard.
+     */
+    int getQueuedRollupCount();
+}
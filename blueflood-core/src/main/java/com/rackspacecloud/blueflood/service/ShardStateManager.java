@@ -32,18 +32,22 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class ShardStateManager {
     private static final Logger log = LoggerFactory.getLogger(ShardStateManager.class);
     private static final Set<Integer> ALL_SHARDS = new HashSet<Integer>(Util.parseShards("ALL"));
     final Set<Integer> shards; // Managed shards
-    final Map<Integer, ShardToGranularityMap> shardToGranularityStates = new HashMap<Integer, ShardToGranularityMap>();
+    // only for the shards this node manages or ingests into, see getSlotStateManager.
+    final ConcurrentMap<Integer, ShardToGranularityMap> shardToGranularityStates = new ConcurrentHashMap<Integer, ShardToGranularityMap>();
     private final Ticker serverTimeMillisecondTicker;
     private static final long millisInADay = 24 * 60 * 60 * 1000;
 
     private static final Histogram timeSinceUpdate = Metrics.histogram(RollupService.class, "Shard Slot Time Elapsed scheduleEligibleSlots");
     // todo: CM_SPECIFIC verify changing metric class name doesn't break things.
     private static final Meter updateStampMeter = Metrics.meter(ShardStateManager.class, "Shard Slot Update Meter");
+    private static final Meter unchangedSlotsSkipped = Metrics.meter(ShardStateManager.class, "Unchanged Slots Not Pushed");
     private final Meter parentBeforeChild = Metrics.meter(RollupService.class, "Parent slot executed before child");
     private static final Map<Granularity, Meter> granToReRollMeters = new HashMap<Granularity, Meter>();
     private static final Map<Granularity, Meter> reRollForShortDelayMetricsMeters = new HashMap<Granularity, Meter>();
@@ -57,6 +61,12 @@ public class ShardStateManager {
 
     private final Clock clock;
 
+    private static final UpdateStamp.State[] STATES = UpdateStamp.State.values();
+    // the state of a slot that was not pushed, or may have been overwritten since.
+    private static final byte NOT_PUSHED = -1;
+    // slots of a SlotStateManager share this many locks, see SlotStateManager.lockFor.
+    private static final int SLOT_LOCK_STRIPES = 16;
+
     static {
         for (Granularity rollupGranularity : Granularity.rollupGranularities()) {
             granToReRollMeters.put(rollupGranularity, Metrics.meter(RollupService.class, String.format("%s Re-rolling up because of delayed metrics", rollupGranularity.shortName())));
@@ -73,11 +83,11 @@ public class ShardStateManager {
 
     protected ShardStateManager(Collection<Integer> shards, Ticker ticker, Clock clock) {
         this.shards = new HashSet<Integer>(shards);
-        for (Integer shard : ALL_SHARDS) { // Why not just do this for managed shards?
-            shardToGranularityStates.put(shard, new ShardToGranularityMap(shard));
-        }
         this.serverTimeMillisecondTicker = ticker;
         this.clock = clock;
+        for (Integer shard : this.shards) {
+            getShardState(shard);
+        }
     }
 
     protected Collection<Integer> getManagedShards() {
@@ -101,22 +111,55 @@ public class ShardStateManager {
     }
 
     public SlotStateManager getSlotStateManager(int shard, Granularity granularity) {
-        return shardToGranularityStates.get(shard).granularityToSlots.get(granularity);
+        return getShardState(shard).granularityToSlots.get(granularity);
+    }
+
+    private ShardToGranularityMap getShardState(int shard) {
+        ShardToGranularityMap shardState = shardToGranularityStates.get(shard);
+        if (shardState == null) {
+            if (!ALL_SHARDS.contains(shard)) {
+                throw new IllegalArgumentException("Invalid shard: " + shard);
+            }
+            ShardToGranularityMap created = new ShardToGranularityMap(shard);
+            shardState = shardToGranularityStates.putIfAbsent(shard, created);
+            if (shardState == null) {
+                shardState = created;
+            }
+        }
+        return shardState;
     }
 
     protected UpdateStamp getUpdateStamp(SlotKey slotKey) {
         SlotStateManager slotStateManager = this.getSlotStateManager(slotKey.getShard(), slotKey.getGranularity());
-        UpdateStamp stamp = slotStateManager.slotToUpdateStampMap.get(slotKey.getSlot());
-        return stamp;
-
+        return slotStateManager.getStamp(slotKey.getSlot());
     }
 
     // Side effect: mark dirty slots as clean
     protected Map<Granularity, Map<Integer, UpdateStamp>> getDirtySlotsToPersist(int shard) {
+        return getDirtySlotsToPersist(shard, false);
+    }
+
+    /**
+     * Like {@link #getDirtySlotsToPersist(int)}, but leaves out the dirty slots whose state and timestamp are the
+     * ones last pushed, see {@link #slotsPersisted}. The stamps returned are copies, so what gets persisted is
+     * exactly what is passed back to slotsPersisted.
+     */
+    protected Map<Granularity, Map<Integer, UpdateStamp>> getChangedSlotsToPersist(int shard) {
+        return getDirtySlotsToPersist(shard, true);
+    }
+
+    private Map<Granularity, Map<Integer, UpdateStamp>> getDirtySlotsToPersist(int shard, boolean changedOnly) {
+        if (!shardToGranularityStates.containsKey(shard)) {
+            // nothing was ever updated in this shard.
+            return null;
+        }
         Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = new HashMap<Granularity, Map<Integer, UpdateStamp>>();
         int numUpdates = 0;
         for (Granularity gran : Granularity.rollupGranularities()) {
-            Map<Integer, UpdateStamp> dirty = getSlotStateManager(shard, gran).getDirtySlotStampsAndMarkClean();
+            SlotStateManager slotStateManager = getSlotStateManager(shard, gran);
+            Map<Integer, UpdateStamp> dirty = changedOnly
+                    ? slotStateManager.getChangedSlotStampsAndMarkClean()
+                    : slotStateManager.getDirtySlotStampsAndMarkClean();
             slotTimes.put(gran, dirty);
 
             if (dirty.size() > 0) {
@@ -133,6 +176,18 @@ public class ShardStateManager {
         return null;
     }
 
+    /**
+     * Records that the stamps returned by {@link #getChangedSlotsToPersist} for shard were persisted.
+     */
+    protected void slotsPersisted(int shard, Map<Granularity, Map<Integer, UpdateStamp>> slotTimes) {
+        for (Map.Entry<Granularity, Map<Integer, UpdateStamp>> granEntry : slotTimes.entrySet()) {
+            SlotStateManager slotStateManager = getSlotStateManager(shard, granEntry.getKey());
+            for (Map.Entry<Integer, UpdateStamp> entry : granEntry.getValue().entrySet()) {
+                slotStateManager.markPushed(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     public void updateSlotOnRead(int shard, SlotState slotState) {
         getSlotStateManager(shard, slotState.getGranularity()).updateSlotOnRead(slotState);
     }
@@ -146,26 +201,17 @@ public class ShardStateManager {
             try {
                 coarserGran = coarserGran.coarser();
                 coarserSlot = coarserGran.slotFromFinerSlot(coarserSlot);
-                ConcurrentMap<Integer, UpdateStamp> updateStampsBySlotMap = getSlotStateManager(slotKey.getShard(), coarserGran).slotToUpdateStampMap;
-                UpdateStamp coarseSlotStamp = updateStampsBySlotMap.get(coarserSlot);
+                SlotStateManager coarserSlotStateManager = getSlotStateManager(slotKey.getShard(), coarserGran);
+                UpdateStamp.State coarseSlotState = coarserSlotStateManager.activate(coarserSlot, serverTimeMillisecondTicker.read());
 
-                if (coarseSlotStamp == null) {
+                if (coarseSlotState == null) {
                     log.debug("No stamp for coarser slot: {}; supplied slot: {}",
                             SlotKey.of(coarserGran, coarserSlot, slotKey.getShard()),
                             slotKey);
-                    updateStampsBySlotMap.putIfAbsent(coarserSlot,
-                            new UpdateStamp(serverTimeMillisecondTicker.read(), UpdateStamp.State.Active, true));
-                    continue;
-                }
-
-                UpdateStamp.State coarseSlotState = coarseSlotStamp.getState();
-                if (coarseSlotState != UpdateStamp.State.Active) {
+                } else if (coarseSlotState != UpdateStamp.State.Active) {
                     parentBeforeChild.mark();
-                    log.debug("Coarser slot not in active state when finer slot {} just got rolled up. Marking coarser slot {} dirty.",
+                    log.debug("Coarser slot not in active state when finer slot {} just got rolled up. Marked coarser slot {} dirty.",
                             slotKey, SlotKey.of(coarserGran, coarserSlot, slotKey.getShard()));
-                    coarseSlotStamp.setState(UpdateStamp.State.Active);
-                    coarseSlotStamp.setDirty(true);
-                    coarseSlotStamp.setTimestamp(serverTimeMillisecondTicker.read());
                 }
             } catch (GranularityException ex) {
                 done = true;
@@ -186,15 +232,134 @@ public class ShardStateManager {
         }
     }
 
+    /**
+     * The state of every slot of one granularity in one shard, in arrays indexed by slot, so scheduling and pushing
+     * state scan a few primitive arrays and bitsets instead of walking a map of boxed slots to stamps.
+     *
+     * The {@link UpdateStamp} handed out for a slot reads and writes these arrays, and is the same instance every
+     * time. Slots that were never updated have no stamp.
+     *
+     * The values of a slot are only read and written while holding {@link #lockFor(int)}, so ingestion, scheduling
+     * and pushing threads see each other's writes, and see all the values of an update or none. The present and dirty
+     * bits can be scanned without the lock, but are also only changed while holding it.
+     */
     protected class SlotStateManager {
         private final int shard;
         final Granularity granularity;
-        final ConcurrentMap<Integer, UpdateStamp> slotToUpdateStampMap;
+
+        private final long[] timestamps;
+        private final long[] lastRollupTimestamps;
+        private final long[] lastIngestTimestamps;
+        private final byte[] states;
+        // the state and timestamp each slot was last pushed with, see getChangedSlotStampsAndMarkClean. Guarded by
+        // lockFor(slot) like the rest of the slot's values, so a reset by updateSlotOnRead is never lost.
+        private final long[] pushedTimestamps;
+        private final byte[] pushedStates;
+        // slots handed out by getChangedSlotStampsAndMarkClean whose push was not recorded or invalidated yet.
+        private final SlotBits pushing;
+        private final SlotBits present;
+        private final SlotBits dirty;
+        private final AtomicReferenceArray<UpdateStamp> stamps;
+        private final Object[] slotLocks = new Object[SLOT_LOCK_STRIPES];
 
         protected SlotStateManager(int shard, Granularity granularity) {
             this.shard = shard;
             this.granularity = granularity;
-            slotToUpdateStampMap = new ConcurrentHashMap<Integer, UpdateStamp>(granularity.numSlots());
+            int numSlots = granularity.numSlots();
+            timestamps = new long[numSlots];
+            lastRollupTimestamps = new long[numSlots];
+            lastIngestTimestamps = new long[numSlots];
+            states = new byte[numSlots];
+            pushedTimestamps = new long[numSlots];
+            pushedStates = new byte[numSlots];
+            Arrays.fill(pushedStates, NOT_PUSHED);
+            pushing = new SlotBits(numSlots);
+            present = new SlotBits(numSlots);
+            dirty = new SlotBits(numSlots);
+            stamps = new AtomicReferenceArray<UpdateStamp>(numSlots);
+            for (int i = 0; i < slotLocks.length; i++) {
+                slotLocks[i] = new Object();
+            }
+        }
+
+        private Object lockFor(int slot) {
+            return slotLocks[slot % SLOT_LOCK_STRIPES];
+        }
+
+        /**
+         * @return the stamp of slot, or null if the slot was never updated.
+         */
+        protected UpdateStamp getStamp(int slot) {
+            if (!present.get(slot)) {
+                return null;
+            }
+            UpdateStamp stamp = stamps.get(slot);
+            if (stamp == null) {
+                stamps.compareAndSet(slot, null, new SlotStamp(slot));
+                stamp = stamps.get(slot);
+            }
+            return stamp;
+        }
+
+        private void put(int slot, long timestamp, UpdateStamp.State state, boolean isDirty, long lastRollupTimestamp, long lastIngestTimestamp) {
+            synchronized (lockFor(slot)) {
+                timestamps[slot] = timestamp;
+                states[slot] = (byte) state.ordinal();
+                lastRollupTimestamps[slot] = lastRollupTimestamp;
+                lastIngestTimestamps[slot] = lastIngestTimestamp;
+                // after the values, so the slot is never seen without them, and before it can be seen as dirty.
+                present.set(slot, true);
+                dirty.set(slot, isDirty);
+            }
+        }
+
+        protected void putIfAbsent(int slot, long timestamp, UpdateStamp.State state, boolean isDirty, long lastRollupTimestamp, long lastIngestTimestamp) {
+            synchronized (lockFor(slot)) {
+                if (!present.get(slot)) {
+                    put(slot, timestamp, state, isDirty, lastRollupTimestamp, lastIngestTimestamp);
+                }
+            }
+        }
+
+        private UpdateStamp.State getState(int slot) {
+            synchronized (lockFor(slot)) {
+                return STATES[states[slot]];
+            }
+        }
+
+        /**
+         * Marks slot as active and dirty with timestamp, unless it already is active.
+         *
+         * @return the state slot was in before, or null if it was never updated
+         */
+        protected UpdateStamp.State activate(int slot, long timestamp) {
+            synchronized (lockFor(slot)) {
+                if (!present.get(slot)) {
+                    put(slot, timestamp, UpdateStamp.State.Active, true, 0, 0);
+                    return null;
+                }
+                UpdateStamp.State state = getState(slot);
+                if (state != UpdateStamp.State.Active) {
+                    timestamps[slot] = timestamp;
+                    states[slot] = (byte) UpdateStamp.State.Active.ordinal();
+                    dirty.set(slot, true);
+                }
+                return state;
+            }
+        }
+
+        /**
+         * Records that slot was just rolled up at lastRollupTimestamp, and marks it as rolled and dirty if it is still
+         * running, that is if no delayed metric made it active again in the meantime.
+         */
+        protected void rolledUp(int slot, long lastRollupTimestamp) {
+            synchronized (lockFor(slot)) {
+                lastRollupTimestamps[slot] = lastRollupTimestamp;
+                if (getState(slot) == UpdateStamp.State.Running) {
+                    states[slot] = (byte) UpdateStamp.State.Rolled.ordinal();
+                    dirty.set(slot, true);
+                }
+            }
         }
 
         /**
@@ -243,76 +408,128 @@ public class ShardStateManager {
             //For slots in state "X", this would be last rollup time
             final long lastUpdateTimestamp = slotState.getLastUpdatedTimestamp();
 
-            UpdateStamp stampInMemory = slotToUpdateStampMap.get(slot);
-            if (stampInMemory == null) {
-                // haven't seen this slot before, take the update. This happens when a blueflood service is just started.
-                slotToUpdateStampMap.put(slot, new UpdateStamp(timestamp, state, false, 0, lastUpdateTimestamp));
-            } else if (stampInMemory.getTimestamp() != timestamp && state.equals(UpdateStamp.State.Active)) {
-                // 1) new update coming in. We can be in 3 states 1) Active 2) Rolled 3) Running. Apply the update in all cases except when we are already active and
-                //    the triggering timestamp we have is greater or the stampInMemory is yet to be persisted i.e still dirty
-
-                // This "if" is equivalent to: 
-                //  if (current is not active) || (current is older && clean)
-                if (!(stampInMemory.getState().equals(UpdateStamp.State.Active) && (stampInMemory.getTimestamp() > timestamp || stampInMemory.isDirty()))) {
-                    slotToUpdateStampMap.put(slot, new UpdateStamp(timestamp, state, false, stampInMemory.getLastRollupTimestamp(), lastUpdateTimestamp));
-                } else {
-                    // keep rewriting the newer timestamp, in case it has been overwritten:
-                    stampInMemory.setDirty(true); // This is crucial for convergence, we need to superimpose a higher timestamp which can be done only if we set it to dirty
+            synchronized (lockFor(slot)) {
+                // somebody else wrote another timestamp over the one pushed from here, so it has to be pushed again.
+                if (pushedStates[slot] == state.ordinal() && pushedTimestamps[slot] != timestamp) {
+                    pushedStates[slot] = NOT_PUSHED;
+                }
+                // a push still in flight may be what was just read, or may get overwritten as well. Not recording it
+                // when it lands costs at most one more write.
+                pushing.set(slot, false);
+
+                UpdateStamp stampInMemory = getStamp(slot);
+                if (stampInMemory == null) {
+                    // haven't seen this slot before, take the update. This happens when a blueflood service is just started.
+                    put(slot, timestamp, state, false, 0, lastUpdateTimestamp);
+                } else if (stampInMemory.getTimestamp() != timestamp && state.equals(UpdateStamp.State.Active)) {
+                    // 1) new update coming in. We can be in 3 states 1) Active 2) Rolled 3) Running. Apply the update in all cases except when we are already active and
+                    //    the triggering timestamp we have is greater or the stampInMemory is yet to be persisted i.e still dirty
+
+                    // This "if" is equivalent to: 
+                    //  if (current is not active) || (current is older && clean)
+                    if (!(stampInMemory.getState().equals(UpdateStamp.State.Active) && (stampInMemory.getTimestamp() > timestamp || stampInMemory.isDirty()))) {
+                        put(slot, timestamp, state, false, stampInMemory.getLastRollupTimestamp(), lastUpdateTimestamp);
+                    } else {
+                        // keep rewriting the newer timestamp, in case it has been overwritten:
+                        stampInMemory.setDirty(true); // This is crucial for convergence, we need to superimpose a higher timestamp which can be done only if we set it to dirty
+                    }
+                } else if (stampInMemory.getTimestamp() == timestamp && state.equals(UpdateStamp.State.Rolled)) {
+                    // 2) if current value is same but value being applied is a remove, remove wins.
+                    stampInMemory.setState(UpdateStamp.State.Rolled);
+
+                    //For incoming update(from metrics_state) of "Rolled" status, we use its last updated time as the last rollup time.
+                    if (lastUpdateTimestamp > stampInMemory.getLastRollupTimestamp())
+                        stampInMemory.setLastRollupTimestamp(lastUpdateTimestamp);
+                } else if (state.equals(UpdateStamp.State.Rolled)) {
+
+                    //For incoming update(from metrics_state) of "Rolled" status, we use its last updated time as the last rollup time.
+                    if (lastUpdateTimestamp > stampInMemory.getLastRollupTimestamp())
+                        stampInMemory.setLastRollupTimestamp(lastUpdateTimestamp);
                 }
-            } else if (stampInMemory.getTimestamp() == timestamp && state.equals(UpdateStamp.State.Rolled)) {
-                // 2) if current value is same but value being applied is a remove, remove wins.
-                stampInMemory.setState(UpdateStamp.State.Rolled);
-
-                //For incoming update(from metrics_state) of "Rolled" status, we use its last updated time as the last rollup time.
-                if (lastUpdateTimestamp > stampInMemory.getLastRollupTimestamp())
-                    stampInMemory.setLastRollupTimestamp(lastUpdateTimestamp);
-            } else if (state.equals(UpdateStamp.State.Rolled)) {
-
-                //For incoming update(from metrics_state) of "Rolled" status, we use its last updated time as the last rollup time.
-                if (lastUpdateTimestamp > stampInMemory.getLastRollupTimestamp())
-                    stampInMemory.setLastRollupTimestamp(lastUpdateTimestamp);
             }
         }
 
         protected void createOrUpdateForSlotAndMillisecond(int slot, long millis) {
             long nowMillis = clock.now().getMillis();
-            if (slotToUpdateStampMap.containsKey(slot)) {
-                UpdateStamp stamp = slotToUpdateStampMap.get(slot);
-                stamp.setTimestamp(millis);
-
-                // Temporarily setting last ingest time to current time until we get more accurate value from db.
-                // This will not be persisted.
-                stamp.setLastIngestTimestamp(nowMillis);
-
-                stamp.setState(UpdateStamp.State.Active);
-                stamp.setDirty(true);
-            } else {
-                slotToUpdateStampMap.put(slot, new UpdateStamp(millis, UpdateStamp.State.Active, true, 0, nowMillis));
+            synchronized (lockFor(slot)) {
+                if (present.get(slot)) {
+                    timestamps[slot] = millis;
+
+                    // Temporarily setting last ingest time to current time until we get more accurate value from db.
+                    // This will not be persisted.
+                    lastIngestTimestamps[slot] = nowMillis;
+
+                    states[slot] = (byte) UpdateStamp.State.Active.ordinal();
+                    dirty.set(slot, true);
+                } else {
+                    put(slot, millis, UpdateStamp.State.Active, true, 0, nowMillis);
+                }
             }
             updateStampMeter.mark();
         }
 
         protected Map<Integer, UpdateStamp> getDirtySlotStampsAndMarkClean() {
             HashMap<Integer, UpdateStamp> dirtySlots = new HashMap<Integer, UpdateStamp>();
-            for (Map.Entry<Integer, UpdateStamp> entry : slotToUpdateStampMap.entrySet()) {
-                if (entry.getValue().isDirty()) {
-                    dirtySlots.put(entry.getKey(), entry.getValue());
-                    entry.getValue().setDirty(false);
+            for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+                synchronized (lockFor(slot)) {
+                    dirty.set(slot, false);
                 }
+                dirtySlots.put(slot, getStamp(slot));
             }
             return dirtySlots;
         }
 
+        /**
+         * Like getDirtySlotStampsAndMarkClean, but only returns copies of the stamps whose state and timestamp
+         * changed since they were last marked as pushed.
+         */
+        protected Map<Integer, UpdateStamp> getChangedSlotStampsAndMarkClean() {
+            HashMap<Integer, UpdateStamp> changedSlots = new HashMap<Integer, UpdateStamp>();
+            for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+                long timestamp;
+                byte state;
+                boolean unchanged;
+                synchronized (lockFor(slot)) {
+                    dirty.set(slot, false);
+                    timestamp = timestamps[slot];
+                    state = states[slot];
+                    unchanged = pushedStates[slot] == state && pushedTimestamps[slot] == timestamp;
+                    pushing.set(slot, !unchanged);
+                }
+                if (unchanged) {
+                    unchangedSlotsSkipped.mark();
+                    continue;
+                }
+                changedSlots.put(slot, new UpdateStamp(timestamp, STATES[state], false));
+            }
+            return changedSlots;
+        }
+
+        protected void markPushed(int slot, UpdateStamp stamp) {
+            synchronized (lockFor(slot)) {
+                if (!pushing.get(slot)) {
+                    // the state was read from the database while this was pushed, see updateSlotOnRead.
+                    return;
+                }
+                pushing.set(slot, false);
+                pushedTimestamps[slot] = stamp.getTimestamp();
+                pushedStates[slot] = (byte) stamp.getState().ordinal();
+            }
+        }
+
         protected UpdateStamp getAndSetState(int slot, UpdateStamp.State state) {
-            UpdateStamp stamp = slotToUpdateStampMap.get(slot);
+            UpdateStamp stamp = getStamp(slot);
             stamp.setState(state);
             return stamp;
         }
 
         // gets a snapshot of the last updates
         protected Map<Integer, UpdateStamp> getSlotStamps() {
-            // essentially a copy on read map.
-            return Collections.unmodifiableMap(slotToUpdateStampMap);
+            Map<Integer, UpdateStamp> slotStamps = new HashMap<Integer, UpdateStamp>();
+            for (int slot = present.nextSetBit(0); slot >= 0; slot = present.nextSetBit(slot + 1)) {
+                slotStamps.put(slot, getStamp(slot));
+            }
+            return Collections.unmodifiableMap(slotStamps);
         }
 
         /**
@@ -350,38 +567,47 @@ public class ShardStateManager {
                                                           long rollupWaitForMetricsWithLongDelay) {
             List<Integer> outputKeys = new ArrayList<Integer>();
             long nowMillis = clock.now().getMillis();
-            for (Map.Entry<Integer, UpdateStamp> entry : slotToUpdateStampMap.entrySet()) {
-                final UpdateStamp update = entry.getValue();
-                final long timeElapsed = now - update.getTimestamp();
+            for (int slot = present.nextSetBit(0); slot >= 0; slot = present.nextSetBit(slot + 1)) {
+                final long timestamp;
+                final long lastRollupTimestamp;
+                final long lastIngestTimestamp;
+                final UpdateStamp.State state;
+                synchronized (lockFor(slot)) {
+                    timestamp = timestamps[slot];
+                    lastRollupTimestamp = lastRollupTimestamps[slot];
+                    lastIngestTimestamp = lastIngestTimestamps[slot];
+                    state = getState(slot);
+                }
+                final long timeElapsed = now - timestamp;
                 timeSinceUpdate.update(timeElapsed);
-                if (update.getState() == UpdateStamp.State.Rolled) {
+                if (state == UpdateStamp.State.Rolled) {
                     continue;
                 }
                 if (timeElapsed <= maxAgeMillis) {
                     continue;
                 }
-                if (update.getLastRollupTimestamp() > 0) {
-                    final long timeElapsedSinceLastRollup = now - update.getLastRollupTimestamp();
+                if (lastRollupTimestamp > 0) {
+                    final long timeElapsedSinceLastRollup = now - lastRollupTimestamp;
 
                     //Handling re-rolls: Since we only allow delayed metrics upto 3 days(BEFORE_CURRENT_COLLECTIONTIME_MS),
                     //a slot can be identified as being re-rolled, if the last rollup is within those last 3 days.
                     if (timeElapsedSinceLastRollup < REROLL_TIME_SPAN_ASSUMED_VALUE) {
 
                         //short delay
-                        SlotKey slotKey = SlotKey.of(granularity, entry.getKey(), shard);
+                        SlotKey slotKey = SlotKey.of(granularity, slot, shard);
                         if (timeElapsed <= rollupDelayForMetricsWithShortDelay) {
 
                             reRollForShortDelayMetricsMeters.get(granularity).mark();
                             log.debug(String.format("Short delay: Delaying re-roll of slotKey [%s] as [%d] millis " +
                                     "haven't elapsed since collection time:[%d] now: [%d] time elapsed: [%d] last " +
                                     "rollup time: [%d]", slotKey, rollupDelayForMetricsWithShortDelay,
-                                    update.getTimestamp(), now, timeElapsed, update.getLastRollupTimestamp()));
+                                    timestamp, now, timeElapsed, lastRollupTimestamp));
                             continue;
                         }
 
-                        if (update.getLastIngestTimestamp() > 0 ) {
-                            long delayOfLastIngestedMetric = update.getLastIngestTimestamp() - update.getTimestamp();
-                            final long timeElapsedSinceLastIngest = now - update.getLastIngestTimestamp();
+                        if (lastIngestTimestamp > 0 ) {
+                            long delayOfLastIngestedMetric = lastIngestTimestamp - timestamp;
+                            final long timeElapsedSinceLastIngest = now - lastIngestTimestamp;
 
                             //long delay
                             if (delayOfLastIngestedMetric > rollupDelayForMetricsWithShortDelay &&
@@ -391,22 +617,91 @@ public class ShardStateManager {
                                 log.debug(String.format("Long delay: Delaying re-roll of slotKey [%s] as we received " +
                                                 "delayed metrics within the last [%d] millis with rollup_wait of [%d] millis. last " +
                                                 "ingest time: [%d]", slotKey, timeElapsedSinceLastIngest,
-                                        rollupWaitForMetricsWithLongDelay, update.getLastIngestTimestamp()));
+                                        rollupWaitForMetricsWithLongDelay, lastIngestTimestamp));
                                 continue;
                             }
                         }
 
                         granToReRollMeters.get(granularity).mark();
-                        if (nowMillis - update.getTimestamp() >= millisInADay) {
+                        if (nowMillis - timestamp >= millisInADay) {
                             granToDelayedMetricsMeter.get(granularity).mark();
                         }
                     }
                 }
-                outputKeys.add(entry.getKey());
+                outputKeys.add(slot);
             }
 
             return outputKeys;
         }
+
+        /**
+         * The stamp of one slot, backed by the arrays above. Each call is atomic on its own; updates of several values
+         * that must be seen together go through SlotStateManager instead.
+         */
+        private class SlotStamp extends UpdateStamp {
+            private final int slot;
+
+            private SlotStamp(int slot) {
+                this.slot = slot;
+            }
+
+            @Override public void setDirty(boolean b) { synchronized (lockFor(slot)) { dirty.set(slot, b); } }
+            @Override public void setTimestamp(long timestamp) { synchronized (lockFor(slot)) { timestamps[slot] = timestamp; } }
+            @Override public void setState(State state) { synchronized (lockFor(slot)) { states[slot] = (byte) state.ordinal(); } }
+            @Override public void setLastRollupTimestamp(long lastRollupTimestamp) { synchronized (lockFor(slot)) { lastRollupTimestamps[slot] = lastRollupTimestamp; } }
+            @Override public void setLastIngestTimestamp(long lastIngestTimestamp) { synchronized (lockFor(slot)) { lastIngestTimestamps[slot] = lastIngestTimestamp; } }
+
+            @Override public boolean isDirty() { return dirty.get(slot); }
+            @Override public long getTimestamp() { synchronized (lockFor(slot)) { return timestamps[slot]; } }
+            @Override public State getState() { return SlotStateManager.this.getState(slot); }
+            @Override public long getLastRollupTimestamp() { synchronized (lockFor(slot)) { return lastRollupTimestamps[slot]; } }
+            @Override public long getLastIngestTimestamp() { synchronized (lockFor(slot)) { return lastIngestTimestamps[slot]; } }
+        }
+    }
+
+    /**
+     * A fixed size bitset that ingestion, scheduling and pushing threads can update concurrently.
+     */
+    private static class SlotBits {
+        private final AtomicLongArray words;
+
+        private SlotBits(int size) {
+            words = new AtomicLongArray((size + 63) >>> 6);
+        }
+
+        boolean get(int index) {
+            return (words.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        void set(int index, boolean value) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            long current;
+            do {
+                current = words.get(word);
+                if (((current & mask) != 0) == value) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, current, current ^ mask));
+        }
+
+        /**
+         * @return the first set index at or after from, or -1 if there is none.
+         */
+        int nextSetBit(int from) {
+            int word = from >>> 6;
+            if (word >= words.length()) {
+                return -1;
+            }
+            long bits = words.get(word) & (-1L << from);
+            while (bits == 0) {
+                if (++word == words.length()) {
+                    return -1;
+                }
+                bits = words.get(word);
+            }
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
     }
 }
 
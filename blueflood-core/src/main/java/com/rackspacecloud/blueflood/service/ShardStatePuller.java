@@ -16,21 +16,61 @@
 
 package com.rackspacecloud.blueflood.service;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.utils.Clock;
+import com.rackspacecloud.blueflood.utils.DefaultClockImpl;
+import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Pulls slot states written by other nodes into the ShardStateManager.
+ *
+ * With SHARD_STATE_CHANGES_READS_ENABLED, a shard is only read in full the first time it is pulled and every
+ * SHARD_FULL_PULL_PERIOD after that. In between, only the states written since the previous pull of the shard, less
+ * some slack for clocks that are off, are read from the log of changes.
+ */
 public class ShardStatePuller extends ShardStateWorker {
     private static final Logger log = LoggerFactory.getLogger(ShardStatePuller.class);
-    
+
+    // write times come from other hosts' clocks.
+    @VisibleForTesting
+    static final long CLOCK_SKEW_MILLIS = 30 * 1000L;
+
+    private static final Meter fullPulls = Metrics.meter(ShardStatePuller.class, "Full Pulls");
+    private static final Meter incrementalPulls = Metrics.meter(ShardStatePuller.class, "Incremental Pulls");
+
+    private final boolean incremental;
+    private final long fullPullPeriodMs;
+    private final Clock clock;
+
+    // when each shard was last pulled, and last pulled in full.
+    private final Map<Integer, Long> lastPulls = new ConcurrentHashMap<Integer, Long>();
+    private final Map<Integer, Long> lastFullPulls = new ConcurrentHashMap<Integer, Long>();
 
     public ShardStatePuller(Collection<Integer> allShards, ShardStateManager stateManager, ShardStateIO io) {
+        this(allShards, stateManager, io,
+                Configuration.getInstance().getBooleanProperty(CoreConfig.SHARD_STATE_CHANGES_READS_ENABLED),
+                Configuration.getInstance().getLongProperty(CoreConfig.SHARD_FULL_PULL_PERIOD),
+                new DefaultClockImpl());
+    }
+
+    @VisibleForTesting
+    ShardStatePuller(Collection<Integer> allShards, ShardStateManager stateManager, ShardStateIO io,
+                     boolean incremental, long fullPullPeriodMs, Clock clock) {
         super(allShards, stateManager, new TimeValue(Configuration.getInstance().getIntegerProperty(CoreConfig.SHARD_PULL_PERIOD), TimeUnit.MILLISECONDS), io);
+        this.incremental = incremental;
+        this.fullPullPeriodMs = fullPullPeriodMs;
+        this.clock = clock;
     }
 
     public void performOperation() {
@@ -38,11 +78,27 @@ public class ShardStatePuller extends ShardStateWorker {
         for (int shard : shardStateManager.getManagedShards()) {
 
             try {
-                Collection<SlotState> slotStates = getIO().getShardState(shard);
+                long now = clock.now().getMillis();
+                Long lastPull = lastPulls.get(shard);
+                Long lastFullPull = lastFullPulls.get(shard);
+                boolean full = !incremental || lastPull == null || lastFullPull == null || now - lastFullPull >= fullPullPeriodMs;
+
+                Collection<SlotState> slotStates;
+                if (full) {
+                    fullPulls.mark();
+                    slotStates = getIO().getShardState(shard);
+                } else {
+                    incrementalPulls.mark();
+                    slotStates = getIO().getShardStateChanges(shard, lastPull - CLOCK_SKEW_MILLIS);
+                }
                 for (SlotState slotState : slotStates) {
                     shardStateManager.updateSlotOnRead(shard, slotState);
                 }
 
+                lastPulls.put(shard, now);
+                if (full) {
+                    lastFullPulls.put(shard, now);
+                }
             } catch (Exception ex) {
                 log.error("Could not read shard state from the database. " + ex.getMessage(), ex);
             }
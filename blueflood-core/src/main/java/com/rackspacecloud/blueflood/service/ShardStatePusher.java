@@ -17,6 +17,8 @@
 package com.rackspacecloud.blueflood.service;
 
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.io.ShardStateIO;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.utils.TimeValue;
@@ -24,35 +26,118 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Pushes dirty slot states to the database, SHARD_PUSH_CONCURRENCY shards at a time.
+ *
+ * With SHARD_PUSH_UNCHANGED_SKIPPED, a slot is only pushed if its state or timestamp changed since it was last
+ * pushed successfully, so the number of writes follows the changes to slot states rather than how often slots are
+ * marked dirty.
+ */
 public class ShardStatePusher extends ShardStateWorker {
     private static final Logger log = LoggerFactory.getLogger(ShardStatePusher.class);
-    
+
+    private final boolean unchangedSkipped;
+    private final int concurrency;
+    // started when the pusher is active, and null while it is not or when shards are pushed one at a time.
+    private ExecutorService pushExecutor;
+
     public ShardStatePusher(final Collection<Integer> allShards, ShardStateManager stateManager, ShardStateIO io) {
+        this(allShards, stateManager, io,
+                Configuration.getInstance().getIntegerProperty(CoreConfig.SHARD_PUSH_CONCURRENCY),
+                Configuration.getInstance().getBooleanProperty(CoreConfig.SHARD_PUSH_UNCHANGED_SKIPPED));
+    }
+
+    @VisibleForTesting
+    ShardStatePusher(Collection<Integer> allShards, ShardStateManager stateManager, ShardStateIO io,
+                     int concurrency, boolean unchangedSkipped) {
         super(allShards, stateManager, new TimeValue(Configuration.getInstance().getIntegerProperty(CoreConfig.SHARD_PUSH_PERIOD), TimeUnit.MILLISECONDS), io);
+        this.unchangedSkipped = unchangedSkipped;
+        this.concurrency = concurrency;
+    }
+
+    @VisibleForTesting
+    synchronized ExecutorService getPushExecutor() {
+        if (pushExecutor == null && concurrency > 1 && getActive()) {
+            pushExecutor = new ThreadPoolBuilder().withCorePoolSize(concurrency)
+                    .withMaxPoolSize(concurrency)
+                    .withUnboundedQueue()
+                    .withName("ShardStatePusher").build();
+        }
+        return pushExecutor;
+    }
+
+    @Override
+    public synchronized void setActive(boolean b) {
+        super.setActive(b);
+        if (!b && pushExecutor != null) {
+            // shards already handed to it are still pushed.
+            pushExecutor.shutdown();
+            pushExecutor = null;
+        }
     }
 
     public void performOperation() {
         Timer.Context ctx = timer.time();
         try {
-            for (int shard : allShards) {
-                Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = shardStateManager.getDirtySlotsToPersist(shard);
-                if (slotTimes != null) {
-                    try {
-                        getIO().putShardState(shard, slotTimes);
-                    } catch (IOException ex) {
-                        log.error("Could not put shard state to the database (shard " + shard + "). " + ex.getMessage(), ex);
-                    }
+            ExecutorService executor = getPushExecutor();
+            List<Future<?>> pushes = new ArrayList<Future<?>>();
+            for (final int shard : allShards) {
+                if (executor == null) {
+                    push(shard);
+                    continue;
+                }
+                try {
+                    pushes.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            push(shard);
+                        }
+                    }));
+                } catch (RejectedExecutionException ex) {
+                    // stopped while pushing, finish on this thread.
+                    executor = null;
+                    push(shard);
+                }
+            }
+            for (Future<?> push : pushes) {
+                try {
+                    push.get();
+                } catch (ExecutionException ex) {
+                    log.error("Could not put shard states to the database. " + ex.getCause().getMessage(), ex.getCause());
                 }
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         } catch (RuntimeException ex) {
             log.error("Could not put shard states to the database. " + ex.getMessage(), ex);
         } finally {
             ctx.stop();
         }
     }
-    
+
+    private void push(int shard) {
+        Map<Granularity, Map<Integer, UpdateStamp>> slotTimes = unchangedSkipped
+                ? shardStateManager.getChangedSlotsToPersist(shard)
+                : shardStateManager.getDirtySlotsToPersist(shard);
+        if (slotTimes != null) {
+            try {
+                getIO().putShardState(shard, slotTimes);
+                if (unchangedSkipped) {
+                    shardStateManager.slotsPersisted(shard, slotTimes);
+                }
+            } catch (IOException ex) {
+                log.error("Could not put shard state to the database (shard " + shard + "). " + ex.getMessage(), ex);
+            }
+        }
+    }
 }
@@ -40,6 +40,10 @@ public class UpdateStamp {
 
     private long lastIngestTimestamp;
 
+    // for stamps that keep their values elsewhere, see ShardStateManager.SlotStateManager.
+    protected UpdateStamp() {
+    }
+
     public UpdateStamp(long timestamp, State state, boolean dirty) {
         setTimestamp(timestamp);
         setState(state);
@@ -65,16 +69,16 @@ public class UpdateStamp {
     public long getLastIngestTimestamp() { return lastIngestTimestamp; }
 
     public int hashCode() {
-        return (timestamp + state.code).hashCode();
+        return (getTimestamp() + getState().code).hashCode();
     }
     
     public boolean equals(Object o) {
         if (!(o instanceof UpdateStamp)) return false;
         UpdateStamp other = (UpdateStamp)o;
-        return other.timestamp == timestamp && other.state == state;
+        return other.getTimestamp() == getTimestamp() && other.getState() == getState();
     }
     
-    public String toString() { return timestamp + "," + state.code; }
+    public String toString() { return getTimestamp() + "," + getState().code; }
 
     /**
      * The current state of a slot.
@@ -31,10 +31,16 @@ import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,7 +50,9 @@ import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
@@ -71,7 +79,10 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
     private final CuratorFramework client;
     private final String ZK_NAMESPACE = "locks/blueflood";
     private final String LOCK_QUALIFIER = "/shards";
-    private final long ZK_SESSION_TIMEOUT_MS = new TimeValue(120L, TimeUnit.SECONDS).toMillis();
+    private final String NODES_PATH = "/nodes";
+    private final long ZK_SESSION_TIMEOUT_MS;
+    /** session timeout when shards are balanced by load and none is configured, so dead nodes are noticed quickly. */
+    private static final long LOAD_BALANCED_ZK_SESSION_TIMEOUT_MS = new TimeValue(10L, TimeUnit.SECONDS).toMillis();
     private final long ZK_CONN_TIMEOUT_MS = new TimeValue(5L, TimeUnit.SECONDS).toMillis();
     private final long ZK_RETRY_INTERVAL = new TimeValue(50L, TimeUnit.MILLISECONDS).toMillis();
     private final int ZK_MAX_RETRIES = 2;
@@ -81,6 +92,15 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
     private final int defaultMaxLocksToAcquirePerCycle;
     private final Ticker ticker = Ticker.systemTicker();
 
+    /** null unless shards are split between the nodes by load. */
+    private final ShardLoadBalancer balancer;
+    private final ShardLoadSource loadSource;
+    private final TimeValue loadPublishInterval;
+    /** the loads published by all the live nodes, this one included. */
+    private PathChildrenCache nodeLoads;
+    /** the node this one publishes its load to. */
+    private volatile String nodePath = null;
+
     // modifiable properties.
     private TimeValue minLockHoldTime;
     private TimeValue lockDisinterestedTime;
@@ -103,11 +123,38 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
         }
     });
 
+    /**
+     * Publishes the load of this node. Kept off the scavenger thread, which can block on lock acquisitions for
+     * a while, so the published load does not go stale.
+     */
+    private final ScheduledThreadPoolExecutor loadPublisher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ZK Load Publisher " + id);
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     private final Meter lockAcquisitionFailure = Metrics.meter(ZKShardLockManager.class, "Lock acquisition failures");
     private final com.codahale.metrics.Timer lockAcquisitionTimer = Metrics.timer(ZKShardLockManager.class, "Lock acquisition timer");
     private final Meter lockErrors = Metrics.meter(ZKShardLockManager.class, "Lock errors");
+    private final Meter balancedReleases = Metrics.meter(ZKShardLockManager.class, "Locks released to balance load");
 
     ZKShardLockManager(String zookeeperCluster, Set<Integer> managedShards) {
+        this(zookeeperCluster, managedShards, null);
+    }
+
+    /**
+     * @param loadSource the load of this node, to balance shards by. If null, only shard counts are balanced.
+     */
+    ZKShardLockManager(String zookeeperCluster, Set<Integer> managedShards, ShardLoadSource loadSource) {
+        this(zookeeperCluster, managedShards, loadSource,
+                Configuration.getInstance().getBooleanProperty(CoreConfig.SHARD_LOCK_LOAD_BALANCING_ENABLED));
+    }
+
+    @VisibleForTesting
+    ZKShardLockManager(String zookeeperCluster, Set<Integer> managedShards, ShardLoadSource loadSource, boolean loadBalanced) {
         try {
             final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
             final String name = String.format("com.rackspacecloud.blueflood.service:type=%s", getClass().getSimpleName() + (id == 0 ? "" : id));
@@ -118,6 +165,12 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
             log.error("Unable to register mbean for " + getClass().getSimpleName(), exc);
         }
 
+        Configuration config = Configuration.getInstance();
+        long sessionTimeout = config.getLongProperty(CoreConfig.ZOOKEEPER_SESSION_TIMEOUT_MS);
+        if (loadBalanced && !config.containsKey(CoreConfig.ZOOKEEPER_SESSION_TIMEOUT_MS.toString())) {
+            sessionTimeout = LOAD_BALANCED_ZK_SESSION_TIMEOUT_MS;
+        }
+        this.ZK_SESSION_TIMEOUT_MS = sessionTimeout;
         this.locks = new ConcurrentHashMap<Integer, Lock>();
         RetryPolicy policy = new ExponentialBackoffRetry((int)ZK_RETRY_INTERVAL, ZK_MAX_RETRIES);
 
@@ -130,7 +183,6 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
         this.client.getConnectionStateListenable().addListener(this);  // register our listener
         this.client.start();
 
-        Configuration config = Configuration.getInstance();
         for (int shard : managedShards) {
             addShard(shard);
         }
@@ -146,6 +198,11 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
                 .withBoundedQueue(1000)
                 .withName("ZkThreadPool")
                 .build();
+
+        this.balancer = loadBalanced ? new ShardLoadBalancer(config.getFloatProperty(CoreConfig.SHARD_LOAD_IMBALANCE)) : null;
+        this.loadSource = loadSource;
+        this.loadPublishInterval = new TimeValue(config.getLongProperty(CoreConfig.SHARD_LOAD_PUBLISH_INTERVAL_MS),
+                TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -200,10 +257,73 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
      */
     public void init(TimeValue zkWaitTime) {
         waitForZKConnections(zkWaitTime.toSeconds());
+        if (balancer != null) {
+            startPublishingLoad();
+        }
         prefetchLocks();
         scheduleScavenger();
     }
 
+    /**
+     * Publishes the load of this node in an ephemeral node, which goes away with the session of this node, and
+     * watches the loads of the other nodes. When another node goes away, the shards it held are taken over.
+     */
+    private void startPublishingLoad() {
+        nodeLoads = new PathChildrenCache(client, NODES_PATH, true);
+        nodeLoads.getListenable().addListener(new PathChildrenCacheListener() {
+            @Override
+            public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+                if (event.getType() == PathChildrenCacheEvent.Type.CHILD_REMOVED) {
+                    log.info("Rollup node {} went away, forcing lock scavenge", event.getData().getPath());
+                    scavengerWorker.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            retryFreeLocks();
+                            scavengeLocks();
+                        }
+                    });
+                }
+            }
+        });
+        try {
+            publishLoad();
+            nodeLoads.start();
+        } catch (Exception e) {
+            log.error("Unable to watch the load of the other rollup nodes", e);
+        }
+        loadPublisher.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                publishLoad();
+            }
+        }, loadPublishInterval.toMillis(), loadPublishInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void publishLoad() {
+        if (!connected) {
+            return;
+        }
+        byte[] load = getLoad().toBytes();
+        try {
+            if (nodePath != null) {
+                client.setData().forPath(nodePath, load);
+                return;
+            }
+        } catch (KeeperException.NoNodeException e) {
+            // the session expired, and the node with it.
+            log.info("Load node {} is gone, publishing a new one", nodePath);
+        } catch (Exception e) {
+            log.warn("Unable to publish the load of this node: " + e.getMessage());
+            return;
+        }
+        try {
+            nodePath = client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                    .forPath(NODES_PATH + "/node-", load);
+        } catch (Exception e) {
+            log.warn("Unable to publish the load of this node: " + e.getMessage());
+        }
+    }
+
     /**
      * Waits until the zookeeper connection is available.
      * @param waitTimeSeconds
@@ -316,6 +436,9 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
             if (locksHeld <= moreThanHalf()) {
                 maxLocksToAcquirePerCycle = moreThanHalf();
             }
+            if (balancer != null) {
+                maxLocksToAcquirePerCycle = balanceLocks();
+            }
             // shouldAttempt
 
             for (int shard : shards) {
@@ -333,6 +456,89 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
         }
     }
 
+    /**
+     * Releases the locks this node holds beyond its share.
+     * @return how many more locks this node should take.
+     */
+    private int balanceLocks() {
+        NodeLoad self = getLoad();
+        List<NodeLoad> others = getOtherNodeLoads();
+        Map<Integer, Long> heldShardLoads = new HashMap<Integer, Long>();
+        for (Lock lock : locks.values()) {
+            if (lock.isHeld()) {
+                heldShardLoads.put(lock.getShard(), loadSource == null ? 0L : loadSource.getShardLoad(lock.getShard()));
+            }
+        }
+
+        List<Integer> toRelease = balancer.shardsToRelease(locks.size(), self, others, heldShardLoads);
+        for (int shard : toRelease) {
+            log.info("Releasing shard {} to balance load with {} other nodes", shard, others.size());
+            balancedReleases.mark();
+            locks.get(shard).release(true);
+        }
+        if (!toRelease.isEmpty()) {
+            return 0;
+        }
+
+        int locksToAcquire = balancer.locksToAcquire(locks.size(), self, others);
+        if (locksToAcquire > 0) {
+            retryFreeLocks();
+        }
+        return locksToAcquire;
+    }
+
+    /**
+     * Locks that could not be acquired are normally not tried again for a while. This tries again right away the
+     * ones that nobody holds anymore, because another node released them or went away.
+     */
+    private void retryFreeLocks() {
+        for (Lock lock : locks.values()) {
+            if (lock.getLockState() == LockState.ACQUIRE_FAILED && !isLockedElsewhere(lock.getShard())) {
+                lock.retry();
+            }
+        }
+    }
+
+    private boolean isLockedElsewhere(int shard) {
+        try {
+            return !client.getChildren().forPath(getLockId(shard)).isEmpty();
+        } catch (KeeperException.NoNodeException e) {
+            return false;
+        } catch (Exception e) {
+            log.debug("Unable to check the lock of shard {}: {}", shard, e.getMessage());
+            return true;
+        }
+    }
+
+    private NodeLoad getLoad() {
+        int held = 0;
+        long load = loadSource == null ? 0L : loadSource.getQueuedRollupCount();
+        for (Lock lock : locks.values()) {
+            if (lock.isHeld()) {
+                held++;
+                load += loadSource == null ? 0L : loadSource.getShardLoad(lock.getShard());
+            }
+        }
+        return new NodeLoad(held, load);
+    }
+
+    private List<NodeLoad> getOtherNodeLoads() {
+        List<NodeLoad> others = new ArrayList<NodeLoad>();
+        if (nodeLoads == null) {
+            return others;
+        }
+        for (ChildData node : nodeLoads.getCurrentData()) {
+            if (node.getPath().equals(nodePath)) {
+                continue;
+            }
+            NodeLoad load = NodeLoad.fromBytes(node.getData());
+            if (load != null) {
+                others.add(load);
+            }
+        }
+        return others;
+    }
+
     public void stateChanged(CuratorFramework curatorFramework, ConnectionState connectionState) {
         log.info("Connection to Zookeeper toggled to state " + connectionState.toString());
         connected = connectionState == ConnectionState.CONNECTED || connectionState == ConnectionState.RECONNECTED;
@@ -391,9 +597,20 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
         for (Lock lock : locks.values()) {
             this.release(lock.getShard());
         }
+        if (nodeLoads != null) {
+            nodeLoads.close();
+        }
+        scavengerWorker.shutdownNow();
+        loadPublisher.shutdownNow();
         client.close();
     }
 
+    /** @return the number of live nodes this node knows of, itself included. */
+    @VisibleForTesting
+    int getNodeCountUnsafe() {
+        return nodeLoads == null ? 1 : nodeLoads.getCurrentData().size();
+    }
+
     @VisibleForTesting
     Lock getLockUnsafe(int shard) {
         return locks.get(shard);
@@ -551,7 +768,7 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
          * <ul>
          *     <li>Move the lock state to {@link LockState#UNKNOWN} if necessary.</li>
          *     <li>Attempt to hold the locks in UNKNOWN state.</li>
-         *     <li>Attempt to release the locks that were held for too long.</li>
+         *     <li>Attempt to release the locks that were held for too long, unless shards are balanced by load.</li>
          * </ul>
          *
          * @param shouldAttempt <code>true</code> if the lock should be attempted to be acquired.
@@ -563,9 +780,21 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
 
             long now = nowMillis();
             if (state == LockState.UNKNOWN && shouldAttempt) {
-                acquire();
+                Future<Boolean> acquired = acquire();
+                if (balancer != null) {
+                    // waits, so that no more locks are taken than the balancer asked for.
+                    try {
+                        return acquired.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    } catch (ExecutionException e) {
+                        log.error("Problem acquiring lock " + shard + " " + e.getCause().getMessage(), e.getCause());
+                        return false;
+                    }
+                }
                 return isHeld();
-            } else if (state == LockState.ACQUIRED && (now - stateChanged) >= minLockHoldTime.toMillis()) {
+            } else if (state == LockState.ACQUIRED && balancer == null && (now - stateChanged) >= minLockHoldTime.toMillis()) {
                 // Lock was held for too long - maybe release to trigger re-balancing.
                 final float chance;
                 if (now == stateChanged) {
@@ -615,6 +844,15 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
             return state;
         }
 
+        /**
+         * Makes a lock that could not be acquired eligible to be tried again.
+         */
+        synchronized void retry() {
+            if (state == LockState.ACQUIRE_FAILED) {
+                setState(LockState.UNKNOWN);
+            }
+        }
+
         /**
          * Only work on the acquired shards. Technically, working on the {@link LockState#ERROR} shard is ok,
          * but it is not recommended as it's going to cause a load problem.
@@ -631,6 +869,10 @@ class ZKShardLockManager implements ConnectionStateListener, ShardLockManager, Z
         }
 
         synchronized void setState(LockState newState) {
+            if ((state == LockState.ACQUIRED) != (newState == LockState.ACQUIRED)) {
+                // rollups kept in memory for the shard do not cover what other nodes did while it was not held here.
+                CascadingRollupStore.getInstance().shardOwnershipChanged(shard);
+            }
             state = newState;
             if (newState == LockState.ERROR) {
                 if (mutex.isAcquiredInThisProcess()) {
@@ -71,6 +71,16 @@ public abstract class AbstractRollupStat {
     }
     
     abstract void handleFullResMetric(Object o) throws RuntimeException;
+
+    // unboxed versions of the above, for values read straight out of NumericPoints.
+    void handleFullResLong(long value) {
+        handleFullResMetric((Object) value);
+    }
+
+    void handleFullResDouble(double value) {
+        handleFullResMetric((Object) value);
+    }
+
     abstract void handleRollupMetric(IBaseRollup basicRollup) throws RuntimeException;
     abstract public byte getStatType();
     
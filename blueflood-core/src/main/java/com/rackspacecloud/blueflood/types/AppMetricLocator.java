@@ -21,10 +21,10 @@ public class AppMetricLocator extends Locator {
     private static final String persistDelim = ",";
     private static final int MAX_FIELDS = 4;
 
-    private String service;
-    private String host;
-    private String instance;
-    private String metricName;
+    private final String service;
+    private final String host;
+    private final String instance;
+    private final String metricName;
 
     public static AppMetricLocator createFromServicePrimitives(String service, String host, String instance,
                                                                String metricName) {
@@ -32,29 +32,21 @@ public class AppMetricLocator extends Locator {
     }
 
     public static AppMetricLocator createFromDBKey(String locator) {
-        return new AppMetricLocator(locator);
-    }
-
-    private AppMetricLocator(String locator) {
-        if (!isValidDBKey(locator, persistDelim)) {
+        if (!locator.contains(persistDelim)) {
             throw new IllegalArgumentException("Expected delimiter " + "'" + persistDelim + "' " + "but got " +
                     locator);
         }
 
         String[] tokens = locator.split(persistDelim);
-        this.service = tokens[0];
-        this.host = tokens[1];
-        this.instance = tokens[2];
-        this.metricName = tokens[3];
-        setStringRep(this.buildStringRep());
+        return new AppMetricLocator(tokens[0], tokens[1], tokens[2], tokens[3]);
     }
 
     private AppMetricLocator(String service, String host, String instance, String metricName) {
+        super(buildStringRep(service, host, instance, metricName));
         this.service = service;
         this.host = host;
         this.instance = instance;
         this.metricName = metricName;
-        setStringRep(this.buildStringRep());
     }
 
     public String getService() {
@@ -73,8 +65,8 @@ public class AppMetricLocator extends Locator {
         return metricName;
     }
 
-    private String buildStringRep() {
-        return String.format("%s,%s,%s,%s", this.service, this.host, this.instance, this.metricName);
+    private static String buildStringRep(String service, String host, String instance, String metricName) {
+        return String.format("%s,%s,%s,%s", service, host, instance, metricName);
     }
 
     public boolean equals(Locator other) {
@@ -65,7 +65,7 @@ public class Average extends AbstractRollupStat {
     // long methods.
     //
 
-    public void add(Long input) {
+    public void add(long input) {
         count++;
         final long longAvgUntilNow = toLong();
 
@@ -74,7 +74,7 @@ public class Average extends AbstractRollupStat {
         longRemainder = (input + longRemainder - longAvgUntilNow) % count;
     }
 
-    public void addBatch(Long input, long dataPoints) {
+    public void addBatch(long input, long dataPoints) {
         for (long i = 0; i < dataPoints; i++) {
             add(input);
         }
@@ -84,11 +84,11 @@ public class Average extends AbstractRollupStat {
     // double methods.
     //
 
-    public void add(Double input) {
+    public void add(double input) {
         this.setDoubleValue(toDouble() + ((input - toDouble()) / ++count));
     }
 
-    public void addBatch(Double input, long dataPoints) {
+    public void addBatch(double input, long dataPoints) {
         // if my maths were better, I would know the decay function that would give me the right value.
         for (long i = 0; i < dataPoints; i++) {
             add(input);
@@ -110,6 +110,16 @@ public class Average extends AbstractRollupStat {
         else throw new RuntimeException("Unexpected type to average: " + number.getClass().getName());
     }
 
+    @Override
+    void handleFullResLong(long number) {
+        add(number);
+    }
+
+    @Override
+    void handleFullResDouble(double number) {
+        add(number);
+    }
+
     @Override
     void handleRollupMetric(IBaseRollup basicRollup) throws RuntimeException {
         AbstractRollupStat other = basicRollup.getAverage();
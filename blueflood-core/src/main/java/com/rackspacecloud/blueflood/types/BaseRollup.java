@@ -137,17 +137,49 @@ public abstract class BaseRollup implements Rollup {
             return;
         }
 
+        if (input instanceof NumericPoints && ((NumericPoints) input).isColumnar()) {
+            NumericPoints numbers = (NumericPoints) input;
+            for (int i = 0; i < numbers.size(); i++) {
+                if (numbers.getDataType(i) == SimpleNumber.Type.DOUBLE) {
+                    handleFullResDouble(numbers.getDoubleValue(i));
+                } else {
+                    handleFullResLong(numbers.getLongValue(i));
+                }
+            }
+            return;
+        }
+
         Map<Long, Points.Point<SimpleNumber>> points = input.getPoints();
         for (Map.Entry<Long, Points.Point<SimpleNumber>> item : points.entrySet()) {
-            this.count += 1;
             SimpleNumber numericMetric = item.getValue().getData();
-            average.handleFullResMetric(numericMetric.getValue());
-            variance.handleFullResMetric(numericMetric.getValue());
-            minValue.handleFullResMetric(numericMetric.getValue());
-            maxValue.handleFullResMetric(numericMetric.getValue());
+            handleFullResMetric(numericMetric.getValue());
         }
     }
 
+    private void handleFullResMetric(Number value) {
+        this.count += 1;
+        average.handleFullResMetric(value);
+        variance.handleFullResMetric(value);
+        minValue.handleFullResMetric(value);
+        maxValue.handleFullResMetric(value);
+    }
+
+    private void handleFullResLong(long value) {
+        this.count += 1;
+        average.handleFullResLong(value);
+        variance.handleFullResLong(value);
+        minValue.handleFullResLong(value);
+        maxValue.handleFullResLong(value);
+    }
+
+    private void handleFullResDouble(double value) {
+        this.count += 1;
+        average.handleFullResDouble(value);
+        variance.handleFullResDouble(value);
+        minValue.handleFullResDouble(value);
+        maxValue.handleFullResDouble(value);
+    }
+
     // merge rollups into this rollup.
     protected void computeFromRollupsHelper(Points<? extends IBaseRollup> input) throws IOException {
         if (input == null) {
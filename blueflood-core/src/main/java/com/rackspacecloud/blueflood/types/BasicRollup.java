@@ -68,6 +68,14 @@ public class BasicRollup extends BaseRollup implements IBaseRollup {
             return;
         }
 
+        if (input instanceof NumericPoints && ((NumericPoints) input).isColumnar()) {
+            NumericPoints numbers = (NumericPoints) input;
+            for (int i = 0; i < numbers.size(); i++) {
+                sum += numbers.getDoubleValue(i);
+            }
+            return;
+        }
+
         Map<Long, Points.Point<SimpleNumber>> points = input.getPoints();
         for (Map.Entry<Long, Points.Point<SimpleNumber>> item : points.entrySet()) {
             SimpleNumber numericMetric = item.getValue().getData();
@@ -21,28 +21,69 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+/**
+ * The distinct values of a set metric. Small sets keep the hash of every value, so their count is exact. Once a set
+ * has more than MAX_EXACT_SIZE values it only keeps a {@link HyperLogLog} sketch of them, which estimates the count
+ * in a few KB whatever the cardinality.
+ */
 public class BluefloodSetRollup implements Rollup {
-    
+
+    // about what the sparse sketch of the same values would take to serialize.
+    public static final int MAX_EXACT_SIZE = 256;
+
     private Set<Integer> hashes = new HashSet<Integer>();
+    private HyperLogLog sketch = null;
     
     public BluefloodSetRollup() {}
     
     public BluefloodSetRollup withObject(Object o) {
-        hashes.add(o.hashCode());
+        return withHash(o.hashCode());
+    }
+
+    private BluefloodSetRollup withHash(int hash) {
+        if (sketch != null) {
+            sketch.offer(hash);
+        } else if (hashes.add(hash) && hashes.size() > MAX_EXACT_SIZE) {
+            withSketch(new HyperLogLog());
+        }
+        return this;
+    }
+
+    /**
+     * Switches this set to be estimated, counting the values it had so far in sketch as well.
+     */
+    public BluefloodSetRollup withSketch(HyperLogLog sketch) {
+        if (this.sketch != null) {
+            sketch.merge(this.sketch);
+        } else {
+            for (Integer hash : hashes) {
+                sketch.offer(hash);
+            }
+            hashes = null;
+        }
+        this.sketch = sketch;
         return this;
     }
     
     public static BluefloodSetRollup buildRollupFromSetRollups(Points<BluefloodSetRollup> input) throws IOException {
         BluefloodSetRollup rollup = new BluefloodSetRollup();
         for (Points.Point<BluefloodSetRollup> point : input.getPoints().values()) {
-            for (Integer i : point.getData().getHashes()) {
-                rollup.hashes.add(i);
+            BluefloodSetRollup data = point.getData();
+            if (data.isExact()) {
+                for (Integer i : data.hashes) {
+                    rollup.withHash(i);
+                }
+            } else {
+                rollup.withSketch(data.sketch.copy());
             }
         }
         return rollup;
     }
     
     public boolean contains(Object obj) {
+        if (!isExact()) {
+            throw new UnsupportedOperationException("Estimated sets do not keep their values");
+        }
         return hashes.contains(obj.hashCode());
     }
 
@@ -52,12 +93,20 @@ public class BluefloodSetRollup implements Rollup {
             return false;
         }
         BluefloodSetRollup other = (BluefloodSetRollup)obj;
-        return hashes.equals(other.hashes);
+        if (isExact()) {
+            return other.isExact() && hashes.equals(other.hashes);
+        }
+        return !other.isExact() && sketch.equals(other.sketch);
+    }
+
+    @Override
+    public int hashCode() {
+        return isExact() ? hashes.hashCode() : sketch.hashCode();
     }
 
     @Override
     public Boolean hasData() {
-        return hashes.size() > 0;
+        return getCount() > 0;
     }
 
     @Override
@@ -65,11 +114,31 @@ public class BluefloodSetRollup implements Rollup {
         return RollupType.SET;
     }
 
+    /**
+     * @return the number of distinct values, estimated if this set is not exact.
+     */
     public int getCount() {
-        return hashes.size();
+        return isExact() ? hashes.size() : (int) sketch.estimate();
+    }
+
+    public boolean isExact() {
+        return sketch == null;
+    }
+
+    /**
+     * @return the sketch of an estimated set, or null if the set is exact.
+     */
+    public HyperLogLog getSketch() {
+        return sketch;
     }
     
+    /**
+     * @return the hashes of the values of an exact set.
+     */
     public Iterable<Integer> getHashes() {
+        if (!isExact()) {
+            throw new UnsupportedOperationException("Estimated sets do not keep their values");
+        }
         return new Iterable<Integer>() {
             @Override
             public Iterator<Integer> iterator() {
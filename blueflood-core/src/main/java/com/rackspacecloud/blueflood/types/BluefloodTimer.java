@@ -18,6 +18,7 @@ package com.rackspacecloud.blueflood.types;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -33,6 +34,8 @@ public class BluefloodTimer {
     private Number std;
     private Map<String, Percentile> percentiles;
     private Map<String, Number> histogram;
+    // optional raw timings, kept as a quantile sketch.
+    private List<Number> values;
 
     public String getName() {
         return name;
@@ -78,6 +81,10 @@ public class BluefloodTimer {
         return safeUnmodifiableMap(histogram);
     }
 
+    public List<Number> getValues() {
+        return values == null ? Collections.<Number>emptyList() : Collections.unmodifiableList(values);
+    }
+
     public static <K,V> Map<K,V> safeUnmodifiableMap(Map<? extends K, ? extends V> m) {
         if (m == null)
             return Collections.unmodifiableMap(new HashMap<K, V>());
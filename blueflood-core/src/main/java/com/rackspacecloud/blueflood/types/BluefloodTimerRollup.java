@@ -45,6 +45,9 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
     
     // to support percentiles, we will overload the count and treat it as sum.
     private Map<String, Percentile> percentiles = new HashMap<String, Percentile>();
+
+    // only there when timings were sent along with the timer, and kept through rollups while every input has one.
+    private QuantileSketch sketch = null;
     
     public BluefloodTimerRollup() {
         super();
@@ -110,6 +113,11 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         return this;
     }
     
+    public BluefloodTimerRollup withSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
+        return this;
+    }
+
     public Average getAverage() { return average; }
     public MaxValue getMaxValue() { return max; }
     public MinValue getMinValue() { return min; }
@@ -172,10 +180,11 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
     public double getSum() { return sum; }
     public long getCount() { return count; };
     public int getSampleCount() { return sampleCount; }
+    public QuantileSketch getSketch() { return sketch; }
     
     public String toString() {
-        return String.format("sum:%s, rate:%s, count:%s, min:%s, max:%s, avg:%s, var:%s, sample_cnt:%s, %s",
-                sum, rate, count, min, max, average, variance, sampleCount,
+        return String.format("sum:%s, rate:%s, count:%s, min:%s, max:%s, avg:%s, var:%s, sample_cnt:%s, sketch:%s, %s",
+                sum, rate, count, min, max, average, variance, sampleCount, sketch,
                 Joiner.on(", ").withKeyValueSeparator(": ").join(percentiles.entrySet()));
     }
 
@@ -196,6 +205,7 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         if (!other.min.equals(this.min)) return false;
         if (!other.max.equals(this.max)) return false;
         if (other.count != this.count) return false;
+        if (other.sketch == null ? this.sketch != null : !other.sketch.equals(this.sketch)) return false;
 
         
         Map<String, Percentile> otherPct = other.getPercentiles();
@@ -219,6 +229,8 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
         Multimap<String, Number> pctMeans = LinkedListMultimap.create();
         Multimap<String, Number> pctUppers = LinkedListMultimap.create();
         Multimap<String, Number> pctSums = LinkedListMultimap.create();
+        QuantileSketch mergedSketch = null;
+        boolean allSketched = true;
 
         for (Map.Entry<Long, Points.Point<BluefloodTimerRollup>> item : points.entrySet()) {
             BluefloodTimerRollup rollup = item.getValue().getData();
@@ -239,6 +251,13 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
             this.max.handleRollupMetric(rollup);
             
             // now the percentiles.
+            // sketches merge exactly, unlike the percentiles below. a sketch missing any input would be wrong though.
+            if (rollup.getSketch() == null) {
+                allSketched = false;
+            } else if (allSketched) {
+                mergedSketch = mergedSketch == null ? rollup.getSketch().copy() : mergedSketch.merge(rollup.getSketch());
+            }
+
             Map<String, Percentile> percentilesToMerge = rollup.getPercentiles();
             for (String label : percentilesToMerge.keySet()) {
                 labels.add(label);
@@ -252,6 +271,9 @@ public class BluefloodTimerRollup implements Rollup, IBaseRollup {
             Number mean = BluefloodTimerRollup.avg(pctMeans.get(label));
             this.setPercentile(label, mean);
         }
+        if (allSketched) {
+            this.sketch = mergedSketch;
+        }
         // wooo!
     }
     
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Estimates the number of distinct values offered to it in a fixed amount of memory: 2^precision registers, each
+ * holding the longest run of leading zeros seen in the hashes that map to it. The standard error is about
+ * 1.04 / sqrt(2^precision), so the default precision of 12 gives about 1.6% in 4 KB.
+ *
+ * Small sketches only keep the registers that were set, and switch to a dense array of all registers once that
+ * would be smaller. Sketches of the same precision can be merged, which is what set rollups need.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    private final int precision;
+    private final int registerCount;
+    private TreeMap<Integer, Byte> sparse = new TreeMap<Integer, Byte>();
+    private byte[] dense = null;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format("precision must be between %d and %d: %d",
+                    MIN_PRECISION, MAX_PRECISION, precision));
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+    /**
+     * Adds a value by its hash code. The hash code is rehashed, so hash codes that are close together still end up
+     * spread over the registers.
+     */
+    public HyperLogLog offer(int hashCode) {
+        long hash = hashFunction.hashInt(hashCode).asLong();
+        int index = (int) (hash >>> (64 - precision));
+        // the remaining bits, with a sentinel so an all zero remainder still has a bounded rank.
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        return withRegister(index, Long.numberOfLeadingZeros(remainder) + 1);
+    }
+
+    /**
+     * Adds the values counted by other to this sketch. Both need the same precision.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(String.format("cannot merge sketches of precision %d and %d",
+                    precision, other.precision));
+        }
+        if (other.isSparse()) {
+            for (Map.Entry<Integer, Byte> register : other.sparse.entrySet()) {
+                withRegister(register.getKey(), register.getValue());
+            }
+        } else {
+            for (int i = 0; i < registerCount; i++) {
+                if (other.dense[i] != 0) {
+                    withRegister(i, other.dense[i]);
+                }
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int zeros;
+        double sum;
+        if (isSparse()) {
+            zeros = registerCount - sparse.size();
+            sum = zeros;
+            for (byte rank : sparse.values()) {
+                sum += Math.pow(2, -rank);
+            }
+        } else {
+            zeros = 0;
+            sum = 0;
+            for (byte rank : dense) {
+                if (rank == 0) {
+                    zeros++;
+                }
+                sum += Math.pow(2, -rank);
+            }
+        }
+
+        double estimate = alpha() * registerCount * registerCount / sum;
+        // linear counting is more accurate while there are still empty registers to count.
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // used to deserialize.
+    public HyperLogLog withRegister(int index, int rank) {
+        if (index < 0 || index >= registerCount) {
+            throw new IllegalArgumentException(String.format("register %d out of range for precision %d", index, precision));
+        }
+        if (isSparse()) {
+            Byte current = sparse.get(index);
+            if (current == null || current < rank) {
+                sparse.put(index, (byte) rank);
+                // a sparse register costs a few bytes to keep and to write, a dense one costs one.
+                if (sparse.size() > registerCount / 4) {
+                    toDense();
+                }
+            }
+        } else if (dense[index] < rank) {
+            dense[index] = (byte) rank;
+        }
+        return this;
+    }
+
+    private void toDense() {
+        dense = new byte[registerCount];
+        for (Map.Entry<Integer, Byte> register : sparse.entrySet()) {
+            dense[register.getKey()] = register.getValue();
+        }
+        sparse = null;
+    }
+
+    private double alpha() {
+        switch (registerCount) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    public int getPrecision() { return precision; }
+    public int getRegisterCount() { return registerCount; }
+
+    public boolean isSparse() {
+        return dense == null;
+    }
+
+    /**
+     * @return the registers that are set, by index. Only available while the sketch is sparse.
+     */
+    public SortedMap<Integer, Byte> getSparseRegisters() {
+        if (!isSparse()) {
+            throw new IllegalStateException("sketch is dense");
+        }
+        return Collections.unmodifiableSortedMap(sparse);
+    }
+
+    /**
+     * @return a copy of all the registers.
+     */
+    public byte[] getRegisters() {
+        if (isSparse()) {
+            byte[] registers = new byte[registerCount];
+            for (Map.Entry<Integer, Byte> register : sparse.entrySet()) {
+                registers[register.getKey()] = register.getValue();
+            }
+            return registers;
+        }
+        return dense.clone();
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision).merge(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof HyperLogLog)) return false;
+        HyperLogLog other = (HyperLogLog) obj;
+        return precision == other.precision && Arrays.equals(getRegisters(), other.getRegisters());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getRegisters());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{precision:%d, sparse:%s, estimate:%d}", precision, isSparse(), estimate());
+    }
+}
@@ -16,42 +16,55 @@
 
 package com.rackspacecloud.blueflood.types;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
+import com.rackspacecloud.blueflood.utils.Util;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class Locator implements Comparable<Locator> {
     private static final String metricTokenSeparator;
-    private static final String metricTokenSeparatorRegex;
     private static final Logger log = LoggerFactory.getLogger(Locator.class);
-    private String stringRep = null;
-    private String tenantId = null;
-    private String metricName = null;
+    private static final int UNKNOWN_SHARD = -1;
+
+    // hot locators show up in every batch; hand out one shared instance per name instead of re-parsing it.
+    private static final Cache<String, Locator> internedLocators;
+
+    // never change once constructed, interned instances are shared by every thread.
+    private final String stringRep;
+    private final String tenantId;
+    private final String metricName;
+    private volatile int shard = UNKNOWN_SHARD;
 
     static {
         metricTokenSeparator = (Configuration.getInstance().getBooleanProperty(CoreConfig.USE_LEGACY_METRIC_SEPARATOR) ? "," : ".");
-        // ugh.
-        metricTokenSeparatorRegex = (Configuration.getInstance().getBooleanProperty(CoreConfig.USE_LEGACY_METRIC_SEPARATOR) ? "," : "\\.");
         if (metricTokenSeparator.equals(",")) {
             log.warn("Deprecation warning! Use of 'USE_LEGACY_METRIC_SEPARATOR' is deprecated and will be removed in v3.0");
         }
+        internedLocators = CacheBuilder.newBuilder()
+                .maximumSize(Configuration.getInstance().getIntegerProperty(CoreConfig.LOCATOR_INTERN_CACHE_SIZE))
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .concurrencyLevel(30)
+                .build();
     }
 
     public Locator() {
-        // Left empty
+        this.stringRep = null;
+        this.tenantId = null;
+        this.metricName = null;
     }
 
-    private Locator(String fullyQualifiedMetricName) throws IllegalArgumentException {
-        setStringRep(fullyQualifiedMetricName);
-    }
-
-    protected void setStringRep(String rep) throws IllegalArgumentException {
+    protected Locator(String rep) throws IllegalArgumentException {
         // todo: null check and throw IllegalArgumentException?
         this.stringRep = rep;
-        tenantId = this.stringRep.split(metricTokenSeparatorRegex)[0];
-        metricName = this.stringRep.substring(this.stringRep.indexOf(metricTokenSeparator)+1);
+        int separator = rep.indexOf(metricTokenSeparator);
+        this.tenantId = separator < 0 ? rep : rep.substring(0, separator);
+        this.metricName = rep.substring(separator + 1);
     }
 
     protected boolean isValidDBKey(String dbKey, String delim) {
@@ -65,7 +78,14 @@ public class Locator implements Comparable<Locator> {
 
     @Override
     public boolean equals(Object obj) {
-        return obj != null && obj instanceof Locator && obj.hashCode() == this.hashCode();
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || !(obj instanceof Locator)) {
+            return false;
+        }
+        String otherRep = ((Locator) obj).stringRep;
+        return stringRep == null ? otherRep == null : stringRep.equals(otherRep);
     }
 
     public String toString() {
@@ -80,16 +100,39 @@ public class Locator implements Comparable<Locator> {
         return this.metricName;
     }
 
+    /**
+     * @return the shard this locator belongs to. Same as {@link Util#getShard(String)} on {@link #toString()}, but
+     * only hashed once per instance.
+     */
+    public int getShard() {
+        int computed = shard;
+        if (computed == UNKNOWN_SHARD) {
+            // racing threads compute the same value, so there is no harm in doing it twice.
+            computed = Util.computeShard(stringRep);
+            shard = computed;
+        }
+        return computed;
+    }
+
     public boolean equals(Locator other) {
         return stringRep.equals(other.toString());
     }
 
     public static Locator createLocatorFromPathComponents(String tenantId, String... parts) throws IllegalArgumentException {
-        return new Locator(tenantId + metricTokenSeparator + StringUtils.join(parts, metricTokenSeparator));
+        return intern(tenantId + metricTokenSeparator + StringUtils.join(parts, metricTokenSeparator));
     }
 
     public static Locator createLocatorFromDbKey(String fullyQualifiedMetricName) throws IllegalArgumentException {
-        return new Locator(fullyQualifiedMetricName);
+        return intern(fullyQualifiedMetricName);
+    }
+
+    private static Locator intern(String fullyQualifiedMetricName) {
+        Locator locator = internedLocators.getIfPresent(fullyQualifiedMetricName);
+        if (locator == null) {
+            locator = new Locator(fullyQualifiedMetricName);
+            internedLocators.put(fullyQualifiedMetricName, locator);
+        }
+        return locator;
     }
 
     @Override
@@ -20,6 +20,8 @@ import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class MetricsCollection {
@@ -47,4 +49,31 @@ public class MetricsCollection {
         }
         return Lists.partition(metrics, sizePerBatch);
     }
+
+    /**
+     * Like {@link #splitMetricsIntoBatches(int)}, but orders the metrics by shard and then locator before partitioning.
+     * Each batch then covers few shards, so few slot states to mark dirty, and the points of a locator end up in the
+     * same batch, so rows are written together. Points of one locator keep the order they arrived in.
+     */
+    public List<List<IMetric>> splitMetricsIntoShardBatches(int sizePerBatch) {
+        if (sizePerBatch <= 0) {
+            sizePerBatch = metrics.size();
+        }
+        List<IMetric> sorted = new ArrayList<IMetric>(metrics);
+        // stable, so points of the same locator are not reordered.
+        Collections.sort(sorted, SHARD_THEN_LOCATOR);
+        return Lists.partition(sorted, sizePerBatch);
+    }
+
+    private static final Comparator<IMetric> SHARD_THEN_LOCATOR = new Comparator<IMetric>() {
+        @Override
+        public int compare(IMetric a, IMetric b) {
+            int shardA = a.getLocator().getShard();
+            int shardB = b.getLocator().getShard();
+            if (shardA != shardB) {
+                return shardA < shardB ? -1 : 1;
+            }
+            return a.getLocator().compareTo(b.getLocator());
+        }
+    };
 }
@@ -44,43 +44,45 @@ public class MinValue extends AbstractRollupStat {
     @Override
     void handleFullResMetric(Object o) throws RuntimeException {
         if (o instanceof Double) {
-            if (init) {
-                this.setDoubleValue((Double)o);
-                this.init = false;
-                return;
-            }
-
-            if (!this.isFloatingPoint()) {
-                if ((double)this.toLong() > (Double)o) {
-                    this.setDoubleValue((Double)o);
-                }
-            } else {
-                this.setDoubleValue(Math.min(this.toDouble(), (Double)o));
-            }
+            handleFullResDouble(((Double) o).doubleValue());
         } else if (o instanceof Long || o instanceof Integer) {
-            Long val;
-            if (o instanceof Integer) {
-                val = ((Integer)o).longValue();
-            } else {
-                val = (Long)o;
-            }
+            handleFullResLong(((Number) o).longValue());
+        } else {
+            throw new RuntimeException("Unsuppored type " + o.getClass().getName() +" for min");
+        }
+    }
 
-            if (init) {
-                this.setLongValue(val);
-                this.init = false;
-                return;
+    @Override
+    void handleFullResDouble(double value) {
+        if (init) {
+            this.setDoubleValue(value);
+            this.init = false;
+            return;
+        }
+
+        if (!this.isFloatingPoint()) {
+            if ((double)this.toLong() > value) {
+                this.setDoubleValue(value);
             }
+        } else {
+            this.setDoubleValue(Math.min(this.toDouble(), value));
+        }
+    }
 
-            if (this.isFloatingPoint()) {
-                double doubleValOther = val.doubleValue();
-                if (this.toDouble()> doubleValOther) {
-                    this.setLongValue(val);
-                }
-            } else {
-                this.setLongValue(Math.min(this.toLong(), val));
+    @Override
+    void handleFullResLong(long value) {
+        if (init) {
+            this.setLongValue(value);
+            this.init = false;
+            return;
+        }
+
+        if (this.isFloatingPoint()) {
+            if (this.toDouble() > (double) value) {
+                this.setLongValue(value);
             }
         } else {
-            throw new RuntimeException("Unsuppored type " + o.getClass().getName() +" for min");
+            this.setLongValue(Math.min(this.toLong(), value));
         }
     }
 
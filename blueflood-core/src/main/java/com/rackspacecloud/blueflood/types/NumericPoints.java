@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Raw numeric points kept in columns: sorted timestamps, and the values as longs (or the bits of doubles) with their
+ * type, instead of a map of boxed timestamps to points wrapping a {@link SimpleNumber} each.
+ *
+ * Points appended in timestamp order stay in columns. A point added out of order turns this into a regular map-backed
+ * {@link Points}. Code that does not know about the columns can still read them through {@link #getPoints()}, which
+ * boxes a copy of them.
+ */
+public class NumericPoints extends Points<SimpleNumber> {
+    private static final SimpleNumber.Type[] TYPES = SimpleNumber.Type.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] timestamps;
+    private long[] values;
+    private byte[] types;
+    private int size = 0;
+
+    public NumericPoints() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public NumericPoints(int capacity) {
+        capacity = Math.max(capacity, 1);
+        timestamps = new long[capacity];
+        values = new long[capacity];
+        types = new byte[capacity];
+    }
+
+    public void add(long timestamp, long value) {
+        append(timestamp, value, SimpleNumber.Type.LONG);
+    }
+
+    public void add(long timestamp, int value) {
+        append(timestamp, value, SimpleNumber.Type.INTEGER);
+    }
+
+    public void add(long timestamp, double value) {
+        append(timestamp, Double.doubleToRawLongBits(value), SimpleNumber.Type.DOUBLE);
+    }
+
+    @Override
+    public void add(Point<SimpleNumber> point) {
+        SimpleNumber number = point.getData();
+        if (!isColumnar() || (size > 0 && point.getTimestamp() <= timestamps[size - 1])) {
+            leaveColumns().put(point.getTimestamp(), point);
+        } else if (number.getDataType() == SimpleNumber.Type.DOUBLE) {
+            add(point.getTimestamp(), number.getValue().doubleValue());
+        } else {
+            append(point.getTimestamp(), number.getValue().longValue(), number.getDataType());
+        }
+    }
+
+    private void append(long timestamp, long value, SimpleNumber.Type type) {
+        if (!isColumnar() || (size > 0 && timestamp <= timestamps[size - 1])) {
+            leaveColumns().put(timestamp, new Point<SimpleNumber>(timestamp, toSimpleNumber(value, type)));
+            return;
+        }
+        if (size == timestamps.length) {
+            int capacity = size + (size >> 1) + 1;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        types[size] = (byte) type.ordinal();
+        size++;
+    }
+
+    /**
+     * @return whether the points are still in columns; only then are the column accessors below available.
+     */
+    public boolean isColumnar() {
+        return timestamps != null;
+    }
+
+    @Override
+    public int size() {
+        return isColumnar() ? size : super.size();
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    public SimpleNumber.Type getDataType(int i) {
+        return TYPES[types[i]];
+    }
+
+    /**
+     * @return the value at i, which must not be a double.
+     */
+    public long getLongValue(int i) {
+        return values[i];
+    }
+
+    public double getDoubleValue(int i) {
+        return getDataType(i) == SimpleNumber.Type.DOUBLE ? Double.longBitsToDouble(values[i]) : values[i];
+    }
+
+    /**
+     * @return the value at i as the boxed type it was added with.
+     */
+    public Number getValue(int i) {
+        switch (getDataType(i)) {
+            case INTEGER: return (int) values[i];
+            case DOUBLE: return Double.longBitsToDouble(values[i]);
+            default: return values[i];
+        }
+    }
+
+    /**
+     * @return the points; while they are in columns, a read-only copy of them.
+     */
+    @Override
+    public Map<Long, Point<SimpleNumber>> getPoints() {
+        if (isColumnar()) {
+            return Collections.unmodifiableMap(boxColumns(new TreeMap<Long, Point<SimpleNumber>>()));
+        }
+        return super.getPoints();
+    }
+
+    private Map<Long, Point<SimpleNumber>> leaveColumns() {
+        if (isColumnar()) {
+            boxColumns(super.getPoints());
+            timestamps = null;
+            values = null;
+            types = null;
+        }
+        return super.getPoints();
+    }
+
+    private Map<Long, Point<SimpleNumber>> boxColumns(Map<Long, Point<SimpleNumber>> points) {
+        for (int i = 0; i < size; i++) {
+            points.put(timestamps[i], new Point<SimpleNumber>(timestamps[i], new SimpleNumber(getValue(i))));
+        }
+        return points;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Class getDataClass() {
+        if (isEmpty())
+            throw new IllegalStateException("");
+        return SimpleNumber.class;
+    }
+
+    private static SimpleNumber toSimpleNumber(long value, SimpleNumber.Type type) {
+        switch (type) {
+            case INTEGER: return new SimpleNumber((int) value);
+            case DOUBLE: return new SimpleNumber(Double.longBitsToDouble(value));
+            default: return new SimpleNumber(value);
+        }
+    }
+}
@@ -37,6 +37,10 @@ public class Points<T> {
     public boolean isEmpty() {
         return points.isEmpty();
     }
+
+    public int size() {
+        return points.size();
+    }
     
     public Class getDataClass() {
         if (points.size() == 0)
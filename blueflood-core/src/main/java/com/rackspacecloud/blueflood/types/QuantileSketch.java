@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A mergeable histogram of timings with logarithmically sized buckets, so any quantile it returns is within
+ * relativeAccuracy of a value that was actually added. Unlike percentiles computed by statsd, sketches of
+ * different timers or time ranges can be merged without losing accuracy, which is what rollups need.
+ *
+ * Bucket i counts the values in (gamma^(i-1), gamma^i], where gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy).
+ * Values too small to have a bucket, including negative ones, are counted as zero.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // smallest value that gets a bucket of its own.
+    private static final double MIN_INDEXED_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> buckets = new TreeMap<Integer, Long>();
+    private long zeroCount = 0;
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public QuantileSketch add(double value) {
+        if (value > MIN_INDEXED_VALUE) {
+            withBucket((int) Math.ceil(Math.log(value) / logGamma), 1);
+        } else {
+            withZeroCount(1);
+        }
+        return withMinMax(value, value);
+    }
+
+    /**
+     * Adds the values counted by other to this sketch. Both need the same relative accuracy.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException(String.format("cannot merge sketches of accuracy %s and %s",
+                    relativeAccuracy, other.relativeAccuracy));
+        }
+        for (Map.Entry<Integer, Long> bucket : other.buckets.entrySet()) {
+            withBucket(bucket.getKey(), bucket.getValue());
+        }
+        withZeroCount(other.zeroCount);
+        if (!other.isEmpty()) {
+            withMinMax(other.min, other.max);
+        }
+        return this;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return estimate of the value at quantile, or NaN if nothing was added.
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+        }
+        if (isEmpty()) {
+            return Double.NaN;
+        }
+        // the extremes are known exactly.
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+
+        double rank = quantile * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen) {
+            return Math.max(min, Math.min(0, max));
+        }
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (rank < seen) {
+                double estimate = 2 * Math.pow(gamma, bucket.getKey()) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    // used to deserialize.
+    public QuantileSketch withBucket(int index, long bucketCount) {
+        Long current = buckets.get(index);
+        buckets.put(index, current == null ? bucketCount : current + bucketCount);
+        count += bucketCount;
+        return this;
+    }
+
+    public QuantileSketch withZeroCount(long zeroCount) {
+        this.zeroCount += zeroCount;
+        this.count += zeroCount;
+        return this;
+    }
+
+    public QuantileSketch withMinMax(double min, double max) {
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+        return this;
+    }
+
+    public double getRelativeAccuracy() { return relativeAccuracy; }
+    public SortedMap<Integer, Long> getBuckets() { return Collections.unmodifiableSortedMap(buckets); }
+    public long getZeroCount() { return zeroCount; }
+    public long getCount() { return count; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public QuantileSketch copy() {
+        return new QuantileSketch(relativeAccuracy).merge(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof QuantileSketch)) return false;
+        QuantileSketch other = (QuantileSketch) obj;
+        return relativeAccuracy == other.relativeAccuracy
+                && zeroCount == other.zeroCount
+                && buckets.equals(other.buckets)
+                && (isEmpty() || (min == other.min && max == other.max));
+    }
+
+    @Override
+    public int hashCode() {
+        return buckets.hashCode() * 31 + (int) zeroCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{count:%d, min:%s, max:%s, buckets:%d}", count, min, max, buckets.size());
+    }
+}
@@ -65,8 +65,17 @@ public class Variance extends AbstractRollupStat {
 
     @Override
     void handleFullResMetric(Object o) throws RuntimeException {
+        handleFullResDouble(getDoubleValue(o));
+    }
+
+    @Override
+    void handleFullResLong(long value) {
+        handleFullResDouble((double) value);
+    }
+
+    @Override
+    void handleFullResDouble(double input) {
         // Welford algorithm (one pass)
-        double input = getDoubleValue(o);
         double delta = input - mean;
         this.count++;
         this.mean = this.mean + (delta/this.count);
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Ticker;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers which keys were seen recently, without locks and in bounded memory, e.g. to skip writing a locator that
+ * was written a few minutes ago.
+ *
+ * Keys are kept as 64 bit fingerprints in two open-addressing tables: the current generation, which takes new keys,
+ * and the previous one. Once the current generation is a period old, or holds maxSize keys, it becomes the previous
+ * one and the old previous generation is dropped. A key found only in the previous generation is copied to the
+ * current one, so a key is forgotten between one and two periods after it was last seen, or sooner if more than
+ * maxSize keys are seen in a period. The chance of a false positive is negligible.
+ */
+public class RecentlySeenSet {
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+    private static final int EMPTY = 0;
+    // probes before giving up on a key; the tables are at most half full, so it takes a very unlucky run.
+    private static final int MAX_PROBES = 64;
+
+    private final int maxSize;
+    private final int capacity;
+    private final long periodNanos;
+    private final Ticker ticker;
+    private final AtomicReference<Generations> generations;
+
+    public RecentlySeenSet(int maxSize, TimeValue period) {
+        this(maxSize, period, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    RecentlySeenSet(int maxSize, TimeValue period, Ticker ticker) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+        this.periodNanos = period.toMillis() * 1000000L;
+        this.ticker = ticker;
+        this.generations = new AtomicReference<Generations>(
+                new Generations(new Generation(capacity, ticker.read()), null));
+    }
+
+    public boolean contains(String key) {
+        long fingerprint = fingerprint(key);
+        Generations current = currentGenerations();
+        if (current.current.contains(fingerprint)) {
+            return true;
+        }
+        if (current.previous != null && current.previous.contains(fingerprint)) {
+            add(current, fingerprint);
+            return true;
+        }
+        return false;
+    }
+
+    public void add(String key) {
+        add(currentGenerations(), fingerprint(key));
+    }
+
+    /**
+     * @return how many keys the current generation holds.
+     */
+    public int size() {
+        return generations.get().current.count.get();
+    }
+
+    private void add(Generations current, long fingerprint) {
+        if (current.current.add(fingerprint) && current.current.count.get() >= maxSize) {
+            rotate(current);
+        }
+    }
+
+    private Generations currentGenerations() {
+        Generations current = generations.get();
+        if (ticker.read() - current.current.created >= periodNanos) {
+            return rotate(current);
+        }
+        return current;
+    }
+
+    private Generations rotate(Generations expected) {
+        Generations rotated = new Generations(new Generation(capacity, ticker.read()), expected.current);
+        // another thread rotating at the same time wins, and this one uses its generations.
+        return generations.compareAndSet(expected, rotated) ? rotated : generations.get();
+    }
+
+    private static long fingerprint(String key) {
+        long hash = hashFunction.hashString(key, Charsets.UTF_8).asLong();
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private static class Generations {
+        private final Generation current;
+        private final Generation previous;
+
+        private Generations(Generation current, Generation previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    private static class Generation {
+        private final AtomicLongArray table;
+        private final int mask;
+        private final long created;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        private Generation(int capacity, long created) {
+            this.table = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.created = created;
+        }
+
+        private boolean contains(long fingerprint) {
+            int index = (int) fingerprint & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long value = table.get(index);
+                if (value == fingerprint) {
+                    return true;
+                }
+                if (value == EMPTY) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the fingerprint was added, false if it was there already or did not fit.
+         */
+        private boolean add(long fingerprint) {
+            int index = (int) fingerprint & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long value = table.get(index);
+                if (value == fingerprint) {
+                    return false;
+                }
+                if (value == EMPTY) {
+                    if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                        count.incrementAndGet();
+                        return true;
+                    }
+                    // somebody took the slot, look at what they put there.
+                    continue;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.cache;
+
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RollupBlockCacheTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    // 12 points of 5 minutes, so blocks are one hour.
+    private static final int POINTS_PER_BLOCK = 12;
+    private static final long CLOSE_DELAY = 10 * MINUTE;
+    // blocks that ended more than this long ago are final.
+    private static final long REROLL_WINDOW = 12 * HOUR;
+    private static final long NOW = 1000 * HOUR + 32 * MINUTE;
+
+    private final Locator locator = Locator.createLocatorFromPathComponents("tenant", "metric");
+    private final Locator empty = Locator.createLocatorFromPathComponents("tenant", "empty");
+
+    private RollupBlockCache cache;
+    private StoreReader reader;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new RollupBlockCache(true, 1024 * 1024, POINTS_PER_BLOCK, new TimeValue(10, TimeUnit.MINUTES), CLOSE_DELAY,
+                REROLL_WINDOW);
+        reader = new StoreReader();
+        for (long time = NOW - 24 * HOUR; time < NOW; time += Granularity.MIN_5.milliseconds()) {
+            reader.put(locator, time, time / MINUTE);
+        }
+    }
+
+    @Test
+    public void testSecondReadOnlyReadsTail() {
+        Range range = new Range(NOW - 6 * HOUR + 7 * MINUTE, NOW);
+
+        Map<Locator, MetricData> first = read(range, locator);
+        // the first read starts at the beginning of the first block, to cache all of it.
+        assertEquals(Arrays.asList(new Range(NOW - 6 * HOUR - 32 * MINUTE, NOW)), reader.reads);
+        assertPointsEqual(reader.expected(locator, range), first.get(locator));
+
+        reader.reads.clear();
+        Map<Locator, MetricData> second = read(range, locator);
+
+        // blocks up to 10:00 are closed, 10:00 to 10:32 is still open.
+        assertEquals(Arrays.asList(new Range(NOW - 32 * MINUTE, NOW)), reader.reads);
+        assertPointsEqual(reader.expected(locator, range), second.get(locator));
+        assertEquals("ms", second.get(locator).getUnit());
+        assertEquals(MetricData.Type.NUMBER.toString(), second.get(locator).getType());
+    }
+
+    @Test
+    public void testReadWithinClosedBlocksSkipsReader() {
+        Range range = new Range(NOW - 5 * HOUR, NOW - 3 * HOUR - MINUTE);
+        read(range, locator);
+        // the last block is read to its end, even though the range stops half way.
+        assertEquals(Arrays.asList(new Range(NOW - 5 * HOUR - 32 * MINUTE, NOW - 2 * HOUR - 32 * MINUTE - 1)), reader.reads);
+
+        reader.reads.clear();
+        Map<Locator, MetricData> cached = read(range, locator);
+
+        assertTrue(reader.reads.isEmpty());
+        assertPointsEqual(reader.expected(locator, range), cached.get(locator));
+        assertEquals("ms", cached.get(locator).getUnit());
+    }
+
+    @Test
+    public void testInvalidateRereadsBlock() throws IOException {
+        Range range = new Range(NOW - 3 * HOUR, NOW);
+        read(range, locator);
+
+        long rerolled = NOW - 2 * HOUR - 2 * MINUTE;
+        reader.put(locator, rerolled, -1);
+        cache.invalidate(locator, Granularity.MIN_5, rerolled);
+
+        reader.reads.clear();
+        Map<Locator, MetricData> reread = read(range, locator);
+
+        assertEquals(1, reader.reads.size());
+        assertEquals(NOW - 3 * HOUR - 32 * MINUTE, reader.reads.get(0).getStart());
+        assertPointsEqual(reader.expected(locator, range), reread.get(locator));
+    }
+
+    @Test
+    public void testBlocksThatCanBeRerolledExpire() throws IOException {
+        Range range = new Range(NOW - 3 * HOUR, NOW);
+        read(range, locator);
+
+        // re-rolled by another node, this process is not told.
+        long rerolled = NOW - 2 * HOUR - 2 * MINUTE;
+        reader.put(locator, rerolled, -1);
+
+        reader.reads.clear();
+        read(range, NOW + 9 * MINUTE, locator);
+        assertEquals(Arrays.asList(new Range(NOW - 32 * MINUTE, NOW)), reader.reads);
+
+        reader.reads.clear();
+        Map<Locator, MetricData> expired = read(range, NOW + 10 * MINUTE, locator);
+        assertEquals(NOW - 3 * HOUR - 32 * MINUTE, reader.reads.get(0).getStart());
+        assertPointsEqual(reader.expected(locator, range), expired.get(locator));
+    }
+
+    @Test
+    public void testFinalBlocksDoNotExpire() {
+        Range range = new Range(NOW - 20 * HOUR, NOW - 14 * HOUR - MINUTE);
+        read(range, locator);
+
+        reader.reads.clear();
+        read(range, NOW + 24 * HOUR, locator);
+
+        assertTrue(reader.reads.isEmpty());
+    }
+
+    @Test
+    public void testHitsAndMissesAreReadSeparately() {
+        Range range = new Range(NOW - 3 * HOUR, NOW);
+        read(range, locator);
+
+        Locator other = Locator.createLocatorFromPathComponents("tenant", "other");
+        reader.reads.clear();
+        read(range, locator, other);
+
+        assertEquals(2, reader.reads.size());
+        assertTrue(reader.reads.contains(new Range(NOW - 3 * HOUR - 32 * MINUTE, NOW)));
+        assertTrue(reader.reads.contains(new Range(NOW - 32 * MINUTE, NOW)));
+    }
+
+    @Test
+    public void testRecentReadsAreNotCached() {
+        Range range = new Range(NOW - 20 * MINUTE, NOW);
+        read(range, locator);
+        read(range, locator);
+
+        assertEquals(Arrays.asList(range, range), reader.reads);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBlocksWithoutLaterDataAreNotCached() {
+        // might just not be rolled up yet.
+        read(new Range(NOW - 3 * HOUR, NOW), empty);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEmptyBlocksBeforeDataAreCached() {
+        Range range = new Range(NOW - 30 * HOUR, NOW);
+        read(range, locator);
+        // 24 hours of data, 6 hours without, and the still open tail.
+        assertEquals(30, cache.size());
+
+        reader.reads.clear();
+        assertPointsEqual(reader.expected(locator, range), read(range, locator).get(locator));
+        assertEquals(Arrays.asList(new Range(NOW - 32 * MINUTE, NOW)), reader.reads);
+    }
+
+    @Test
+    public void testFullResolutionIsNotCached() {
+        Range range = new Range(NOW - 3 * HOUR, NOW);
+        cache.getDatapointsForRange(Arrays.asList(locator), range, Granularity.FULL, reader, NOW);
+
+        assertEquals(Arrays.asList(range), reader.reads);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabledCacheReadsThrough() {
+        cache = new RollupBlockCache(false, 1024 * 1024, POINTS_PER_BLOCK, new TimeValue(10, TimeUnit.MINUTES), CLOSE_DELAY,
+                REROLL_WINDOW);
+        Range range = new Range(NOW - 3 * HOUR, NOW);
+        read(range, locator);
+        read(range, locator);
+
+        assertEquals(Arrays.asList(range, range), reader.reads);
+        assertEquals(0, cache.size());
+    }
+
+    private Map<Locator, MetricData> read(Range range, Locator... locators) {
+        return read(range, NOW, locators);
+    }
+
+    private Map<Locator, MetricData> read(Range range, long now, Locator... locators) {
+        return cache.getDatapointsForRange(Arrays.asList(locators), range, Granularity.MIN_5, reader, now);
+    }
+
+    private static void assertPointsEqual(Map<Long, Points.Point> expected, MetricData actual) {
+        assertEquals(expected, new TreeMap<Long, Points.Point>(actual.getData().getPoints()));
+    }
+
+    private static class StoreReader implements RollupBlockCache.Reader {
+        private final Map<Locator, TreeMap<Long, BasicRollup>> store = new HashMap<Locator, TreeMap<Long, BasicRollup>>();
+        private final List<Range> reads = new ArrayList<Range>();
+
+        void put(Locator locator, long timestamp, long value) throws IOException {
+            Points<SimpleNumber> input = new Points<SimpleNumber>();
+            input.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(value)));
+            if (!store.containsKey(locator)) {
+                store.put(locator, new TreeMap<Long, BasicRollup>());
+            }
+            store.get(locator).put(timestamp, BasicRollup.buildRollupFromRawSamples(input));
+        }
+
+        Map<Long, Points.Point> expected(Locator locator, Range range) {
+            Map<Long, Points.Point> expected = new TreeMap<Long, Points.Point>();
+            for (Map.Entry<Long, BasicRollup> entry : rows(locator).subMap(range.getStart(), true, range.getStop(), true).entrySet()) {
+                expected.put(entry.getKey(), new Points.Point<BasicRollup>(entry.getKey(), entry.getValue()));
+            }
+            return expected;
+        }
+
+        @Override
+        public Map<Locator, MetricData> getDatapointsForRange(List<Locator> locators, Range range, Granularity gran) {
+            reads.add(range);
+            Map<Locator, MetricData> result = new HashMap<Locator, MetricData>();
+            for (Locator locator : locators) {
+                Points<BasicRollup> points = new Points<BasicRollup>();
+                for (Points.Point point : expected(locator, range).values()) {
+                    points.add(point);
+                }
+                result.put(locator, new MetricData(points, "ms", MetricData.Type.NUMBER));
+            }
+            return result;
+        }
+
+        private TreeMap<Long, BasicRollup> rows(Locator locator) {
+            TreeMap<Long, BasicRollup> rows = store.get(locator);
+            return rows == null ? new TreeMap<Long, BasicRollup>() : rows;
+        }
+    }
+}
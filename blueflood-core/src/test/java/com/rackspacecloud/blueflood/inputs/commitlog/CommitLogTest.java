@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.commitlog;
+
+import com.codahale.metrics.Counter;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.inputs.processors.BatchWriter;
+import com.rackspacecloud.blueflood.types.BluefloodCounterRollup;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.types.PreaggregatedMetric;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class CommitLogTest {
+
+    private static final TimeValue TTL = new TimeValue(2, TimeUnit.DAYS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private BatchWriter batchWriter;
+    private final List<List<IMetric>> written = Collections.synchronizedList(new ArrayList<List<IMetric>>());
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("commitlog");
+        batchWriter = mock(BatchWriter.class);
+    }
+
+    @Test
+    public void testSerDesRoundTrip() throws Exception {
+        List<IMetric> batch = new ArrayList<IMetric>();
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "int"), 42, 1000L, TTL, "ms"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "long"), Long.MAX_VALUE, 1000L, TTL, "ms"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "double"), 4.2d, 1000L, TTL, "ms"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "string"), "up", 1000L, TTL, "unknown"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "bool"), true, 1000L, TTL, "unknown"));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "no.unit"), 1L, 1000L, TTL, null));
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "big"),
+                BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TEN), 1000L, TTL, "ms"));
+        batch.add(new PreaggregatedMetric(2000L, Locator.createLocatorFromPathComponents("tenant", "counter"), TTL,
+                new BluefloodCounterRollup().withCount(7L).withRate(0.5d).withSampleCount(3)));
+
+        CommitLogSerDes serDes = new CommitLogSerDes();
+        List<IMetric> read = serDes.deserialize(serDes.serialize(batch));
+
+        assertEquals(batch.size(), read.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(batch.get(i), read.get(i));
+        }
+        Metric noUnit = (Metric) read.get(5);
+        assertNull(noUnit.getUnit());
+        assertEquals(1L, noUnit.getMetricValue());
+
+        assertEquals(((Metric) batch.get(6)).getMetricValue(), ((Metric) read.get(6)).getMetricValue());
+
+        PreaggregatedMetric counter = (PreaggregatedMetric) read.get(7);
+        assertEquals(batch.get(7).getLocator(), counter.getLocator());
+        assertEquals(2000L, counter.getCollectionTime());
+        assertEquals(TTL.toSeconds(), counter.getTtlInSeconds());
+        assertEquals(((PreaggregatedMetric) batch.get(7)).getMetricValue(), counter.getMetricValue());
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testSerDesRefusesValuesItWouldRound() throws Exception {
+        List<IMetric> batch = new ArrayList<IMetric>();
+        batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", "decimal"), new BigDecimal("0.1"),
+                1000L, TTL, "ms"));
+
+        new CommitLogSerDes().serialize(batch);
+    }
+
+    @Test
+    public void testAppendSyncsThenWrites() throws Exception {
+        writesSucceed();
+        CommitLog commitLog = createCommitLog(1024 * 1024);
+
+        List<List<IMetric>> batches = Arrays.asList(createBatch("a", 3), createBatch("b", 2));
+        List<Boolean> synced = commitLog.append(batches).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(true, true), synced);
+        waitForWrites(2);
+        assertEquals(batches, written);
+        commitLog.shutdown();
+    }
+
+    @Test
+    public void testWrittenSegmentsAreDeleted() throws Exception {
+        writesSucceed();
+        // small enough that every batch rolls to a new segment.
+        CommitLog commitLog = createCommitLog(64);
+
+        for (int i = 0; i < 5; i++) {
+            commitLog.append(Collections.singletonList(createBatch("m" + i, 2))).get(5, TimeUnit.SECONDS);
+        }
+        waitForWrites(5);
+
+        // every full segment is gone, only the one still being appended to is left.
+        waitForSegments(1);
+        commitLog.shutdown();
+    }
+
+    @Test
+    public void testRecoverReplaysUnwrittenBatches() throws Exception {
+        // cassandra never answers, as if the process died before the writes went through.
+        when(batchWriter.apply(anyList())).thenReturn(SettableFuture.<List<Boolean>>create());
+
+        CommitLog crashed = createCommitLog(1024 * 1024);
+        List<List<IMetric>> batches = Arrays.asList(createBatch("a", 3), createBatch("b", 2));
+        crashed.append(batches).get(5, TimeUnit.SECONDS);
+        crashed.shutdown();
+        assertEquals(1, segmentFiles().length);
+
+        batchWriter = mock(BatchWriter.class);
+        writesSucceed();
+        CommitLog restarted = createCommitLog(1024 * 1024);
+
+        waitForWrites(2);
+        assertEquals(batches, written);
+        // the replayed segment is deleted once written.
+        waitForSegments(0);
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testRecoverSkipsWrittenBatches() throws Exception {
+        // the first batch gets to cassandra, then the process dies before the second one does.
+        when(batchWriter.apply(anyList()))
+                .thenReturn(Futures.<List<Boolean>>immediateFuture(Arrays.asList(true)))
+                .thenReturn(SettableFuture.<List<Boolean>>create());
+
+        CommitLog crashed = createCommitLog(1024 * 1024);
+        crashed.append(Collections.singletonList(createBatch("a", 3))).get(5, TimeUnit.SECONDS);
+        List<IMetric> unwritten = createBatch("b", 2);
+        crashed.append(Collections.singletonList(unwritten)).get(5, TimeUnit.SECONDS);
+        verify(batchWriter, timeout(5000).times(2)).apply(anyList());
+        crashed.shutdown();
+
+        batchWriter = mock(BatchWriter.class);
+        writesSucceed();
+        CommitLog restarted = createCommitLog(1024 * 1024);
+
+        waitForWrites(1);
+        assertEquals(Collections.singletonList(unwritten), written);
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testFailedWritesAreKeptForReplay() throws Exception {
+        when(batchWriter.apply(anyList())).thenReturn(Futures.<List<Boolean>>immediateFuture(Arrays.asList(false)));
+        CommitLog commitLog = createCommitLog(64);
+
+        commitLog.append(Collections.singletonList(createBatch("a", 2))).get(5, TimeUnit.SECONDS);
+        // rolls the first segment, so it would be deleted if its batch had been written.
+        commitLog.append(Collections.singletonList(createBatch("b", 2))).get(5, TimeUnit.SECONDS);
+
+        verify(batchWriter, timeout(5000).atLeast(2)).apply(anyList());
+        assertEquals(2, segmentFiles().length);
+        commitLog.shutdown();
+    }
+
+    @Test
+    public void testAbandonedBatchesAreWrittenAgain() throws Exception {
+        when(batchWriter.apply(anyList()))
+                .thenReturn(Futures.<List<Boolean>>immediateFuture(Arrays.asList(false)))
+                .thenAnswer(recordWrites);
+        CommitLog commitLog = new CommitLog(directory, 64, 0, batchWriter, mock(Counter.class), 50);
+        commitLog.recover();
+
+        List<IMetric> abandoned = createBatch("a", 2);
+        commitLog.append(Collections.singletonList(abandoned)).get(5, TimeUnit.SECONDS);
+        // rolls the first segment, so it can be read back.
+        commitLog.append(Collections.singletonList(createBatch("b", 2))).get(5, TimeUnit.SECONDS);
+
+        waitForWrites(2);
+        assertTrue(written.contains(abandoned));
+        // the first segment is deleted once its batch finally got written.
+        waitForSegments(1);
+        commitLog.shutdown();
+    }
+
+    @Test
+    public void testRecoverSkipsBatchesWrittenByAReplay() throws Exception {
+        when(batchWriter.apply(anyList())).thenReturn(SettableFuture.<List<Boolean>>create());
+        CommitLog crashed = createCommitLog(1024 * 1024);
+        List<IMetric> unwritten = createBatch("b", 2);
+        crashed.append(Arrays.asList(createBatch("a", 3), unwritten)).get(5, TimeUnit.SECONDS);
+        crashed.shutdown();
+
+        // the replay only gets the first batch to cassandra.
+        batchWriter = mock(BatchWriter.class);
+        when(batchWriter.apply(anyList())).thenReturn(Futures.<List<Boolean>>immediateFuture(Arrays.asList(true, false)));
+        CommitLog replayed = createCommitLog(1024 * 1024);
+        verify(batchWriter, timeout(5000)).apply(anyList());
+        replayed.shutdown();
+
+        batchWriter = mock(BatchWriter.class);
+        writesSucceed();
+        CommitLog restarted = createCommitLog(1024 * 1024);
+
+        waitForWrites(1);
+        assertEquals(Collections.singletonList(unwritten), written);
+        waitForSegments(0);
+        restarted.shutdown();
+    }
+
+    private CommitLog createCommitLog(int segmentSize) throws Exception {
+        CommitLog commitLog = new CommitLog(directory, segmentSize, 0, batchWriter, mock(Counter.class));
+        commitLog.recover();
+        return commitLog;
+    }
+
+    private final Answer<ListenableFuture<List<Boolean>>> recordWrites = new Answer<ListenableFuture<List<Boolean>>>() {
+        @Override
+        public ListenableFuture<List<Boolean>> answer(InvocationOnMock invocation) throws Throwable {
+            List<List<IMetric>> batches = (List<List<IMetric>>) invocation.getArguments()[0];
+            written.addAll(batches);
+            return Futures.immediateFuture(Collections.nCopies(batches.size(), true));
+        }
+    };
+
+    private void writesSucceed() throws Exception {
+        when(batchWriter.apply(anyList())).thenAnswer(recordWrites);
+    }
+
+    private void waitForWrites(int batches) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < batches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(batches, written.size());
+    }
+
+    private void waitForSegments(int segments) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (segmentFiles().length != segments && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(segments, segmentFiles().length);
+    }
+
+    private File[] segmentFiles() {
+        return directory.listFiles(CommitLogSegment.FILTER);
+    }
+
+    private List<IMetric> createBatch(String name, int size) {
+        List<IMetric> batch = new ArrayList<IMetric>();
+        for (int i = 0; i < size; i++) {
+            batch.add(new Metric(Locator.createLocatorFromPathComponents("tenant", name, String.valueOf(i)),
+                    (long) i, 1000L + i, TTL, "ms"));
+        }
+        return batch;
+    }
+}
@@ -17,11 +17,15 @@
 package com.rackspacecloud.blueflood.inputs.processors;
 
 import com.codahale.metrics.Counter;
+import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.inputs.processors.BatchWriter;
 import com.rackspacecloud.blueflood.io.AbstractMetricsRW;
+import com.rackspacecloud.blueflood.io.ActiveLocatorIO;
 import com.rackspacecloud.blueflood.io.MetricsRWDelegator;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
 import com.rackspacecloud.blueflood.service.IngestionContext;
 import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.types.Metric;
@@ -32,11 +36,18 @@ import com.rackspacecloud.blueflood.utils.Util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.stub;
 
@@ -109,10 +120,107 @@ public class BatchWriterTest {
         //Confirm scheduleContext was updated
         for (List<IMetric> l : allTestdata) {
             Assert.assertTrue(l.size() == METRICS_PER_LIST);
-            for (IMetric m : l) {
-                verify(context).update(m.getCollectionTime(), 
-                    Util.getShard(m.getLocator().toString()));
-            }
+            verify(context).updateAll(l);
         }
     }
+
+    @Test
+    public void testRejectedBatchFails() throws Exception {
+        Counter bufferedMetrics = new Counter();
+        MetricsRWDelegator metricsRWDelegator = new MetricsRWDelegator(mock(AbstractMetricsRW.class), mock(AbstractMetricsRW.class));
+        ThreadPoolExecutor threadPool = new ThreadPoolBuilder().withRejectedHandler(new ThreadPoolExecutor.AbortPolicy()).build();
+        threadPool.shutdown();
+        BatchWriter batchWriter = new BatchWriter(
+                        threadPool,
+                        timeout, bufferedMetrics,
+                        mock(IngestionContext.class),
+                        metricsRWDelegator
+                        );
+        bufferedMetrics.inc(NUM_LISTS * METRICS_PER_LIST);
+
+        ListenableFuture<List<Boolean>> futures = batchWriter.apply(createTestData(Metric.class));
+
+        try {
+            futures.get(timeout.getValue(), timeout.getUnit());
+            Assert.fail("rejected batches must fail");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertEquals(0, bufferedMetrics.getCount());
+    }
+
+    @Test
+    public void testUnbufferedListenerRunsAsBatchesLeaveTheBuffer() throws Exception {
+        Counter bufferedMetrics = new Counter();
+        MetricsRWDelegator metricsRWDelegator = new MetricsRWDelegator(mock(AbstractMetricsRW.class), mock(AbstractMetricsRW.class));
+        final AtomicInteger unbufferedCalls = new AtomicInteger(0);
+        BatchWriter batchWriter = new BatchWriter(
+                        new ThreadPoolBuilder().build(),
+                        timeout, bufferedMetrics,
+                        mock(IngestionContext.class),
+                        metricsRWDelegator
+                        ).withUnbufferedListener(new Runnable() {
+                            @Override
+                            public void run() {
+                                unbufferedCalls.incrementAndGet();
+                            }
+                        });
+        bufferedMetrics.inc(NUM_LISTS * METRICS_PER_LIST);
+
+        batchWriter.apply(createTestData(Metric.class)).get(timeout.getValue(), timeout.getUnit());
+
+        Assert.assertEquals(NUM_LISTS, unbufferedCalls.get());
+        Assert.assertEquals(0, bufferedMetrics.getCount());
+
+        // metrics given up on leave the buffer too
+        bufferedMetrics.inc(METRICS_PER_LIST);
+        batchWriter.unbuffer(METRICS_PER_LIST);
+        Assert.assertEquals(NUM_LISTS + 1, unbufferedCalls.get());
+        Assert.assertEquals(0, bufferedMetrics.getCount());
+    }
+
+    @Test
+    public void testActiveLocatorsAreIndexedOncePerSlot() throws Exception {
+        ActiveLocatorIO activeLocatorIO = mock(ActiveLocatorIO.class);
+        MetricsRWDelegator metricsRWDelegator = new MetricsRWDelegator(mock(AbstractMetricsRW.class), mock(AbstractMetricsRW.class));
+        BatchWriter batchWriter = new BatchWriter(
+                        new ThreadPoolBuilder().build(),
+                        timeout, mock(Counter.class),
+                        mock(IngestionContext.class),
+                        metricsRWDelegator,
+                        activeLocatorIO
+                        );
+
+        Locator numeric = Locator.createLocatorFromPathComponents("tenant", "numeric");
+        Locator string = Locator.createLocatorFromPathComponents("tenant", "string");
+        long collectionTime = 1451606400000L;   // start of a 1440m slot
+        List<IMetric> batch = new ArrayList<IMetric>();
+        batch.add(new Metric(numeric, 1, collectionTime, timeout, "unknown"));
+        batch.add(new Metric(numeric, 2, collectionTime + 1000, timeout, "unknown"));
+        batch.add(new Metric(string, "value", collectionTime, timeout, "unknown"));
+
+        batchWriter.indexActiveLocators(batch);
+
+        ArgumentCaptor<Multimap> captor = ArgumentCaptor.forClass(Multimap.class);
+        verify(activeLocatorIO).insertLocators(captor.capture());
+        Multimap<SlotKey, Locator> written = captor.getValue();
+        Assert.assertEquals(Granularity.rollupGranularities().length, written.size());
+        int shard = Util.getShard(numeric.toString());
+        for (Granularity gran : Granularity.rollupGranularities()) {
+            Assert.assertTrue(written.containsEntry(SlotKey.of(gran, gran.slot(collectionTime), shard), numeric));
+        }
+
+        // the same slots are not written again
+        batchWriter.indexActiveLocators(batch);
+        verify(activeLocatorIO, times(1)).insertLocators(any(Multimap.class));
+
+        // a new 5m slot only writes the 5m index
+        batch.clear();
+        batch.add(new Metric(numeric, 3, collectionTime + Granularity.MIN_5.milliseconds(), timeout, "unknown"));
+        batchWriter.indexActiveLocators(batch);
+        verify(activeLocatorIO, times(2)).insertLocators(captor.capture());
+        written = captor.getValue();
+        Assert.assertEquals(1, written.size());
+        Assert.assertTrue(written.containsKey(SlotKey.of(Granularity.MIN_5, Granularity.MIN_5.slot(collectionTime) + 1, shard)));
+    }
 }
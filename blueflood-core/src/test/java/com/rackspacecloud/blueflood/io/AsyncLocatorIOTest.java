@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.io;
+
+import com.rackspacecloud.blueflood.types.Locator;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class AsyncLocatorIOTest {
+
+    private final LocatorIO delegate = mock(LocatorIO.class);
+
+    @Test
+    public void queuedLocatorsAreWrittenInBatches() throws Exception {
+        AsyncLocatorIO locatorIO = new AsyncLocatorIO(delegate, 2, 10);
+        Locator first = Locator.createLocatorFromPathComponents("tenant", "a");
+        Locator second = Locator.createLocatorFromPathComponents("tenant", "b");
+        Locator third = Locator.createLocatorFromPathComponents("tenant", "c");
+        locatorIO.insertLocator(first);
+        locatorIO.insertLocator(second);
+        locatorIO.insertLocator(third);
+        verifyZeroInteractions(delegate);
+
+        locatorIO.writeBatch(locatorIO.pollQueue());
+        locatorIO.writeBatch(locatorIO.pollQueue());
+
+        ArgumentCaptor<Collection> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(delegate, times(2)).insertLocators(batches.capture());
+        assertEquals(Arrays.asList(first, second), batches.getAllValues().get(0));
+        assertEquals(Collections.singletonList(third), batches.getAllValues().get(1));
+        assertNull(locatorIO.pollQueue());
+    }
+
+    @Test
+    public void locatorIsWrittenInlineWhenQueueIsFull() throws Exception {
+        AsyncLocatorIO locatorIO = new AsyncLocatorIO(delegate, 2, 1);
+        Locator queued = Locator.createLocatorFromPathComponents("tenant", "a");
+        Locator inline = Locator.createLocatorFromPathComponents("tenant", "b");
+        locatorIO.insertLocator(queued);
+        locatorIO.insertLocator(inline);
+
+        verify(delegate).insertLocator(inline);
+        assertEquals(queued, locatorIO.pollQueue());
+    }
+
+    @Test
+    public void failedBatchDoesNotStopTheWriter() throws Exception {
+        AsyncLocatorIO locatorIO = new AsyncLocatorIO(delegate, 2, 10);
+        doThrow(new IOException("down")).when(delegate).insertLocators(any(Collection.class));
+
+        locatorIO.writeBatch(Locator.createLocatorFromPathComponents("tenant", "a"));
+
+        verify(delegate).insertLocators(any(Collection.class));
+    }
+}
@@ -16,8 +16,10 @@
 
 package com.rackspacecloud.blueflood.io.serializers.astyanax;
 
+import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.io.serializers.Serializers;
 import com.rackspacecloud.blueflood.types.BluefloodTimerRollup;
+import com.rackspacecloud.blueflood.types.QuantileSketch;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Assert;
 import org.junit.Test;
@@ -77,4 +79,36 @@ public class TimerSerializationTest {
         BluefloodTimerRollup r1 = Serializers.timerRollupInstance.fromByteBuffer(bb);
         Assert.assertEquals(r0, r1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testV3RoundTrip() throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 345; i++) {
+            sketch.add(i * 2.5d);
+        }
+        BluefloodTimerRollup r0 = new BluefloodTimerRollup()
+                .withSum(Double.valueOf(42))
+                .withCountPS(23.32d)
+                .withAverage(56)
+                .withVariance(853.3245d)
+                .withMinValue(2)
+                .withMaxValue(987)
+                .withCount(345)
+                .withSketch(sketch);
+        r0.setPercentile("foo", 741.32d);
+
+        ByteBuffer bb = Serializers.timerRollupInstance.toByteBuffer(r0);
+        Assert.assertEquals(Constants.VERSION_3_TIMER, bb.get(0));
+
+        BluefloodTimerRollup r1 = Serializers.timerRollupInstance.fromByteBuffer(bb);
+        Assert.assertEquals(r0, r1);
+        Assert.assertEquals(sketch.getQuantile(0.99), r1.getSketch().getQuantile(0.99), 0d);
+    }
+
+    @Test
+    public void testTimersWithoutSketchAreWrittenAsV2() {
+        BluefloodTimerRollup r0 = new BluefloodTimerRollup().withSum(1d).withCount(1);
+
+        Assert.assertEquals(Constants.VERSION_2_TIMER, Serializers.timerRollupInstance.toByteBuffer(r0).get(0));
+    }
+}
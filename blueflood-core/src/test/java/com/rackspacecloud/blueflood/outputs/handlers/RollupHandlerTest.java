@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.google.common.collect.Lists;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RollupHandlerTest {
+
+    private static final long FIVE_MINUTES = Granularity.MIN_5.milliseconds();
+    private static final long START = 1000 * FIVE_MINUTES;
+
+    @Test
+    public void testBucketPointsByRange() {
+        List<Range> ranges = Lists.newArrayList(Range.rangesForInterval(Granularity.MIN_5, START, START + 4 * FIVE_MINUTES - 1));
+        assertEquals(4, ranges.size());
+
+        Points<SimpleNumber> points = new Points<SimpleNumber>();
+        // before the first range
+        add(points, START - 1);
+        // two in the first range, none in the second, one at each end of the third.
+        add(points, START);
+        add(points, START + FIVE_MINUTES - 1);
+        add(points, START + 2 * FIVE_MINUTES);
+        add(points, START + 3 * FIVE_MINUTES - 1);
+        // after the last range
+        add(points, START + 4 * FIVE_MINUTES);
+
+        List<Points<SimpleNumber>> buckets = RollupHandler.bucketPointsByRange(points, ranges);
+
+        assertEquals(4, buckets.size());
+        assertEquals(2, buckets.get(0).getPoints().size());
+        assertTrue(buckets.get(1).isEmpty());
+        assertEquals(2, buckets.get(2).getPoints().size());
+        assertTrue(buckets.get(2).getPoints().containsKey(START + 3 * FIVE_MINUTES - 1));
+        assertTrue(buckets.get(3).isEmpty());
+    }
+
+    @Test
+    public void testBucketPointsWithoutPoints() {
+        List<Range> ranges = Lists.newArrayList(Range.rangesForInterval(Granularity.MIN_5, START, START + 2 * FIVE_MINUTES - 1));
+
+        List<Points<SimpleNumber>> buckets = RollupHandler.bucketPointsByRange(new Points<SimpleNumber>(), ranges);
+
+        assertEquals(ranges.size(), buckets.size());
+        for (Points<SimpleNumber> bucket : buckets) {
+            assertTrue(bucket.isEmpty());
+        }
+    }
+
+    private static void add(Points<SimpleNumber> points, long timestamp) {
+        points.add(new Points.Point<SimpleNumber>(timestamp, new SimpleNumber(timestamp)));
+    }
+}
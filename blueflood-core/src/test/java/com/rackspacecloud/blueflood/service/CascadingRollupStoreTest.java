@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.Range;
+import com.rackspacecloud.blueflood.types.Rollup;
+import com.rackspacecloud.blueflood.utils.Util;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CascadingRollupStoreTest {
+
+    private static final long FIVE_MINUTES = Granularity.MIN_5.milliseconds();
+    private static final long START = 1000L * Granularity.MIN_1440.milliseconds();
+    private static final Range WINDOW = new Range(START, START + Granularity.MIN_20.milliseconds() - 1);
+
+    private final Locator locator = Locator.createLocatorFromPathComponents("tenant", "metric");
+    private final int shard = Util.getShard(locator.toString());
+
+    @Test
+    public void testWindowIsUsedOnceAllFinerSlotsAreRolledUp() {
+        CascadingRollupStore store = new CascadingRollupStore(true, 100);
+        BasicRollup last = null;
+        for (int i = 0; i < 4; i++) {
+            // the second slot has no data for the locator.
+            if (i != 1) {
+                last = rollup(i);
+                store.add(locator, Granularity.MIN_5, START + i * FIVE_MINUTES, last);
+            }
+            assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        Points<Rollup> points = store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW);
+        assertEquals(3, points.getPoints().size());
+        assertSame(last, points.getPoints().get(START + 3 * FIVE_MINUTES).getData());
+        // another locator of the shard had nothing to roll up.
+        assertTrue(store.getPointsToRollup(otherLocatorOfShard(), Granularity.MIN_20, WINDOW).isEmpty());
+
+        // once the window itself is rolled up, it is gone, and a re-roll reads from the finer column family.
+        rolledUp(store, Granularity.MIN_20, START);
+        assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+        assertEquals(0, store.getPointCount());
+    }
+
+    @Test
+    public void testReRolledSlotReplacesItsRollup() {
+        CascadingRollupStore store = new CascadingRollupStore(true, 100);
+        BasicRollup reRolled = rollup(2);
+        store.add(locator, Granularity.MIN_5, START, rollup(1));
+        store.add(locator, Granularity.MIN_5, START, reRolled);
+        for (int i = 0; i < 4; i++) {
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        Points<Rollup> points = store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW);
+        assertEquals(1, points.getPoints().size());
+        assertSame(reRolled, points.getPoints().get(START).getData());
+        assertEquals(1, store.getPointCount());
+    }
+
+    @Test
+    public void testWindowOverMaxPointsIsReadFromFiner() {
+        CascadingRollupStore store = new CascadingRollupStore(true, 2);
+        for (int i = 0; i < 4; i++) {
+            store.add(locator, Granularity.MIN_5, START + i * FIVE_MINUTES, rollup(i));
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+        assertEquals(0, store.getPointCount());
+    }
+
+    @Test
+    public void testWindowOfAnotherDayIsNotUsed() {
+        CascadingRollupStore store = new CascadingRollupStore(true, 100);
+        for (int i = 0; i < 4; i++) {
+            store.add(locator, Granularity.MIN_5, START + i * FIVE_MINUTES, rollup(i));
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        // the same slot, after slots wrapped around.
+        long wrapped = START + Granularity.MIN_20.numSlots() * (long) Granularity.MIN_20.milliseconds();
+        Range later = new Range(wrapped, wrapped + Granularity.MIN_20.milliseconds() - 1);
+        assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, later));
+    }
+
+    @Test
+    public void testWindowsAreDroppedWhenShardOwnershipChanges() {
+        CascadingRollupStore store = new CascadingRollupStore(true, 100);
+        for (int i = 0; i < 4; i++) {
+            store.add(locator, Granularity.MIN_5, START + i * FIVE_MINUTES, rollup(i));
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        store.shardOwnershipChanged(shard + 1);
+        assertNotNull("Windows of other shards are kept", store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+
+        store.shardOwnershipChanged(shard);
+        assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+        assertEquals(0, store.getPointCount());
+    }
+
+    @Test
+    public void testDisabledStoreKeepsNothing() {
+        CascadingRollupStore store = new CascadingRollupStore(false, 100);
+        for (int i = 0; i < 4; i++) {
+            store.add(locator, Granularity.MIN_5, START + i * FIVE_MINUTES, rollup(i));
+            rolledUp(store, Granularity.MIN_5, START + i * FIVE_MINUTES);
+        }
+
+        assertNull(store.getPointsToRollup(locator, Granularity.MIN_20, WINDOW));
+        assertEquals(0, store.getPointCount());
+    }
+
+    private void rolledUp(CascadingRollupStore store, Granularity granularity, long start) {
+        store.slotRolledUp(SlotKey.of(granularity, granularity.slot(start), shard),
+                new Range(start, start + granularity.milliseconds() - 1));
+    }
+
+    private Locator otherLocatorOfShard() {
+        for (int i = 0; ; i++) {
+            Locator other = Locator.createLocatorFromPathComponents("tenant", "other" + i);
+            if (Util.getShard(other.toString()) == shard) {
+                return other;
+            }
+        }
+    }
+
+    private static BasicRollup rollup(long value) {
+        BasicRollup rollup = new BasicRollup();
+        rollup.setCount(value + 1);
+        return rollup;
+    }
+}
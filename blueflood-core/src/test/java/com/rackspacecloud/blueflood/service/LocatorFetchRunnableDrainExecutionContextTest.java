@@ -12,8 +12,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class LocatorFetchRunnableDrainExecutionContextTest {
@@ -27,7 +31,6 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
 
     LocatorFetchRunnable lfr;
 
-    RollupExecutionContext executionContext;
     RollupBatchWriter rollupBatchWriter;
 
     List<Locator> locators;
@@ -45,12 +48,11 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
 
         this.lfr = mock(LocatorFetchRunnable.class);
         this.lfr.initialize(scheduleCtx, destSlotKey,
-                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor);
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, new Semaphore(1));
         doCallRealMethod().when(lfr).drainExecutionContext(
                 anyLong(), anyInt(), Matchers.<RollupExecutionContext>any(),
                 Matchers.<RollupBatchWriter>any());
 
-        executionContext = mock(RollupExecutionContext.class);
         rollupBatchWriter = mock(RollupBatchWriter.class);
 
         locators = getTypicalLocators();
@@ -81,180 +83,105 @@ public class LocatorFetchRunnableDrainExecutionContextTest {
     public void drainExecutionContextAlreadyDoneReadingAndWriting() {
 
         // given
-        when(executionContext.doneReading()).thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
 
         // when
         lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
 
         // then
-        verify(executionContext, times(1)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
+        assertTrue(executionContext.getCompletion().isDone());
         verifyZeroInteractions(rollupBatchWriter);
         verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verifyZeroInteractions(enumValidatorExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verifyNoMoreInteractions(lfr);
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 
     @Test
-    public void drainExecutionContextWaitsForRollups() throws InterruptedException {
+    public void drainExecutionContextDoesNotBlockWhileReading() {
 
         // given
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        lfr.drainExecutionContext(0, 1, executionContext, rollupBatchWriter);
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
+        assertFalse(executionContext.getCompletion().isDone());
         verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verifyZeroInteractions(enumValidatorExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        verify(lfr, never()).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
+
+        // when
+        executionContext.decrementReadCounter();
+
+        // then
+        assertTrue(executionContext.getCompletion().isDone());
+        verifyZeroInteractions(rollupBatchWriter);
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 
     @Test
-    public void drainExecutionContextDoneReadingInFinallyBlock() throws InterruptedException {
+    public void drainExecutionContextWhenDoneReadingDrainsBatch() {
 
         // given
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
+        executionContext.incrementWriteCounter();
+        lfr.drainExecutionContext(0, 1, executionContext, rollupBatchWriter);
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.decrementReadCounter();
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verifyZeroInteractions(enumValidatorExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        verify(rollupBatchWriter).drainBatch();
+        assertFalse(executionContext.getCompletion().isDone());
+        verify(lfr, never()).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
+
+        // when
+        executionContext.decrementWriteCounter(1);
+
+        // then
+        assertTrue(executionContext.getCompletion().isDone());
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 
     @Test
-    public void drainExecutionContextExceptionWhileWaitingHitsExceptionHandler() throws InterruptedException {
+    public void drainExecutionContextDoesNotDrainBatchWhileReading() {
 
         // given
-        Throwable cause = new InterruptedException("exception for testing purposes");
-        doThrow(cause).when(lfr).waitForRollups();
-        when(executionContext.doneReading())
-                .thenReturn(false)
-                .thenReturn(false)
-                .thenReturn(true)
-                .thenReturn(true);
-        when(executionContext.doneWriting()).thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
+        executionContext.incrementReadCounter();
+        executionContext.incrementWriteCounter();
+        lfr.drainExecutionContext(0, 2, executionContext, rollupBatchWriter);
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.decrementReadCounter();
+        executionContext.decrementWriteCounter(1);
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(1)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
         verifyZeroInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verifyZeroInteractions(enumValidatorExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        assertFalse(executionContext.getCompletion().isDone());
+        verify(lfr, never()).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
     }
 
     @Test
-    public void drainExecutionContextWhenDoneReadingDrainsBatch() throws InterruptedException {
+    public void drainExecutionContextFailedDrainFinishesUnsuccessfully() throws Exception {
 
         // given
-        when(executionContext.doneReading()).thenReturn(true);
-        when(executionContext.doneWriting())
-                .thenReturn(false)
-                .thenReturn(true);
+        RollupExecutionContext executionContext = new RollupExecutionContext();
+        executionContext.incrementReadCounter();
+        executionContext.incrementWriteCounter();
+        doThrow(new RejectedExecutionException("exception for testing purposes"))
+                .when(rollupBatchWriter).drainBatch();
+        lfr.drainExecutionContext(0, 1, executionContext, rollupBatchWriter);
 
         // when
-        lfr.drainExecutionContext(0, 0, executionContext, rollupBatchWriter);
+        executionContext.decrementReadCounter();
 
         // then
-        verify(executionContext, times(4)).doneReading();
-        verify(executionContext, times(2)).doneWriting();
-        verifyNoMoreInteractions(executionContext);
-        verify(rollupBatchWriter).drainBatch();
-        verifyNoMoreInteractions(rollupBatchWriter);
-        verifyZeroInteractions(scheduleCtx);
-        verifyZeroInteractions(rollupReadExecutor);
-        verifyZeroInteractions(rollupWriteExecutor);
-        verifyZeroInteractions(enumValidatorExecutor);
-        verify(lfr).initialize(
-                Matchers.<ScheduleContext>any(),
-                Matchers.<SlotKey>any(),
-                Matchers.<ExecutorService>any(),
-                Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
-        verify(lfr).drainExecutionContext(anyLong(), anyInt(),
-                Matchers.<RollupExecutionContext>any(),
-                Matchers.<RollupBatchWriter>any());
-        verify(lfr).finishExecution(anyLong(), Matchers.<RollupExecutionContext>any());
-        verify(lfr).waitForRollups();
-        verifyNoMoreInteractions(lfr);
+        assertTrue(executionContext.getCompletion().isDone());
+        assertFalse(executionContext.getCompletion().get());
+        assertFalse(executionContext.wasSuccessful());
+        verify(lfr).finishExecution(anyLong(), same(executionContext));
     }
 }
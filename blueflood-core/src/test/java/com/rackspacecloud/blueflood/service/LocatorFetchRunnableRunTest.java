@@ -12,8 +12,10 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 public class LocatorFetchRunnableRunTest {
@@ -48,7 +50,8 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<SlotKey>any(),
                 Matchers.<ExecutorService>any(),
                 Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
+                Matchers.<ExecutorService>any(),
+                Matchers.<Semaphore>any());
         doCallRealMethod().when(lfr).run();
 
         executionContext = mock(RollupExecutionContext.class);
@@ -78,7 +81,7 @@ public class LocatorFetchRunnableRunTest {
         // given
         SlotKey destSlotKey = SlotKey.of(Granularity.FULL, 0, 0);
         this.lfr.initialize(scheduleCtx, destSlotKey,
-                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor);
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, new Semaphore(1));
 
         // when
         lfr.run();
@@ -96,7 +99,8 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<SlotKey>any(),
                 Matchers.<ExecutorService>any(),
                 Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
+                Matchers.<ExecutorService>any(),
+                Matchers.<Semaphore>any());
         verify(lfr).run();
         verify(lfr, times(3)).getGranularity();
         verify(lfr, times(1)).getParentSlot();
@@ -109,7 +113,7 @@ public class LocatorFetchRunnableRunTest {
         // given
         SlotKey destSlotKey = SlotKey.of(Granularity.MIN_5, 0, 0);
         lfr.initialize(scheduleCtx, destSlotKey,
-                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor);
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, new Semaphore(1));
         doReturn(generateLocators(0)).when(lfr).getLocators(
                 Matchers.<RollupExecutionContext>any());
 
@@ -120,6 +124,7 @@ public class LocatorFetchRunnableRunTest {
         verifyZeroInteractions(executionContext);
         verifyZeroInteractions(rollupBatchWriter);
         verify(scheduleCtx).getCurrentTimeMillis();
+        verify(scheduleCtx).recordLocatorCount(0, 0);
         verifyNoMoreInteractions(scheduleCtx);
         verifyZeroInteractions(rollupReadExecutor);
         verifyZeroInteractions(rollupWriteExecutor);
@@ -129,7 +134,8 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<SlotKey>any(),
                 Matchers.<ExecutorService>any(),
                 Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
+                Matchers.<ExecutorService>any(),
+                Matchers.<Semaphore>any());
         verify(lfr).run();
         verify(lfr, times(2)).getGranularity();
         verify(lfr, times(1)).getParentSlot();
@@ -154,7 +160,7 @@ public class LocatorFetchRunnableRunTest {
         // given
         SlotKey destSlotKey = SlotKey.of(Granularity.MIN_5, 0, 0);
         lfr.initialize(scheduleCtx, destSlotKey,
-                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor);
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, new Semaphore(1));
         doReturn(generateLocators(1)).when(lfr).getLocators(
                 Matchers.<RollupExecutionContext>any());
 
@@ -165,6 +171,7 @@ public class LocatorFetchRunnableRunTest {
         verifyZeroInteractions(executionContext);
         verifyZeroInteractions(rollupBatchWriter);
         verify(scheduleCtx).getCurrentTimeMillis();
+        verify(scheduleCtx).recordLocatorCount(0, 1);
         verifyNoMoreInteractions(scheduleCtx);
         verifyZeroInteractions(rollupReadExecutor);
         verifyZeroInteractions(rollupWriteExecutor);
@@ -174,7 +181,8 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<SlotKey>any(),
                 Matchers.<ExecutorService>any(),
                 Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
+                Matchers.<ExecutorService>any(),
+                Matchers.<Semaphore>any());
         verify(lfr).run();
         verify(lfr, times(2)).getGranularity();
         verify(lfr, times(1)).getParentSlot();
@@ -199,7 +207,7 @@ public class LocatorFetchRunnableRunTest {
         // given
         SlotKey destSlotKey = SlotKey.of(Granularity.MIN_5, 0, 0);
         lfr.initialize(scheduleCtx, destSlotKey,
-                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor);
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, new Semaphore(1));
         doReturn(generateLocators(3)).when(lfr).getLocators(
                 Matchers.<RollupExecutionContext>any());
 
@@ -210,6 +218,7 @@ public class LocatorFetchRunnableRunTest {
         verifyZeroInteractions(executionContext);
         verifyZeroInteractions(rollupBatchWriter);
         verify(scheduleCtx).getCurrentTimeMillis();
+        verify(scheduleCtx).recordLocatorCount(0, 3);
         verifyNoMoreInteractions(scheduleCtx);
         verifyZeroInteractions(rollupReadExecutor);
         verifyZeroInteractions(rollupWriteExecutor);
@@ -219,7 +228,8 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<SlotKey>any(),
                 Matchers.<ExecutorService>any(),
                 Matchers.<ThreadPoolExecutor>any(),
-                Matchers.<ExecutorService>any());
+                Matchers.<ExecutorService>any(),
+                Matchers.<Semaphore>any());
         verify(lfr).run();
         verify(lfr, times(2)).getGranularity();
         verify(lfr, times(1)).getParentSlot();
@@ -237,4 +247,27 @@ public class LocatorFetchRunnableRunTest {
                 Matchers.<RollupBatchWriter>any());
         verifyNoMoreInteractions(lfr);
     }
+
+    @Test
+    public void failureBeforeDrainGivesBackSlotPermit() {
+
+        // given
+        SlotKey destSlotKey = SlotKey.of(Granularity.MIN_5, 0, 0);
+        Semaphore slotsInFlight = new Semaphore(1);
+        lfr.initialize(scheduleCtx, destSlotKey,
+                rollupReadExecutor, rollupWriteExecutor, enumValidatorExecutor, slotsInFlight);
+        doThrow(new RuntimeException("locators unavailable")).when(lfr).getLocators(
+                Matchers.<RollupExecutionContext>any());
+
+        // when
+        lfr.run();
+
+        // then
+        assertEquals(1, slotsInFlight.availablePermits());
+        verify(scheduleCtx).pushBackToScheduled(destSlotKey, false);
+        verify(scheduleCtx, never()).clearFromRunning(Matchers.<SlotKey>any());
+        verify(lfr, never()).drainExecutionContext(anyLong(), anyInt(),
+                Matchers.<RollupExecutionContext>any(),
+                Matchers.<RollupBatchWriter>any());
+    }
 }
@@ -1,5 +1,6 @@
 package com.rackspacecloud.blueflood.service;
 
+import com.rackspacecloud.blueflood.io.ActiveLocatorIO;
 import com.rackspacecloud.blueflood.io.IOContainer;
 import com.rackspacecloud.blueflood.io.LocatorIO;
 import com.rackspacecloud.blueflood.rollup.Granularity;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.junit.Assert.assertNotNull;
@@ -44,6 +46,7 @@ public class LocatorFetchRunnableTest {
     ThreadPoolExecutor rollupWriteExecutor;
     ExecutorService enumValidatorExecutor;
     LocatorIO locatorIO;
+    ActiveLocatorIO activeLocatorIO;
 
     LocatorFetchRunnable lfr;
 
@@ -65,7 +68,7 @@ public class LocatorFetchRunnableTest {
 
         this.lfr = new LocatorFetchRunnable(scheduleCtx,
                 destSlotKey, rollupReadExecutor, rollupWriteExecutor,
-                enumValidatorExecutor);
+                enumValidatorExecutor, new Semaphore(1));
 
         executionContext = mock(RollupExecutionContext.class);
         rollupBatchWriter = mock(RollupBatchWriter.class);
@@ -74,10 +77,12 @@ public class LocatorFetchRunnableTest {
 
         // mock IOContainer and LocatorIO
         locatorIO = mock(LocatorIO.class);
+        activeLocatorIO = mock(ActiveLocatorIO.class);
         PowerMockito.mockStatic(IOContainer.class);
         IOContainer ioContainer = mock(IOContainer.class);
         when(IOContainer.fromConfig()).thenReturn(ioContainer);
         when(ioContainer.getLocatorIO()).thenReturn(locatorIO);
+        when(ioContainer.getActiveLocatorIO()).thenReturn(activeLocatorIO);
     }
 
     @After
@@ -134,6 +139,30 @@ public class LocatorFetchRunnableTest {
         Assert.assertEquals(0, actual.size());
     }
 
+    @Test
+    public void getLocatorsReadsActiveLocatorIndexWhenEnabled() throws IOException {
+
+        // given
+        Configuration.getInstance().setProperty(CoreConfig.ACTIVE_LOCATOR_INDEX_READS_ENABLED, "true");
+        SlotKey slotKey = SlotKey.of(Granularity.MIN_5, 12, 3);
+        lfr = new LocatorFetchRunnable(scheduleCtx,
+                slotKey, rollupReadExecutor, rollupWriteExecutor,
+                enumValidatorExecutor, new Semaphore(1));
+        Set<Locator> expected = new HashSet<Locator>(locators);
+
+        when(activeLocatorIO.getLocators(slotKey)).thenReturn(locators);
+
+        // when
+        Set<Locator> actual = lfr.getLocators(executionContext);
+
+        // then
+        verify(activeLocatorIO, times(1)).getLocators(slotKey);
+        verifyNoMoreInteractions(activeLocatorIO);
+        verifyZeroInteractions(locatorIO);
+        verifyZeroInteractions(executionContext);
+        Assert.assertEquals(expected, actual);
+    }
+
     @Test
     public void executeRollupForLocatorTriggersExecutionOfRollupRunnable() {
 
@@ -222,6 +251,24 @@ public class LocatorFetchRunnableTest {
         verifyNoMoreInteractions(scheduleCtx);
     }
 
+    @Test
+    public void finishExecutionGivesBackSlotPermit() {
+
+        // given
+        Semaphore slotsInFlight = new Semaphore(1);
+        lfr = new LocatorFetchRunnable(scheduleCtx,
+                destSlotKey, rollupReadExecutor, rollupWriteExecutor,
+                enumValidatorExecutor, slotsInFlight);
+        slotsInFlight.acquireUninterruptibly();
+        when(executionContext.wasSuccessful()).thenReturn(false);
+
+        // when
+        lfr.finishExecution(0, executionContext);
+
+        // then
+        Assert.assertEquals(1, slotsInFlight.availablePermits());
+    }
+
     @Test
     public void createRollupExecutionContextReturnsValidObject() {
         // when
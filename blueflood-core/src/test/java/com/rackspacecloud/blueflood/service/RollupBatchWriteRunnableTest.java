@@ -1,5 +1,6 @@
 package com.rackspacecloud.blueflood.service;
 
+import com.google.common.util.concurrent.SettableFuture;
 import com.rackspacecloud.blueflood.io.AbstractMetricsRW;
 import org.junit.Before;
 import org.junit.Test;
@@ -29,6 +30,8 @@ public class RollupBatchWriteRunnableTest {
         wcs = new ArrayList<SingleRollupWriteContext>();
         ctx = mock(RollupExecutionContext.class);
         writer = mock(AbstractMetricsRW.class);
+        // the default implementation writes through insertRollups()
+        doCallRealMethod().when(writer).insertRollupsAsync(Matchers.<ArrayList<SingleRollupWriteContext>>any());
         rbwr = new RollupBatchWriteRunnable(wcs, ctx, writer);
     }
 
@@ -62,6 +65,7 @@ public class RollupBatchWriteRunnableTest {
         rbwr.run();
 
         // then
+        verify(writer).insertRollupsAsync(Matchers.<ArrayList<SingleRollupWriteContext>>any());
         verify(writer).insertRollups(Matchers.<ArrayList<SingleRollupWriteContext>>any());
         assertSame(wcs, insertRollupsArg[0]);
         verifyNoMoreInteractions(writer);
@@ -82,10 +86,46 @@ public class RollupBatchWriteRunnableTest {
         rbwr.run();
 
         // then
+        verify(writer).insertRollupsAsync(Matchers.<ArrayList<SingleRollupWriteContext>>any());
         verify(writer).insertRollups(Matchers.<ArrayList<SingleRollupWriteContext>>any());
         verifyNoMoreInteractions(writer);
         verify(ctx).markUnsuccessful(Matchers.<Throwable>any());
         verify(ctx).decrementWriteCounter(anyLong());
         verifyNoMoreInteractions(ctx);
     }
+
+    @Test
+    public void writeCounterIsDecrementedOnceWritesLand() throws Exception {
+
+        // given
+        SettableFuture<Void> written = SettableFuture.create();
+        doReturn(written).when(writer).insertRollupsAsync(Matchers.<ArrayList<SingleRollupWriteContext>>any());
+
+        // when
+        rbwr.run();
+
+        // then
+        verify(ctx, never()).decrementWriteCounter(anyLong());
+
+        written.set(null);
+        verify(ctx).decrementWriteCounter(anyLong());
+        verifyNoMoreInteractions(ctx);
+    }
+
+    @Test
+    public void failedAsyncWriteMarksUnsuccessful() throws Exception {
+
+        // given
+        SettableFuture<Void> written = SettableFuture.create();
+        doReturn(written).when(writer).insertRollupsAsync(Matchers.<ArrayList<SingleRollupWriteContext>>any());
+
+        // when
+        rbwr.run();
+        written.setException(new IOException("exception for testing purposes"));
+
+        // then
+        verify(ctx).markUnsuccessful(Matchers.<Throwable>any());
+        verify(ctx).decrementWriteCounter(anyLong());
+        verifyNoMoreInteractions(ctx);
+    }
 }
@@ -19,13 +19,14 @@ package com.rackspacecloud.blueflood.service;
 import org.junit.Assert;
 import org.junit.Test;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
 public class RollupExecutionContextTest {
 
     @Test
     public void testExecutionContext() {
-        Thread myThread = new Thread();
-
-        RollupExecutionContext myRollupContext = new RollupExecutionContext(myThread);
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
 
         // validate read behavior
         Assert.assertTrue(myRollupContext.doneReading());
@@ -42,4 +43,32 @@ public class RollupExecutionContextTest {
         myRollupContext.decrementWriteCounter(2);
         Assert.assertTrue(myRollupContext.doneWriting());
     }
+
+    @Test
+    public void testCompletionOnlyAfterDoneScheduling() throws Exception {
+        RollupBatchWriter batchWriter = mock(RollupBatchWriter.class);
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
+
+        myRollupContext.incrementReadCounter();
+        myRollupContext.decrementReadCounter();
+        Assert.assertFalse(myRollupContext.getCompletion().isDone());
+
+        myRollupContext.doneScheduling(batchWriter);
+        Assert.assertTrue(myRollupContext.getCompletion().isDone());
+        Assert.assertTrue(myRollupContext.getCompletion().get());
+        verifyZeroInteractions(batchWriter);
+    }
+
+    @Test
+    public void testCompletionReportsFailure() throws Exception {
+        RollupExecutionContext myRollupContext = new RollupExecutionContext();
+
+        myRollupContext.incrementReadCounter();
+        myRollupContext.doneScheduling(mock(RollupBatchWriter.class));
+        myRollupContext.markUnsuccessful(new Exception("exception for testing purposes"));
+        myRollupContext.decrementReadCounter();
+
+        Assert.assertTrue(myRollupContext.getCompletion().isDone());
+        Assert.assertFalse(myRollupContext.getCompletion().get());
+    }
 }
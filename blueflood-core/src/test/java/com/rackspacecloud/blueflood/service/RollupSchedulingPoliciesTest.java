@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollupSchedulingPoliciesTest {
+    private static final long NOW = 1451606400000L;
+    private static final long MINUTE = 60000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private final RollupSchedulingPolicy priority = RollupSchedulingPolicies.forName("priority");
+
+    @Test
+    public void testForName() {
+        assertTrue(RollupSchedulingPolicies.forName("FIFO") instanceof RollupSchedulingPolicies.Fifo);
+        assertTrue(RollupSchedulingPolicies.forName("PRIORITY") instanceof RollupSchedulingPolicies.Priority);
+        assertTrue(RollupSchedulingPolicies.forName(RollupSchedulingPolicies.Priority.class.getName())
+                instanceof RollupSchedulingPolicies.Priority);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForNameOfUnknownPolicyThrows() {
+        RollupSchedulingPolicies.forName("com.example.NoSuchPolicy");
+    }
+
+    @Test
+    public void testFifoOrdersBySequence() {
+        ScheduledRollup first = rollup(Granularity.MIN_1440, 1, NOW - DAY, true, 1000);
+        ScheduledRollup second = rollup(Granularity.MIN_5, 2, NOW, false, 1);
+
+        assertEquals(Arrays.asList(first, second), sorted(new RollupSchedulingPolicies.Fifo(), second, first));
+    }
+
+    @Test
+    public void testPriorityRollsUpExpiringInputFirst() {
+        // full resolution data is kept for 5 days.
+        ScheduledRollup expiring = rollup(Granularity.MIN_5, 3, NOW - 4 * DAY, true, 1000);
+        ScheduledRollup olderExpiring = rollup(Granularity.MIN_5, 4, NOW - 4 * DAY - HOUR, true, 1000);
+        ScheduledRollup fresh = rollup(Granularity.MIN_5, 1, NOW, false, 1);
+        // 4 days is nowhere near the TTL of 5m rollups.
+        ScheduledRollup old20m = rollup(Granularity.MIN_20, 2, NOW - 4 * DAY, false, 1);
+
+        assertEquals(Arrays.asList(olderExpiring, expiring, fresh, old20m), sorted(priority, fresh, old20m, expiring, olderExpiring));
+    }
+
+    @Test
+    public void testPriorityRollsUpFirstRollupsBeforeRerolls() {
+        ScheduledRollup reroll = rollup(Granularity.MIN_5, 1, NOW, true, 1);
+        ScheduledRollup coarseFirstRollup = rollup(Granularity.MIN_1440, 2, NOW - DAY, false, 1000);
+
+        assertEquals(Arrays.asList(coarseFirstRollup, reroll), sorted(priority, reroll, coarseFirstRollup));
+    }
+
+    @Test
+    public void testPriorityRollsUpFinerGranularitiesAndNewerSlotsFirst() {
+        ScheduledRollup newest5m = rollup(Granularity.MIN_5, 4, NOW, false, 10);
+        ScheduledRollup older5m = rollup(Granularity.MIN_5, 1, NOW - HOUR, false, 10);
+        ScheduledRollup newest60m = rollup(Granularity.MIN_60, 3, NOW, false, 10);
+        ScheduledRollup older1440m = rollup(Granularity.MIN_1440, 2, NOW - DAY, false, 10);
+
+        assertEquals(Arrays.asList(newest5m, older5m, newest60m, older1440m),
+                sorted(priority, older1440m, newest60m, older5m, newest5m));
+    }
+
+    @Test
+    public void testPriorityRollsUpSmallerShardsFirstThenBySequence() {
+        ScheduledRollup big = rollup(Granularity.MIN_5, 1, NOW, false, 1000);
+        ScheduledRollup small = rollup(Granularity.MIN_5, 3, NOW, false, 10);
+        ScheduledRollup smallLater = rollup(Granularity.MIN_5, 4, NOW, false, 10);
+
+        assertEquals(Arrays.asList(small, smallLater, big), sorted(priority, smallLater, big, small));
+    }
+
+    @Test
+    public void testPriorityDoesNotStarveCoarseSlotsUnderSteadyIngest() {
+        PriorityQueue<ScheduledRollup> queue = new PriorityQueue<ScheduledRollup>(11, priority);
+        ScheduledRollup coarse = rollup(Granularity.MIN_1440, 1, NOW - DAY, NOW, true, 10);
+        queue.add(coarse);
+
+        // a fresh 5m slot comes in every 5 minutes, and there is only room to roll up one slot in that time.
+        long now = NOW;
+        long sequence = 2;
+        while (true) {
+            queue.add(rollup(Granularity.MIN_5, sequence++, now, now, false, 10));
+            if (queue.poll() == coarse) {
+                break;
+            }
+            now += 5 * MINUTE;
+            assertTrue("1440m re-roll still waiting after " + (now - NOW) / MINUTE + " minutes", now - NOW < 3 * HOUR);
+        }
+    }
+
+    private static ScheduledRollup rollup(Granularity granularity, long sequence, long collectionTime, boolean reroll, int locators) {
+        return rollup(granularity, sequence, collectionTime, NOW, reroll, locators);
+    }
+
+    private static ScheduledRollup rollup(Granularity granularity, long sequence, long collectionTime, long scheduledAt,
+                                          boolean reroll, int locators) {
+        return new ScheduledRollup(SlotKey.of(granularity, granularity.slot(collectionTime), 0), sequence,
+                collectionTime, scheduledAt, reroll, locators);
+    }
+
+    private static List<ScheduledRollup> sorted(RollupSchedulingPolicy policy, ScheduledRollup... rollups) {
+        List<ScheduledRollup> sorted = new ArrayList<ScheduledRollup>(Arrays.asList(rollups));
+        Collections.sort(sorted, policy);
+        return sorted;
+    }
+}
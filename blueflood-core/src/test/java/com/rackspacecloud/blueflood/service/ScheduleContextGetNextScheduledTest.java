@@ -113,4 +113,39 @@ public class ScheduleContextGetNextScheduledTest {
         Assert.assertEquals(updateTime, stamp.getTimestamp());
         Assert.assertTrue(stamp.isDirty());
     }
+
+    @Test
+    public void testGetNextScheduledSkipsSlotsDescheduledByUpdate() {
+
+        // given
+        Assert.assertEquals(1, ctx.getScheduledCount());
+        ctx.update(updateTime, shard);
+        Assert.assertEquals(0, ctx.getScheduledCount());
+
+        // when
+        SlotKey next = ctx.getNextScheduled();
+
+        // then
+        Assert.assertNull(next);
+        Assert.assertEquals(0, ctx.getRunningCount());
+        Assert.assertEquals(UpdateStamp.State.Active, mgr.getUpdateStamp(SlotKey.of(gran, slot, shard)).getState());
+    }
+
+    @Test
+    public void testGetNextScheduledReturnsPushedBackSlotOnlyOnce() {
+
+        // given
+        SlotKey running = ctx.getNextScheduled();
+        ctx.pushBackToScheduled(running, false);
+        ctx.pushBackToScheduled(running, true);
+        Assert.assertEquals(1, ctx.getScheduledCount());
+
+        // when
+        SlotKey first = ctx.getNextScheduled();
+        SlotKey second = ctx.getNextScheduled();
+
+        // then
+        Assert.assertEquals(running, first);
+        Assert.assertNull(second);
+    }
 }
@@ -0,0 +1,112 @@
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.rollup.SlotKey;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ScheduleContextSchedulingPolicyTest {
+
+    private static int shard = 0;
+    private static List<Integer> shards = new ArrayList<Integer>() {{ add(shard); }};
+
+    long now;
+    long hour;
+    Granularity gran;
+    ScheduleContext ctx;
+
+    @Before
+    public void setUp() {
+
+        now = 1451606400000L;
+        hour = 60 * 60 * 1000;
+        gran = Granularity.MIN_5;
+
+        ctx = new ScheduleContext(now, shards);
+        ctx.update(now - 2 * hour, shard);
+        ctx.update(now - 2, shard);
+        ctx.update(now - hour, shard);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.getInstance().clearProperty(CoreConfig.ROLLUP_SCHEDULING_POLICY);
+    }
+
+    @Test
+    public void testFifoIsTheDefault() {
+        Assert.assertEquals("FIFO", ctx.getSchedulingPolicy());
+    }
+
+    @Test
+    public void testConfiguredPolicyIsUsed() {
+        Configuration.getInstance().setProperty(CoreConfig.ROLLUP_SCHEDULING_POLICY, "PRIORITY");
+
+        Assert.assertEquals("PRIORITY", new ScheduleContext(now, shards).getSchedulingPolicy());
+    }
+
+    @Test
+    public void testPriorityPolicyRollsUpNewestSlotsFirst() {
+
+        // given
+        ctx.setSchedulingPolicy("PRIORITY");
+
+        // when
+        ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+
+        // then
+        Assert.assertEquals(3, ctx.getScheduledCount());
+        assertNextScheduledSlot(now - 2);
+        assertNextScheduledSlot(now - hour);
+        assertNextScheduledSlot(now - 2 * hour);
+        Assert.assertNull(ctx.getNextScheduled());
+    }
+
+    @Test
+    public void testChangingPolicyReordersScheduledSlots() {
+
+        // given
+        ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+
+        // when
+        ctx.setSchedulingPolicy("PRIORITY");
+
+        // then
+        Assert.assertEquals("PRIORITY", ctx.getSchedulingPolicy());
+        assertNextScheduledSlot(now - 2);
+        assertNextScheduledSlot(now - hour);
+        assertNextScheduledSlot(now - 2 * hour);
+    }
+
+    @Test
+    public void testPushBackToScheduledRescheduleImmediatelyGoesAheadOfPriority() {
+
+        // given
+        ctx.setSchedulingPolicy("PRIORITY");
+        ctx.scheduleEligibleSlots(1, 7200000, 3600000);
+        ctx.getNextScheduled();
+        SlotKey second = ctx.getNextScheduled();
+
+        // when
+        ctx.pushBackToScheduled(second, true);
+
+        // then
+        Assert.assertEquals(second, ctx.getNextScheduled());
+        assertNextScheduledSlot(now - 2 * hour);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPolicyIsRejected() {
+        ctx.setSchedulingPolicy("SOONEST");
+    }
+
+    private void assertNextScheduledSlot(long collectionTime) {
+        SlotKey next = ctx.getNextScheduled();
+        Assert.assertEquals(SlotKey.of(gran, gran.slot(collectionTime), shard), next);
+    }
+}
@@ -298,6 +298,8 @@ public class ScheduleContextTest {
             while (update.isAlive()) {
                 while (ctx.hasScheduled()) {
                     SlotKey key = ctx.getNextScheduled();
+                    // like the rollup service, as an update may deschedule the slot after hasScheduled().
+                    if (key == null) { continue; }
                     ctx.clearFromRunning(key);
                     count++;
                 }
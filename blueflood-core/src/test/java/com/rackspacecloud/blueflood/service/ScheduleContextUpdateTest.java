@@ -2,12 +2,18 @@ package com.rackspacecloud.blueflood.service;
 
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.rollup.SlotKey;
+import com.rackspacecloud.blueflood.types.IMetric;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.Metric;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import com.rackspacecloud.blueflood.utils.Util;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class ScheduleContextUpdateTest {
 
@@ -92,6 +98,57 @@ public class ScheduleContextUpdateTest {
         Assert.assertEquals(0, ctx.getScheduledCount());
     }
 
+    @Test
+    public void testUpdateAllMarksSlotsDirtyWithLatestCollectionTime() {
+
+        // given
+        Locator locator = locatorInShard(shards.get(0));
+        List<IMetric> metrics = new ArrayList<IMetric>();
+        metrics.add(new Metric(locator, 1, now - 100, new TimeValue(1, TimeUnit.DAYS), "units"));
+        metrics.add(new Metric(locator, 2, now, new TimeValue(1, TimeUnit.DAYS), "units"));
+        metrics.add(new Metric(locator, 3, now - 50, new TimeValue(1, TimeUnit.DAYS), "units"));
+
+        // when
+        ctx.updateAll(metrics);
+
+        // then
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey5), UpdateStamp.State.Active, now, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey20), UpdateStamp.State.Active, now, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey60), UpdateStamp.State.Active, now, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey240), UpdateStamp.State.Active, now, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey1440), UpdateStamp.State.Active, now, true);
+        Assert.assertEquals(0, ctx.getScheduledCount());
+    }
+
+    @Test
+    public void testUpdateAllMarksEachFinestSlotWithItsOwnLatestTime() {
+
+        // given
+        long earlier = now - Granularity.MIN_5.milliseconds();
+        SlotKey earlierSlotkey5 = SlotKey.of(Granularity.MIN_5, Granularity.MIN_5.slot(earlier), shards.get(0));
+        Locator locator = locatorInShard(shards.get(0));
+        List<IMetric> metrics = new ArrayList<IMetric>();
+        metrics.add(new Metric(locator, 1, earlier, new TimeValue(1, TimeUnit.DAYS), "units"));
+        metrics.add(new Metric(locator, 2, now, new TimeValue(1, TimeUnit.DAYS), "units"));
+
+        // when
+        ctx.updateAll(metrics);
+
+        // then
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(earlierSlotkey5), UpdateStamp.State.Active, earlier, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey5), UpdateStamp.State.Active, now, true);
+        assertStampStateAndTimestampAndDirtyFlag(mgr.getUpdateStamp(slotkey20), UpdateStamp.State.Active, now, true);
+    }
+
+    private Locator locatorInShard(int shard) {
+        for (int i = 0; ; i++) {
+            Locator locator = Locator.createLocatorFromPathComponents("tenant", "metric" + i);
+            if (Util.getShard(locator.toString()) == shard) {
+                return locator;
+            }
+        }
+    }
+
     private void assertStampStateAndTimestampAndDirtyFlag(UpdateStamp stamp, UpdateStamp.State state, long timestamp, boolean dirty) {
 
         Assert.assertNotNull(stamp);
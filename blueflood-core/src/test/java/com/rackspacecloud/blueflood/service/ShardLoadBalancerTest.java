@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardLoadBalancerTest {
+    private final ShardLoadBalancer balancer = new ShardLoadBalancer(0.25f);
+
+    @Test
+    public void testFairShare() {
+        assertEquals(128, ShardLoadBalancer.fairShare(128, 1));
+        assertEquals(64, ShardLoadBalancer.fairShare(128, 2));
+        assertEquals(43, ShardLoadBalancer.fairShare(128, 3));
+        assertEquals(128, ShardLoadBalancer.fairShare(128, 0));
+    }
+
+    @Test
+    public void testNewNodeTakesItsFairShare() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(8, 0));
+        assertEquals(4, balancer.locksToAcquire(8, new NodeLoad(0, 0), others));
+    }
+
+    @Test
+    public void testNodeAloneTakesEverything() {
+        assertEquals(8, balancer.locksToAcquire(8, new NodeLoad(0, 0), Collections.<NodeLoad>emptyList()));
+    }
+
+    @Test
+    public void testNodeOverItsFairShareReleasesQuietestShards() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(0, 0));
+        Map<Integer, Long> held = shardLoads(10, 1, 5, 3, 7, 2, 8, 4);
+
+        List<Integer> toRelease = balancer.shardsToRelease(8, new NodeLoad(8, 40), others, held);
+
+        assertEquals(Arrays.asList(1, 5, 3, 7), toRelease);
+        assertEquals(0, balancer.locksToAcquire(8, new NodeLoad(8, 40), others));
+    }
+
+    @Test
+    public void testOverloadedNodeReleasesBusiestShard() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(2, 10));
+        Map<Integer, Long> held = shardLoads(20, 60);
+
+        assertEquals(Collections.singletonList(1), balancer.shardsToRelease(4, new NodeLoad(2, 80), others, held));
+    }
+
+    @Test
+    public void testBusiestShardStaysWhenMovingItOnlyMovesTheHotspot() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(2, 10));
+        Map<Integer, Long> held = shardLoads(1, 99);
+
+        assertTrue(balancer.shardsToRelease(4, new NodeLoad(2, 100), others, held).isEmpty());
+    }
+
+    @Test
+    public void testUnderloadedNodeMakesRoomForOneMoreShard() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(2, 80));
+        NodeLoad self = new NodeLoad(2, 10);
+
+        assertEquals(1, balancer.locksToAcquire(4, self, others));
+        assertTrue(balancer.shardsToRelease(4, self, others, shardLoads(5, 5)).isEmpty());
+
+        // once it has the extra shard, it keeps it while underloaded.
+        NodeLoad withExtra = new NodeLoad(3, 12);
+        assertEquals(0, balancer.locksToAcquire(4, withExtra, others));
+        assertTrue(balancer.shardsToRelease(4, withExtra, others, shardLoads(5, 5, 2)).isEmpty());
+    }
+
+    @Test
+    public void testNodeThatTookBusyShardReleasesQuietestOne() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(1, 20));
+        Map<Integer, Long> held = shardLoads(5, 5, 60);
+
+        assertEquals(Collections.singletonList(0), balancer.shardsToRelease(4, new NodeLoad(3, 70), others, held));
+    }
+
+    @Test
+    public void testEvenLoadsStayPut() {
+        List<NodeLoad> others = Collections.singletonList(new NodeLoad(2, 50));
+        NodeLoad self = new NodeLoad(2, 45);
+
+        assertEquals(0, balancer.locksToAcquire(4, self, others));
+        assertTrue(balancer.shardsToRelease(4, self, others, shardLoads(20, 25)).isEmpty());
+    }
+
+    @Test
+    public void testNodeLoadRoundTrips() {
+        NodeLoad load = new NodeLoad(12, 3456789012L);
+        assertEquals(load, NodeLoad.fromBytes(load.toBytes()));
+        assertEquals(null, NodeLoad.fromBytes("garbage".getBytes()));
+        assertEquals(null, NodeLoad.fromBytes(null));
+    }
+
+    // loads of shards 0, 1, 2...
+    private static Map<Integer, Long> shardLoads(long... loads) {
+        Map<Integer, Long> shardLoads = new HashMap<Integer, Long>();
+        for (int shard = 0; shard < loads.length; shard++) {
+            shardLoads.put(shard, loads[shard]);
+        }
+        return shardLoads;
+    }
+}
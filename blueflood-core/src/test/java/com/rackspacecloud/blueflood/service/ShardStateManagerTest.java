@@ -11,6 +11,8 @@ import org.mockito.Mockito;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
@@ -635,4 +637,99 @@ public class ShardStateManagerTest {
         assertEquals("Only one slot should be returned", 1, slots.size());
         assertEquals("Slot zero should be included", 0, slots.get(0).intValue());
     }
+
+    @Test
+    public void getDirtySlotsFindsSlotsAcrossTheWholeGranularity() {
+
+        // given
+        int lastSlot = TEST_GRANULARITY.numSlots() - 1;
+        slotStateManager.createOrUpdateForSlotAndMillisecond(63, 1234L);
+        slotStateManager.createOrUpdateForSlotAndMillisecond(64, 1234L);
+        slotStateManager.createOrUpdateForSlotAndMillisecond(lastSlot, 1234L);
+
+        // when
+        Map<Integer, UpdateStamp> dirtySlots = slotStateManager.getDirtySlotStampsAndMarkClean();
+
+        // then
+        assertEquals(3, dirtySlots.size());
+        assertTrue(dirtySlots.containsKey(63));
+        assertTrue(dirtySlots.containsKey(64));
+        assertTrue(dirtySlots.containsKey(lastSlot));
+        assertTrue("All slots should now be clean", slotStateManager.getDirtySlotStampsAndMarkClean().isEmpty());
+        assertEquals(3, slotStateManager.getSlotsEligibleForRollup(2346L, 0, 1, 3600000).size());
+    }
+
+    @Test
+    public void stateIsOnlyKeptForShardsThatAreUsed() {
+
+        // given
+        ShardStateManager shardStateManager = new ShardStateManager(managedShards, Ticker.systemTicker(), mockClock);
+        int unmanagedShard = TEST_SHARD + 1;
+
+        // then
+        assertTrue(shardStateManager.shardToGranularityStates.containsKey(TEST_SHARD));
+        assertNull("Nothing to push for a shard that was never updated", shardStateManager.getDirtySlotsToPersist(unmanagedShard));
+        assertFalse(shardStateManager.shardToGranularityStates.containsKey(unmanagedShard));
+
+        // when
+        shardStateManager.getSlotStateManager(unmanagedShard, TEST_GRANULARITY).createOrUpdateForSlotAndMillisecond(0, 1234L);
+
+        // then
+        assertTrue(shardStateManager.shardToGranularityStates.containsKey(unmanagedShard));
+        assertEquals(1, shardStateManager.getDirtySlotsToPersist(unmanagedShard).get(TEST_GRANULARITY).size());
+    }
+
+    @Test
+    public void pusherSeesEveryUpdateMadeWhileSlotIsDirty() throws Exception {
+
+        // given
+        final int updates = 200000;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicLong lastPushed = new AtomicLong(0);
+        final AtomicBoolean outOfOrder = new AtomicBoolean(false);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // the slot stays dirty most of the time, so these updates don't flip the dirty bit.
+                for (long millis = 1; millis <= updates; millis++) {
+                    slotStateManager.createOrUpdateForSlotAndMillisecond(TEST_SLOT, millis);
+                }
+                writing.set(false);
+            }
+        });
+        Thread pusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (writing.get()) {
+                    push();
+                }
+            }
+
+            private void push() {
+                UpdateStamp stamp = slotStateManager.getChangedSlotStampsAndMarkClean().get(TEST_SLOT);
+                if (stamp == null) {
+                    return;
+                }
+                if (stamp.getState() != UpdateStamp.State.Active || stamp.getTimestamp() < lastPushed.get()) {
+                    outOfOrder.set(true);
+                }
+                lastPushed.set(stamp.getTimestamp());
+            }
+        });
+
+        // when
+        writer.start();
+        pusher.start();
+        writer.join();
+        pusher.join();
+        UpdateStamp last = slotStateManager.getChangedSlotStampsAndMarkClean().get(TEST_SLOT);
+        if (last != null) {
+            lastPushed.set(last.getTimestamp());
+        }
+
+        // then
+        assertFalse("Pushed a stale or inconsistent stamp", outOfOrder.get());
+        assertEquals("Last update was never pushed", updates, lastPushed.get());
+    }
 }
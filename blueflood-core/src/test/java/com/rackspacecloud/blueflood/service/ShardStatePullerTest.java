@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.google.common.base.Ticker;
+import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import com.rackspacecloud.blueflood.utils.Clock;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ShardStatePullerTest {
+
+    private static final int SHARD = 3;
+    private static final long FULL_PULL_PERIOD = 60 * 60 * 1000L;
+
+    private final Collection<Integer> shards = Collections.singleton(SHARD);
+    private final ShardStateIO io = mock(ShardStateIO.class);
+    private long now = 1234567890000L;
+    private ShardStateManager manager;
+
+    private final Clock clock = new Clock() {
+        @Override
+        public Instant now() {
+            return new Instant(now);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        manager = new ShardStateManager(shards, Ticker.systemTicker());
+        when(io.getShardState(anyInt())).thenReturn(Collections.<SlotState>emptyList());
+        when(io.getShardStateChanges(anyInt(), anyLong())).thenReturn(Collections.<SlotState>emptyList());
+    }
+
+    @Test
+    public void pullsChangesSinceLastPullBetweenFullPulls() throws Exception {
+        ShardStatePuller puller = new ShardStatePuller(shards, manager, io, true, FULL_PULL_PERIOD, clock);
+
+        puller.performOperation();
+        verify(io).getShardState(SHARD);
+
+        long firstPull = now;
+        now += 20000;
+        puller.performOperation();
+        verify(io).getShardStateChanges(SHARD, firstPull - ShardStatePuller.CLOCK_SKEW_MILLIS);
+
+        now = firstPull + FULL_PULL_PERIOD;
+        puller.performOperation();
+        verify(io, times(2)).getShardState(SHARD);
+        verify(io, times(1)).getShardStateChanges(anyInt(), anyLong());
+    }
+
+    @Test
+    public void alwaysPullsInFullWhenNotIncremental() throws Exception {
+        ShardStatePuller puller = new ShardStatePuller(shards, manager, io, false, FULL_PULL_PERIOD, clock);
+
+        puller.performOperation();
+        now += 20000;
+        puller.performOperation();
+
+        verify(io, times(2)).getShardState(SHARD);
+        verify(io, never()).getShardStateChanges(anyInt(), anyLong());
+    }
+
+    @Test
+    public void changedStatesAreApplied() throws Exception {
+        SlotState changed = new SlotState(Granularity.MIN_5, 7, UpdateStamp.State.Active)
+                .withTimestamp(now - 1000).withLastUpdatedTimestamp(now);
+        when(io.getShardStateChanges(anyInt(), anyLong())).thenReturn(Arrays.asList(changed));
+        ShardStatePuller puller = new ShardStatePuller(shards, manager, io, true, FULL_PULL_PERIOD, clock);
+
+        puller.performOperation();
+        assertNull(manager.getSlotStateManager(SHARD, Granularity.MIN_5).getSlotStamps().get(7));
+
+        now += 20000;
+        puller.performOperation();
+        UpdateStamp stamp = manager.getSlotStateManager(SHARD, Granularity.MIN_5).getSlotStamps().get(7);
+        assertNotNull(stamp);
+        assertEquals(now - 20000 - 1000, stamp.getTimestamp());
+    }
+
+    @Test
+    public void failedPullIsRetriedInFull() throws Exception {
+        when(io.getShardState(anyInt())).thenThrow(new IOException("down"))
+                .thenReturn(Collections.<SlotState>emptyList());
+        ShardStatePuller puller = new ShardStatePuller(shards, manager, io, true, FULL_PULL_PERIOD, clock);
+
+        puller.performOperation();
+        now += 20000;
+        puller.performOperation();
+
+        verify(io, times(2)).getShardState(SHARD);
+        verify(io, never()).getShardStateChanges(anyInt(), anyLong());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.google.common.base.Ticker;
+import com.rackspacecloud.blueflood.io.ShardStateIO;
+import com.rackspacecloud.blueflood.rollup.Granularity;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ShardStatePusherTest {
+
+    private static final int SHARD = 3;
+    private static final int SLOT = 7;
+    private static final long TIMESTAMP = 1234567890000L;
+
+    private final Collection<Integer> shards = Arrays.asList(SHARD, 4, 5, 6);
+    private final ShardStateIO io = mock(ShardStateIO.class);
+    private ShardStateManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new ShardStateManager(shards, Ticker.systemTicker());
+    }
+
+    @Test
+    public void unchangedSlotsAreOnlyPushedOnce() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 1, true);
+
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        verify(io, times(1)).putShardState(eq(SHARD), anyMap());
+
+        markDirty(SHARD, TIMESTAMP + 1);
+        pusher.performOperation();
+        verify(io, times(2)).putShardState(eq(SHARD), anyMap());
+    }
+
+    @Test
+    public void unchangedSlotsArePushedAgainWhenNotSkipped() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 1, false);
+
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+
+        verify(io, times(2)).putShardState(eq(SHARD), anyMap());
+    }
+
+    @Test
+    public void failedPushIsNotRememberedAsPushed() throws Exception {
+        doThrow(new IOException("down")).doNothing().when(io).putShardState(anyInt(), anyMap());
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 1, true);
+
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+
+        verify(io, times(2)).putShardState(eq(SHARD), anyMap());
+    }
+
+    @Test
+    public void slotOverwrittenByAnotherNodeIsPushedAgain() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 1, true);
+
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        // another node wrote an older timestamp over ours, which marks the slot dirty to put it back.
+        manager.updateSlotOnRead(SHARD, new SlotState(Granularity.MIN_5, SLOT, UpdateStamp.State.Active)
+                .withTimestamp(TIMESTAMP - 1000).withLastUpdatedTimestamp(TIMESTAMP));
+        pusher.performOperation();
+
+        verify(io, times(2)).putShardState(eq(SHARD), anyMap());
+    }
+
+    @Test
+    public void slotOverwrittenWhilePushingIsPushedAgain() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 1, true);
+        // another node writes an older timestamp over ours, and it is read while ours is still being pushed.
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                manager.updateSlotOnRead(SHARD, new SlotState(Granularity.MIN_5, SLOT, UpdateStamp.State.Active)
+                        .withTimestamp(TIMESTAMP - 1000).withLastUpdatedTimestamp(TIMESTAMP));
+                return null;
+            }
+        }).doNothing().when(io).putShardState(eq(SHARD), anyMap());
+
+        markDirty(SHARD, TIMESTAMP);
+        pusher.performOperation();
+        pusher.performOperation();
+
+        verify(io, times(2)).putShardState(eq(SHARD), anyMap());
+    }
+
+    @Test
+    public void stoppingShutsDownPushThreads() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 4, true);
+        ExecutorService pushExecutor = pusher.getPushExecutor();
+        assertNotNull(pushExecutor);
+
+        pusher.setActive(false);
+
+        assertTrue(pushExecutor.isShutdown());
+        assertNull(pusher.getPushExecutor());
+    }
+
+    @Test
+    public void pushesShardsConcurrently() throws Exception {
+        ShardStatePusher pusher = new ShardStatePusher(shards, manager, io, 4, true);
+
+        for (int shard : shards) {
+            markDirty(shard, TIMESTAMP);
+        }
+        pusher.performOperation();
+
+        for (int shard : shards) {
+            verify(io).putShardState(eq(shard), anyMap());
+        }
+        for (int shard : shards) {
+            Map<Granularity, Map<Integer, UpdateStamp>> dirty = manager.getDirtySlotsToPersist(shard);
+            assertNull("Nothing left to push for shard " + shard, dirty);
+        }
+    }
+
+    private void markDirty(int shard, long timestamp) {
+        manager.getSlotStateManager(shard, Granularity.MIN_5).createOrUpdateForSlotAndMillisecond(SLOT, timestamp);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.service;
+
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import com.rackspacecloud.blueflood.utils.ZookeeperTestServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class ZKShardLockManagerLoadBalancingIntegrationTest {
+    private static final int SHARDS = 4;
+
+    private final Set<Integer> managedShards = new HashSet<Integer>();
+    private ZookeeperTestServer zkTestServer;
+    private ZKShardLockManager first;
+    private ZKShardLockManager second;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            managedShards.add(shard);
+        }
+        zkTestServer = new ZookeeperTestServer();
+        zkTestServer.connect();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (first != null) {
+            first.shutdownUnsafe();
+        }
+        if (second != null) {
+            second.shutdownUnsafe();
+        }
+        zkTestServer.shutdown();
+    }
+
+    @Test
+    public void testNodesSplitShardsAndSurvivorTakesOverShardsOfNodeThatLeaves() throws Exception {
+        first = start();
+        first.forceLockScavenge();
+        first.waitForQuiesceUnsafe();
+        Assert.assertEquals(SHARDS, first.getHeldShards().size());
+
+        second = start();
+        Assert.assertEquals(0, second.getHeldShards().size());
+        waitForNodeCount(first, 2);
+
+        // the first node gives up half of its shards, and the second takes them.
+        first.forceLockScavenge();
+        first.waitForQuiesceUnsafe();
+        Assert.assertEquals(SHARDS / 2, first.getHeldShards().size());
+        second.forceLockScavenge();
+        second.waitForQuiesceUnsafe();
+        Assert.assertEquals(SHARDS / 2, second.getHeldShards().size());
+
+        // the shards of a node that goes away are taken over without waiting for the next scavenge.
+        first.shutdownUnsafe();
+        first = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (second.getHeldShards().size() < SHARDS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(SHARDS, second.getHeldShards().size());
+    }
+
+    private ZKShardLockManager start() {
+        ZKShardLockManager lockManager = new ZKShardLockManager(zkTestServer.getZkConnect(), managedShards, null, true);
+        lockManager.init(new TimeValue(10, TimeUnit.SECONDS));
+        return lockManager;
+    }
+
+    private static void waitForNodeCount(ZKShardLockManager lockManager, int nodes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (lockManager.getNodeCountUnsafe() < nodes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(nodes, lockManager.getNodeCountUnsafe());
+    }
+}
@@ -2,6 +2,7 @@ package com.rackspacecloud.blueflood.types;
 
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.io.serializers.Serializers;
+import com.rackspacecloud.blueflood.utils.Rollups;
 import junit.framework.Assert;
 import org.apache.commons.codec.binary.Base64;
 import org.junit.Test;
@@ -126,4 +127,62 @@ public class BluefloodSetRollupTest {
         
         Assert.assertTrue(count > 0);
     }
+
+    @Test
+    public void testLargeSetIsEstimated() throws IOException {
+        BluefloodSetRollup small = new BluefloodSetRollup();
+        BluefloodSetRollup large = new BluefloodSetRollup();
+        for (int i = 0; i < 10000; i++) {
+            if (i < BluefloodSetRollup.MAX_EXACT_SIZE) {
+                small = small.withObject(i);
+            }
+            large = large.withObject(i);
+        }
+
+        Assert.assertTrue(small.isExact());
+        Assert.assertEquals(BluefloodSetRollup.MAX_EXACT_SIZE, small.getCount());
+        Assert.assertFalse(large.isExact());
+        Assert.assertEquals(10000, large.getCount(), 500);
+
+        // rolling up an exact set with an estimated one estimates the union.
+        BluefloodSetRollup rollup = BluefloodSetRollup.buildRollupFromSetRollups(
+                Rollups.asPoints(BluefloodSetRollup.class, 0, 300, small, large,
+                        new BluefloodSetRollup().withObject(-1)));
+        Assert.assertFalse(rollup.isExact());
+        Assert.assertEquals(large.getSketch().copy().offer(-1), rollup.getSketch());
+        // the inputs are left alone.
+        Assert.assertTrue(small.isExact());
+        Assert.assertEquals(large.getSketch().copy(), large.getSketch());
+    }
+
+    @Test
+    public void testSetV2RoundTrip() throws IOException {
+        BluefloodSetRollup sparse = new BluefloodSetRollup();
+        BluefloodSetRollup dense = new BluefloodSetRollup();
+        for (int i = 0; i < 100000; i++) {
+            if (i < 500) {
+                sparse = sparse.withObject(Integer.toHexString(i));
+            }
+            dense = dense.withObject(Integer.toHexString(i));
+        }
+        Assert.assertTrue(sparse.getSketch().isSparse());
+        Assert.assertFalse(dense.getSketch().isSparse());
+
+        for (BluefloodSetRollup set : new BluefloodSetRollup[] { sparse, dense }) {
+            ByteBuffer bb = Serializers.setRollupInstance.toByteBuffer(set);
+            Assert.assertEquals(Constants.VERSION_2_SET_ROLLUP, bb.get(0));
+            // the point of the sketch: a few KB whatever the cardinality.
+            Assert.assertTrue(bb.remaining() <= 2 + new HyperLogLog().getRegisterCount() + 1);
+
+            BluefloodSetRollup deserialized = Serializers.setRollupInstance.fromByteBuffer(bb);
+            Assert.assertEquals(set, deserialized);
+            Assert.assertEquals(set.getCount(), deserialized.getCount());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEstimatedSetDoesNotKnowItsValues() {
+        BluefloodSetRollup set = new BluefloodSetRollup().withSketch(new HyperLogLog());
+        set.contains("foo");
+    }
 }
@@ -204,4 +204,33 @@ public class BluefloodTimerRollupTest {
         Assert.assertEquals(3, lmap.get("foo").size());
     }
     
+
+    @Test
+    public void testSketchesAreMergedOnRollup() throws IOException {
+        QuantileSketch all = new QuantileSketch();
+        Points<BluefloodTimerRollup> timerPoints = new Points<BluefloodTimerRollup>();
+        for (int i = 0; i < 4; i++) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int value = i * 100; value < (i + 1) * 100; value++) {
+                sketch.add(value);
+                all.add(value);
+            }
+            timerPoints.add(new Points.Point<BluefloodTimerRollup>(i, new BluefloodTimerRollup().withCount(100).withSampleCount(1).withSketch(sketch)));
+        }
+
+        BluefloodTimerRollup cumulativeTimer = BluefloodTimerRollup.buildRollupFromTimerRollups(timerPoints);
+
+        Assert.assertEquals(all, cumulativeTimer.getSketch());
+        // the inputs are left alone.
+        Assert.assertEquals(100, timerPoints.getPoints().get(0L).getData().getSketch().getCount());
+    }
+
+    @Test
+    public void testSketchIsDroppedIfAnyInputHasNone() throws IOException {
+        Points<BluefloodTimerRollup> timerPoints = new Points<BluefloodTimerRollup>();
+        timerPoints.add(new Points.Point<BluefloodTimerRollup>(0, new BluefloodTimerRollup().withCount(1).withSketch(new QuantileSketch().add(5))));
+        timerPoints.add(new Points.Point<BluefloodTimerRollup>(1, new BluefloodTimerRollup().withCount(1)));
+
+        Assert.assertNull(BluefloodTimerRollup.buildRollupFromTimerRollups(timerPoints).getSketch());
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallSetIsSparseAndNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.offer(i);
+            sketch.offer(i);
+        }
+
+        assertTrue(sketch.isSparse());
+        assertEquals(100, sketch.estimate(), 2);
+    }
+
+    @Test
+    public void testLargeSetIsDenseAndWithinError() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000000; i++) {
+            sketch.offer(i);
+        }
+
+        assertFalse(sketch.isSparse());
+        // a bit over three standard errors of 1.6%.
+        assertEquals(1000000, sketch.estimate(), 50000);
+    }
+
+    @Test
+    public void testMergeIsUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (int i = 0; i < 20000; i++) {
+            (i % 2 == 0 ? a : b).offer(i);
+            all.offer(i);
+        }
+        // overlaps with a, and stays sparse.
+        for (int i = 0; i < 100; i += 2) {
+            b.offer(i);
+        }
+
+        HyperLogLog merged = a.copy().merge(b);
+        assertEquals(all, merged);
+        assertEquals(20000, merged.estimate(), 1000);
+
+        HyperLogLog small = new HyperLogLog().offer(1).offer(2);
+        assertTrue(small.copy().merge(new HyperLogLog().offer(3)).isSparse());
+        assertEquals(3, small.merge(new HyperLogLog().offer(3)).estimate());
+    }
+
+    @Test
+    public void testMergeSparseIntoDense() {
+        HyperLogLog sparse = new HyperLogLog().offer(1).offer(2);
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 10000; i++) {
+            dense.offer(i);
+        }
+        assertFalse(dense.isSparse());
+        assertFalse(sparse.equals(dense));
+
+        HyperLogLog merged = new HyperLogLog().merge(dense).merge(sparse);
+        assertEquals(dense.copy().merge(sparse), merged);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCannotMergeDifferentPrecisions() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
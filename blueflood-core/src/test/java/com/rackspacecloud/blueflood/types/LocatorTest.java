@@ -1,5 +1,6 @@
 package com.rackspacecloud.blueflood.types;
 
+import com.rackspacecloud.blueflood.utils.Util;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -41,39 +42,30 @@ public class LocatorTest {
     }
 
     @Test
-    public void setStringRepSetsTenant() {
-
-        // given
-        Locator locator = new Locator();
+    public void constructorSetsTenant() {
 
         // when
-        locator.setStringRep(fullyQualifiedName);
+        Locator locator = new Locator(fullyQualifiedName);
 
         // then
         assertEquals(tenant, locator.getTenantId());
     }
 
     @Test
-    public void setStringRepSetsMetricName() {
-
-        // given
-        Locator locator = new Locator();
+    public void constructorSetsMetricName() {
 
         // when
-        locator.setStringRep(fullyQualifiedName);
+        Locator locator = new Locator(fullyQualifiedName);
 
         // then
         assertEquals(metricName, locator.getMetricName());
     }
 
     @Test
-    public void setStringRepSetsStringRepresentation() {
-
-        // given
-        Locator locator = new Locator();
+    public void constructorSetsStringRepresentation() {
 
         // when
-        locator.setStringRep(fullyQualifiedName);
+        Locator locator = new Locator(fullyQualifiedName);
 
         // then
         assertEquals(fullyQualifiedName, locator.toString());
@@ -438,4 +430,37 @@ public class LocatorTest {
         // then
         assertEquals(-1, comparison);
     }
+
+    @Test
+    public void getShardMatchesComputedShardOfStringRepresentation() {
+
+        // given
+        Locator locator = Locator.createLocatorFromDbKey(fullyQualifiedName);
+
+        // expect
+        assertEquals(Util.computeShard(fullyQualifiedName), locator.getShard());
+        assertEquals(Util.computeShard(fullyQualifiedName), locator.getShard());
+    }
+
+    @Test
+    public void constructorWithoutSeparatorUsesWholeStringAsTenantAndMetricName() {
+
+        // when
+        Locator locator = new Locator("abc");
+
+        // then
+        assertEquals("abc", locator.getTenantId());
+        assertEquals("abc", locator.getMetricName());
+    }
+
+    @Test
+    public void createLocatorReturnsInternedInstance() {
+
+        // when
+        Locator fromDbKey = Locator.createLocatorFromDbKey(fullyQualifiedName);
+        Locator fromPathComponents = Locator.createLocatorFromPathComponents(tenant, "some", "metric", "name");
+
+        // then
+        assertSame(fromDbKey, fromPathComponents);
+    }
 }
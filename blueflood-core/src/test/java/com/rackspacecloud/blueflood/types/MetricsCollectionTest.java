@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsCollectionTest {
+
+    private static final TimeValue TTL = new TimeValue(1, TimeUnit.DAYS);
+
+    @Test
+    public void testShardBatchesKeepEveryMetric() {
+        MetricsCollection collection = createCollection(50, 3);
+
+        List<List<IMetric>> batches = collection.splitMetricsIntoShardBatches(20);
+
+        assertEquals(8, batches.size());
+        int total = 0;
+        for (List<IMetric> batch : batches) {
+            assertTrue(batch.size() <= 20);
+            total += batch.size();
+        }
+        assertEquals(150, total);
+    }
+
+    @Test
+    public void testShardBatchesAreOrderedByShardThenLocator() {
+        MetricsCollection collection = createCollection(50, 3);
+
+        List<IMetric> ordered = new ArrayList<IMetric>();
+        for (List<IMetric> batch : collection.splitMetricsIntoShardBatches(7)) {
+            ordered.addAll(batch);
+        }
+
+        for (int i = 1; i < ordered.size(); i++) {
+            Locator previous = ordered.get(i - 1).getLocator();
+            Locator locator = ordered.get(i).getLocator();
+            assertTrue(previous.getShard() <= locator.getShard());
+            if (previous.getShard() == locator.getShard()) {
+                assertTrue(previous.compareTo(locator) <= 0);
+            }
+            if (previous.equals(locator)) {
+                // points of a locator keep the order they were ingested in.
+                assertTrue(ordered.get(i - 1).getCollectionTime() < ordered.get(i).getCollectionTime());
+            }
+        }
+    }
+
+    @Test
+    public void testShardBatchesTouchFewerShards() {
+        MetricsCollection collection = createCollection(200, 1);
+
+        assertTrue(shardsPerBatch(collection.splitMetricsIntoShardBatches(20))
+                < shardsPerBatch(collection.splitMetricsIntoBatches(20)));
+    }
+
+    @Test
+    public void testShardBatchesWithoutBatchSize() {
+        MetricsCollection collection = createCollection(10, 2);
+
+        List<List<IMetric>> batches = collection.splitMetricsIntoShardBatches(0);
+
+        assertEquals(1, batches.size());
+        assertEquals(20, batches.get(0).size());
+    }
+
+    private static int shardsPerBatch(List<List<IMetric>> batches) {
+        int shards = 0;
+        for (List<IMetric> batch : batches) {
+            Set<Integer> seen = new HashSet<Integer>();
+            for (IMetric metric : batch) {
+                seen.add(metric.getLocator().getShard());
+            }
+            shards += seen.size();
+        }
+        return shards;
+    }
+
+    private static MetricsCollection createCollection(int locators, int pointsPerLocator) {
+        List<IMetric> metrics = new ArrayList<IMetric>();
+        for (int point = 0; point < pointsPerLocator; point++) {
+            for (int i = 0; i < locators; i++) {
+                Locator locator = Locator.createLocatorFromPathComponents("tenant", "metric" + i);
+                metrics.add(new Metric(locator, i, 1000L + point, TTL, "ms"));
+            }
+        }
+        MetricsCollection collection = new MetricsCollection();
+        collection.add(metrics);
+        return collection;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NumericPointsTest {
+
+    @Test
+    public void testPointsAddedInOrderStayInColumns() {
+        NumericPoints points = new NumericPoints(2);
+        points.add(1000L, 1);
+        points.add(2000L, 2L);
+        points.add(3000L, 3.5d);
+        points.add(new Points.Point<SimpleNumber>(4000L, new SimpleNumber(4L)));
+
+        assertTrue(points.isColumnar());
+        assertEquals(4, points.size());
+        assertEquals(1000L, points.getTimestamp(0));
+        assertEquals(Integer.valueOf(1), points.getValue(0));
+        assertEquals(Long.valueOf(2), points.getValue(1));
+        assertEquals(3.5d, points.getDoubleValue(2), 0d);
+        assertEquals(SimpleNumber.Type.LONG, points.getDataType(3));
+        assertEquals(SimpleNumber.class, points.getDataClass());
+    }
+
+    @Test
+    public void testGetPointsKeepsValuesAndTypes() {
+        NumericPoints points = new NumericPoints();
+        points.add(1000L, 1);
+        points.add(2000L, 2.5d);
+
+        Map<Long, Points.Point<SimpleNumber>> map = points.getPoints();
+
+        // reading them does not take them out of the columns.
+        assertTrue(points.isColumnar());
+        assertEquals(2, points.size());
+        assertEquals(SimpleNumber.Type.INTEGER, map.get(1000L).getData().getDataType());
+        assertEquals(2.5d, map.get(2000L).getData().getValue());
+
+        // still usable as regular points.
+        points.add(1500L, 3L);
+        assertEquals(3, points.getPoints().size());
+    }
+
+    @Test
+    public void testPointOutOfOrderLeavesColumns() {
+        NumericPoints points = new NumericPoints();
+        points.add(2000L, 2L);
+        points.add(1000L, 1L);
+        // replaces the first one.
+        points.add(2000L, 5L);
+
+        assertFalse(points.isColumnar());
+        assertEquals(2, points.size());
+        assertEquals(5L, points.getPoints().get(2000L).getData().getValue());
+    }
+
+    @Test
+    public void testRollupOfColumnsMatchesRollupOfPoints() throws Exception {
+        NumericPoints columns = new NumericPoints();
+        Points<SimpleNumber> points = new Points<SimpleNumber>();
+        for (int i = 0; i < 100; i++) {
+            Number value = i % 3 == 0 ? (Number) (i * 1.5d) : (Number) (long) i;
+            points.add(new Points.Point<SimpleNumber>(i * 1000L, new SimpleNumber(value)));
+            columns.add(new Points.Point<SimpleNumber>(i * 1000L, new SimpleNumber(value)));
+        }
+
+        BasicRollup fromColumns = BasicRollup.buildRollupFromRawSamples(columns);
+        assertTrue("computing the rollup should not need the map", columns.isColumnar());
+        assertEquals(BasicRollup.buildRollupFromRawSamples(points), fromColumns);
+    }
+}
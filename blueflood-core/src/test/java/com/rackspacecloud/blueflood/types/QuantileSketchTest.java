@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.types;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void testQuantilesAreWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 10000; i++) {
+            sketch.add(i);
+        }
+
+        assertEquals(10000, sketch.getCount());
+        for (double q : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            double exact = 1 + q * 9999;
+            assertEquals(exact, sketch.getQuantile(q), exact * QuantileSketch.DEFAULT_RELATIVE_ACCURACY + 1);
+        }
+        assertEquals(1d, sketch.getQuantile(0), 0d);
+        assertEquals(10000d, sketch.getQuantile(1), 0d);
+    }
+
+    @Test
+    public void testMergeMatchesAddingEverything() {
+        Random random = new Random(42);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch merged = new QuantileSketch();
+        for (int part = 0; part < 5; part++) {
+            QuantileSketch partial = new QuantileSketch();
+            for (int i = 0; i < 1000; i++) {
+                double value = random.nextDouble() * 500 * (part + 1);
+                all.add(value);
+                partial.add(value);
+            }
+            merged.merge(partial);
+        }
+
+        assertEquals(all, merged);
+        assertEquals(all.getQuantile(0.99), merged.getQuantile(0.99), 0d);
+    }
+
+    @Test
+    public void testZerosAndNegativesCountAsZero() {
+        QuantileSketch sketch = new QuantileSketch().add(0).add(-3).add(0).add(100);
+
+        assertEquals(3, sketch.getZeroCount());
+        assertEquals(4, sketch.getCount());
+        assertEquals(0d, sketch.getQuantile(0.5), 0d);
+        assertEquals(-3d, sketch.getQuantile(0), 0d);
+        assertEquals(100d, sketch.getQuantile(1), 0d);
+    }
+
+    @Test
+    public void testEmptySketchHasNoQuantiles() {
+        assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergingDifferentAccuraciesFails() {
+        new QuantileSketch(0.01).merge(new QuantileSketch(0.05).add(1));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.rackspacecloud.blueflood.utils;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RecentlySeenSetTest {
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void containsKeysThatWereAdded() {
+        RecentlySeenSet set = new RecentlySeenSet(100, new TimeValue(5, TimeUnit.MINUTES), ticker);
+
+        assertFalse(set.contains("a.b.c"));
+        set.add("a.b.c");
+        assertTrue(set.contains("a.b.c"));
+        assertFalse(set.contains("a.b.d"));
+        assertEquals(1, set.size());
+
+        set.add("a.b.c");
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void keysAreForgottenAfterTwoPeriods() {
+        RecentlySeenSet set = new RecentlySeenSet(100, new TimeValue(5, TimeUnit.MINUTES), ticker);
+        set.add("seen once");
+        set.add("seen again");
+
+        ticker.advance(5, TimeUnit.MINUTES);
+        assertTrue(set.contains("seen again"));
+
+        ticker.advance(5, TimeUnit.MINUTES);
+        assertFalse(set.contains("seen once"));
+        // seeing it in the previous period carried it over.
+        assertTrue(set.contains("seen again"));
+    }
+
+    @Test
+    public void rotatesOnceMaxSizeKeysAreAdded() {
+        RecentlySeenSet set = new RecentlySeenSet(10, new TimeValue(5, TimeUnit.MINUTES), ticker);
+        for (int i = 0; i < 10; i++) {
+            set.add("key." + i);
+        }
+        assertEquals(0, set.size());
+        assertTrue(set.contains("key.0"));
+
+        for (int i = 10; i < 30; i++) {
+            set.add("key." + i);
+        }
+        // two rotations later, the first keys are gone.
+        assertFalse(set.contains("key.1"));
+        assertTrue(set.contains("key.29"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSizeMustBePositive() {
+        new RecentlySeenSet(0, new TimeValue(5, TimeUnit.MINUTES), ticker);
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos = 0;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        private void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}
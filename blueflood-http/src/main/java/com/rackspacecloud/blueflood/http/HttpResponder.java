@@ -18,12 +18,18 @@ package com.rackspacecloud.blueflood.http;
 
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,4 +71,32 @@ public class HttpResponder {
             ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts a response whose body follows in HttpContent chunks, using chunked transfer encoding. The body has to be
+     * ended with {@link #finishChunked}.
+     */
+    public static void respondChunked(ChannelHandlerContext ctx, FullHttpRequest req, HttpResponseStatus status) {
+        HttpResponse res = new DefaultHttpResponse(HTTP_1_1, status);
+        if (CORS_ENABLED) {
+            res.headers().add("Access-Control-Allow-Origin", CORS_ALLOWED_ORIGINS);
+        }
+        HttpHeaders.setTransferEncodingChunked(res);
+        if ( isKeepAlive(req) ) {
+            res.headers().add(CONNECTION, KEEP_ALIVE);
+        }
+
+        ctx.channel().write(res);
+    }
+
+    /**
+     * Sends the last chunk of a response started with {@link #respondChunked}, and closes the connection unless it
+     * is kept alive. Takes ownership of content.
+     */
+    public static void finishChunked(ChannelHandlerContext ctx, FullHttpRequest req, ByteBuf content) {
+        ChannelFuture written = ctx.channel().writeAndFlush(new DefaultLastHttpContent(content));
+        if (!isKeepAlive(req)) {
+            written.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
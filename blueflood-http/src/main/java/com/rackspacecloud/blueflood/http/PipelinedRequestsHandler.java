@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.http;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Holds back requests pipelined on a connection until the response to the request before them was written. Handlers
+ * that respond asynchronously could otherwise answer them out of order, which HTTP/1.1 does not allow.
+ *
+ * At most {@link #MAX_HELD_BACK} requests are held back per connection; a client pipelining more than that is
+ * disconnected, so it cannot make the server buffer any number of requests, nor get them past ingestion throttling.
+ *
+ * Goes after the HttpObjectAggregator, one instance per channel. Only touched from the channel's event loop.
+ */
+public class PipelinedRequestsHandler extends ChannelDuplexHandler {
+    private static final Logger log = LoggerFactory.getLogger(PipelinedRequestsHandler.class);
+
+    static final int MAX_HELD_BACK = 16;
+
+    private final Queue<Object> heldBack = new ArrayDeque<Object>();
+    private boolean responding = false;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof HttpRequest)) {
+            ctx.fireChannelRead(msg);
+        } else if (responding && heldBack.size() >= MAX_HELD_BACK) {
+            log.warn("Closing {}, it pipelined more than {} requests", ctx.channel().remoteAddress(), MAX_HELD_BACK);
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+        } else if (responding) {
+            heldBack.add(msg);
+        } else {
+            responding = true;
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        boolean lastOfResponse = msg instanceof LastHttpContent;
+        ctx.write(msg, promise);
+        if (lastOfResponse) {
+            responding = false;
+            if (!heldBack.isEmpty()) {
+                // not from within this write, the next response may be written right away.
+                ctx.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        readNext(ctx);
+                    }
+                });
+            }
+        }
+    }
+
+    private void readNext(ChannelHandlerContext ctx) {
+        if (responding || heldBack.isEmpty()) {
+            return;
+        }
+        Object next = heldBack.poll();
+        if (!ctx.channel().isActive()) {
+            ReferenceCountUtil.release(next);
+            return;
+        }
+        responding = true;
+        ctx.fireChannelRead(next);
+        // there was no read from the socket, so nothing else would flush what was written for it.
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Object msg;
+        while ((msg = heldBack.poll()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        super.channelInactive(ctx);
+    }
+}
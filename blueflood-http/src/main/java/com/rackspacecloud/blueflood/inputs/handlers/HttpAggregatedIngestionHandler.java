@@ -37,7 +37,6 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
 
 public class HttpAggregatedIngestionHandler implements HttpRequestHandler {
     
@@ -65,8 +64,8 @@ public class HttpAggregatedIngestionHandler implements HttpRequestHandler {
 
         // this is all JSON.
         final String body = request.content().toString(Constants.DEFAULT_CHARSET);
+        boolean persisting = false;
         try {
-            // block until things get ingested.
             requestCount.inc();
             MetricsCollection collection = new MetricsCollection();
 
@@ -86,14 +85,20 @@ public class HttpAggregatedIngestionHandler implements HttpRequestHandler {
                 // no validation errors, process bundle
                 collection.add( PreaggregateConversions.buildMetricsCollection( payload ) );
                 ListenableFuture<List<Boolean>> futures = processor.apply( collection );
-                List<Boolean> persisteds = futures.get( timeout.getValue(), timeout.getUnit() );
-                for ( Boolean persisted : persisteds ) {
-                    if ( !persisted ) {
-                        DefaultHandler.sendResponse( ctx, request, null, HttpResponseStatus.INTERNAL_SERVER_ERROR );
-                        return;
+                processor.throttle( ctx.channel() );
+                new PersistedMetricsResponder( ctx, request ) {
+                    @Override
+                    protected void onPersisted() {
+                        respond( null, HttpResponseStatus.OK );
                     }
-                }
-                DefaultHandler.sendResponse( ctx, request, null, HttpResponseStatus.OK );
+
+                    @Override
+                    protected void onDone() {
+                        requestCount.dec();
+                        timerContext.stop();
+                    }
+                }.respondWhenPersisted( futures, timeout );
+                persisting = true;
             }
             else {
                 // has validation errors for the single metric, return BAD_REQUEST
@@ -107,15 +112,16 @@ public class HttpAggregatedIngestionHandler implements HttpRequestHandler {
             log.debug(String.format("BAD JSON: %s", body));
             log.error(ex.getMessage(), ex);
             DefaultHandler.sendResponse(ctx, request, ex.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (TimeoutException ex) {
-            DefaultHandler.sendResponse(ctx, request, "Timed out persisting metrics", HttpResponseStatus.ACCEPTED);
         } catch (Exception ex) {
             log.debug(String.format("JSON request payload: %s", body));
             log.error("Error saving data", ex);
             DefaultHandler.sendResponse(ctx, request, "Internal error saving data", HttpResponseStatus.INTERNAL_SERVER_ERROR);
         } finally {
-            requestCount.dec();
-            timerContext.stop();
+            // once the metrics are handed off, the responder finishes up when they are written.
+            if (!persisting) {
+                requestCount.dec();
+                timerContext.stop();
+            }
         }
     }
 }
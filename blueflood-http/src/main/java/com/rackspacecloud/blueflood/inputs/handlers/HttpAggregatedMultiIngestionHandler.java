@@ -38,7 +38,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
 
 public class HttpAggregatedMultiIngestionHandler implements HttpRequestHandler {
 
@@ -67,8 +66,8 @@ public class HttpAggregatedMultiIngestionHandler implements HttpRequestHandler {
 
         // this is all JSON.
         final String body = request.content().toString(Constants.DEFAULT_CHARSET);
+        boolean persisting = false;
         try {
-            // block until things get ingested.
             requestCount.inc();
             List<AggregatedPayload> bundleList = createBundleList(body);
 
@@ -111,26 +110,29 @@ public class HttpAggregatedMultiIngestionHandler implements HttpRequestHandler {
 
                 // process valid metrics in collection
                 ListenableFuture<List<Boolean>> futures = processor.apply(collection);
-                List<Boolean> persisteds = futures.get(timeout.getValue(), timeout.getUnit());
-                for (Boolean persisted : persisteds) {
-                    if (!persisted) {
-                        DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.INTERNAL_SERVER_ERROR);
-                        return;
+                processor.throttle(ctx.channel());
+                final boolean hasErrors = !errors.isEmpty();
+                new PersistedMetricsResponder(ctx, request) {
+                    @Override
+                    protected void onPersisted() {
+                        // return OK or MULTI_STATUS response depending if there were validation errors
+                        if (!hasErrors) {
+                            // no validation error, response OK
+                            respond(null, HttpResponseStatus.OK);
+                        }
+                        else {
+                            // has some validation errors, response MULTI_STATUS
+                            respond(null, HttpResponseStatus.MULTI_STATUS);
+                        }
                     }
-                }
-
-                // return OK or MULTI_STATUS response depending if there were validation errors
-                if (errors.isEmpty()) {
-                    // no validation error, response OK
-                    DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.OK);
-                    return;
-                }
-                else {
-                    // has some validation errors, response MULTI_STATUS
-                    DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.MULTI_STATUS);
-                    return;
-                }
 
+                    @Override
+                    protected void onDone() {
+                        requestCount.dec();
+                        timerContext.stop();
+                    }
+                }.respondWhenPersisted(futures, timeout);
+                persisting = true;
             }
             else {
                 // no aggregated metric bundles in body, response OK
@@ -141,15 +143,16 @@ public class HttpAggregatedMultiIngestionHandler implements HttpRequestHandler {
             log.debug(String.format("BAD JSON: %s", body));
             log.error(ex.getMessage(), ex);
             DefaultHandler.sendResponse(ctx, request, ex.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (TimeoutException ex) {
-            DefaultHandler.sendResponse(ctx, request, "Timed out persisting metrics", HttpResponseStatus.ACCEPTED);
         } catch (Exception ex) {
             log.debug(String.format("BAD JSON: %s", body));
             log.error("Other exception while trying to parse content", ex);
             DefaultHandler.sendResponse(ctx, request, "Failed parsing content", HttpResponseStatus.INTERNAL_SERVER_ERROR);
         } finally {
-            requestCount.dec();
-            timerContext.stop();
+            // once the metrics are handed off, the responder finishes up when they are written.
+            if (!persisting) {
+                requestCount.dec();
+                timerContext.stop();
+            }
         }
     }
 
@@ -23,9 +23,7 @@ import com.rackspacecloud.blueflood.cache.ConfigTtlProvider;
 import com.rackspacecloud.blueflood.exceptions.InvalidDataException;
 import com.rackspacecloud.blueflood.http.DefaultHandler;
 import com.rackspacecloud.blueflood.http.HttpRequestHandler;
-import com.rackspacecloud.blueflood.inputs.formats.JSONMetric;
 import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsContainer;
-import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.tracker.Tracker;
 import com.rackspacecloud.blueflood.types.IMetric;
 import com.rackspacecloud.blueflood.types.Metric;
@@ -34,18 +32,17 @@ import com.rackspacecloud.blueflood.utils.Metrics;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.type.TypeFactory;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
 
 public class HttpMetricsIngestionHandler implements HttpRequestHandler {
 
@@ -55,8 +52,6 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
     private static final Counter requestCount = Metrics.counter(HttpMetricsIngestionHandler.class, "HTTP Request Count");
 
 
-    protected final ObjectMapper mapper;
-    protected final TypeFactory typeFactory;
     private final HttpMetricsIngestionServer.Processor processor;
     private final TimeValue timeout;
 
@@ -77,23 +72,17 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
 
 
     public HttpMetricsIngestionHandler(HttpMetricsIngestionServer.Processor processor, TimeValue timeout) {
-        this.mapper = new ObjectMapper();
-        this.typeFactory = TypeFactory.defaultInstance();
         this.timeout = timeout;
         this.processor = processor;
     }
 
-    protected JSONMetricsContainer createContainer(String body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
-        List<JSONMetric> jsonMetrics =
-                mapper.readValue(
-                        body,
-                        typeFactory.constructCollectionType(List.class, JSONMetric.class)
-                );
-        return new JSONMetricsContainer(tenantId, jsonMetrics);
+    protected JSONMetricsContainer createContainer(InputStream body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
+        return JSONMetricsContainer.parse(tenantId, body, false);
     }
 
     @Override
     public void handle(ChannelHandlerContext ctx, FullHttpRequest request) {
+        boolean persisting = false;
         try {
 
             Tracker.getInstance().track(request);
@@ -105,15 +94,15 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
 
             final Timer.Context jsonTimerContext = jsonTimer.time();
 
-            final String body = request.content().toString(Constants.DEFAULT_CHARSET);
             try {
-                jsonMetricsContainer = createContainer(body, tenantId);
+                // parsed straight off the request buffer, without decoding the body to a String first.
+                jsonMetricsContainer = createContainer(new ByteBufInputStream(request.content()), tenantId);
 
                 if (jsonMetricsContainer == null) {
                     log.warn(ctx.channel().remoteAddress() + " Failed to create jsonMetricsContainer.");
                     DefaultHandler.sendResponse(ctx, request, "No valid metrics", HttpResponseStatus.BAD_REQUEST);
                     return;
-                } else if (jsonMetricsContainer.getJsonMetrics().isEmpty()) {
+                } else if (jsonMetricsContainer.getJsonMetricCount() == 0) {
                     log.warn(ctx.channel().remoteAddress() + " Json metrics is empty, no valid json metrics to parse.");
                     DefaultHandler.sendResponse(ctx, request, "Error converting JSON payload to metric objects", HttpResponseStatus.BAD_REQUEST);
                     return;
@@ -153,7 +142,7 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
             }
 
             // verify metrics after parsing json and converting to metrics
-            List<String> errors = jsonMetricsContainer.getValidationErrors();
+            final List<String> errors = jsonMetricsContainer.getValidationErrors();
             if (metrics == null || metrics.isEmpty()) {
                 // empty container
                 log.warn(ctx.channel().remoteAddress() + " No valid metrics");
@@ -161,43 +150,51 @@ public class HttpMetricsIngestionHandler implements HttpRequestHandler {
                 return;
             }
 
+            final List<Metric> validMetrics = metrics;
             final MetricsCollection collection = new MetricsCollection();
-            collection.add(new ArrayList<IMetric>(metrics));
+            collection.add(Collections.<IMetric>unmodifiableCollection(metrics));
             final Timer.Context persistingTimerContext = persistingTimer.time();
             try {
                 ListenableFuture<List<Boolean>> futures = processor.apply(collection);
-                List<Boolean> persisteds = futures.get(timeout.getValue(), timeout.getUnit());
-                for (Boolean persisted : persisteds) {
-                    if (!persisted) {
-                        log.warn("Trouble persisting metrics:");
-                        log.warn(String.format("%s", Arrays.toString(metrics.toArray())));
-                        DefaultHandler.sendResponse(ctx, request, "Persisted failed for metrics", HttpResponseStatus.INTERNAL_SERVER_ERROR);
-                        return;
+                processor.throttle(ctx.channel());
+                new PersistedMetricsResponder(ctx, request) {
+                    @Override
+                    protected void onPersisted() {
+                        // after processing metrics, return either OK or MULTI_STATUS depending on number of valid metrics
+                        if( !errors.isEmpty() ) {
+                            // has some validation errors, return MULTI_STATUS
+                            respond(null, HttpResponseStatus.MULTI_STATUS);
+                        }
+                        else {
+                            // no validation error, return OK
+                            respond(null, HttpResponseStatus.OK);
+                        }
                     }
-                }
 
-                // after processing metrics, return either OK or MULTI_STATUS depending on number of valid metrics
-                if( !errors.isEmpty() ) {
-                    // has some validation errors, return MULTI_STATUS
-                    DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.MULTI_STATUS);
-                    return;
-                }
-                else {
-                    // no validation error, return OK
-                    DefaultHandler.sendResponse(ctx, request, null, HttpResponseStatus.OK);
-                    return;
-                }
+                    @Override
+                    protected void onNotPersisted() {
+                        log.warn("Trouble persisting metrics:");
+                        log.warn(String.format("%s", Arrays.toString(validMetrics.toArray())));
+                        respond("Persisted failed for metrics", HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                    }
 
-            } catch (TimeoutException e) {
-                DefaultHandler.sendResponse(ctx, request, "Timed out persisting metrics", HttpResponseStatus.ACCEPTED);
+                    @Override
+                    protected void onDone() {
+                        persistingTimerContext.stop();
+                        requestCount.dec();
+                    }
+                }.respondWhenPersisted(futures, timeout);
+                persisting = true;
             } catch (Exception e) {
                 log.error("Exception persisting metrics", e);
                 DefaultHandler.sendResponse(ctx, request, "Error persisting metrics", HttpResponseStatus.INTERNAL_SERVER_ERROR);
-            } finally {
                 persistingTimerContext.stop();
             }
         } finally {
-            requestCount.dec();
+            // once the metrics are handed off, the responder decrements the count when they are written.
+            if (!persisting) {
+                requestCount.dec();
+            }
         }
     }
 
@@ -17,13 +17,16 @@
 package com.rackspacecloud.blueflood.inputs.handlers;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.rackspacecloud.blueflood.cache.MetadataCache;
 import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.http.DefaultHandler;
+import com.rackspacecloud.blueflood.http.PipelinedRequestsHandler;
 import com.rackspacecloud.blueflood.http.QueryStringDecoderAndRouter;
 import com.rackspacecloud.blueflood.http.RouteMatcher;
+import com.rackspacecloud.blueflood.inputs.commitlog.CommitLog;
 import com.rackspacecloud.blueflood.inputs.processors.DiscoveryWriter;
 import com.rackspacecloud.blueflood.inputs.processors.BatchWriter;
 import com.rackspacecloud.blueflood.inputs.processors.RollupTypeCacher;
@@ -55,8 +58,14 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class HttpMetricsIngestionServer {
@@ -162,6 +171,7 @@ public class HttpMetricsIngestionServer {
         pipeline.addLast("inflater", new HttpContentDecompressor());
         pipeline.addLast("chunkaggregator", new HttpObjectAggregator(httpMaxContentLength));
         pipeline.addLast("respdecoder", new HttpResponseDecoder());
+        pipeline.addLast("pipelining", new PipelinedRequestsHandler());
         pipeline.addLast("handler", new QueryStringDecoderAndRouter(router));
     }
 
@@ -179,6 +189,8 @@ public class HttpMetricsIngestionServer {
 
     static class Processor {
         private static int BATCH_SIZE = Configuration.getInstance().getIntegerProperty(CoreConfig.METRIC_BATCH_SIZE);
+        private static boolean BATCHES_BY_SHARD =
+            Configuration.getInstance().getBooleanProperty(CoreConfig.METRIC_BATCHES_BY_SHARD);
         private static int WRITE_THREADS = 
             Configuration.getInstance().getIntegerProperty(CoreConfig.METRICS_BATCH_WRITER_THREADS); // metrics will be batched into this many partitions.
 
@@ -191,7 +203,13 @@ public class HttpMetricsIngestionServer {
         private int HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS = 
             Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS);
         private final Counter bufferedMetrics = Metrics.counter(HttpMetricsIngestionHandler.class, "Buffered Metrics");
+        private final Meter pausedReads = Metrics.meter(HttpMetricsIngestionHandler.class, "Paused Channel Reads");
+        private final long maxBufferedMetrics =
+            Configuration.getInstance().getLongProperty(HttpConfig.HTTP_MAX_BUFFERED_METRICS);
+        // channels we stopped reading from because too many metrics are waiting to be written.
+        private final Set<Channel> pausedChannels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
         private final TimeValue timeout;
+        private final CommitLog commitLog;
 
         Processor(ScheduleContext context, TimeValue timeout) {
             this.timeout = timeout;
@@ -210,13 +228,22 @@ public class HttpMetricsIngestionServer {
                             .withName("Metric Batch Writing")
                             .withCorePoolSize(WRITE_THREADS)
                             .withMaxPoolSize(WRITE_THREADS)
-                            .withSynchronousQueue()
+                            .withBoundedQueue(Configuration.getInstance().getIntegerProperty(HttpConfig.HTTP_MAX_QUEUED_WRITE_BATCHES))
+                            // never write on the event loop, the batch is failed instead.
+                            .withRejectedHandler(new ThreadPoolExecutor.AbortPolicy())
                             .build(),
                     timeout,
                     bufferedMetrics,
                     context
             );
             batchWriter.withLogger(log);
+            // metrics leave the buffer when written, whether by a request or by the commit log in the background.
+            batchWriter.withUnbufferedListener(new Runnable() {
+                @Override
+                public void run() {
+                    resumeReads();
+                }
+            });
 
             discoveryWriter =
             new DiscoveryWriter(new ThreadPoolBuilder()
@@ -235,16 +262,71 @@ public class HttpMetricsIngestionServer {
                     new ThreadPoolBuilder().withName("Rollup type persistence").build(),
                     rollupTypeCache);
             rollupTypeCacher.withLogger(log);
-    
+
+            if (Configuration.getInstance().getBooleanProperty(CoreConfig.INGEST_COMMIT_LOG_ENABLED)) {
+                commitLog = new CommitLog(
+                        new File(Configuration.getInstance().getStringProperty(CoreConfig.INGEST_COMMIT_LOG_DIR)),
+                        Configuration.getInstance().getIntegerProperty(CoreConfig.INGEST_COMMIT_LOG_SEGMENT_SIZE),
+                        Configuration.getInstance().getIntegerProperty(CoreConfig.INGEST_COMMIT_LOG_WRITE_RETRIES),
+                        batchWriter,
+                        bufferedMetrics);
+                try {
+                    commitLog.recover();
+                } catch (IOException e) {
+                    throw new RuntimeException("Cannot replay the ingestion commit log", e);
+                }
+            } else {
+                commitLog = null;
+            }
         }
 
         ListenableFuture<List<Boolean>> apply(MetricsCollection collection) throws Exception {
             typeAndUnitProcessor.apply(collection);
             rollupTypeCacher.apply(collection);
-            List<List<IMetric>> batches = collection.splitMetricsIntoBatches(BATCH_SIZE);
+            List<List<IMetric>> batches = BATCHES_BY_SHARD
+                    ? collection.splitMetricsIntoShardBatches(BATCH_SIZE)
+                    : collection.splitMetricsIntoBatches(BATCH_SIZE);
             discoveryWriter.apply(batches);
+            bufferedMetrics.inc(collection.size());
+            if (commitLog != null) {
+                // acknowledged once logged, the commit log writes the batches to cassandra afterwards.
+                return commitLog.append(batches);
+            }
             return batchWriter.apply(batches);
         }
+
+        /**
+         * Stops reading from the channel while more than {@link HttpConfig#HTTP_MAX_BUFFERED_METRICS} metrics are
+         * waiting to be written. Reading resumes as soon as the writers catch up, from the thread that counts the
+         * written metrics out of the buffer.
+         */
+        void throttle(Channel channel) {
+            if (bufferedMetrics.getCount() <= maxBufferedMetrics) {
+                return;
+            }
+            channel.config().setAutoRead(false);
+            pausedChannels.add(channel);
+            pausedReads.mark();
+            // the writes may all have finished before the channel was added.
+            resumeReads();
+        }
+
+        void shutdown() {
+            if (commitLog != null) {
+                commitLog.shutdown();
+            }
+        }
+
+        private void resumeReads() {
+            if (pausedChannels.isEmpty() || bufferedMetrics.getCount() > maxBufferedMetrics) {
+                return;
+            }
+            for (Channel channel : pausedChannels) {
+                if (pausedChannels.remove(channel)) {
+                    channel.config().setAutoRead(true);
+                }
+            }
+        }
     }
 
     @VisibleForTesting
@@ -256,5 +338,6 @@ public class HttpMetricsIngestionServer {
         }
         acceptorGroup.shutdownGracefully();
         workerGroup.shutdownGracefully();
+        processor.shutdown();
     }
 }
@@ -16,13 +16,13 @@
 
 package com.rackspacecloud.blueflood.inputs.handlers;
 
-import com.rackspacecloud.blueflood.inputs.formats.*;
+import com.rackspacecloud.blueflood.inputs.formats.JSONMetricsContainer;
 import com.rackspacecloud.blueflood.utils.TimeValue;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
 
 public class HttpMultitenantMetricsIngestionHandler extends HttpMetricsIngestionHandler {
 
@@ -31,13 +31,7 @@ public class HttpMultitenantMetricsIngestionHandler extends HttpMetricsIngestion
     }
 
     @Override
-    protected JSONMetricsContainer createContainer(String body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
-        List<JSONMetric> jsonMetrics =
-                mapper.readValue(
-                        body,
-                        typeFactory.constructCollectionType(List.class,
-                                JSONMetricScoped.class)
-                );
-        return new JSONMetricsContainer(tenantId, jsonMetrics);
+    protected JSONMetricsContainer createContainer(InputStream body, String tenantId) throws JsonParseException, JsonMappingException, IOException {
+        return JSONMetricsContainer.parse(tenantId, body, true);
     }
 }
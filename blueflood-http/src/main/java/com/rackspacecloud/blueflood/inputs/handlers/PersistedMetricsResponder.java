@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.handlers;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.rackspacecloud.blueflood.http.DefaultHandler;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers an ingestion request once its metrics have been persisted, instead of blocking a netty worker thread on
+ * {@link ListenableFuture#get()}. Callbacks run on the channel's event loop.
+ *
+ * If persisting takes longer than the timeout the client gets a 202 straight away; the writes carry on and
+ * {@link #onDone()} still runs when they finish. Requests whose batches the writers had no room for get a 503.
+ */
+abstract class PersistedMetricsResponder implements FutureCallback<List<Boolean>> {
+    private static final Logger log = LoggerFactory.getLogger(PersistedMetricsResponder.class);
+
+    private final ChannelHandlerContext ctx;
+    private final FullHttpRequest request;
+    private final AtomicBoolean responded = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> timeoutTask;
+
+    PersistedMetricsResponder(ChannelHandlerContext ctx, FullHttpRequest request) {
+        this.ctx = ctx;
+        this.request = request;
+    }
+
+    /**
+     * Responds to the request once the given writes complete, or with a 202 after the timeout.
+     */
+    void respondWhenPersisted(ListenableFuture<List<Boolean>> futures, TimeValue timeout) {
+        timeoutTask = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                respond("Timed out persisting metrics", HttpResponseStatus.ACCEPTED);
+            }
+        }, timeout.getValue(), timeout.getUnit());
+        Futures.addCallback(futures, this, ctx.executor());
+    }
+
+    /**
+     * Every metric of the request was written.
+     */
+    protected abstract void onPersisted();
+
+    /**
+     * At least one batch of the request failed to be written.
+     */
+    protected void onNotPersisted() {
+        respond(null, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Runs once the writes are over, whether or not the client already got its response.
+     */
+    protected void onDone() {
+    }
+
+    /**
+     * Sends the response, unless one has already been sent for this request.
+     */
+    protected final void respond(String body, HttpResponseStatus status) {
+        if (!responded.compareAndSet(false, true)) {
+            return;
+        }
+        DefaultHandler.sendResponse(ctx, request, body, status);
+        // we are not inside a channel read, so nothing else will flush the response out.
+        ctx.flush();
+    }
+
+    @Override
+    public final void onSuccess(List<Boolean> persisteds) {
+        try {
+            timeoutTask.cancel(false);
+            for (Boolean persisted : persisteds) {
+                if (!persisted) {
+                    onNotPersisted();
+                    return;
+                }
+            }
+            onPersisted();
+        } finally {
+            onDone();
+        }
+    }
+
+    @Override
+    public final void onFailure(Throwable t) {
+        try {
+            timeoutTask.cancel(false);
+            if (t instanceof RejectedExecutionException) {
+                log.warn("Too many metrics waiting to be written, rejecting request");
+                respond("Too many metrics waiting to be written", HttpResponseStatus.SERVICE_UNAVAILABLE);
+            } else {
+                log.error("Exception persisting metrics", t);
+                respond("Error persisting metrics", HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            onDone();
+        }
+    }
+}
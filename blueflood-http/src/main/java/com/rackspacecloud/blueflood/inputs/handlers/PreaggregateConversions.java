@@ -114,6 +114,13 @@ public class PreaggregateConversions {
                     rollup.setPercentile(entry.getKey(), resolveNumber(entry.getValue().getAvg()));
                 }
             }
+            if (!timer.getValues().isEmpty()) {
+                QuantileSketch sketch = new QuantileSketch();
+                for (Number value : timer.getValues()) {
+                    sketch.add(value.doubleValue());
+                }
+                rollup.withSketch(sketch);
+            }
             PreaggregatedMetric metric = new PreaggregatedMetric(timestamp, locator, DEFAULT_TTL, rollup);
             list.add(metric);
         }
@@ -123,6 +123,8 @@ public class HttpMetricDataQueryServer {
             }
         });
         pipeline.addLast("chunkaggregator", new HttpObjectAggregator(httpMaxContentLength));
+        // queries are answered asynchronously, see QueryResponder.
+        pipeline.addLast("pipelining", new PipelinedRequestsHandler());
         pipeline.addLast("handler", new QueryStringDecoderAndRouter(router));
     }
 
@@ -17,17 +17,15 @@
 package com.rackspacecloud.blueflood.outputs.handlers;
 
 import com.google.gson.*;
-import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
 import com.rackspacecloud.blueflood.exceptions.InvalidRequestException;
-import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.http.HttpRequestWithDecodedQueryParams;
 import com.rackspacecloud.blueflood.http.HttpRequestHandler;
 import com.rackspacecloud.blueflood.http.HttpResponder;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
-import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsJSONOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsOutputSerializer;
+import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsJSONStreamSerializer;
 import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.HttpConfig;
 import com.rackspacecloud.blueflood.tracker.Tracker;
@@ -35,39 +33,32 @@ import com.rackspacecloud.blueflood.types.Locator;
 import com.rackspacecloud.blueflood.outputs.utils.RollupsQueryParams;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.codahale.metrics.Timer;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadPoolExecutor;
 
 public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpRequestHandler {
     private static final Logger log = LoggerFactory.getLogger(HttpMultiRollupsQueryHandler.class);
-    private final BatchedMetricsOutputSerializer<JSONObject> serializer;
+    private final BatchedMetricsJSONStreamSerializer serializer;
     private final Gson gson;           // thread-safe
-    private final JsonParser parser;   // thread-safe
     private final Timer httpBatchMetricsFetchTimer = Metrics.timer(HttpMultiRollupsQueryHandler.class,
             "Handle HTTP batch request for metrics");
-    private final ThreadPoolExecutor executor;
     private final int maxMetricsPerRequest;
 
     public HttpMultiRollupsQueryHandler() {
         Configuration config = Configuration.getInstance();
-        int maxThreadsToUse = config.getIntegerProperty(HttpConfig.MAX_READ_WORKER_THREADS);
-        int maxQueueSize = config.getIntegerProperty(HttpConfig.MAX_BATCH_READ_REQUESTS_TO_QUEUE);
         this.maxMetricsPerRequest = config.getIntegerProperty(HttpConfig.MAX_METRICS_PER_BATCH_QUERY);
-        this.serializer = new BatchedMetricsJSONOutputSerializer();
+        this.serializer = new BatchedMetricsJSONStreamSerializer(PooledByteBufAllocator.DEFAULT);
         this.gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
-        this.parser = new JsonParser();
-        this.executor = new ThreadPoolBuilder().withCorePoolSize(maxThreadsToUse).withMaxPoolSize(maxThreadsToUse)
-                .withName("HTTP-BatchMetricsFetch").withBoundedQueue(maxQueueSize).build();
     }
 
     @Override
@@ -91,7 +82,7 @@ public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpR
             return;
         }
 
-        List<String> locators = new ArrayList<String>();
+        final List<String> locators = new ArrayList<String>();
         try {
             locators.addAll(getLocatorsFromJSONBody(tenantId, body));
         } catch (Exception ex) {
@@ -107,26 +98,28 @@ public class HttpMultiRollupsQueryHandler extends RollupHandler implements HttpR
         }
 
         HttpRequestWithDecodedQueryParams requestWithParams = (HttpRequestWithDecodedQueryParams) request;
-        final Timer.Context httpBatchMetricsFetchTimerContext = httpBatchMetricsFetchTimer.time();
+
+        final RollupsQueryParams params;
+        final Granularity granularity;
         try {
-            RollupsQueryParams params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
-            Map<Locator, MetricData> results = getRollupByGranularity(tenantId, locators, params.getRange().getStart(), params.getRange().getStop(), params.getGranularity(tenantId));
-            JSONObject metrics = serializer.transformRollupData(results, params.getStats());
-            final JsonElement element = parser.parse(metrics.toString());
-            final String jsonStringRep = gson.toJson(element);
-            sendResponse(ctx, request, jsonStringRep, HttpResponseStatus.OK);
+            params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
+            granularity = params.getGranularity(tenantId);
         } catch (InvalidRequestException e) {
             log.debug(e.getMessage());
             sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (SerializationException e) {
-            log.debug(e.getMessage(), e);
-            sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } finally {
-            httpBatchMetricsFetchTimerContext.stop();
+            return;
         }
+
+        // reads block, so they run on the query thread pool rather than on this event loop.
+        final Timer.Context httpBatchMetricsFetchTimerContext = httpBatchMetricsFetchTimer.time();
+        new QueryResponder(ctx, request, httpBatchMetricsFetchTimerContext).respondWhenDone(new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                Map<Locator, MetricData> results = getRollupByGranularity(tenantId, locators,
+                        params.getRange().getStart(), params.getRange().getStop(), granularity);
+                serializer.writeRollupData(results, params.getStats(), body);
+            }
+        });
     }
 
     private List<String> getLocatorsFromJSONBody(String tenantId, String body) {
@@ -16,10 +16,6 @@
 
 package com.rackspacecloud.blueflood.outputs.handlers;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import com.rackspacecloud.blueflood.exceptions.InvalidRequestException;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.http.HttpRequestWithDecodedQueryParams;
@@ -27,9 +23,7 @@ import com.rackspacecloud.blueflood.http.HttpRequestHandler;
 import com.rackspacecloud.blueflood.http.HttpResponder;
 import com.rackspacecloud.blueflood.io.Constants;
 import com.rackspacecloud.blueflood.outputs.formats.MetricData;
-import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.JSONBasicRollupsOutputSerializer;
-import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
+import com.rackspacecloud.blueflood.outputs.serializers.BatchedMetricsJSONStreamSerializer;
 import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
 import com.rackspacecloud.blueflood.rollup.Granularity;
 import com.rackspacecloud.blueflood.tracker.Tracker;
@@ -38,47 +32,26 @@ import com.rackspacecloud.blueflood.types.Resolution;
 import com.rackspacecloud.blueflood.outputs.utils.RollupsQueryParams;
 import com.rackspacecloud.blueflood.utils.Metrics;
 import com.codahale.metrics.Timer;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
-import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.OutputStream;
 import java.util.*;
 
 public class HttpRollupsQueryHandler extends RollupHandler
             implements MetricDataQueryInterface<MetricData>, HttpRequestHandler {
     private static final Logger log = LoggerFactory.getLogger(HttpRollupsQueryHandler.class);
     
-    private final BasicRollupsOutputSerializer<JSONObject> serializer;
-    private final Gson gson;           // thread-safe
-    private final JsonParser parser;   // thread-safe
+    private final BatchedMetricsJSONStreamSerializer serializer;
     private final Timer httpMetricsFetchTimer = Metrics.timer(HttpRollupsQueryHandler.class,
             "Handle HTTP request for metrics");
 
     public HttpRollupsQueryHandler() {
-        this.serializer = new JSONBasicRollupsOutputSerializer();
-        this.gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
-        this.parser = new JsonParser();
-    }
-
-    private JSONObject GetDataByPoints(String tenantId,
-                                      String metric,
-                                      long from,
-                                      long to,
-                                      int points,
-                                      Set<MetricStat> stats) throws SerializationException {
-        return serializer.transformRollupData(GetDataByPoints(tenantId, metric, from, to, points), stats);
-    }
-
-    private JSONObject GetDataByResolution(String tenantId,
-                                      String metric,
-                                      long from,
-                                      long to,
-                                      Resolution resolution,
-                                      Set<MetricStat> stats) throws SerializationException {
-        return serializer.transformRollupData(GetDataByResolution(tenantId, metric, from, to, resolution), stats);
+        this.serializer = new BatchedMetricsJSONStreamSerializer(PooledByteBufAllocator.DEFAULT);
     }
 
     @Override
@@ -122,37 +95,35 @@ public class HttpRollupsQueryHandler extends RollupHandler
 
         HttpRequestWithDecodedQueryParams requestWithParams = (HttpRequestWithDecodedQueryParams) request;
 
-        final Timer.Context httpMetricsFetchTimerContext = httpMetricsFetchTimer.time();
+        final RollupsQueryParams params;
         try {
-            RollupsQueryParams params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
-
-            JSONObject metricData;
-            if (params.isGetByPoints()) {
-                metricData = GetDataByPoints(tenantId, metricName, params.getRange().getStart(),
-                        params.getRange().getStop(), params.getPoints(), params.getStats());
-            } else if (params.isGetByResolution()) {
-                metricData = GetDataByResolution(tenantId, metricName, params.getRange().getStart(),
-                        params.getRange().getStop(), params.getResolution(), params.getStats());
-            } else {
+            params = PlotRequestParser.parseParams(requestWithParams.getQueryParams());
+            if (!params.isGetByPoints() && !params.isGetByResolution()) {
                 throw new InvalidRequestException("Invalid rollups query. Neither points nor resolution specified.");
             }
-
-            final JsonElement element = parser.parse(metricData.toString());
-            final String jsonStringRep = gson.toJson(element);
-            sendResponse(ctx, request, jsonStringRep, HttpResponseStatus.OK);
         } catch (InvalidRequestException e) {
             // let's not log the full exception, just the message.
             log.warn(e.getMessage());
             sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.BAD_REQUEST);
-        } catch (SerializationException e) {
-            log.error(e.getMessage(), e);
-            sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            sendResponse(ctx, request, e.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
-        } finally {
-            httpMetricsFetchTimerContext.stop();
+            return;
         }
+
+        // reads block, so they run on the query thread pool rather than on this event loop.
+        final Timer.Context httpMetricsFetchTimerContext = httpMetricsFetchTimer.time();
+        new QueryResponder(ctx, request, httpMetricsFetchTimerContext).respondWhenDone(new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                MetricData metricData;
+                if (params.isGetByPoints()) {
+                    metricData = GetDataByPoints(tenantId, metricName, params.getRange().getStart(),
+                            params.getRange().getStop(), params.getPoints());
+                } else {
+                    metricData = GetDataByResolution(tenantId, metricName, params.getRange().getStart(),
+                            params.getRange().getStop(), params.getResolution());
+                }
+                serializer.writeRollupData(metricData, params.getStats(), body);
+            }
+        });
     }
 
     private void sendResponse(ChannelHandlerContext channel, FullHttpRequest request, String messageBody,
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rackspacecloud.blueflood.concurrent.ThreadPoolBuilder;
+import com.rackspacecloud.blueflood.exceptions.InvalidRequestException;
+import com.rackspacecloud.blueflood.http.HttpResponder;
+import com.rackspacecloud.blueflood.io.Constants;
+import com.rackspacecloud.blueflood.service.Configuration;
+import com.rackspacecloud.blueflood.service.HttpConfig;
+import com.rackspacecloud.blueflood.tracker.Tracker;
+import com.rackspacecloud.blueflood.utils.Metrics;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a metrics query on the query thread pool and answers the request with the JSON it writes, so that Cassandra
+ * and Elasticsearch reads never block a netty event loop. Callbacks run on the channel's event loop.
+ *
+ * The Datastax reads underneath are issued with executeAsync, but the read path above them (locator search in
+ * Elasticsearch, repairing rollups, serializing) is synchronous and waits on those futures, so the query as a whole
+ * runs on its own thread rather than being chained on the driver's futures.
+ *
+ * Queries that cannot be queued, or that take longer than their deadline, are answered with a 503. The response is
+ * sent a chunk at a time while it is being serialized. Responses to requests pipelined on one connection are kept
+ * in order by {@link com.rackspacecloud.blueflood.http.PipelinedRequestsHandler}.
+ */
+class QueryResponder implements FutureCallback<Void> {
+    private static final Logger log = LoggerFactory.getLogger(QueryResponder.class);
+
+    private static final Meter rejectedQueries = Metrics.meter(QueryResponder.class, "Rejected Queries");
+    private static final Meter timedOutQueries = Metrics.meter(QueryResponder.class, "Timed Out Queries");
+
+    private static final TimeValue QUERY_TIMEOUT = new TimeValue(
+            Configuration.getInstance().getIntegerProperty(HttpConfig.QUERY_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS);
+    private static final int CHUNK_SIZE = Configuration.getInstance().getIntegerProperty(HttpConfig.QUERY_RESPONSE_CHUNK_SIZE);
+
+    /**
+     * Reads what a request asks for, and writes it as JSON. Runs on the query thread pool.
+     */
+    interface Query {
+        void writeTo(OutputStream body) throws Exception;
+    }
+
+    private final ChannelHandlerContext ctx;
+    private final FullHttpRequest request;
+    private final Timer.Context timerContext;
+    private final AtomicBoolean responded = new AtomicBoolean(false);
+    // only used on the event loop.
+    private boolean timedOut = false;
+    private volatile ScheduledFuture<?> timeoutTask;
+
+    QueryResponder(ChannelHandlerContext ctx, FullHttpRequest request, Timer.Context timerContext) {
+        this.ctx = ctx;
+        this.request = request;
+        this.timerContext = timerContext;
+    }
+
+    void respondWhenDone(Query query) {
+        respondWhenDone(query, QueryExecutor.INSTANCE, QUERY_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    void respondWhenDone(final Query query, ListeningExecutorService executor, final TimeValue timeout) {
+        final ListenableFuture<Void> result;
+        try {
+            result = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    ResponseStream body = new ResponseStream(timeout);
+                    try {
+                        query.writeTo(body);
+                        body.finish();
+                    } finally {
+                        body.release();
+                    }
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedQueries.mark();
+            timerContext.stop();
+            respond("Too many queries in progress, try again later", HttpResponseStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        timeoutTask = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                // too late if the response started going out already.
+                if (respond("Timed out running query", HttpResponseStatus.SERVICE_UNAVAILABLE)) {
+                    timedOut = true;
+                    timedOutQueries.mark();
+                    // frees the query thread, if the query is interruptible.
+                    result.cancel(true);
+                }
+            }
+        }, timeout.getValue(), timeout.getUnit());
+        Futures.addCallback(result, this, ctx.executor());
+    }
+
+    @Override
+    public void onSuccess(Void nothing) {
+        timeoutTask.cancel(false);
+        timerContext.stop();
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+        timeoutTask.cancel(false);
+        timerContext.stop();
+        if (timedOut) {
+            // answered already, whatever went wrong after that.
+            return;
+        }
+        if (t instanceof InvalidRequestException) {
+            // let's not log the full exception, just the message.
+            log.warn(t.getMessage());
+            respond(t.getMessage(), HttpResponseStatus.BAD_REQUEST);
+        } else {
+            log.error(t.getMessage(), t);
+            // does nothing if part of the response went out already; the connection was closed instead.
+            respond(t.getMessage(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private boolean respond(String messageBody, HttpResponseStatus status) {
+        ByteBuf content = messageBody == null ? Unpooled.EMPTY_BUFFER
+                : Unpooled.copiedBuffer(messageBody, Constants.DEFAULT_CHARSET);
+        if (!respond(content, status)) {
+            content.release();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean respond(ByteBuf content, HttpResponseStatus status) {
+        if (!responded.compareAndSet(false, true)) {
+            return false;
+        }
+
+        // tracked first, the content is released once it is written.
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+        Tracker.getInstance().trackResponse(request, response);
+        HttpResponder.respond(ctx, request, response);
+        // we are not inside a channel read, so nothing else will flush the response out.
+        ctx.flush();
+        return true;
+    }
+
+    /**
+     * Sends the response a chunk at a time while the query writes it, so no more than a chunk of it is held here. A
+     * response that fits in one chunk, or that goes to an HTTP/1.0 client, is sent whole once it is written. Once part
+     * of it went out, a failure can only be signalled by closing the connection. Only used on the query thread.
+     */
+    private class ResponseStream extends OutputStream {
+        private final boolean chunked = HttpVersion.HTTP_1_1.equals(request.getProtocolVersion());
+        private final long writeTimeoutMillis;
+        private ByteBuf chunk = ctx.alloc().buffer(CHUNK_SIZE);
+        private boolean started = false;
+        private boolean finished = false;
+
+        ResponseStream(TimeValue writeTimeout) {
+            this.writeTimeoutMillis = writeTimeout.toMillis();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            chunk.writeByte(b);
+            sendIfFull();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = chunked ? Math.min(length, CHUNK_SIZE - chunk.readableBytes()) : length;
+                chunk.writeBytes(bytes, offset, n);
+                offset += n;
+                length -= n;
+                sendIfFull();
+            }
+        }
+
+        private void sendIfFull() throws IOException {
+            if (!chunked || chunk.readableBytes() < CHUNK_SIZE) {
+                return;
+            }
+            if (!started) {
+                if (!responded.compareAndSet(false, true)) {
+                    throw new IOException("Query timed out before its response was sent");
+                }
+                started = true;
+                // the body is not kept around to be tracked.
+                Tracker.getInstance().trackResponse(request,
+                        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+                HttpResponder.respondChunked(ctx, request, HttpResponseStatus.OK);
+            }
+
+            ByteBuf full = chunk;
+            chunk = null;
+            ChannelFuture written = ctx.channel().writeAndFlush(new DefaultHttpContent(full));
+            if (!ctx.channel().isWritable() && !ctx.executor().inEventLoop()) {
+                // lets the client catch up, rather than queueing up the rest of the response in memory.
+                if (!written.awaitUninterruptibly(writeTimeoutMillis)) {
+                    throw new IOException("Timed out sending query response");
+                }
+            }
+            if (!ctx.channel().isActive()) {
+                throw new IOException("Connection closed while sending query response");
+            }
+            chunk = ctx.alloc().buffer(CHUNK_SIZE);
+        }
+
+        void finish() {
+            ByteBuf rest = chunk;
+            chunk = null;
+            finished = true;
+            if (started) {
+                HttpResponder.finishChunked(ctx, request, rest);
+            } else if (!respond(rest, HttpResponseStatus.OK)) {
+                // timed out
+                rest.release();
+            }
+        }
+
+        void release() {
+            if (chunk != null) {
+                chunk.release();
+                chunk = null;
+            }
+            if (started && !finished) {
+                // the client has part of a response, and no other way to tell that it is incomplete.
+                ctx.channel().close();
+            }
+        }
+    }
+
+    // only created once a query comes in.
+    private static class QueryExecutor {
+        static final ListeningExecutorService INSTANCE = MoreExecutors.listeningDecorator(new ThreadPoolBuilder()
+                .withCorePoolSize(Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_QUERY_THREADS))
+                .withMaxPoolSize(Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_QUERY_THREADS))
+                .withBoundedQueue(Configuration.getInstance().getIntegerProperty(HttpConfig.MAX_QUERIES_TO_QUEUE))
+                .withRejectedHandler(new ThreadPoolExecutor.AbortPolicy())
+                .withName("HTTP-MetricsQuery").build());
+    }
+}
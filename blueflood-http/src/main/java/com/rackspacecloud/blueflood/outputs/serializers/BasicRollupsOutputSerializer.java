@@ -22,6 +22,7 @@ import com.rackspacecloud.blueflood.types.*;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -196,6 +197,27 @@ public interface BasicRollupsOutputSerializer<T> {
                 return rawSample;
             }
         },
+        QUANTILES("quantiles") {
+            @Override
+            Object convertRollupToObject(Rollup rollup) throws UnsupportedOperationException {
+                QuantileSketch sketch = rollup instanceof BluefloodTimerRollup ? ((BluefloodTimerRollup) rollup).getSketch() : null;
+                if (sketch == null || sketch.isEmpty())
+                    // timers sent without timings, and every other type.
+                    throw new UnsupportedOperationException(
+                            String.format("quantiles not supported for this type: %s", rollup.getClass().getSimpleName()));
+
+                Map<String, Double> quantiles = new LinkedHashMap<String, Double>();
+                for (Map.Entry<String, Double> quantile : QUANTILES_TO_REPORT.entrySet()) {
+                    quantiles.put(quantile.getKey(), sketch.getQuantile(quantile.getValue()));
+                }
+                return quantiles;
+            }
+
+            @Override
+            Object convertRawSampleToObject(Object rawSample) {
+                return rawSample;
+            }
+        },
         ENUM_VALUES("enum_values") {
             @Override
             Object convertRollupToObject(Rollup rollup) throws UnsupportedOperationException {
@@ -230,6 +252,17 @@ public interface BasicRollupsOutputSerializer<T> {
         }
         ;
         
+        private static final Map<String, Double> QUANTILES_TO_REPORT = new LinkedHashMap<String, Double>();
+        static {
+            QUANTILES_TO_REPORT.put("p50", 0.5d);
+            QUANTILES_TO_REPORT.put("p75", 0.75d);
+            QUANTILES_TO_REPORT.put("p90", 0.9d);
+            QUANTILES_TO_REPORT.put("p95", 0.95d);
+            QUANTILES_TO_REPORT.put("p98", 0.98d);
+            QUANTILES_TO_REPORT.put("p99", 0.99d);
+            QUANTILES_TO_REPORT.put("p99.9", 0.999d);
+        }
+
         private MetricStat(String s) {
             this.stringRep = s;
         }
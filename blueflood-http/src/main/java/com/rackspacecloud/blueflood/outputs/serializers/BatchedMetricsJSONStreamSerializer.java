@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.types.*;
+import com.rackspacecloud.blueflood.utils.Util;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.PrettyPrinter;
+import org.codehaus.jackson.SerializableString;
+import org.codehaus.jackson.io.CharacterEscapes;
+import org.codehaus.jackson.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the same JSON as {@link BatchedMetricsJSONOutputSerializer} and {@link JSONBasicRollupsOutputSerializer}
+ * used to be printed with Gson, but streams it point by point instead of building a json-simple tree. The stats of a
+ * point come in the order they were asked for, rather than in hash order.
+ *
+ * The writeRollupData methods write to a stream, so a response can be sent while it is being serialized. The
+ * transformRollupData ones return a buffer, which the caller owns and has to release.
+ */
+public class BatchedMetricsJSONStreamSerializer implements BatchedMetricsOutputSerializer<ByteBuf> {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private final ByteBufAllocator alloc;
+
+    public BatchedMetricsJSONStreamSerializer(ByteBufAllocator alloc) {
+        this.alloc = alloc;
+    }
+
+    @Override
+    public ByteBuf transformRollupData(Map<Locator, MetricData> metricData, Set<MetricStat> filterStats)
+            throws SerializationException {
+        ByteBuf buffer = alloc.buffer();
+        try {
+            writeRollupData(metricData, filterStats, new ByteBufOutputStream(buffer));
+            return buffer;
+        } catch (Exception e) {
+            buffer.release();
+            throw asSerializationException(e);
+        }
+    }
+
+    @Override
+    public ByteBuf transformRollupData(MetricData metricData, Set<MetricStat> filterStats)
+            throws SerializationException {
+        ByteBuf buffer = alloc.buffer();
+        try {
+            writeRollupData(metricData, filterStats, new ByteBufOutputStream(buffer));
+            return buffer;
+        } catch (Exception e) {
+            buffer.release();
+            throw asSerializationException(e);
+        }
+    }
+
+    public void writeRollupData(Map<Locator, MetricData> metricData, Set<MetricStat> filterStats, OutputStream out)
+            throws IOException, SerializationException {
+        JsonGenerator json = createGenerator(out);
+        json.writeStartObject();
+        json.writeArrayFieldStart("metrics");
+        for (Map.Entry<Locator, MetricData> one : metricData.entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("metric", one.getKey().getMetricName());
+            json.writeStringField("unit", one.getValue().getUnit() == null ? Util.UNKNOWN : one.getValue().getUnit());
+            json.writeStringField("type", one.getValue().getType());
+            json.writeFieldName("data");
+            writePoints(json, one.getValue(), FilteredStats.forMetric(one.getValue(), filterStats));
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.close();
+    }
+
+    public void writeRollupData(MetricData metricData, Set<MetricStat> filterStats, OutputStream out)
+            throws IOException, SerializationException {
+        JsonGenerator json = createGenerator(out);
+        json.writeStartObject();
+        json.writeStringField("unit", metricData.getUnit() == null ? Util.UNKNOWN : metricData.getUnit());
+        json.writeFieldName("values");
+        writePoints(json, metricData, FilteredStats.forMetric(metricData, filterStats));
+        json.writeObjectFieldStart("metadata");
+        json.writeNumberField("count", metricData.getData().size());
+        json.writeNullField("limit");
+        json.writeNullField("marker");
+        json.writeNullField("next_href");
+        json.writeEndObject();
+        json.writeEndObject();
+        json.close();
+    }
+
+    private static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.setPrettyPrinter(new GsonPrettyPrinter());
+        json.setCharacterEscapes(GsonCharacterEscapes.INSTANCE);
+        return json;
+    }
+
+    private static SerializationException asSerializationException(Exception e) {
+        if (e instanceof SerializationException) {
+            return (SerializationException) e;
+        }
+        return new SerializationException(e.getMessage());
+    }
+
+    private void writePoints(final JsonGenerator json, MetricData metricData, Set<MetricStat> filterStats)
+            throws IOException, SerializationException {
+        FilteredStats.Writer stats = new FilteredStats.Writer() {
+            @Override
+            public void write(String stat, Object value) throws IOException {
+                json.writeFieldName(stat);
+                writeValue(json, value);
+            }
+        };
+
+        Points<?> points = metricData.getData();
+        json.writeStartArray();
+        if (points instanceof NumericPoints && ((NumericPoints) points).isColumnar()) {
+            // raw numbers, straight from their columns.
+            NumericPoints numbers = (NumericPoints) points;
+            for (int i = 0; i < numbers.size(); i++) {
+                json.writeStartObject();
+                json.writeNumberField("timestamp", numbers.getTimestamp(i));
+                FilteredStats.writeRawSample(numbers.getValue(i), filterStats, stats);
+                json.writeEndObject();
+            }
+        } else {
+            for (Map.Entry<Long, ? extends Points.Point<?>> point : points.getPoints().entrySet()) {
+                json.writeStartObject();
+                json.writeNumberField("timestamp", point.getKey());
+                FilteredStats.write(point.getValue().getData(), filterStats, stats);
+                json.writeEndObject();
+            }
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeValue(JsonGenerator json, Object value) throws IOException {
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof AbstractRollupStat) {
+            // written the way json-simple writes them, through toString.
+            json.writeNumber(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            json.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            json.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            json.writeNumber(value.toString());
+        } else if (value instanceof Boolean) {
+            json.writeBoolean((Boolean) value);
+        } else if (value instanceof Map) {
+            json.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                json.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(json, entry.getValue());
+            }
+            json.writeEndObject();
+        } else {
+            json.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Lays JSON out the way Gson's pretty printing does: every member and element on its own line, indented by two
+     * spaces, with "key": value, and nothing inside empty objects and arrays. One per generator.
+     */
+    private static class GsonPrettyPrinter implements PrettyPrinter {
+        private int nesting = 0;
+
+        private void newline(JsonGenerator json) throws IOException {
+            json.writeRaw('\n');
+            for (int i = 0; i < nesting; i++) {
+                json.writeRaw("  ");
+            }
+        }
+
+        @Override
+        public void writeRootValueSeparator(JsonGenerator json) throws IOException {
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator json) throws IOException {
+            json.writeRaw('{');
+            nesting++;
+        }
+
+        @Override
+        public void beforeObjectEntries(JsonGenerator json) throws IOException {
+            newline(json);
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator(JsonGenerator json) throws IOException {
+            json.writeRaw(": ");
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator json) throws IOException {
+            json.writeRaw(',');
+            newline(json);
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator json, int nrOfEntries) throws IOException {
+            nesting--;
+            if (nrOfEntries > 0) {
+                newline(json);
+            }
+            json.writeRaw('}');
+        }
+
+        @Override
+        public void writeStartArray(JsonGenerator json) throws IOException {
+            json.writeRaw('[');
+            nesting++;
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator json) throws IOException {
+            newline(json);
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator json) throws IOException {
+            json.writeRaw(',');
+            newline(json);
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator json, int nrOfValues) throws IOException {
+            nesting--;
+            if (nrOfValues > 0) {
+                newline(json);
+            }
+            json.writeRaw(']');
+        }
+    }
+
+    /**
+     * Escapes the characters Gson escapes by default to keep JSON safe to embed in HTML.
+     */
+    private static class GsonCharacterEscapes extends CharacterEscapes {
+        static final GsonCharacterEscapes INSTANCE = new GsonCharacterEscapes();
+
+        private final int[] asciiEscapes = standardAsciiEscapesForJSON();
+
+        private GsonCharacterEscapes() {
+            for (char c : new char[] { '<', '>', '&', '=', '\'' }) {
+                asciiEscapes[c] = ESCAPE_CUSTOM;
+            }
+        }
+
+        @Override
+        public int[] getEscapeCodesForAscii() {
+            return asciiEscapes;
+        }
+
+        @Override
+        public SerializableString getEscapeSequence(int ch) {
+            return new SerializedString(String.format("\\u%04x", ch));
+        }
+    }
+}
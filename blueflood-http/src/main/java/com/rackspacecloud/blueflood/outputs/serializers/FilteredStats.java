@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
+import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.types.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the stats that are output for each point of a metric, and their values. Shared by the json-simple and the
+ * streaming serializers, so they cannot drift apart.
+ */
+final class FilteredStats {
+    private static final Logger log = LoggerFactory.getLogger(FilteredStats.class);
+
+    /**
+     * Receives the stats of a point, in order.
+     */
+    interface Writer {
+        void write(String stat, Object value) throws IOException;
+    }
+
+    private FilteredStats() {}
+
+    /**
+     * Returns the stats to output for a metric: the ones asked for, or the defaults for its type if none were.
+     */
+    static Set<MetricStat> forMetric(MetricData metricData, Set<MetricStat> filterStats) {
+        // if no stats were entered, figure out what type we are dealing with and select out default stats.
+        if (!metricData.getData().isEmpty() && filterStats == PlotRequestParser.DEFAULT_STATS) {
+            Class dataClass = metricData.getData().getDataClass();
+            if (dataClass.equals(BasicRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_BASIC;
+            else if (dataClass.equals(BluefloodGaugeRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_GAUGE;
+            else if (dataClass.equals(BluefloodCounterRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_COUNTER;
+            else if (dataClass.equals(BluefloodSetRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_SET;
+            else if (dataClass.equals(BluefloodTimerRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_TIMER;
+            else if (dataClass.equals(BluefloodEnumRollup.class))
+                filterStats = PlotRequestParser.DEFAULT_ENUM;
+            // else, I got nothing.
+        }
+
+        return filterStats;
+    }
+
+    /**
+     * Writes the filtered stats of the data of one point. Stats of rollups without any points are written as null.
+     */
+    static void write(Object data, Set<MetricStat> filterStats, Writer out)
+            throws IOException, SerializationException {
+        if (data instanceof String || data instanceof Boolean) {
+            out.write("value", data);
+        } else if (data instanceof SimpleNumber) {
+            writeRawSample(((SimpleNumber) data).getValue(), filterStats, out);
+        } else if (data instanceof Rollup) {
+            writeRollup((Rollup) data, getNumPoints((Rollup) data) == 0, filterStats, out);
+        } else {
+            String errString = String.format("Unsupported datatype for Point %s", data.getClass());
+            log.error(errString);
+            throw new SerializationException(errString);
+        }
+    }
+
+    /**
+     * Writes the filtered stats of a raw number.
+     */
+    static void writeRawSample(Number value, Set<MetricStat> filterStats, Writer out) throws IOException {
+        for (MetricStat stat : filterStats) {
+            out.write(stat.toString(), stat.convertRawSampleToObject(value));
+        }
+    }
+
+    private static void writeRollup(Rollup rollup, boolean empty, Set<MetricStat> filterStats, Writer out)
+            throws IOException {
+        for (MetricStat stat : filterStats) {
+            Object value;
+            try {
+                value = stat.convertRollupToObject(rollup);
+            } catch (UnsupportedOperationException ex) {
+                log.debug(ex.toString());
+                continue;
+            }
+            if (value instanceof Map && stat == MetricStat.PERCENTILE) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    BluefloodTimerRollup.Percentile pct = (BluefloodTimerRollup.Percentile) entry.getValue();
+                    out.write(String.format("pct_%s", entry.getKey().toString()), empty ? null : pct.getMean());
+                }
+            } else {
+                out.write(stat.toString(), empty && stat != MetricStat.NUM_POINTS ? null : value);
+            }
+        }
+    }
+
+    // todo: adding getCount() to Rollup interface will simplify this block.
+    private static long getNumPoints(Rollup rollup) throws SerializationException {
+        // because of inheritance, GaugeRollup needs to come before BasicRollup. sorry.
+        if (rollup instanceof BluefloodGaugeRollup) {
+            return 1 + ((BluefloodGaugeRollup) rollup).getCount();
+        } else if (rollup instanceof BasicRollup) {
+            return ((BasicRollup) rollup).getCount();
+        } else if (rollup instanceof BluefloodSetRollup) {
+            return 1 + ((BluefloodSetRollup) rollup).getCount();
+        } else if (rollup instanceof BluefloodTimerRollup) {
+            return 1 + ((BluefloodTimerRollup) rollup).getCount();
+        } else if (rollup instanceof BluefloodCounterRollup) {
+            return 1 + ((BluefloodCounterRollup) rollup).getCount().longValue();
+        } else if (rollup instanceof BluefloodEnumRollup) {
+            return 1 + ((BluefloodEnumRollup) rollup).getCount();
+        }
+        String errString = String.format("Unsupported datatype for Point %s", rollup.getClass());
+        log.error(errString);
+        throw new SerializationException(errString);
+    }
+}
@@ -55,6 +55,7 @@ public class PlotRequestParser {
         DEFAULT_TIMER.add(BasicRollupsOutputSerializer.MetricStat.RATE);
         DEFAULT_TIMER.add(BasicRollupsOutputSerializer.MetricStat.NUM_POINTS);
         DEFAULT_TIMER.add(BasicRollupsOutputSerializer.MetricStat.AVERAGE);
+        DEFAULT_TIMER.add(BasicRollupsOutputSerializer.MetricStat.QUANTILES);
 
         DEFAULT_ENUM.add(BasicRollupsOutputSerializer.MetricStat.ENUM_VALUES);
         DEFAULT_ENUM.add(BasicRollupsOutputSerializer.MetricStat.TYPE);
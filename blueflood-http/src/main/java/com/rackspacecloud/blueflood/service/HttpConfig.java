@@ -55,11 +55,25 @@ public enum HttpConfig implements ConfigDefaults {
     // Maximum number of batch requests that can be queued
     MAX_BATCH_READ_REQUESTS_TO_QUEUE("10"),
 
+    // Metrics queries run on their own thread pool, off the netty worker threads. Queries that find the queue full,
+    // or run past the timeout, are answered with a 503.
+    MAX_QUERY_THREADS("50"),
+    MAX_QUERIES_TO_QUEUE("1000"),
+    QUERY_TIMEOUT_MILLIS("30000"),
+    // Query responses larger than this many bytes are sent with chunked transfer encoding, in chunks of this size
+    QUERY_RESPONSE_CHUNK_SIZE("65536"),
+
     // Maximum number of bytes a request body can have
     HTTP_MAX_CONTENT_LENGTH("1048576"),
 
     // Maximum number of threads in type and unit processor threadpool
-    HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS("10");
+    HTTP_MAX_TYPE_UNIT_PROCESSOR_THREADS("10"),
+
+    // Reads from ingestion connections are paused while more metrics than this are waiting to be written
+    HTTP_MAX_BUFFERED_METRICS("500000"),
+
+    // Metric batches waiting for a writer thread beyond this are rejected, and their requests answered with a 503
+    HTTP_MAX_QUEUED_WRITE_BATCHES("10000");
 
     static {
         Configuration.getInstance().loadDefaults(HttpConfig.values());
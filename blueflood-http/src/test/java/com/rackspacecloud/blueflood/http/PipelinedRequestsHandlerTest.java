@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PipelinedRequestsHandlerTest {
+
+    private final List<FullHttpRequest> received = new ArrayList<FullHttpRequest>();
+    private ChannelHandlerContext handlerContext;
+
+    @Test
+    public void testPipelinedRequestIsHeldBackUntilPreviousIsAnswered() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PipelinedRequestsHandler(), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                // answered later, like a query
+                handlerContext = ctx;
+                received.add((FullHttpRequest) msg);
+            }
+        });
+
+        channel.writeInbound(request("/first"));
+        channel.writeInbound(request("/second"));
+        assertEquals(1, received.size());
+
+        respond(HttpResponseStatus.OK);
+        channel.runPendingTasks();
+        assertEquals(2, received.size());
+        assertEquals("/second", received.get(1).getUri());
+
+        respond(HttpResponseStatus.ACCEPTED);
+        assertEquals(HttpResponseStatus.OK, ((FullHttpResponse) channel.readOutbound()).getStatus());
+        assertEquals(HttpResponseStatus.ACCEPTED, ((FullHttpResponse) channel.readOutbound()).getStatus());
+    }
+
+    @Test
+    public void testHeldBackRequestsAreReleasedWhenChannelCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PipelinedRequestsHandler(), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                received.add((FullHttpRequest) msg);
+            }
+        });
+        FullHttpRequest heldBack = request("/second");
+
+        channel.writeInbound(request("/first"));
+        channel.writeInbound(heldBack);
+        channel.close();
+
+        assertEquals(1, received.size());
+        assertEquals(0, heldBack.refCnt());
+    }
+
+    @Test
+    public void testClientPipeliningTooManyRequestsIsDisconnected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PipelinedRequestsHandler(), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                received.add((FullHttpRequest) msg);
+            }
+        });
+        List<FullHttpRequest> heldBack = new ArrayList<FullHttpRequest>();
+
+        channel.writeInbound(request("/first"));
+        for (int i = 0; i < PipelinedRequestsHandler.MAX_HELD_BACK; i++) {
+            FullHttpRequest request = request("/" + i);
+            heldBack.add(request);
+            channel.writeInbound(request);
+        }
+        assertTrue(channel.isOpen());
+
+        FullHttpRequest tooMany = request("/too-many");
+        channel.writeInbound(tooMany);
+
+        assertFalse(channel.isOpen());
+        assertEquals(1, received.size());
+        assertEquals(0, tooMany.refCnt());
+        for (FullHttpRequest request : heldBack) {
+            assertEquals(0, request.refCnt());
+        }
+    }
+
+    private void respond(HttpResponseStatus status) {
+        handlerContext.channel().writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status));
+    }
+
+    private static FullHttpRequest request(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+}
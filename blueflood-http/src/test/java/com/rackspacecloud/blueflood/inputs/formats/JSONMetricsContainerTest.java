@@ -19,10 +19,13 @@ package com.rackspacecloud.blueflood.inputs.formats;
 import com.rackspacecloud.blueflood.service.Configuration;
 import com.rackspacecloud.blueflood.service.CoreConfig;
 import com.rackspacecloud.blueflood.types.Metric;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.type.TypeFactory;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -151,6 +154,69 @@ public class JSONMetricsContainerTest {
         assertTrue( Pattern.matches( PAST_COLLECTION_TIME_REGEX, errors.get( 0 ) ) );
     }
 
+    @Test
+    public void testParseMatchesDataBinding() throws Exception {
+        String jsonBody = generateJSONMetricsData();
+
+        JSONMetricsContainer bound = getContainer( "ac1", jsonBody );
+        JSONMetricsContainer parsed = parseContainer( "ac1", jsonBody, false );
+
+        assertEquals( 3, parsed.getJsonMetricCount() );
+        assertEquals( bound.getValidationErrors(), parsed.getValidationErrors() );
+        assertEquals( bound.getValidMetrics().size(), parsed.getValidMetrics().size() );
+        for ( int i = 0; i < bound.getValidMetrics().size(); i++ ) {
+            Metric expected = bound.getValidMetrics().get( i );
+            Metric actual = parsed.getValidMetrics().get( i );
+            assertEquals( expected.getLocator(), actual.getLocator() );
+            assertEquals( expected.getMetricValue(), actual.getMetricValue() );
+            assertEquals( expected.getCollectionTime(), actual.getCollectionTime() );
+            assertEquals( expected.getTtlInSeconds(), actual.getTtlInSeconds() );
+            assertEquals( expected.getUnit(), actual.getUnit() );
+        }
+    }
+
+    @Test
+    public void testParseScopedJsonMetric() throws IOException {
+        String jsonBody = "[{\"tenantId\": 12345, \"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":18.5,\"metricName\":\"metricName1\",\"unit\":\"unknown\"}," +
+                "{\"collectionTime\":" + current + ",\"ttlInSeconds\":172800,\"metricValue\":1844,\"metricName\":\"metricName2\",\"unit\":\"unknown\"}]";
+
+        JSONMetricsContainer container = parseContainer( "786659", jsonBody, true );
+
+        assertEquals( 2, container.getJsonMetricCount() );
+        assertEquals( 1, container.getValidMetrics().size() );
+        assertEquals( "12345.metricName1", container.getValidMetrics().get( 0 ).getLocator().toString() );
+        assertEquals( 18.5, container.getValidMetrics().get( 0 ).getMetricValue() );
+        assertEquals( 1, container.getValidationErrors().size() );
+        assertTrue( Pattern.matches( NO_TENANT_ID_REGEX, container.getValidationErrors().get( 0 ) ) );
+    }
+
+    @Test
+    public void testParseEmptyArray() throws IOException {
+        JSONMetricsContainer container = parseContainer( "786659", "[]", false );
+
+        assertEquals( 0, container.getJsonMetricCount() );
+        assertTrue( container.getValidMetrics().isEmpty() );
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testParseRejectsUnknownField() throws IOException {
+        parseContainer( "786659", "[{\"collectionTime\":" + current + ",\"metricValue\":1,\"metricName\":\"a\",\"bogus\":1}]", false );
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testParseRejectsNonArray() throws IOException {
+        parseContainer( "786659", "{\"collectionTime\":" + current + ",\"metricValue\":1,\"metricName\":\"a\"}", false );
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseRejectsMalformedJson() throws IOException {
+        parseContainer( "786659", "[{\"collectionTime\":,]", false );
+    }
+
+    private JSONMetricsContainer parseContainer( String name, String jsonBody, boolean scoped ) throws IOException {
+        return JSONMetricsContainer.parse( name, new ByteArrayInputStream( jsonBody.getBytes( "UTF-8" ) ), scoped );
+    }
+
     private JSONMetricsContainer getScopedContainer( String name, String jsonBody ) throws java.io.IOException {
 
         List<JSONMetric> jsonMetrics =
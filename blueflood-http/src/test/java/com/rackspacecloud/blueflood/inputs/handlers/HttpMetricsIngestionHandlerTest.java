@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.inputs.handlers;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.rackspacecloud.blueflood.types.MetricsCollection;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class HttpMetricsIngestionHandlerTest {
+
+    private static final String TENANT = "tenant";
+
+    private HttpMetricsIngestionServer.Processor processor;
+    private SettableFuture<List<Boolean>> persisted;
+
+    @Before
+    public void setUp() throws Exception {
+        processor = mock(HttpMetricsIngestionServer.Processor.class);
+        persisted = SettableFuture.create();
+        when(processor.apply(any(MetricsCollection.class))).thenReturn(persisted);
+    }
+
+    @Test
+    public void testRespondsOnceMetricsArePersisted() throws Exception {
+        EmbeddedChannel channel = createChannel(new TimeValue(5, TimeUnit.SECONDS));
+        channel.writeInbound(createIngestRequest());
+
+        verify(processor).throttle(channel);
+        assertNull("must not respond before metrics are persisted", channel.readOutbound());
+
+        persisted.set(Arrays.asList(true, true));
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.getStatus());
+    }
+
+    @Test
+    public void testFailedBatchRespondsWithInternalServerError() throws Exception {
+        EmbeddedChannel channel = createChannel(new TimeValue(5, TimeUnit.SECONDS));
+        channel.writeInbound(createIngestRequest());
+
+        persisted.set(Arrays.asList(true, false));
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.getStatus());
+        assertEquals("Persisted failed for metrics", response.content().toString(Charset.defaultCharset()));
+    }
+
+    @Test
+    public void testRejectedBatchRespondsWithServiceUnavailable() throws Exception {
+        EmbeddedChannel channel = createChannel(new TimeValue(5, TimeUnit.SECONDS));
+        channel.writeInbound(createIngestRequest());
+
+        persisted.setException(new RejectedExecutionException());
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.getStatus());
+    }
+
+    @Test
+    public void testTimeoutRespondsWithAcceptedOnlyOnce() throws Exception {
+        EmbeddedChannel channel = createChannel(new TimeValue(1, TimeUnit.MILLISECONDS));
+        channel.writeInbound(createIngestRequest());
+
+        Thread.sleep(10);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.ACCEPTED, response.getStatus());
+        assertEquals("Timed out persisting metrics", response.content().toString(Charset.defaultCharset()));
+
+        persisted.set(Arrays.asList(true));
+        channel.runPendingTasks();
+        assertNull("must not respond twice", channel.readOutbound());
+    }
+
+    private EmbeddedChannel createChannel(TimeValue timeout) {
+        final HttpMetricsIngestionHandler handler = new HttpMetricsIngestionHandler(processor, timeout);
+        return new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                handler.handle(ctx, (FullHttpRequest) msg);
+            }
+        });
+    }
+
+    private FullHttpRequest createIngestRequest() {
+        String body = "[{\"metricName\":\"a.b.c\",\"ttlInSeconds\":172800,\"unit\":\"seconds\"," +
+                "\"metricValue\":42,\"collectionTime\":" + System.currentTimeMillis() + "}]";
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+                "/v2.0/" + TENANT + "/ingest", Unpooled.copiedBuffer(body.getBytes()));
+        request.headers().set("tenantId", TENANT);
+        return request;
+    }
+}
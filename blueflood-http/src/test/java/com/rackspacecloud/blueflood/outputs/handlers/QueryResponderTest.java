@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.handlers;
+
+import com.codahale.metrics.Timer;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.rackspacecloud.blueflood.exceptions.InvalidRequestException;
+import com.rackspacecloud.blueflood.exceptions.SerializationException;
+import com.rackspacecloud.blueflood.utils.TimeValue;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class QueryResponderTest {
+
+    private static final TimeValue TIMEOUT = new TimeValue(5, TimeUnit.SECONDS);
+
+    private final Timer.Context timerContext = mock(Timer.Context.class);
+
+    @Test
+    public void testRespondsWithQueryResult() {
+        EmbeddedChannel channel = createChannel(writing("{\"values\":[]}"), MoreExecutors.newDirectExecutorService(), TIMEOUT);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.getStatus());
+        assertEquals("{\"values\":[]}", response.content().toString(Charset.defaultCharset()));
+        verify(timerContext).stop();
+    }
+
+    @Test
+    public void testLargeResultIsChunked() {
+        String json = Strings.repeat("x", 200 * 1024);
+        EmbeddedChannel channel = createChannel(writing(json), MoreExecutors.newDirectExecutorService(), TIMEOUT);
+        channel.runPendingTasks();
+
+        HttpResponse response = (HttpResponse) channel.readOutbound();
+        assertFalse(response instanceof FullHttpResponse);
+        assertEquals(HttpResponseStatus.OK, response.getStatus());
+        assertTrue(HttpHeaders.isTransferEncodingChunked(response));
+        assertEquals(json, readBody(channel));
+    }
+
+    @Test
+    public void testLargeResultIsSentWhileItIsWritten() {
+        final int[] outboundWhenHalfWritten = new int[1];
+        final List<Object> outbound = new ArrayList<Object>();
+        EmbeddedChannel channel = createChannel(new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                body.write(Strings.repeat("x", 100 * 1024).getBytes(Charset.defaultCharset()));
+                outboundWhenHalfWritten[0] = outbound.size();
+                body.write(Strings.repeat("y", 100 * 1024).getBytes(Charset.defaultCharset()));
+            }
+        }, MoreExecutors.newDirectExecutorService(), TIMEOUT, outbound);
+        channel.runPendingTasks();
+
+        // the headers and the first 64KB chunk.
+        assertEquals(2, outboundWhenHalfWritten[0]);
+        assertTrue(outbound.get(1) instanceof HttpContent);
+        assertTrue(channel.readOutbound() instanceof HttpResponse);
+        assertEquals(Strings.repeat("x", 100 * 1024) + Strings.repeat("y", 100 * 1024), readBody(channel));
+    }
+
+    @Test
+    public void testFailureAfterPartOfResultWasSentClosesConnection() {
+        EmbeddedChannel channel = createChannel(new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                body.write(Strings.repeat("x", 100 * 1024).getBytes(Charset.defaultCharset()));
+                throw new SerializationException("broken point");
+            }
+        }, MoreExecutors.newDirectExecutorService(), TIMEOUT);
+        channel.runPendingTasks();
+
+        HttpResponse response = (HttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.getStatus());
+        assertTrue(channel.readOutbound() instanceof HttpContent);
+        assertNull("must not answer twice", channel.readOutbound());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testInvalidRequestRespondsWithBadRequest() {
+        QueryResponder.Query query = new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                throw new InvalidRequestException("bad query");
+            }
+        };
+        EmbeddedChannel channel = createChannel(query, MoreExecutors.newDirectExecutorService(), TIMEOUT);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.getStatus());
+        assertEquals("bad query", response.content().toString(Charset.defaultCharset()));
+    }
+
+    @Test
+    public void testTimeoutRespondsWithServiceUnavailableOnlyOnce() throws Exception {
+        SettableFuture<Void> result = SettableFuture.create();
+        ListeningExecutorService executor = mock(ListeningExecutorService.class);
+        when(executor.submit(any(Callable.class))).thenReturn(result);
+
+        EmbeddedChannel channel = createChannel(writing("{}"), executor, new TimeValue(100, TimeUnit.MILLISECONDS));
+        assertNull("must not respond before the query is done", channel.readOutbound());
+
+        Thread.sleep(200);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals("Timed out running query", response.content().toString(Charset.defaultCharset()));
+        assertTrue("query should be cancelled", result.isCancelled());
+
+        channel.runPendingTasks();
+        assertNull("must not respond twice", channel.readOutbound());
+    }
+
+    @Test
+    public void testResultFinishedAfterTimeoutIsNotSent() throws Exception {
+        SettableFuture<Void> result = SettableFuture.create();
+        ListeningExecutorService executor = mock(ListeningExecutorService.class);
+        ArgumentCaptor<Callable> submitted = ArgumentCaptor.forClass(Callable.class);
+        when(executor.submit(submitted.capture())).thenReturn(result);
+
+        EmbeddedChannel channel = createChannel(writing("{}"), executor, new TimeValue(100, TimeUnit.MILLISECONDS));
+        Thread.sleep(200);
+        channel.runPendingTasks();
+        // the query was not interrupted, and finishes after the timeout answered.
+        submitted.getValue().call();
+        channel.runPendingTasks();
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.getStatus());
+        assertNull("must not respond twice", channel.readOutbound());
+    }
+
+    @Test
+    public void testRejectedQueryRespondsWithServiceUnavailable() {
+        ListeningExecutorService executor = mock(ListeningExecutorService.class);
+        when(executor.submit(any(Callable.class))).thenThrow(new RejectedExecutionException());
+
+        EmbeddedChannel channel = createChannel(writing("{}"), executor, TIMEOUT);
+
+        FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.getStatus());
+        verify(timerContext).stop();
+    }
+
+    private EmbeddedChannel createChannel(QueryResponder.Query query, ListeningExecutorService executor,
+                                          TimeValue timeout) {
+        return createChannel(query, executor, timeout, new ArrayList<Object>());
+    }
+
+    // outbound collects what is written, as it is written.
+    private EmbeddedChannel createChannel(final QueryResponder.Query query, final ListeningExecutorService executor,
+                                          final TimeValue timeout, final List<Object> outbound) {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                outbound.add(msg);
+                super.write(ctx, msg, promise);
+            }
+        }, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                new QueryResponder(ctx, (FullHttpRequest) msg, timerContext).respondWhenDone(query, executor, timeout);
+            }
+        });
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+                "/v2.0/tenant/views/metric"));
+        return channel;
+    }
+
+    private static String readBody(EmbeddedChannel channel) {
+        StringBuilder body = new StringBuilder();
+        Object content;
+        while ((content = channel.readOutbound()) instanceof HttpContent) {
+            body.append(((HttpContent) content).content().toString(Charset.defaultCharset()));
+            if (content instanceof LastHttpContent) {
+                break;
+            }
+        }
+        assertTrue(content instanceof LastHttpContent);
+        return body.toString();
+    }
+
+    private static QueryResponder.Query writing(final String json) {
+        return new QueryResponder.Query() {
+            @Override
+            public void writeTo(OutputStream body) throws Exception {
+                body.write(json.getBytes(Charset.defaultCharset()));
+            }
+        };
+    }
+}
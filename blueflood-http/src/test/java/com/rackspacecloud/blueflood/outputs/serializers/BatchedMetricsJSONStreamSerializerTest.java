@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Rackspace
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.rackspacecloud.blueflood.outputs.serializers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.rackspacecloud.blueflood.outputs.formats.MetricData;
+import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
+import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
+import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.Locator;
+import com.rackspacecloud.blueflood.types.NumericPoints;
+import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.SimpleNumber;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BatchedMetricsJSONStreamSerializerTest {
+    private static final String tenantId = "879890";
+
+    private final BatchedMetricsJSONStreamSerializer serializer =
+            new BatchedMetricsJSONStreamSerializer(UnpooledByteBufAllocator.DEFAULT);
+    private final JsonParser parser = new JsonParser();
+
+    @Test
+    public void testBatchedOutputMatchesJSONSerializer() throws Exception {
+        Map<Locator, MetricData> metrics = new LinkedHashMap<Locator, MetricData>();
+        metrics.put(locator("full"), new MetricData(FakeMetricDataGenerator.generateFakeFullResPoints(), "ms", MetricData.Type.NUMBER));
+        metrics.put(locator("basic"), new MetricData(FakeMetricDataGenerator.generateFakeRollupPoints(), null, MetricData.Type.NUMBER));
+        metrics.put(locator("string"), new MetricData(FakeMetricDataGenerator.generateFakeStringPoints(), "unknown", MetricData.Type.STRING));
+        metrics.put(locator("counter"), new MetricData(FakeMetricDataGenerator.generateFakeCounterRollupPoints(), "unknown", MetricData.Type.NUMBER));
+        metrics.put(locator("enum"), new MetricData(FakeMetricDataGenerator.generateFakeEnumRollupPoints(), "unknown", MetricData.Type.ENUM));
+        metrics.put(locator("set"), new MetricData(FakeMetricDataGenerator.generateFakeSetRollupPoints(), "unknown", MetricData.Type.NUMBER));
+        metrics.put(locator("gauge"), new MetricData(FakeMetricDataGenerator.generateFakeGaugeRollups(), "unknown", MetricData.Type.NUMBER));
+        metrics.put(locator("timer"), new MetricData(FakeMetricDataGenerator.generateFakeTimerRollups(), "unknown", MetricData.Type.NUMBER));
+
+        JsonElement expected = parser.parse(new BatchedMetricsJSONOutputSerializer()
+                .transformRollupData(metrics, PlotRequestParser.DEFAULT_STATS).toString());
+
+        assertEquals(expected, parse(serializer.transformRollupData(metrics, PlotRequestParser.DEFAULT_STATS)));
+    }
+
+    @Test
+    public void testFilteredStatsMatchJSONSerializer() throws Exception {
+        Set<MetricStat> filterStats = EnumSet.of(MetricStat.AVERAGE, MetricStat.MAX, MetricStat.NUM_POINTS);
+        MetricData metricData = new MetricData(FakeMetricDataGenerator.generateFakeRollupPoints(), "ms", MetricData.Type.NUMBER);
+
+        JsonElement expected = parser.parse(new JSONBasicRollupsOutputSerializer()
+                .transformRollupData(metricData, filterStats).toString());
+
+        assertEquals(expected, parse(serializer.transformRollupData(metricData, filterStats)));
+    }
+
+    @Test
+    public void testNumericPointsMatchJSONSerializer() throws Exception {
+        NumericPoints columns = new NumericPoints();
+        Points<SimpleNumber> points = new Points<SimpleNumber>();
+        for (int i = 0; i < 5; i++) {
+            columns.add(1000L * i, i * 2.5d);
+            points.add(new Points.Point<SimpleNumber>(1000L * i, new SimpleNumber(i * 2.5d)));
+        }
+
+        JsonElement expected = parser.parse(new JSONBasicRollupsOutputSerializer()
+                .transformRollupData(new MetricData(points, "ms", MetricData.Type.NUMBER), PlotRequestParser.DEFAULT_STATS)
+                .toString());
+
+        assertEquals(expected, parse(serializer.transformRollupData(
+                new MetricData(columns, "ms", MetricData.Type.NUMBER), PlotRequestParser.DEFAULT_STATS)));
+        assertTrue(columns.isColumnar());
+    }
+
+    @Test
+    public void testEmptyRollupStatsAreNull() throws Exception {
+        Points<BasicRollup> points = new Points<BasicRollup>();
+        points.add(new Points.Point<BasicRollup>(1000L, new BasicRollup()));
+        MetricData metricData = new MetricData(points, "ms", MetricData.Type.NUMBER);
+
+        JsonElement values = parse(serializer.transformRollupData(metricData, PlotRequestParser.DEFAULT_STATS))
+                .getAsJsonObject().get("values");
+        JsonElement point = values.getAsJsonArray().get(0);
+
+        assertTrue(point.getAsJsonObject().get("average").isJsonNull());
+        assertEquals(0, point.getAsJsonObject().get("numPoints").getAsLong());
+    }
+
+    @Test
+    public void testOutputIsLaidOutLikeGson() throws Exception {
+        Points<SimpleNumber> points = new Points<SimpleNumber>();
+        points.add(new Points.Point<SimpleNumber>(1000L, new SimpleNumber(5L)));
+        points.add(new Points.Point<SimpleNumber>(2000L, new SimpleNumber(7.5d)));
+        MetricData metricData = new MetricData(points, "<bytes=b>", MetricData.Type.NUMBER);
+
+        ByteBuf buffer = serializer.transformRollupData(metricData, EnumSet.of(MetricStat.AVERAGE));
+        String json;
+        try {
+            json = buffer.toString(Charset.forName("UTF-8"));
+        } finally {
+            buffer.release();
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+        assertEquals(gson.toJson(parser.parse(json)), json);
+        assertTrue(json.contains("\"unit\": \"\\u003cbytes\\u003db\\u003e\""));
+    }
+
+    private JsonElement parse(ByteBuf buffer) {
+        try {
+            return parser.parse(buffer.toString(Charset.forName("UTF-8")));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static Locator locator(String metricName) {
+        return Locator.createLocatorFromPathComponents(tenantId, metricName);
+    }
+}
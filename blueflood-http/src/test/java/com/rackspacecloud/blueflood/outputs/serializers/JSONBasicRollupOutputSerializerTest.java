@@ -21,7 +21,9 @@ import com.rackspacecloud.blueflood.outputs.formats.MetricData;
 import com.rackspacecloud.blueflood.outputs.serializers.BasicRollupsOutputSerializer.MetricStat;
 import com.rackspacecloud.blueflood.outputs.utils.PlotRequestParser;
 import com.rackspacecloud.blueflood.types.BasicRollup;
+import com.rackspacecloud.blueflood.types.BluefloodTimerRollup;
 import com.rackspacecloud.blueflood.types.Points;
+import com.rackspacecloud.blueflood.types.QuantileSketch;
 import com.rackspacecloud.blueflood.exceptions.SerializationException;
 import com.rackspacecloud.blueflood.types.SimpleNumber;
 import org.json.simple.JSONArray;
@@ -267,6 +269,28 @@ public class JSONBasicRollupOutputSerializerTest {
             // bah. I'm too lazy to check equals.
         }
     }
+
+    @Test
+    public void setTimerQuantiles() throws Exception {
+        final JSONBasicRollupsOutputSerializer serializer = new JSONBasicRollupsOutputSerializer();
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 1000; i++) {
+            sketch.add(i);
+        }
+        Points<BluefloodTimerRollup> points = new Points<BluefloodTimerRollup>();
+        points.add(new Points.Point<BluefloodTimerRollup>(1234567L, new BluefloodTimerRollup().withCount(1000).withSketch(sketch)));
+        points.add(new Points.Point<BluefloodTimerRollup>(1235567L, new BluefloodTimerRollup().withCount(1000)));
+        final MetricData metricData = new MetricData(points, "ms", MetricData.Type.NUMBER);
+
+        JSONObject metricDataJSON = serializer.transformRollupData(metricData, PlotRequestParser.DEFAULT_TIMER);
+        final JSONArray data = (JSONArray)metricDataJSON.get("values");
+
+        Map quantiles = (Map) ((JSONObject) data.get(0)).get("quantiles");
+        Assert.assertEquals(500d, (Double) quantiles.get("p50"), 5d);
+        Assert.assertEquals(990d, (Double) quantiles.get("p99"), 10d);
+        // timers sent without timings have no quantiles.
+        Assert.assertNull(((JSONObject) data.get(1)).get("quantiles"));
+    }
     
     
 }